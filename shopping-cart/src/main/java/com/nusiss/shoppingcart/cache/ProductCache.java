@@ -0,0 +1,289 @@
+package com.nusiss.shoppingcart.cache;
+
+import com.nusiss.shoppingcart.entity.Product;
+import com.nusiss.shoppingcart.event.ProductChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 商品近端缓存
+ * 分段 LRU + TTL 淘汰；同一商品的并发未命中合并为一次数据库加载（single-flight）；
+ * 商品保存（包括库存增减）提交后原地更新缓存条目；各事务提交后的事件可能乱序到达，
+ * 只有更新时间晚于已缓存条目的事件才原地更新，否则使条目失效，由下一次读取重新加载
+ * 缓存中保存的是脱离持久化上下文的商品快照，调用方不应修改返回的对象
+ * @author SpringCA Team
+ */
+@Component
+public class ProductCache {
+
+    private static final int SEGMENT_COUNT = 16;
+
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+    private final Map<Long, CompletableFuture<Optional<Product>>> inflight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder collapsedLoads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public ProductCache(@Value("${app.cache.product.enabled:true}") boolean enabled,
+                        @Value("${app.cache.product.max-size:10000}") int maxSize,
+                        @Value("${app.cache.product.ttl-seconds:60}") long ttlSeconds) {
+        this.enabled = enabled;
+        this.ttlMillis = ttlSeconds * 1000;
+        int segmentCapacity = Math.max(1, (maxSize + SEGMENT_COUNT - 1) / SEGMENT_COUNT);
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    /**
+     * 获取商品，未命中时通过加载函数读取数据库
+     * @param id 商品ID
+     * @param loader 数据库加载函数
+     * @return 商品快照
+     */
+    public Optional<Product> get(Long id, Function<Long, Optional<Product>> loader) {
+        if (!enabled || id == null) {
+            return loader.apply(id);
+        }
+
+        Product cached = segmentFor(id).get(id);
+        if (cached != null) {
+            hits.increment();
+            return Optional.of(cached);
+        }
+        misses.increment();
+
+        CompletableFuture<Optional<Product>> mine = new CompletableFuture<>();
+        CompletableFuture<Optional<Product>> existing = inflight.putIfAbsent(id, mine);
+        if (existing != null) {
+            collapsedLoads.increment();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : e;
+            }
+        }
+
+        try {
+            loads.increment();
+            Optional<Product> loaded = loader.apply(id).map(ProductCache::snapshot);
+            // 加载期间若商品已变更，inflight 条目已被移除，此时不写入旧数据
+            if (inflight.remove(id, mine) && loaded.isPresent()) {
+                segmentFor(id).put(id, loaded.get());
+            }
+            mine.complete(loaded);
+            return loaded;
+        } catch (RuntimeException e) {
+            inflight.remove(id, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * 使指定商品的缓存失效
+     * @param id 商品ID
+     */
+    public void invalidate(Long id) {
+        inflight.remove(id);
+        if (segmentFor(id).remove(id)) {
+            invalidations.increment();
+        }
+    }
+
+    /**
+     * 商品保存提交后原地更新已缓存的条目（价格、库存、上下架状态等）
+     * 事件中的商品不比已缓存的新时（乱序到达的旧状态，或更新时间相同无法判断先后）使条目失效
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        Long id = event.getProduct().getId();
+        if (!enabled || id == null) {
+            return;
+        }
+        if (event.getChangeType() == ProductChangedEvent.ChangeType.DELETED) {
+            invalidate(id);
+            return;
+        }
+        inflight.remove(id);
+        segmentFor(id).replaceIfNewer(id, snapshot(event.getProduct()));
+    }
+
+    /**
+     * 获取缓存统计信息
+     * @return 命中、未命中、淘汰等计数
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("size", size);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", total == 0 ? 0.0 : (double) hitCount / total);
+        stats.put("loads", loads.sum());
+        stats.put("collapsedLoads", collapsedLoads.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("expirations", expirations.sum());
+        stats.put("updates", updates.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+
+    private Segment segmentFor(Long id) {
+        int h = Long.hashCode(id);
+        h ^= (h >>> 16);
+        return segments[h & (SEGMENT_COUNT - 1)];
+    }
+
+    /**
+     * 复制商品实体，得到与持久化上下文无关的快照
+     * @param source 商品实体或缓存中的商品
+     * @return 商品副本
+     */
+    public static Product snapshot(Product source) {
+        Product copy = new Product();
+        copy.setId(source.getId());
+        copy.setName(source.getName());
+        copy.setDescription(source.getDescription());
+        copy.setPrice(source.getPrice());
+        copy.setStock(source.getStock());
+        copy.setCategory(source.getCategory());
+        copy.setBrand(source.getBrand());
+        copy.setImageUrl(source.getImageUrl());
+        copy.setActive(source.getActive());
+        copy.setRating(source.getRating());
+        copy.setReviewCount(source.getReviewCount());
+        copy.setCreatedAt(source.getCreatedAt());
+        copy.setUpdatedAt(source.getUpdatedAt());
+        return copy;
+    }
+
+    /**
+     * 缓存条目
+     */
+    private static final class CacheEntry {
+
+        final Product product;
+        final long expireAt;
+
+        CacheEntry(Product product, long expireAt) {
+            this.product = product;
+            this.expireAt = expireAt;
+        }
+    }
+
+    /**
+     * 缓存分段：按访问顺序排列的 LinkedHashMap，超出容量时淘汰最久未访问的条目
+     */
+    private final class Segment {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<Long, CacheEntry> map;
+
+        Segment(int capacity) {
+            this.map = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, CacheEntry> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        Product get(Long id) {
+            lock.lock();
+            try {
+                CacheEntry entry = map.get(id);
+                if (entry == null) {
+                    return null;
+                }
+                if (entry.expireAt <= System.currentTimeMillis()) {
+                    map.remove(id);
+                    expirations.increment();
+                    return null;
+                }
+                return entry.product;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void put(Long id, Product product) {
+            lock.lock();
+            try {
+                map.put(id, new CacheEntry(product, System.currentTimeMillis() + ttlMillis));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void replaceIfNewer(Long id, Product product) {
+            lock.lock();
+            try {
+                CacheEntry entry = map.get(id);
+                if (entry == null) {
+                    return;
+                }
+                LocalDateTime cachedAt = entry.product.getUpdatedAt();
+                if (product.getUpdatedAt() != null && cachedAt != null && product.getUpdatedAt().isAfter(cachedAt)) {
+                    map.put(id, new CacheEntry(product, System.currentTimeMillis() + ttlMillis));
+                    updates.increment();
+                } else {
+                    map.remove(id);
+                    invalidations.increment();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean remove(Long id) {
+            lock.lock();
+            try {
+                return map.remove(id) != null;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return map.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
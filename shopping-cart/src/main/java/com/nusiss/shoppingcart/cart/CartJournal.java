@@ -0,0 +1,181 @@
+package com.nusiss.shoppingcart.cart;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 购物车变更日志
+ * 只追加的本地日志，按段存放；每条记录是一次变更后商品行的完整状态（数量为 0 表示删除），
+ * 写入后立即刷到操作系统，进程崩溃后可按记录顺序回放；所有记录都已写入数据库的段由写回任务删除
+ * @author SpringCA Team
+ */
+class CartJournal {
+
+    private static final String SEGMENT_PREFIX = "cart-journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final List<Segment> closedSegments = new ArrayList<>();
+    private long nextSeq = 1;
+    private Segment current;
+
+    CartJournal(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * 读取目录中已有的全部记录（按序号排列），并从最大序号之后继续编号
+     * @return 日志记录
+     */
+    synchronized List<Record> recover() throws IOException {
+        Files.createDirectories(directory);
+        List<Record> records = new ArrayList<>();
+        for (Path path : listSegments()) {
+            for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                Record record = Record.parse(line);
+                // 崩溃时最后一行可能只写了一半，跳过
+                if (record != null) {
+                    records.add(record);
+                    nextSeq = Math.max(nextSeq, record.seq + 1);
+                }
+            }
+            closedSegments.add(new Segment(path, null, nextSeq - 1));
+        }
+        records.sort(Comparator.comparingLong(record -> record.seq));
+        return records;
+    }
+
+    /**
+     * 追加一条记录
+     * @return 记录序号
+     */
+    synchronized long append(long userId, long productId, int quantity, BigDecimal unitPrice) {
+        try {
+            if (current == null) {
+                Path path = directory.resolve(SEGMENT_PREFIX + String.format("%019d", nextSeq) + SEGMENT_SUFFIX);
+                current = new Segment(path, Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND), 0);
+            }
+            long seq = nextSeq++;
+            current.writer.write(new Record(seq, userId, productId, quantity, unitPrice).format());
+            current.writer.newLine();
+            current.writer.flush();
+            current.lastSeq = seq;
+            return seq;
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入购物车变更日志失败", e);
+        }
+    }
+
+    /**
+     * 关闭当前段，之后的记录写入新段
+     */
+    synchronized void rotate() throws IOException {
+        if (current == null) {
+            return;
+        }
+        current.writer.close();
+        closedSegments.add(new Segment(current.path, null, current.lastSeq));
+        current = null;
+    }
+
+    /**
+     * 删除所有记录序号都小于指定序号的已关闭段
+     * @param seq 最小未写入数据库的记录序号
+     * @return 删除的段数
+     */
+    synchronized int deleteSegmentsBefore(long seq) throws IOException {
+        int deleted = 0;
+        Iterator<Segment> iterator = closedSegments.iterator();
+        while (iterator.hasNext()) {
+            Segment segment = iterator.next();
+            if (segment.lastSeq >= seq) {
+                break;
+            }
+            Files.deleteIfExists(segment.path);
+            iterator.remove();
+            deleted++;
+        }
+        return deleted;
+    }
+
+    /**
+     * 关闭当前段
+     */
+    synchronized void close() throws IOException {
+        rotate();
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).sorted().toList();
+        }
+    }
+
+    /**
+     * 日志段
+     */
+    private static final class Segment {
+
+        final Path path;
+        final BufferedWriter writer;
+        long lastSeq;
+
+        Segment(Path path, BufferedWriter writer, long lastSeq) {
+            this.path = path;
+            this.writer = writer;
+            this.lastSeq = lastSeq;
+        }
+    }
+
+    /**
+     * 日志记录：序号、用户ID、商品ID、变更后数量、单价
+     */
+    static final class Record {
+
+        final long seq;
+        final long userId;
+        final long productId;
+        final int quantity;
+        final BigDecimal unitPrice;
+
+        Record(long seq, long userId, long productId, int quantity, BigDecimal unitPrice) {
+            this.seq = seq;
+            this.userId = userId;
+            this.productId = productId;
+            this.quantity = quantity;
+            this.unitPrice = unitPrice;
+        }
+
+        String format() {
+            return seq + " " + userId + " " + productId + " " + quantity + " " + unitPrice.toPlainString();
+        }
+
+        static Record parse(String line) {
+            String[] parts = line.trim().split(" ");
+            if (parts.length != 5) {
+                return null;
+            }
+            try {
+                return new Record(Long.parseLong(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2]),
+                        Integer.parseInt(parts[3]), new BigDecimal(parts[4]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
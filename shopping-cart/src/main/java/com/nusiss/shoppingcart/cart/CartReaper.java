@@ -0,0 +1,176 @@
+package com.nusiss.shoppingcart.cart;
+
+import com.nusiss.shoppingcart.entity.Cart;
+import com.nusiss.shoppingcart.repository.CartItemRepository;
+import com.nusiss.shoppingcart.repository.CartRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 废弃购物车清理任务
+ * 定期按购物车ID分块查找长时间未更新的活跃购物车，每块在一个短事务中锁定仍然废弃的购物车、
+ * 删除其商品项并停用；块之间暂停，只在配置的低峰时段运行，每次运行处理的块数有上限
+ * @author SpringCA Team
+ */
+@Component
+public class CartReaper {
+
+    private static final Logger log = LoggerFactory.getLogger(CartReaper.class);
+
+    private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
+    private final CartWriteBehindStore cartStore;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int staleDays;
+    private final int chunkSize;
+    private final int maxChunksPerRun;
+    private final long pauseMillis;
+    private final LocalTime windowStart;
+    private final LocalTime windowEnd;
+
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder cartsReaped = new LongAdder();
+    private final LongAdder itemsDeleted = new LongAdder();
+    private final LongAdder timeSpentMillis = new LongAdder();
+    private volatile LocalDateTime lastRunAt;
+
+    public CartReaper(CartRepository cartRepository,
+                      CartItemRepository cartItemRepository,
+                      CartWriteBehindStore cartStore,
+                      PlatformTransactionManager transactionManager,
+                      @Value("${app.cart.reaper.enabled:true}") boolean enabled,
+                      @Value("${app.cart.reaper.stale-days:30}") int staleDays,
+                      @Value("${app.cart.reaper.chunk-size:200}") int chunkSize,
+                      @Value("${app.cart.reaper.max-chunks-per-run:50}") int maxChunksPerRun,
+                      @Value("${app.cart.reaper.pause-ms:200}") long pauseMillis,
+                      @Value("${app.cart.reaper.window-start:02:00}") String windowStart,
+                      @Value("${app.cart.reaper.window-end:06:00}") String windowEnd) {
+        this.cartRepository = cartRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.cartStore = cartStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.staleDays = staleDays;
+        this.chunkSize = chunkSize;
+        this.maxChunksPerRun = maxChunksPerRun;
+        this.pauseMillis = pauseMillis;
+        this.windowStart = LocalTime.parse(windowStart);
+        this.windowEnd = LocalTime.parse(windowEnd);
+    }
+
+    /**
+     * 清理废弃购物车（不在低峰时段内时跳过）
+     */
+    @Scheduled(fixedDelayString = "${app.cart.reaper.interval-ms:600000}")
+    public void reap() {
+        if (!enabled || !inWindow(LocalTime.now())) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(staleDays);
+        int carts = 0;
+        int items = 0;
+        try {
+            long afterId = 0;
+            for (int chunk = 0; chunk < maxChunksPerRun; chunk++) {
+                List<Object[]> rows = cartRepository.findStaleCarts(cutoff, afterId, PageRequest.of(0, chunkSize));
+                if (rows.isEmpty()) {
+                    break;
+                }
+                List<Long> cartIds = new ArrayList<>(rows.size());
+                for (Object[] row : rows) {
+                    // 写回模式下内存中的购物车正在使用，数据库中的更新时间可能滞后
+                    if (!cartStore.isCached((Long) row[1])) {
+                        cartIds.add((Long) row[0]);
+                    }
+                    afterId = (Long) row[0];
+                }
+                int[] reclaimed = reapChunk(cartIds, cutoff);
+                carts += reclaimed[0];
+                items += reclaimed[1];
+                if (rows.size() < chunkSize || !inWindow(LocalTime.now())) {
+                    break;
+                }
+                Thread.sleep(pauseMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("清理废弃购物车失败：{}", e.getMessage());
+        }
+
+        long elapsed = System.currentTimeMillis() - startTime;
+        runs.increment();
+        cartsReaped.add(carts);
+        itemsDeleted.add(items);
+        timeSpentMillis.add(elapsed);
+        lastRunAt = LocalDateTime.now();
+        if (carts > 0) {
+            log.info("废弃购物车清理完成：停用购物车 {} 个，删除商品项 {} 条，耗时 {}ms", carts, items, elapsed);
+        } else {
+            log.debug("废弃购物车清理完成：无废弃购物车，耗时 {}ms", elapsed);
+        }
+    }
+
+    /**
+     * 获取清理统计信息
+     * @return 运行次数、停用购物车数、删除商品项数、累计耗时
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("runs", runs.sum());
+        stats.put("cartsReaped", cartsReaped.sum());
+        stats.put("itemsDeleted", itemsDeleted.sum());
+        stats.put("timeSpentMillis", timeSpentMillis.sum());
+        stats.put("lastRunAt", lastRunAt);
+        return stats;
+    }
+
+    /**
+     * 在一个短事务中锁定仍然废弃的购物车，删除商品项并停用
+     * @return 停用的购物车数、删除的商品项数
+     */
+    private int[] reapChunk(List<Long> cartIds, LocalDateTime cutoff) {
+        if (cartIds.isEmpty()) {
+            return new int[]{0, 0};
+        }
+        return transactionTemplate.execute(status -> {
+            List<Long> lockedIds = cartRepository.lockStaleCarts(cartIds, cutoff).stream().map(Cart::getId).toList();
+            if (lockedIds.isEmpty()) {
+                return new int[]{0, 0};
+            }
+            int items = cartItemRepository.deleteByCartIds(lockedIds);
+            int carts = cartRepository.deactivateAll(lockedIds, LocalDateTime.now());
+            return new int[]{carts, items};
+        });
+    }
+
+    /**
+     * 是否处于低峰时段（支持跨午夜的时段，如 22:00-06:00）
+     */
+    private boolean inWindow(LocalTime time) {
+        if (windowStart.equals(windowEnd)) {
+            return true;
+        }
+        if (windowStart.isBefore(windowEnd)) {
+            return !time.isBefore(windowStart) && time.isBefore(windowEnd);
+        }
+        return !time.isBefore(windowStart) || time.isBefore(windowEnd);
+    }
+}
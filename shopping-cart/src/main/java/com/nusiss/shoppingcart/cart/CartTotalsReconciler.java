@@ -0,0 +1,98 @@
+package com.nusiss.shoppingcart.cart;
+
+import com.nusiss.shoppingcart.dto.CartTotals;
+import com.nusiss.shoppingcart.repository.CartRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * 购物车汇总列校对任务
+ * 定期按购物车ID分批用商品项重新计算汇总，修复增量维护产生的偏差
+ * （如商品下架、历史数据或异常中断的写入）；修复时比较并写入，不覆盖并发的增量更新
+ * @author SpringCA Team
+ */
+@Component
+public class CartTotalsReconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(CartTotalsReconciler.class);
+
+    private final CartRepository cartRepository;
+    private final boolean enabled;
+    private final int batchSize;
+
+    public CartTotalsReconciler(CartRepository cartRepository,
+                                @Value("${app.cart.totals.reconcile-enabled:true}") boolean enabled,
+                                @Value("${app.cart.totals.reconcile-batch-size:500}") int batchSize) {
+        this.cartRepository = cartRepository;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 校对所有活跃购物车的汇总列
+     */
+    @Scheduled(fixedDelayString = "${app.cart.totals.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        if (!enabled) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        int checked = 0;
+        int repaired = 0;
+        try {
+            long afterId = 0;
+            List<Object[]> rows;
+            do {
+                rows = cartRepository.findTotalsForReconciliation(afterId, PageRequest.of(0, batchSize));
+                for (Object[] row : rows) {
+                    if (repair(row)) {
+                        repaired++;
+                    }
+                    afterId = (Long) row[0];
+                }
+                checked += rows.size();
+            } while (rows.size() == batchSize);
+        } catch (Exception e) {
+            log.error("校对购物车汇总失败：{}", e.getMessage());
+        }
+
+        if (repaired > 0) {
+            log.info("购物车汇总校对完成：检查 {} 个，修复 {} 个，耗时 {}ms",
+                    checked, repaired, System.currentTimeMillis() - startTime);
+        } else {
+            log.debug("购物车汇总校对完成：检查 {} 个，无偏差", checked);
+        }
+    }
+
+    /**
+     * 汇总列与实际值不一致时修复
+     * @return 是否修复
+     */
+    private boolean repair(Object[] row) {
+        Long cartId = (Long) row[0];
+        int storedQuantity = ((Number) row[1]).intValue();
+        long storedAmountCents = ((Number) row[2]).longValue();
+        int storedItemCount = ((Number) row[3]).intValue();
+        int quantity = ((Number) row[4]).intValue();
+        long amountCents = CartTotals.toCents(new BigDecimal(row[5].toString()));
+        int itemCount = ((Number) row[6]).intValue();
+
+        if (storedQuantity == quantity && storedAmountCents == amountCents && storedItemCount == itemCount) {
+            return false;
+        }
+        int updated = cartRepository.repairTotals(cartId, storedQuantity, storedAmountCents, storedItemCount,
+                quantity, amountCents, itemCount);
+        if (updated > 0) {
+            log.warn("修复购物车汇总：购物车 {}, 数量 {} -> {}, 金额(分) {} -> {}, 种类 {} -> {}",
+                    cartId, storedQuantity, quantity, storedAmountCents, amountCents, storedItemCount, itemCount);
+        }
+        return updated > 0;
+    }
+}
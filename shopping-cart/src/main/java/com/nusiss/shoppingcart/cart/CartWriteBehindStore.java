@@ -0,0 +1,911 @@
+package com.nusiss.shoppingcart.cart;
+
+import com.nusiss.shoppingcart.dto.CartDelta;
+import com.nusiss.shoppingcart.dto.CartLine;
+import com.nusiss.shoppingcart.dto.CartTotals;
+import com.nusiss.shoppingcart.entity.Cart;
+import com.nusiss.shoppingcart.entity.CartItem;
+import com.nusiss.shoppingcart.entity.Product;
+import com.nusiss.shoppingcart.entity.User;
+import com.nusiss.shoppingcart.repository.CartRepository;
+import com.nusiss.shoppingcart.service.ProductService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 购物车写回存储（可选）
+ * 开启后登录用户的购物车在首次变更时整体加载到内存，按用户ID分段加锁，同一用户的变更按顺序在内存中生效，
+ * 先写本地变更日志再修改内存；后台任务每隔几百毫秒把有变更的购物车逐个用 JDBC 批量语句写回 carts、cart_items，
+ * 每个购物车一个独立事务，写回时比较内存数量与已写入数量，只写差异；写回失败的购物车保留在内存中按指数退避重试，
+ * 持续失败超过一定时间的购物车移出内存并记录日志，其变更日志保留到下次启动时回放，不会因清理日志段而丢失；
+ * 结算、清空、批量修改等直接读写数据库的路径先同步写回
+ * 未写回的新商品行使用负数临时ID，写回后改用数据库ID，两者在缓存期间都可用于定位商品行；
+ * 直接修改数据库的调用方事务完成前，该用户的购物车不会被重新加载到内存
+ * @author SpringCA Team
+ */
+@Component
+public class CartWriteBehindStore {
+
+    private static final Logger log = LoggerFactory.getLogger(CartWriteBehindStore.class);
+
+    private static final int STRIPE_COUNT = 64;
+    // 等待直接修改数据库的事务完成的最长时间
+    private static final long PIN_TIMEOUT_MILLIS = 10_000;
+
+    private final boolean configured;
+    private volatile boolean enabled;
+    private final long idleTimeoutMillis;
+    private final long flushIntervalMillis;
+    private final long maxBackoffMillis;
+    private final long quarantineAfterMillis;
+    private final CartRepository cartRepository;
+    private final ProductService productService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CartJournal journal;
+
+    private final Map<Long, CachedCart> carts = new ConcurrentHashMap<>();
+    // 移出内存的购物车 -> 其最早未写回的日志序号：这些日志段保留到下次启动时回放
+    private final Map<Long, Long> quarantinedSeqs = new ConcurrentHashMap<>();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPE_COUNT];
+    private final Condition[] unpinned = new Condition[STRIPE_COUNT];
+    // 用户ID -> 正在直接修改该用户购物车的事务所在线程（在用户锁内读写）
+    private final Map<Long, List<Thread>> pins = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicLong tempIds = new AtomicLong();
+
+    private final LongAdder mutations = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushedCarts = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+    private final LongAdder quarantinedCarts = new LongAdder();
+
+    public CartWriteBehindStore(CartRepository cartRepository,
+                                ProductService productService,
+                                JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${app.cart.write-behind.enabled:false}") boolean enabled,
+                                @Value("${app.cart.write-behind.idle-timeout-minutes:30}") long idleTimeoutMinutes,
+                                @Value("${app.cart.write-behind.flush-interval-ms:200}") long flushIntervalMillis,
+                                @Value("${app.cart.write-behind.max-backoff-ms:30000}") long maxBackoffMillis,
+                                @Value("${app.cart.write-behind.quarantine-after-minutes:30}") long quarantineAfterMinutes,
+                                @Value("${app.cart.write-behind.journal-dir:./data/cart-journal}") String journalDir) {
+        this.cartRepository = cartRepository;
+        this.productService = productService;
+        this.jdbcTemplate = jdbcTemplate;
+        // 写回使用独立事务，调用方事务回滚不影响已写回的状态
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.configured = enabled;
+        this.idleTimeoutMillis = idleTimeoutMinutes * 60_000;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.quarantineAfterMillis = quarantineAfterMinutes * 60_000;
+        this.journal = new CartJournal(Path.of(journalDir));
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            stripes[i] = new ReentrantLock();
+            unpinned[i] = stripes[i].newCondition();
+        }
+    }
+
+    /**
+     * 在接收请求前回放上次未写回的变更日志；回放失败时保留日志文件并关闭写回模式
+     */
+    @PostConstruct
+    public void recover() {
+        if (!configured) {
+            return;
+        }
+        try {
+            List<CartJournal.Record> records = journal.recover();
+            if (!records.isEmpty()) {
+                long startTime = System.currentTimeMillis();
+                transactionTemplate.executeWithoutResult(status -> replay(records));
+                journal.deleteSegmentsBefore(Long.MAX_VALUE);
+                log.info("回放购物车变更日志完成：{} 条记录，耗时 {}ms", records.size(),
+                        System.currentTimeMillis() - startTime);
+            }
+            enabled = true;
+        } catch (Exception e) {
+            log.error("回放购物车变更日志失败，写回模式未开启：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 写回模式是否开启
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 添加商品（商品已由调用方校验存在且上架）
+     * @param user 用户对象
+     * @param product 商品
+     * @param quantity 增加的数量
+     * @return 变更的商品行、新汇总及版本号；库存不足时为空
+     */
+    public Optional<CartDelta> add(User user, Product product, int quantity) {
+        ReentrantLock lock = lockFor(user.getId());
+        lock.lock();
+        try {
+            CachedCart cart = loadLocked(user);
+            Line line = cart.lines.get(product.getId());
+            int newQuantity = (line == null ? 0 : line.quantity) + quantity;
+            if (!productService.hasAvailableStock(product, user.getId(), newQuantity)) {
+                log.warn("商品库存不足：{}, 购物车现有：{}, 新增：{}, 可用库存：{}",
+                        product.getId(), newQuantity - quantity, quantity, product.getStock());
+                return Optional.empty();
+            }
+            if (line == null) {
+                line = new Line(product.getId(), null, tempIds.decrementAndGet(), product.getPrice(), 0, 0);
+                cart.lines.put(product.getId(), line);
+            }
+            apply(user.getId(), cart, line, newQuantity);
+            return Optional.of(CartDelta.ofChanges(totals(cart), lines(List.of(line)), List.of()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 修改商品行数量
+     * @param user 用户对象
+     * @param lineId 购物车项ID（数据库ID或临时ID）
+     * @param quantity 新数量（大于0）
+     * @return 变更的商品行、新汇总及版本号；商品行不存在或库存不足时为空
+     */
+    public Optional<CartDelta> update(User user, Long lineId, int quantity) {
+        ReentrantLock lock = lockFor(user.getId());
+        lock.lock();
+        try {
+            CachedCart cart = loadLocked(user);
+            Line line = cart.find(lineId);
+            if (line == null) {
+                log.warn("购物车项不存在：{}", lineId);
+                return Optional.empty();
+            }
+            Optional<Product> product = productService.getProductById(line.productId);
+            if (product.isEmpty() || !productService.hasAvailableStock(product.get(), user.getId(), quantity)) {
+                log.warn("商品不存在或库存不足：{}, 请求数量：{}", line.productId, quantity);
+                return Optional.empty();
+            }
+            apply(user.getId(), cart, line, quantity);
+            return Optional.of(CartDelta.ofChanges(totals(cart), lines(List.of(line)), List.of()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 删除商品行
+     * @param user 用户对象
+     * @param lineId 购物车项ID（数据库ID或临时ID）
+     * @return 被删除的购物车项ID、新汇总及版本号；商品行不存在时为空
+     */
+    public Optional<CartDelta> remove(User user, Long lineId) {
+        ReentrantLock lock = lockFor(user.getId());
+        lock.lock();
+        try {
+            CachedCart cart = loadLocked(user);
+            Line line = cart.find(lineId);
+            if (line == null) {
+                log.warn("购物车项不存在：{}", lineId);
+                return Optional.empty();
+            }
+            apply(user.getId(), cart, line, 0);
+            return Optional.of(CartDelta.ofChanges(totals(cart), List.of(), List.of(lineId)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 读取已缓存购物车的汇总
+     * @param userId 用户ID
+     * @return 购物车汇总数值，未缓存时为空
+     */
+    public Optional<CartTotals> getTotals(Long userId) {
+        ReentrantLock lock = lockFor(userId);
+        lock.lock();
+        try {
+            CachedCart cart = carts.get(userId);
+            if (cart == null) {
+                return Optional.empty();
+            }
+            cart.lastAccess = System.currentTimeMillis();
+            return Optional.of(totals(cart));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 用户购物车是否缓存在内存中（正在使用，数据库中的更新时间可能滞后）
+     * @param userId 用户ID
+     */
+    public boolean isCached(Long userId) {
+        return enabled && carts.containsKey(userId);
+    }
+
+    /**
+     * 同步写回用户购物车（结算等直接读取数据库前调用）
+     * @param userId 用户ID
+     */
+    public void flush(Long userId) {
+        if (!enabled) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            flushUser(userId);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 同步写回用户购物车并移出内存（之后由调用方直接修改数据库）
+     * 调用方事务完成（提交或回滚）前，其他请求加载该用户的购物车时等待，避免读到事务前的数据后覆盖事务的修改
+     * @param userId 用户ID
+     */
+    public void flushAndEvict(Long userId) {
+        if (!enabled) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            boolean evicted = false;
+            while (!evicted) {
+                flushUser(userId);
+                ReentrantLock lock = lockFor(userId);
+                lock.lock();
+                try {
+                    CachedCart cart = carts.get(userId);
+                    // 写回期间又有新的变更时再写回一次
+                    if (cart == null || !cart.dirty) {
+                        carts.remove(userId);
+                        pin(userId);
+                        evicted = true;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 定期写回所有有变更的购物车（每个购物车独立事务，一个失败不影响其他，失败的购物车退避到重试时间），
+     * 删除已全部写回的日志段，并移出闲置的购物车
+     */
+    @Scheduled(fixedDelayString = "${app.cart.write-behind.flush-interval-ms:200}")
+    public void flushDirty() {
+        flushAll(false);
+    }
+
+    /**
+     * 关闭前写回所有变更（不等待退避）
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        flushAll(true);
+        try {
+            journal.close();
+        } catch (IOException e) {
+            log.error("关闭购物车变更日志失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 获取写回统计信息
+     * @return 缓存购物车数、待写回购物车数、退避中的购物车数、变更与写回计数、
+     *         因持续写回失败移出内存的购物车数及其中变更日志待下次启动回放的用户数
+     */
+    public Map<String, Object> getStats() {
+        int dirty = 0;
+        int backingOff = 0;
+        for (CachedCart cart : carts.values()) {
+            if (cart.dirty) {
+                dirty++;
+            }
+            if (cart.flushFailures > 0) {
+                backingOff++;
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("cachedCarts", carts.size());
+        stats.put("dirtyCarts", dirty);
+        stats.put("backingOffCarts", backingOff);
+        stats.put("mutations", mutations.sum());
+        stats.put("flushes", flushes.sum());
+        stats.put("flushedCarts", flushedCarts.sum());
+        stats.put("flushFailures", flushFailures.sum());
+        stats.put("quarantinedCarts", quarantinedCarts.sum());
+        stats.put("awaitingReplay", quarantinedSeqs.size());
+        return stats;
+    }
+
+    /**
+     * 写回所有有变更的购物车
+     * @param ignoreBackoff 是否忽略写回失败后的退避时间
+     */
+    private void flushAll(boolean ignoreBackoff) {
+        if (!enabled) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            journal.rotate();
+            long now = System.currentTimeMillis();
+            for (Map.Entry<Long, CachedCart> entry : carts.entrySet()) {
+                if (!ignoreBackoff && entry.getValue().nextFlushAt > now) {
+                    continue;
+                }
+                Long userId = entry.getKey();
+                Snapshot snapshot = snapshot(userId);
+                if (snapshot == null) {
+                    continue;
+                }
+                try {
+                    write(snapshot);
+                } catch (Exception e) {
+                    recordFailure(snapshot, e);
+                }
+            }
+            journal.deleteSegmentsBefore(minUnflushedSeq());
+            evictIdle();
+        } catch (Exception e) {
+            flushFailures.increment();
+            log.error("定期写回购物车失败：{}", e.getMessage());
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 写回单个用户（调用方需持有写回锁），失败时记录后抛出
+     */
+    private void flushUser(Long userId) {
+        Snapshot snapshot = snapshot(userId);
+        if (snapshot == null) {
+            return;
+        }
+        try {
+            write(snapshot);
+        } catch (RuntimeException e) {
+            recordFailure(snapshot, e);
+            throw e;
+        }
+    }
+
+    /**
+     * 记录一次写回失败：购物车保留在内存中，按指数退避推迟下一次写回；
+     * 持续失败超过隔离时间的购物车移出内存，之后按数据库中的状态重新加载，
+     * 其最早未写回的日志序号保留下来，对应的日志段不再删除，下次启动时回放（调用方需持有写回锁）
+     */
+    private void recordFailure(Snapshot snapshot, Exception e) {
+        flushFailures.increment();
+        ReentrantLock lock = lockFor(snapshot.userId);
+        lock.lock();
+        try {
+            CachedCart cart = carts.get(snapshot.userId);
+            if (cart == null || !cart.cartId.equals(snapshot.cartId)) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            if (cart.flushFailures++ == 0) {
+                cart.failingSince = now;
+            }
+            if (now - cart.failingSince < quarantineAfterMillis) {
+                int shift = Math.min(cart.flushFailures - 1, 30);
+                long backoff = Math.min(flushIntervalMillis << shift, maxBackoffMillis);
+                cart.nextFlushAt = now + backoff;
+                log.warn("写回购物车失败，{}ms 后重试：用户 {}, 购物车 {}, 连续失败 {} 次, {}", backoff, snapshot.userId,
+                        snapshot.cartId, cart.flushFailures, e.getMessage());
+                return;
+            }
+            quarantinedSeqs.merge(snapshot.userId, cart.firstUnflushedSeq, Math::min);
+            carts.remove(snapshot.userId);
+            quarantinedCarts.increment();
+            List<String> lost = new ArrayList<>();
+            for (Line line : cart.lines.values()) {
+                if (line.quantity != line.persistedQuantity || line.itemId == null) {
+                    lost.add(line.productId + ":" + line.persistedQuantity + "->" + line.quantity);
+                }
+            }
+            log.error("购物车持续 {}ms 写回失败（{} 次），已移出内存，未写回的变更保留在变更日志中待下次启动回放：" +
+                    "用户 {}, 购物车 {}, 商品数量变更 {}, 原因 {}", now - cart.failingSince, cart.flushFailures,
+                    snapshot.userId, snapshot.cartId, lost, e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 先写日志，再修改内存中的商品行数量和版本号（调用方需持有用户锁）
+     */
+    private void apply(Long userId, CachedCart cart, Line line, int quantity) {
+        long seq = journal.append(userId, line.productId, quantity, line.unitPrice);
+        cart.version++;
+        line.quantity = quantity;
+        line.version = cart.version;
+        if (!cart.dirty) {
+            cart.dirty = true;
+            cart.firstUnflushedSeq = seq;
+        }
+        cart.lastSeq = seq;
+        cart.lastAccess = System.currentTimeMillis();
+        mutations.increment();
+    }
+
+    /**
+     * 获取已缓存的购物车，未缓存时从数据库加载（调用方需持有用户锁）
+     * 有事务正在直接修改该用户的购物车时，等待事务完成后再加载
+     */
+    private CachedCart loadLocked(User user) {
+        CachedCart cached = carts.get(user.getId());
+        if (cached != null) {
+            return cached;
+        }
+        awaitUnpinned(user.getId());
+        cached = carts.get(user.getId());
+        if (cached != null) {
+            return cached;
+        }
+        // 新购物车在独立事务中创建，调用方事务回滚后缓存中的购物车ID仍然有效
+        Cart cart = cartRepository.findActiveWithItemsByUserId(user.getId())
+                .orElseGet(() -> transactionTemplate.execute(status -> cartRepository.save(new Cart(user))));
+        // 版本号通过投影读取，避免持久化上下文中的实体是旧值
+        cached = new CachedCart(cart.getId(), cartRepository.findVersionById(cart.getId()));
+        for (CartItem item : cart.getCartItems()) {
+            cached.lines.put(item.getProduct().getId(), new Line(item.getProduct().getId(), item.getId(), null,
+                    item.getUnitPrice(), item.getQuantity(), item.getCartVersion()));
+        }
+        carts.put(user.getId(), cached);
+        return cached;
+    }
+
+    /**
+     * 标记当前事务正在直接修改用户购物车，事务完成后解除（调用方需持有用户锁）
+     * 没有事务时每条语句自动提交，无需标记
+     */
+    private void pin(Long userId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        Thread owner = Thread.currentThread();
+        pins.computeIfAbsent(userId, id -> new ArrayList<>()).add(owner);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                unpin(userId, owner);
+            }
+        });
+    }
+
+    private void unpin(Long userId, Thread owner) {
+        ReentrantLock lock = lockFor(userId);
+        lock.lock();
+        try {
+            List<Thread> owners = pins.get(userId);
+            if (owners == null) {
+                return;
+            }
+            owners.remove(owner);
+            if (owners.isEmpty()) {
+                pins.remove(userId);
+                unpinned[stripeOf(userId)].signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 等待直接修改用户购物车的事务全部完成（调用方需持有用户锁，等待期间释放）
+     */
+    private void awaitUnpinned(Long userId) {
+        List<Thread> owners = pins.get(userId);
+        if (owners == null) {
+            return;
+        }
+        if (owners.contains(Thread.currentThread())) {
+            throw new IllegalStateException("当前事务正在直接修改购物车，不能再加载到内存：用户 " + userId);
+        }
+        Condition condition = unpinned[stripeOf(userId)];
+        long remaining = TimeUnit.MILLISECONDS.toNanos(PIN_TIMEOUT_MILLIS);
+        while (pins.containsKey(userId)) {
+            if (remaining <= 0) {
+                throw new IllegalStateException("等待购物车修改事务完成超时：用户 " + userId);
+            }
+            try {
+                remaining = condition.awaitNanos(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("等待购物车修改事务完成时被中断：用户 " + userId);
+            }
+        }
+    }
+
+    /**
+     * 在用户锁内记录需要写回的差异，无差异时返回 null
+     */
+    private Snapshot snapshot(Long userId) {
+        ReentrantLock lock = lockFor(userId);
+        lock.lock();
+        try {
+            CachedCart cart = carts.get(userId);
+            if (cart == null || !cart.dirty) {
+                return null;
+            }
+            List<LineSnapshot> changed = new ArrayList<>();
+            Iterator<Line> iterator = cart.lines.values().iterator();
+            while (iterator.hasNext()) {
+                Line line = iterator.next();
+                if (line.quantity == 0 && line.itemId == null) {
+                    // 未写回就被删除的商品行直接丢弃（持有写回锁，不会有进行中的插入）
+                    iterator.remove();
+                } else if (line.quantity != line.persistedQuantity || line.itemId == null) {
+                    changed.add(new LineSnapshot(line.productId, line.itemId, line.quantity, line.unitPrice,
+                            line.version));
+                }
+            }
+            return new Snapshot(userId, cart.cartId, cart.version, totals(cart), changed, cart.lastSeq);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 在一个独立事务中写回一个购物车的商品行和汇总列，成功后更新内存中的已写入状态
+     */
+    private void write(Snapshot snapshot) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Map<Long, Long> insertedIds = transactionTemplate.execute(status -> {
+            List<Object[]> updates = new ArrayList<>();
+            List<Object[]> deletes = new ArrayList<>();
+            List<Object[]> inserts = new ArrayList<>();
+            for (LineSnapshot line : snapshot.lines) {
+                if (line.itemId == null) {
+                    inserts.add(new Object[]{snapshot.cartId, line.productId, line.quantity, line.unitPrice,
+                            line.version, now, now});
+                } else if (line.quantity == 0) {
+                    deletes.add(new Object[]{line.itemId});
+                } else {
+                    updates.add(new Object[]{line.quantity, line.version, now, line.itemId});
+                }
+            }
+            if (!deletes.isEmpty()) {
+                jdbcTemplate.batchUpdate("DELETE FROM cart_items WHERE id = ?", deletes);
+            }
+            if (!updates.isEmpty()) {
+                jdbcTemplate.batchUpdate("UPDATE cart_items SET quantity = ?, cart_version = ?, version = version + 1, updated_at = ? " +
+                        "WHERE id = ?", updates);
+            }
+            if (!inserts.isEmpty()) {
+                jdbcTemplate.batchUpdate("INSERT INTO cart_items (cart_id, product_id, quantity, unit_price, " +
+                        "cart_version, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?)", inserts);
+            }
+            int updated = jdbcTemplate.update("UPDATE carts SET total_quantity = ?, total_amount_cents = ?, item_count = ?, " +
+                    "version = GREATEST(version, ?), updated_at = ? WHERE id = ?", snapshot.totals.getTotalQuantity(),
+                    CartTotals.toCents(snapshot.totals.getTotalAmount()), snapshot.totals.getItemCount(),
+                    snapshot.version, now, snapshot.cartId);
+            if (updated == 0) {
+                throw new IllegalStateException("购物车不存在：" + snapshot.cartId);
+            }
+
+            // 读取新插入商品行的数据库ID
+            Map<Long, Long> ids = new HashMap<>();
+            if (!inserts.isEmpty()) {
+                jdbcTemplate.query("SELECT id, product_id FROM cart_items WHERE cart_id = ?", rs -> {
+                    ids.put(rs.getLong("product_id"), rs.getLong("id"));
+                }, snapshot.cartId);
+            }
+            return ids;
+        });
+
+        confirm(snapshot, insertedIds);
+        flushes.increment();
+        flushedCarts.increment();
+    }
+
+    /**
+     * 写回成功后记录已写入的数量和数据库ID（调用方需持有写回锁）
+     */
+    private void confirm(Snapshot snapshot, Map<Long, Long> insertedIds) {
+        ReentrantLock lock = lockFor(snapshot.userId);
+        lock.lock();
+        try {
+            CachedCart cart = carts.get(snapshot.userId);
+            if (cart == null) {
+                return;
+            }
+            for (LineSnapshot written : snapshot.lines) {
+                Line line = cart.lines.get(written.productId);
+                if (line == null) {
+                    continue;
+                }
+                line.persistedQuantity = written.quantity;
+                if (written.itemId == null) {
+                    line.itemId = insertedIds.get(written.productId);
+                } else if (written.quantity == 0) {
+                    line.itemId = null;
+                }
+                if (line.quantity == 0 && line.itemId == null) {
+                    cart.lines.remove(written.productId);
+                }
+            }
+            cart.flushFailures = 0;
+            cart.failingSince = 0;
+            cart.nextFlushAt = 0;
+            if (cart.lastSeq == snapshot.seq) {
+                cart.dirty = false;
+                cart.firstUnflushedSeq = Long.MAX_VALUE;
+            } else {
+                cart.firstUnflushedSeq = snapshot.seq + 1;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 按日志记录的最终状态写入数据库，并重新计算涉及购物车的汇总列
+     */
+    private void replay(List<CartJournal.Record> records) {
+        Map<Long, Map<Long, CartJournal.Record>> latest = new LinkedHashMap<>();
+        for (CartJournal.Record record : records) {
+            latest.computeIfAbsent(record.userId, key -> new LinkedHashMap<>()).put(record.productId, record);
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        latest.forEach((userId, lines) -> {
+            List<Long> cartIds = jdbcTemplate.queryForList(
+                    "SELECT id FROM carts WHERE user_id = ? AND active = TRUE", Long.class, userId);
+            if (cartIds.isEmpty()) {
+                jdbcTemplate.update("INSERT INTO carts (user_id, active, total_quantity, total_amount_cents, " +
+                        "item_count, version, created_at, updated_at) VALUES (?, TRUE, 0, 0, 0, 0, ?, ?)",
+                        userId, now, now);
+                cartIds = jdbcTemplate.queryForList(
+                        "SELECT id FROM carts WHERE user_id = ? AND active = TRUE", Long.class, userId);
+            }
+            Long cartId = cartIds.get(0);
+            jdbcTemplate.update("UPDATE carts SET version = version + 1 WHERE id = ?", cartId);
+            Long version = jdbcTemplate.queryForObject("SELECT version FROM carts WHERE id = ?", Long.class, cartId);
+            for (CartJournal.Record record : lines.values()) {
+                if (record.quantity == 0) {
+                    jdbcTemplate.update("DELETE FROM cart_items WHERE cart_id = ? AND product_id = ?",
+                            cartId, record.productId);
+                } else if (jdbcTemplate.update("UPDATE cart_items SET quantity = ?, cart_version = ?, version = version + 1, updated_at = ? " +
+                        "WHERE cart_id = ? AND product_id = ?", record.quantity, version, now, cartId,
+                        record.productId) == 0) {
+                    jdbcTemplate.update("INSERT INTO cart_items (cart_id, product_id, quantity, unit_price, " +
+                            "cart_version, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                            cartId, record.productId, record.quantity, record.unitPrice, version, now, now);
+                }
+            }
+            String activeItems = "FROM cart_items ci JOIN products p ON p.id = ci.product_id " +
+                    "WHERE ci.cart_id = carts.id AND p.active = TRUE";
+            jdbcTemplate.update("UPDATE carts SET " +
+                    "total_quantity = (SELECT COALESCE(SUM(ci.quantity), 0) " + activeItems + "), " +
+                    "total_amount_cents = (SELECT COALESCE(ROUND(SUM(ci.unit_price * ci.quantity) * 100), 0) " +
+                    activeItems + "), " +
+                    "item_count = (SELECT COUNT(*) " + activeItems + "), updated_at = ? WHERE id = ?", now, cartId);
+        });
+    }
+
+    /**
+     * 移出闲置且已全部写回的购物车
+     */
+    private void evictIdle() {
+        long expireBefore = System.currentTimeMillis() - idleTimeoutMillis;
+        for (Long userId : carts.keySet()) {
+            ReentrantLock lock = lockFor(userId);
+            lock.lock();
+            try {
+                CachedCart cart = carts.get(userId);
+                if (cart != null && !cart.dirty && cart.lastAccess < expireBefore) {
+                    carts.remove(userId);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 仍需保留的最早日志序号：内存中未写回的变更和移出内存后等待回放的变更
+     */
+    private long minUnflushedSeq() {
+        long min = Long.MAX_VALUE;
+        for (CachedCart cart : carts.values()) {
+            min = Math.min(min, cart.firstUnflushedSeq);
+        }
+        for (long seq : quarantinedSeqs.values()) {
+            min = Math.min(min, seq);
+        }
+        return min;
+    }
+
+    /**
+     * 按商品缓存中的当前状态计算汇总（只统计上架商品）
+     */
+    private CartTotals totals(CachedCart cart) {
+        int totalQuantity = 0;
+        long totalAmountCents = 0;
+        int itemCount = 0;
+        for (Line line : cart.lines.values()) {
+            if (line.quantity > 0 && productService.getProductById(line.productId)
+                    .map(product -> Boolean.TRUE.equals(product.getActive())).orElse(false)) {
+                totalQuantity += line.quantity;
+                totalAmountCents += CartTotals.toCents(line.unitPrice) * line.quantity;
+                itemCount++;
+            }
+        }
+        return new CartTotals(totalQuantity, totalAmountCents, itemCount, cart.version);
+    }
+
+    private List<CartLine> lines(List<Line> lines) {
+        List<CartLine> result = new ArrayList<>();
+        for (Line line : lines) {
+            productService.getProductById(line.productId).ifPresent(product -> {
+                CartItem item = new CartItem(product, line.quantity);
+                item.setId(line.id());
+                item.setUnitPrice(line.unitPrice);
+                result.add(CartLine.from(item));
+            });
+        }
+        return result;
+    }
+
+    private ReentrantLock lockFor(Long userId) {
+        return stripes[stripeOf(userId)];
+    }
+
+    private static int stripeOf(Long userId) {
+        int h = Long.hashCode(userId);
+        h ^= (h >>> 16);
+        return h & (STRIPE_COUNT - 1);
+    }
+
+    /**
+     * 内存中的购物车
+     */
+    private static final class CachedCart {
+
+        final Long cartId;
+        final Map<Long, Line> lines = new LinkedHashMap<>();
+        long version;
+        boolean dirty;
+        long firstUnflushedSeq = Long.MAX_VALUE;
+        long lastSeq;
+        long lastAccess = System.currentTimeMillis();
+        int flushFailures;
+        long failingSince;
+        // 写回失败后下一次定期写回的时间（在用户锁内写入，定期写回时不加锁读取）
+        volatile long nextFlushAt;
+
+        CachedCart(Long cartId, long version) {
+            this.cartId = cartId;
+            this.version = version;
+        }
+
+        /**
+         * 按数据库ID或临时ID查找未删除的商品行
+         */
+        Line find(Long lineId) {
+            for (Line line : lines.values()) {
+                if (line.quantity > 0 && (lineId.equals(line.itemId) || lineId.equals(line.tempId))) {
+                    return line;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 内存中的商品行：当前数量与已写入数据库的数量
+     */
+    private static final class Line {
+
+        final Long productId;
+        final Long tempId;
+        final BigDecimal unitPrice;
+        Long itemId;
+        int quantity;
+        int persistedQuantity;
+        long version;
+
+        Line(Long productId, Long itemId, Long tempId, BigDecimal unitPrice, int quantity, long version) {
+            this.productId = productId;
+            this.itemId = itemId;
+            this.tempId = tempId;
+            this.unitPrice = unitPrice;
+            this.quantity = quantity;
+            this.persistedQuantity = quantity;
+            this.version = version;
+        }
+
+        Long id() {
+            return itemId != null ? itemId : tempId;
+        }
+    }
+
+    /**
+     * 一次写回的购物车状态
+     */
+    private static final class Snapshot {
+
+        final Long userId;
+        final Long cartId;
+        final long version;
+        final CartTotals totals;
+        final List<LineSnapshot> lines;
+        final long seq;
+
+        Snapshot(Long userId, Long cartId, long version, CartTotals totals, List<LineSnapshot> lines, long seq) {
+            this.userId = userId;
+            this.cartId = cartId;
+            this.version = version;
+            this.totals = totals;
+            this.lines = lines;
+            this.seq = seq;
+        }
+    }
+
+    /**
+     * 一次写回的商品行状态
+     */
+    private static final class LineSnapshot {
+
+        final Long productId;
+        final Long itemId;
+        final int quantity;
+        final BigDecimal unitPrice;
+        final long version;
+
+        LineSnapshot(Long productId, Long itemId, int quantity, BigDecimal unitPrice, long version) {
+            this.productId = productId;
+            this.itemId = itemId;
+            this.quantity = quantity;
+            this.unitPrice = unitPrice;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.nusiss.shoppingcart.cart;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 游客购物车
+ * 只在内存中保存商品ID和数量（按加入顺序），价格、库存等展示信息读取时从商品缓存补全；
+ * 游客购物车没有购物车项记录，商品行以商品ID作为购物车项ID；
+ * 版本号每次变更递减（为负数），登录后客户端带着游客版本号同步时不会与用户购物车的版本号混淆
+ * @author SpringCA Team
+ */
+public class GuestCart {
+
+    private final Map<Long, Integer> lines = new LinkedHashMap<>();
+    private long version;
+
+    /**
+     * 累加商品数量
+     * @param productId 商品ID
+     * @param quantity 增加的数量
+     * @param maxLines 商品种类上限
+     * @return 是否加入成功（超出种类上限时不加入）
+     */
+    public synchronized boolean add(Long productId, int quantity, int maxLines) {
+        if (!lines.containsKey(productId) && lines.size() >= maxLines) {
+            return false;
+        }
+        lines.merge(productId, quantity, Integer::sum);
+        version--;
+        return true;
+    }
+
+    /**
+     * 设置已有商品的数量
+     * @return 购物车中是否有该商品
+     */
+    public synchronized boolean update(Long productId, int quantity) {
+        if (lines.replace(productId, quantity) == null) {
+            return false;
+        }
+        version--;
+        return true;
+    }
+
+    /**
+     * 移除商品
+     * @return 购物车中是否有该商品
+     */
+    public synchronized boolean remove(Long productId) {
+        if (lines.remove(productId) == null) {
+            return false;
+        }
+        version--;
+        return true;
+    }
+
+    /**
+     * 清空购物车
+     */
+    public synchronized void clear() {
+        lines.clear();
+        version--;
+    }
+
+    /**
+     * 商品当前数量，不在购物车中时为 0
+     */
+    public synchronized int quantityOf(Long productId) {
+        return lines.getOrDefault(productId, 0);
+    }
+
+    /**
+     * 商品ID到数量的副本（按加入顺序）
+     */
+    public synchronized Map<Long, Integer> snapshot() {
+        return new LinkedHashMap<>(lines);
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    public synchronized boolean isEmpty() {
+        return lines.isEmpty();
+    }
+}
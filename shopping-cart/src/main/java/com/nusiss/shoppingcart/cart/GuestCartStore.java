@@ -0,0 +1,143 @@
+package com.nusiss.shoppingcart.cart;
+
+import jakarta.servlet.http.HttpSessionEvent;
+import jakarta.servlet.http.HttpSessionListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 游客购物车存储
+ * 以会话ID为键保存在内存中，不写数据库；按访问顺序淘汰，超出容量时淘汰最久未访问的购物车，
+ * 闲置超过过期时间的购物车在访问时清理；会话销毁时一并移除
+ * @author SpringCA Team
+ */
+@Component
+public class GuestCartStore implements HttpSessionListener {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Entry> carts;
+    private final long idleTimeoutMillis;
+
+    public GuestCartStore(@Value("${app.cart.guest.max-carts:10000}") int maxCarts,
+                          @Value("${app.cart.guest.idle-timeout-minutes:120}") long idleTimeoutMinutes) {
+        this.idleTimeoutMillis = idleTimeoutMinutes * 60_000;
+        this.carts = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxCarts;
+            }
+        };
+    }
+
+    /**
+     * 获取会话的游客购物车
+     * @param sessionId 会话ID
+     * @return 游客购物车，不存在或已过期时为空
+     */
+    public Optional<GuestCart> get(String sessionId) {
+        long now = System.currentTimeMillis();
+        lock.lock();
+        try {
+            Entry entry = carts.get(sessionId);
+            if (entry == null) {
+                return Optional.empty();
+            }
+            if (entry.lastAccess + idleTimeoutMillis <= now) {
+                carts.remove(sessionId);
+                return Optional.empty();
+            }
+            entry.lastAccess = now;
+            return Optional.of(entry.cart);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 获取会话的游客购物车，不存在时创建
+     * @param sessionId 会话ID
+     * @return 游客购物车
+     */
+    public GuestCart getOrCreate(String sessionId) {
+        long now = System.currentTimeMillis();
+        lock.lock();
+        try {
+            Entry entry = carts.get(sessionId);
+            if (entry == null || entry.lastAccess + idleTimeoutMillis <= now) {
+                entry = new Entry(new GuestCart(), now);
+                carts.put(sessionId, entry);
+                purgeExpired(now);
+            }
+            entry.lastAccess = now;
+            return entry.cart;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 移除并返回会话的游客购物车（登录合并时使用，保证只合并一次）
+     * @param sessionId 会话ID
+     * @return 游客购物车，不存在或已过期时为空
+     */
+    public Optional<GuestCart> remove(String sessionId) {
+        long now = System.currentTimeMillis();
+        lock.lock();
+        try {
+            Entry entry = carts.remove(sessionId);
+            if (entry == null || entry.lastAccess + idleTimeoutMillis <= now) {
+                return Optional.empty();
+            }
+            return Optional.of(entry.cart);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 会话销毁时移除其游客购物车
+     */
+    @Override
+    public void sessionDestroyed(HttpSessionEvent event) {
+        lock.lock();
+        try {
+            carts.remove(event.getSession().getId());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 从最久未访问的一端清理过期购物车，遇到未过期的即停止（调用方需持有锁）
+     */
+    private void purgeExpired(long now) {
+        Iterator<Entry> iterator = carts.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.lastAccess + idleTimeoutMillis > now) {
+                break;
+            }
+            iterator.remove();
+        }
+    }
+
+    /**
+     * 存储条目
+     */
+    private static final class Entry {
+
+        final GuestCart cart;
+        long lastAccess;
+
+        Entry(GuestCart cart, long lastAccess) {
+            this.cart = cart;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.nusiss.shoppingcart.catalog;
+
+import com.nusiss.shoppingcart.entity.Product;
+import com.nusiss.shoppingcart.repository.ProductRepository;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 上架商品分批扫描器
+ * 供各类内存索引在启动或重建时按ID顺序分批读取全部上架商品
+ * @author SpringCA Team
+ */
+@Component
+public class ActiveProductScanner {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final ProductRepository productRepository;
+
+    public ActiveProductScanner(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    /**
+     * 依次处理所有上架商品
+     * @param consumer 商品处理函数
+     * @return 处理的商品数量
+     */
+    public int scan(Consumer<Product> consumer) {
+        int count = 0;
+        int page = 0;
+        Page<Product> batch;
+        do {
+            batch = productRepository.findByActiveTrue(
+                    PageRequest.of(page++, BATCH_SIZE, Sort.by("id").ascending()));
+            for (Product product : batch) {
+                consumer.accept(product);
+                count++;
+            }
+        } while (batch.hasNext());
+        return count;
+    }
+
+    /**
+     * 按名称排序的上架商品ID
+     * 名称顺序由数据库排序规则决定（大小写、中文等与数据库查询和游标分页一致）
+     * @return 商品ID列表
+     */
+    public List<Long> activeIdsOrderedByName() {
+        return productRepository.findActiveIdsOrderByName();
+    }
+}
@@ -0,0 +1,150 @@
+package com.nusiss.shoppingcart.catalog;
+
+import com.nusiss.shoppingcart.entity.Product;
+import com.nusiss.shoppingcart.event.ProductChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 商品目录列式快照
+ * 持有上架商品的不可变列式快照；只有库存变化时直接替换为修改了该商品库存的新快照，
+ * 其他变更标记为过期，由后台任务定期整体重建；
+ * 分类、品牌、价格区间、有货与排序的任意组合筛选都在内存中完成
+ * @author SpringCA Team
+ */
+@Component
+public class CatalogSnapshot {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogSnapshot.class);
+
+    private final ActiveProductScanner activeProductScanner;
+    private final boolean enabled;
+
+    private final AtomicBoolean stale = new AtomicBoolean(false);
+    private volatile ProductColumns columns = ProductColumns.EMPTY;
+    private volatile long generation = 0;
+    private volatile boolean ready = false;
+    // 正在重建（扫描期间的变更无法确定是否已被扫描到，重建后需要再次重建）
+    private boolean rebuilding = false;
+
+    public CatalogSnapshot(ActiveProductScanner activeProductScanner,
+                           @Value("${app.catalog.snapshot.enabled:true}") boolean enabled) {
+        this.activeProductScanner = activeProductScanner;
+        this.enabled = enabled;
+    }
+
+    /**
+     * 快照是否已启用并构建完成
+     */
+    public boolean isAvailable() {
+        return enabled && ready;
+    }
+
+    /**
+     * 快照代数，每次重建或修改库存后递增
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * 是否支持按该字段排序
+     */
+    public boolean supportsSort(String sortBy) {
+        return ProductColumns.SORTABLE_FIELDS.contains(sortBy);
+    }
+
+    /**
+     * 应用启动完成后构建快照
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled && rebuild()) {
+            ready = true;
+        }
+    }
+
+    /**
+     * 商品变更后更新快照：只有库存变化时直接修改该商品的库存，否则标记快照过期
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            if (ready && !rebuilding && event.getChangeType() == ProductChangedEvent.ChangeType.UPDATED) {
+                ProductColumns patched = columns.withStock(event.getProduct());
+                if (patched != null) {
+                    if (patched != columns) {
+                        columns = patched;
+                        generation++;
+                    }
+                    return;
+                }
+            }
+        }
+        stale.set(true);
+    }
+
+    /**
+     * 后台定时检查，快照过期时整体重建
+     */
+    @Scheduled(fixedDelayString = "${app.catalog.snapshot.refresh-interval-ms:10000}")
+    public void refreshIfStale() {
+        if (ready && stale.compareAndSet(true, false)) {
+            rebuild();
+        }
+    }
+
+    /**
+     * 组合筛选并排序分页
+     * @param filter 筛选条件
+     * @param sortBy 排序字段
+     * @param ascending 是否升序
+     * @param pageable 分页参数（忽略其中的排序）
+     * @return 商品ID分页结果
+     */
+    public Page<Long> query(ProductFilter filter, String sortBy, boolean ascending, Pageable pageable) {
+        return columns.query(filter, sortBy, ascending, pageable);
+    }
+
+    private boolean rebuild() {
+        long startTime = System.currentTimeMillis();
+        synchronized (this) {
+            rebuilding = true;
+        }
+        try {
+            List<Product> products = new ArrayList<>();
+            activeProductScanner.scan(products::add);
+            ProductColumns rebuilt = ProductColumns.build(products, activeProductScanner.activeIdsOrderedByName());
+            synchronized (this) {
+                columns = rebuilt;
+                generation++;
+                rebuilding = false;
+            }
+            log.debug("商品列式快照构建完成：{} 个商品，耗时 {}ms",
+                    rebuilt.size(), System.currentTimeMillis() - startTime);
+            return true;
+        } catch (Exception e) {
+            log.error("构建商品列式快照失败：{}", e.getMessage());
+            synchronized (this) {
+                rebuilding = false;
+            }
+            stale.set(true);
+            return false;
+        }
+    }
+}
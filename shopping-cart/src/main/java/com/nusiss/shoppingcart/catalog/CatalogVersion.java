@@ -0,0 +1,58 @@
+package com.nusiss.shoppingcart.catalog;
+
+import com.nusiss.shoppingcart.event.ProductChangedEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 商品目录版本号
+ * 任一商品变更提交后目录版本单调递增，并把该商品的版本记为新的目录版本；
+ * 版本号只在内存中维护，实例标识区分不同的应用进程，重启后旧的版本号全部失效
+ * @author SpringCA Team
+ */
+@Component
+public class CatalogVersion {
+
+    private final String instanceId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong version = new AtomicLong();
+    private final Map<Long, Long> productVersions = new ConcurrentHashMap<>();
+
+    /**
+     * 商品变更提交后递增版本
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        Long productId = event.getProduct().getId();
+        long current = version.incrementAndGet();
+        if (productId != null) {
+            productVersions.merge(productId, current, Math::max);
+        }
+    }
+
+    /**
+     * 当前进程的实例标识
+     */
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    /**
+     * 当前目录版本
+     */
+    public long current() {
+        return version.get();
+    }
+
+    /**
+     * 商品的版本：最近一次变更时的目录版本，启动后未变更过的商品为 0
+     * @param productId 商品ID
+     * @return 商品版本
+     */
+    public long of(Long productId) {
+        return productVersions.getOrDefault(productId, 0L);
+    }
+}
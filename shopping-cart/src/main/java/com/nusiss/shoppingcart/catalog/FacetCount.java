@@ -0,0 +1,39 @@
+package com.nusiss.shoppingcart.catalog;
+
+import java.math.BigDecimal;
+
+/**
+ * 筛选项统计
+ * 某个分类或品牌下的上架商品数量及价格区间
+ * @author SpringCA Team
+ */
+public class FacetCount {
+
+    private final String value;
+    private final int count;
+    private final BigDecimal minPrice;
+    private final BigDecimal maxPrice;
+
+    public FacetCount(String value, int count, BigDecimal minPrice, BigDecimal maxPrice) {
+        this.value = value;
+        this.count = count;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public BigDecimal getMinPrice() {
+        return minPrice;
+    }
+
+    public BigDecimal getMaxPrice() {
+        return maxPrice;
+    }
+}
@@ -0,0 +1,287 @@
+package com.nusiss.shoppingcart.catalog;
+
+import com.nusiss.shoppingcart.entity.Product;
+import com.nusiss.shoppingcart.event.ProductChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 分类/品牌筛选项索引
+ * 在内存中维护每个分类、品牌的上架商品数量和价格区间，
+ * 根据商品新增、修改、下架事件增量更新，列表页无需再执行 SELECT DISTINCT
+ * @author SpringCA Team
+ */
+@Component
+public class FacetIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(FacetIndex.class);
+
+    private final ActiveProductScanner activeProductScanner;
+    private final boolean enabled;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<ProductChangedEvent> pendingEvents = new ArrayList<>();
+    private FacetData data = new FacetData();
+    private boolean loading = false;
+    private volatile boolean ready = false;
+
+    // 只读视图缓存，数据变更时置空
+    private volatile List<FacetCount> categoryView;
+    private volatile List<FacetCount> brandView;
+
+    public FacetIndex(ActiveProductScanner activeProductScanner,
+                      @Value("${app.catalog.facet.enabled:true}") boolean enabled) {
+        this.activeProductScanner = activeProductScanner;
+        this.enabled = enabled;
+    }
+
+    /**
+     * 索引是否已启用并加载完成
+     */
+    public boolean isAvailable() {
+        return enabled && ready;
+    }
+
+    /**
+     * 应用启动完成后加载筛选项统计
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            loading = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        FacetData fresh = new FacetData();
+        try {
+            activeProductScanner.scan(fresh::put);
+        } catch (Exception e) {
+            log.error("加载商品筛选项索引失败：{}", e.getMessage());
+            fresh = null;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (fresh != null) {
+                for (ProductChangedEvent event : pendingEvents) {
+                    fresh.apply(event);
+                }
+                data = fresh;
+                ready = true;
+                clearViews();
+            }
+            pendingEvents.clear();
+            loading = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (fresh != null) {
+            log.info("商品筛选项索引加载完成：{} 个分类，{} 个品牌",
+                    fresh.categories.size(), fresh.brands.size());
+        }
+    }
+
+    /**
+     * 商品变更后增量更新筛选项统计
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (!enabled || event.getProduct().getId() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (data.apply(event)) {
+                clearViews();
+            }
+            if (loading) {
+                pendingEvents.add(event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 获取分类筛选项（按名称排序）
+     */
+    public List<FacetCount> getCategoryFacets() {
+        List<FacetCount> view = categoryView;
+        if (view == null) {
+            lock.readLock().lock();
+            try {
+                view = toFacetCounts(data.categories);
+                // 在读锁内发布视图，避免覆盖并发写入后的置空
+                categoryView = view;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        return view;
+    }
+
+    /**
+     * 获取品牌筛选项（按名称排序）
+     */
+    public List<FacetCount> getBrandFacets() {
+        List<FacetCount> view = brandView;
+        if (view == null) {
+            lock.readLock().lock();
+            try {
+                view = toFacetCounts(data.brands);
+                // 在读锁内发布视图，避免覆盖并发写入后的置空
+                brandView = view;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        return view;
+    }
+
+    private void clearViews() {
+        categoryView = null;
+        brandView = null;
+    }
+
+    private static List<FacetCount> toFacetCounts(TreeMap<String, FacetStats> facets) {
+        List<FacetCount> result = new ArrayList<>(facets.size());
+        facets.forEach((value, stats) -> result.add(
+                new FacetCount(value, stats.count, stats.prices.firstKey(), stats.prices.lastKey())));
+        return List.copyOf(result);
+    }
+
+    /**
+     * 筛选项数据：商品ID -> 所属筛选项，筛选项值 -> 统计
+     */
+    private static final class FacetData {
+
+        final Map<Long, Membership> members = new HashMap<>();
+        final TreeMap<String, FacetStats> categories = new TreeMap<>();
+        final TreeMap<String, FacetStats> brands = new TreeMap<>();
+
+        /**
+         * 应用变更事件
+         * @return 统计是否发生变化
+         */
+        boolean apply(ProductChangedEvent event) {
+            Product product = event.getProduct();
+            Membership previous = members.get(product.getId());
+            if (event.isActiveAfterChange()) {
+                Membership current = Membership.of(product);
+                if (current.equals(previous)) {
+                    return false;
+                }
+                remove(product.getId());
+                put(product);
+                return true;
+            }
+            return remove(product.getId());
+        }
+
+        void put(Product product) {
+            Membership membership = Membership.of(product);
+            members.put(product.getId(), membership);
+            add(categories, membership.category, membership.price);
+            add(brands, membership.brand, membership.price);
+        }
+
+        boolean remove(Long productId) {
+            Membership membership = members.remove(productId);
+            if (membership == null) {
+                return false;
+            }
+            subtract(categories, membership.category, membership.price);
+            subtract(brands, membership.brand, membership.price);
+            return true;
+        }
+
+        private static void add(TreeMap<String, FacetStats> facets, String value, BigDecimal price) {
+            if (value == null) {
+                return;
+            }
+            FacetStats stats = facets.computeIfAbsent(value, v -> new FacetStats());
+            stats.count++;
+            stats.prices.merge(price, 1, Integer::sum);
+        }
+
+        private static void subtract(TreeMap<String, FacetStats> facets, String value, BigDecimal price) {
+            if (value == null) {
+                return;
+            }
+            FacetStats stats = facets.get(value);
+            if (stats == null) {
+                return;
+            }
+            stats.count--;
+            stats.prices.computeIfPresent(price, (p, n) -> n > 1 ? n - 1 : null);
+            if (stats.count <= 0) {
+                facets.remove(value);
+            }
+        }
+    }
+
+    /**
+     * 单个筛选项的统计：商品数量及价格多重集合（用于维护最低/最高价）
+     */
+    private static final class FacetStats {
+
+        int count;
+        final TreeMap<BigDecimal, Integer> prices = new TreeMap<>();
+    }
+
+    /**
+     * 商品当前所属的分类、品牌和价格
+     */
+    private static final class Membership {
+
+        final String category;
+        final String brand;
+        final BigDecimal price;
+
+        private Membership(String category, String brand, BigDecimal price) {
+            this.category = category;
+            this.brand = brand;
+            this.price = price;
+        }
+
+        static Membership of(Product product) {
+            BigDecimal price = product.getPrice() == null ? BigDecimal.ZERO : product.getPrice().stripTrailingZeros();
+            return new Membership(product.getCategory(), product.getBrand(), price);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Membership that)) {
+                return false;
+            }
+            return Objects.equals(category, that.category)
+                    && Objects.equals(brand, that.brand)
+                    && price.compareTo(that.price) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(category, brand, price);
+        }
+    }
+}
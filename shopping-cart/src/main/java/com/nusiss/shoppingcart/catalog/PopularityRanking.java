@@ -0,0 +1,180 @@
+package com.nusiss.shoppingcart.catalog;
+
+import com.nusiss.shoppingcart.entity.Product;
+import com.nusiss.shoppingcart.event.ProductChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 热门商品排行榜
+ * 以可按名次访问的跳表维护上架商品按 (评分降序, 评论数降序, ID 升序) 的排名，
+ * 评分、评论数或上下架状态变化时原地调整；任意一页的读取为 O(log n + pageSize)
+ * @author SpringCA Team
+ */
+@Component
+public class PopularityRanking {
+
+    private static final Logger log = LoggerFactory.getLogger(PopularityRanking.class);
+
+    // 无评分的商品排在最后（与数据库降序时 NULL 在后一致）
+    private static final long NO_RATING = -1;
+
+    private final ActiveProductScanner activeProductScanner;
+    private final boolean enabled;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<ProductChangedEvent> pendingEvents = new ArrayList<>();
+    private RankingData data = new RankingData();
+    private boolean loading = false;
+    private volatile boolean ready = false;
+
+    public PopularityRanking(ActiveProductScanner activeProductScanner,
+                             @Value("${app.catalog.popularity.enabled:true}") boolean enabled) {
+        this.activeProductScanner = activeProductScanner;
+        this.enabled = enabled;
+    }
+
+    /**
+     * 排行榜是否已启用并加载完成
+     */
+    public boolean isAvailable() {
+        return enabled && ready;
+    }
+
+    /**
+     * 应用启动完成后加载排行榜
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            loading = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        RankingData fresh = new RankingData();
+        try {
+            activeProductScanner.scan(fresh::put);
+        } catch (Exception e) {
+            log.error("加载热门商品排行榜失败：{}", e.getMessage());
+            fresh = null;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (fresh != null) {
+                for (ProductChangedEvent event : pendingEvents) {
+                    fresh.apply(event);
+                }
+                data = fresh;
+                ready = true;
+            }
+            pendingEvents.clear();
+            loading = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (fresh != null) {
+            log.info("热门商品排行榜加载完成：{} 个商品", fresh.list.size());
+        }
+    }
+
+    /**
+     * 商品变更后调整排名
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (!enabled || event.getProduct().getId() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            data.apply(event);
+            if (loading) {
+                pendingEvents.add(event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 获取一页热门商品ID
+     * @param pageable 分页参数（忽略其中的排序）
+     * @return 商品ID分页结果
+     */
+    public Page<Long> getPage(Pageable pageable) {
+        lock.readLock().lock();
+        try {
+            long[] ids = data.list.range(pageable.getOffset(), pageable.getPageSize());
+            return new PageImpl<>(Arrays.stream(ids).boxed().toList(), pageable, data.list.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 排行榜数据：跳表及每个商品当前的排序键
+     */
+    private static final class RankingData {
+
+        final RankedSkipList list = new RankedSkipList();
+        final Map<Long, long[]> keys = new HashMap<>();
+
+        void apply(ProductChangedEvent event) {
+            Product product = event.getProduct();
+            long[] previous = keys.get(product.getId());
+            if (event.isActiveAfterChange()) {
+                if (previous != null && Arrays.equals(previous, keyOf(product))) {
+                    return;
+                }
+                remove(product.getId());
+                put(product);
+            } else {
+                remove(product.getId());
+            }
+        }
+
+        void put(Product product) {
+            long[] key = keyOf(product);
+            keys.put(product.getId(), key);
+            list.insert(product.getId(), key[0], key[1]);
+        }
+
+        void remove(Long id) {
+            long[] key = keys.remove(id);
+            if (key != null) {
+                list.remove(id, key[0], key[1]);
+            }
+        }
+
+        /**
+         * 排序键：评分（保留两位小数）、评论数
+         */
+        private static long[] keyOf(Product product) {
+            long rating = product.getRating() == null ? NO_RATING : product.getRating().movePointRight(2).longValue();
+            long reviewCount = product.getReviewCount() == null ? 0 : product.getReviewCount();
+            return new long[] {rating, reviewCount};
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package com.nusiss.shoppingcart.catalog;
+
+import com.nusiss.shoppingcart.entity.Product;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 上架商品的不可变列式快照
+ * 每个字段保存为基本类型数组（价格以分为单位），分类、品牌做字典编码并预先生成位图，
+ * 每个可排序字段预先生成按升序排列的行号置换；
+ * 组合筛选通过位图求交、价格区间通过二分查找完成，排序直接沿置换遍历；
+ * 名称顺序取自数据库排序结果，与数据库查询和游标分页的排序规则一致；只有库存变化时复制库存相关的列生成新快照，无需重新扫描
+ * @author SpringCA Team
+ */
+final class ProductColumns {
+
+    static final Set<String> SORTABLE_FIELDS = Set.of("id", "name", "price", "stock", "rating", "reviewCount", "createdAt");
+
+    static final ProductColumns EMPTY = build(List.of(), List.of());
+
+    private final int size;
+    // 商品ID（按ID升序，行号即ID的排名）
+    private final long[] ids;
+
+    // 各行的原始字段，用于判断商品变更是否只涉及库存
+    private final String[] names;
+    private final long[] priceCents;
+    private final int[] stock;
+    private final int[] rating;
+    private final int[] reviewCount;
+    private final long[] createdAt;
+    private final String[] categories;
+    private final String[] brands;
+
+    private final Map<String, BitSet> categoryBitmaps;
+    private final Map<String, BitSet> brandBitmaps;
+    private final BitSet inStock;
+
+    // 各排序字段的升序行号置换（同值按ID升序）
+    private final Map<String, int[]> sortOrders;
+    // 按价格升序排列的价格，用于二分查找价格区间
+    private final long[] sortedPrices;
+
+    private ProductColumns(int size, long[] ids, String[] names, long[] priceCents, int[] stock, int[] rating,
+                           int[] reviewCount, long[] createdAt, String[] categories, String[] brands,
+                           Map<String, BitSet> categoryBitmaps, Map<String, BitSet> brandBitmaps,
+                           BitSet inStock, Map<String, int[]> sortOrders, long[] sortedPrices) {
+        this.size = size;
+        this.ids = ids;
+        this.names = names;
+        this.priceCents = priceCents;
+        this.stock = stock;
+        this.rating = rating;
+        this.reviewCount = reviewCount;
+        this.createdAt = createdAt;
+        this.categories = categories;
+        this.brands = brands;
+        this.categoryBitmaps = categoryBitmaps;
+        this.brandBitmaps = brandBitmaps;
+        this.inStock = inStock;
+        this.sortOrders = sortOrders;
+        this.sortedPrices = sortedPrices;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 构建快照
+     * @param products 上架商品（按ID升序）
+     * @param idsByName 按数据库名称排序的上架商品ID
+     * @return 列式快照
+     */
+    static ProductColumns build(List<Product> products, List<Long> idsByName) {
+        int n = products.size();
+        long[] ids = new long[n];
+        String[] names = new String[n];
+        long[] priceCents = new long[n];
+        int[] stock = new int[n];
+        int[] rating = new int[n];
+        int[] reviewCount = new int[n];
+        long[] createdAt = new long[n];
+        String[] categories = new String[n];
+        String[] brands = new String[n];
+
+        // 分类、品牌字典编码：值 -> 编码，行 -> 编码
+        Map<String, Integer> categoryDict = new HashMap<>();
+        Map<String, Integer> brandDict = new HashMap<>();
+        int[] categoryCodes = new int[n];
+        int[] brandCodes = new int[n];
+
+        for (int row = 0; row < n; row++) {
+            Product product = products.get(row);
+            ids[row] = product.getId();
+            names[row] = product.getName() == null ? "" : product.getName();
+            priceCents[row] = toCents(product.getPrice());
+            stock[row] = product.getStock() == null ? 0 : product.getStock();
+            // 评分保留两位小数，无评分排在最前（与数据库升序时 NULL 在前一致）
+            rating[row] = product.getRating() == null ? Integer.MIN_VALUE
+                    : product.getRating().movePointRight(2).intValue();
+            reviewCount[row] = product.getReviewCount() == null ? 0 : product.getReviewCount();
+            createdAt[row] = toEpochMillis(product.getCreatedAt());
+            categories[row] = product.getCategory();
+            brands[row] = product.getBrand();
+            categoryCodes[row] = encode(categoryDict, product.getCategory());
+            brandCodes[row] = encode(brandDict, product.getBrand());
+        }
+
+        // 名称排名取自数据库排序；两次查询之间新增的商品排在最后
+        int[] nameRank = new int[n];
+        Arrays.fill(nameRank, Integer.MAX_VALUE);
+        int rank = 0;
+        for (Long id : idsByName) {
+            int row = Arrays.binarySearch(ids, id);
+            if (row >= 0) {
+                nameRank[row] = rank++;
+            }
+        }
+
+        Map<String, int[]> sortOrders = new HashMap<>();
+        sortOrders.put("id", sortedRows(n, (a, b) -> Long.compare(ids[a], ids[b]), ids));
+        sortOrders.put("name", sortedRows(n, (a, b) -> Integer.compare(nameRank[a], nameRank[b]), ids));
+        sortOrders.put("price", sortedRows(n, (a, b) -> Long.compare(priceCents[a], priceCents[b]), ids));
+        sortOrders.put("stock", sortedRows(n, (a, b) -> Integer.compare(stock[a], stock[b]), ids));
+        sortOrders.put("rating", sortedRows(n, (a, b) -> Integer.compare(rating[a], rating[b]), ids));
+        sortOrders.put("reviewCount", sortedRows(n, (a, b) -> Integer.compare(reviewCount[a], reviewCount[b]), ids));
+        sortOrders.put("createdAt", sortedRows(n, (a, b) -> Long.compare(createdAt[a], createdAt[b]), ids));
+
+        int[] byPrice = sortOrders.get("price");
+        long[] sortedPrices = new long[n];
+        for (int i = 0; i < n; i++) {
+            sortedPrices[i] = priceCents[byPrice[i]];
+        }
+
+        BitSet inStock = new BitSet(n);
+        for (int row = 0; row < n; row++) {
+            if (stock[row] > 0) {
+                inStock.set(row);
+            }
+        }
+
+        return new ProductColumns(n, ids, names, priceCents, stock, rating, reviewCount, createdAt,
+                categories, brands, bitmaps(categoryDict, categoryCodes), bitmaps(brandDict, brandCodes),
+                inStock, sortOrders, sortedPrices);
+    }
+
+    /**
+     * 只修改一个商品的库存，生成新快照（共享未变化的列）
+     * @param product 变更后的商品
+     * @return 新快照；商品不在快照中或库存以外的字段也有变化时为 null，需要整体重建
+     */
+    ProductColumns withStock(Product product) {
+        int row = product.getId() == null ? -1 : Arrays.binarySearch(ids, product.getId());
+        if (row < 0 || !Boolean.TRUE.equals(product.getActive()) || !sameExceptStock(row, product)) {
+            return null;
+        }
+        int newStock = product.getStock() == null ? 0 : product.getStock();
+        if (newStock == stock[row]) {
+            return this;
+        }
+
+        int[] patchedStock = stock.clone();
+        patchedStock[row] = newStock;
+
+        // 从库存置换中移除该行，再按 (库存, ID) 插入到新位置
+        int[] oldOrder = sortOrders.get("stock");
+        int[] order = new int[size];
+        int length = 0;
+        for (int r : oldOrder) {
+            if (r != row) {
+                order[length++] = r;
+            }
+        }
+        int low = 0;
+        int high = length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int other = order[mid];
+            int cmp = patchedStock[other] != newStock ? Integer.compare(patchedStock[other], newStock)
+                    : Long.compare(ids[other], ids[row]);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        System.arraycopy(order, low, order, low + 1, length - low);
+        order[low] = row;
+
+        Map<String, int[]> patchedOrders = new HashMap<>(sortOrders);
+        patchedOrders.put("stock", order);
+        BitSet patchedInStock = (BitSet) inStock.clone();
+        patchedInStock.set(row, newStock > 0);
+
+        return new ProductColumns(size, ids, names, priceCents, patchedStock, rating, reviewCount, createdAt,
+                categories, brands, categoryBitmaps, brandBitmaps, patchedInStock, patchedOrders, sortedPrices);
+    }
+
+    private boolean sameExceptStock(int row, Product product) {
+        String name = product.getName() == null ? "" : product.getName();
+        int productRating = product.getRating() == null ? Integer.MIN_VALUE
+                : product.getRating().movePointRight(2).intValue();
+        int productReviewCount = product.getReviewCount() == null ? 0 : product.getReviewCount();
+        return names[row].equals(name)
+                && priceCents[row] == toCents(product.getPrice())
+                && rating[row] == productRating
+                && reviewCount[row] == productReviewCount
+                && createdAt[row] == toEpochMillis(product.getCreatedAt())
+                && Objects.equals(categories[row], product.getCategory())
+                && Objects.equals(brands[row], product.getBrand());
+    }
+
+    /**
+     * 组合筛选并排序分页
+     * @param filter 筛选条件
+     * @param sortBy 排序字段（必须属于 SORTABLE_FIELDS）
+     * @param ascending 是否升序
+     * @param pageable 分页参数（忽略其中的排序）
+     * @return 商品ID分页结果
+     */
+    Page<Long> query(ProductFilter filter, String sortBy, boolean ascending, Pageable pageable) {
+        BitSet matches = new BitSet(size);
+        matches.set(0, size);
+        if (filter.getCategory() != null && !intersect(matches, categoryBitmaps.get(filter.getCategory()))) {
+            return new PageImpl<>(List.of(), pageable, 0);
+        }
+        if (filter.getBrand() != null && !intersect(matches, brandBitmaps.get(filter.getBrand()))) {
+            return new PageImpl<>(List.of(), pageable, 0);
+        }
+        if (filter.isInStockOnly()) {
+            matches.and(inStock);
+        }
+
+        // 价格区间：在价格升序数组上二分得到价格置换中的 [from, to)
+        int from = filter.getMinPrice() == null ? 0 : lowerBound(sortedPrices, toCents(filter.getMinPrice()));
+        int to = filter.getMaxPrice() == null ? size : upperBound(sortedPrices, toCents(filter.getMaxPrice()));
+        to = Math.max(from, to);
+
+        int[] order = sortOrders.get(sortBy);
+        int start = 0;
+        int end = size;
+        int total;
+        if ("price".equals(sortBy)) {
+            // 按价格排序时价格区间就是置换中的一段连续区间，只需遍历这一段
+            start = from;
+            end = to;
+            total = 0;
+            for (int i = start; i < end; i++) {
+                if (matches.get(order[i])) {
+                    total++;
+                }
+            }
+        } else {
+            if (from > 0 || to < size) {
+                int[] byPrice = sortOrders.get("price");
+                BitSet inRange = new BitSet(size);
+                for (int i = from; i < to; i++) {
+                    inRange.set(byPrice[i]);
+                }
+                matches.and(inRange);
+            }
+            total = matches.cardinality();
+        }
+
+        long offset = pageable.getOffset();
+        int pageSize = pageable.getPageSize();
+        long[] page = new long[(int) Math.max(0, Math.min(pageSize, total - offset))];
+        int collected = 0;
+        long skipped = 0;
+        for (int i = 0; i < end - start && collected < page.length; i++) {
+            int row = ascending ? order[start + i] : order[end - 1 - i];
+            if (!matches.get(row)) {
+                continue;
+            }
+            if (skipped < offset) {
+                skipped++;
+                continue;
+            }
+            page[collected++] = ids[row];
+        }
+        return new PageImpl<>(Arrays.stream(page).boxed().toList(), pageable, total);
+    }
+
+    private static boolean intersect(BitSet matches, BitSet bitmap) {
+        if (bitmap == null) {
+            return false;
+        }
+        matches.and(bitmap);
+        return true;
+    }
+
+    private static int encode(Map<String, Integer> dict, String value) {
+        if (value == null) {
+            return -1;
+        }
+        return dict.computeIfAbsent(value, v -> dict.size());
+    }
+
+    private static Map<String, BitSet> bitmaps(Map<String, Integer> dict, int[] codes) {
+        BitSet[] byCode = new BitSet[dict.size()];
+        for (int row = 0; row < codes.length; row++) {
+            if (codes[row] >= 0) {
+                if (byCode[codes[row]] == null) {
+                    byCode[codes[row]] = new BitSet(codes.length);
+                }
+                byCode[codes[row]].set(row);
+            }
+        }
+        Map<String, BitSet> result = new HashMap<>();
+        dict.forEach((value, code) -> result.put(value, byCode[code]));
+        return result;
+    }
+
+    /**
+     * 生成按比较器升序、同值按ID升序的行号置换
+     */
+    private static int[] sortedRows(int n, Comparator<Integer> comparator, long[] ids) {
+        Integer[] rows = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            rows[i] = i;
+        }
+        Arrays.sort(rows, comparator.thenComparing(row -> ids[row]));
+        int[] result = new int[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = rows[i];
+        }
+        return result;
+    }
+
+    /**
+     * 第一个大于等于 key 的下标
+     */
+    private static int lowerBound(long[] sorted, long key) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 第一个大于 key 的下标
+     */
+    private static int upperBound(long[] sorted, long key) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] <= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static long toCents(BigDecimal price) {
+        if (price == null) {
+            return 0;
+        }
+        return price.setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+    }
+
+    private static long toEpochMillis(LocalDateTime time) {
+        return time == null ? Long.MIN_VALUE : time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}
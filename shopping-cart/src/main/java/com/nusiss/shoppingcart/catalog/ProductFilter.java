@@ -0,0 +1,50 @@
+package com.nusiss.shoppingcart.catalog;
+
+import java.math.BigDecimal;
+
+/**
+ * 商品组合筛选条件
+ * 各条件均可为空，为空表示不限制
+ * @author SpringCA Team
+ */
+public class ProductFilter {
+
+    private final String category;
+    private final String brand;
+    private final BigDecimal minPrice;
+    private final BigDecimal maxPrice;
+    private final boolean inStockOnly;
+
+    public ProductFilter(String category, String brand, BigDecimal minPrice, BigDecimal maxPrice,
+                         boolean inStockOnly) {
+        this.category = blankToNull(category);
+        this.brand = blankToNull(brand);
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.inStockOnly = inStockOnly;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public String getBrand() {
+        return brand;
+    }
+
+    public BigDecimal getMinPrice() {
+        return minPrice;
+    }
+
+    public BigDecimal getMaxPrice() {
+        return maxPrice;
+    }
+
+    public boolean isInStockOnly() {
+        return inStockOnly;
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+}
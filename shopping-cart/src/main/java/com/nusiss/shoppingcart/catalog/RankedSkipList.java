@@ -0,0 +1,160 @@
+package com.nusiss.shoppingcart.catalog;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 可按名次访问的跳表
+ * 每条前向指针记录跨越的节点数（span），插入、删除和按名次定位均为 O(log n)；
+ * 元素按 (分数降序, 次级分数降序, ID 升序) 排列。非线程安全，由调用方加锁
+ * @author SpringCA Team
+ */
+final class RankedSkipList {
+
+    private static final int MAX_LEVEL = 32;
+
+    private final Node head = new Node(0, 0, 0, MAX_LEVEL);
+    private int level = 1;
+    private int size = 0;
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 插入元素（调用方保证同一ID不重复插入）
+     */
+    void insert(long id, long score, long secondary) {
+        Node[] update = new Node[MAX_LEVEL];
+        int[] rank = new int[MAX_LEVEL];
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            while (x.next[i] != null && x.next[i].before(id, score, secondary)) {
+                rank[i] += x.span[i];
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+
+        int newLevel = randomLevel();
+        if (newLevel > level) {
+            for (int i = level; i < newLevel; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                update[i].span[i] = size;
+            }
+            level = newLevel;
+        }
+
+        Node node = new Node(id, score, secondary, newLevel);
+        for (int i = 0; i < newLevel; i++) {
+            node.next[i] = update[i].next[i];
+            update[i].next[i] = node;
+            node.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = rank[0] - rank[i] + 1;
+        }
+        for (int i = newLevel; i < level; i++) {
+            update[i].span[i]++;
+        }
+        size++;
+    }
+
+    /**
+     * 删除元素
+     * @return 元素是否存在
+     */
+    boolean remove(long id, long score, long secondary) {
+        Node[] update = new Node[MAX_LEVEL];
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && x.next[i].before(id, score, secondary)) {
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+        Node target = x.next[0];
+        if (target == null || target.id != id || target.score != score || target.secondary != secondary) {
+            return false;
+        }
+        for (int i = 0; i < level; i++) {
+            if (update[i].next[i] == target) {
+                update[i].span[i] += target.span[i] - 1;
+                update[i].next[i] = target.next[i];
+            } else {
+                update[i].span[i]--;
+            }
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * 按名次读取一段元素ID
+     * @param offset 起始名次（从0开始）
+     * @param limit 数量上限
+     * @return 元素ID
+     */
+    long[] range(long offset, int limit) {
+        if (offset >= size || limit <= 0) {
+            return new long[0];
+        }
+        // 沿 span 跳到第 offset + 1 个节点
+        long target = offset + 1;
+        long traversed = 0;
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && traversed + x.span[i] <= target) {
+                traversed += x.span[i];
+                x = x.next[i];
+            }
+        }
+        long[] result = new long[(int) Math.min(limit, size - offset)];
+        for (int n = 0; n < result.length; n++) {
+            result[n] = x.id;
+            x = x.next[0];
+        }
+        return result;
+    }
+
+    private static int randomLevel() {
+        int lvl = 1;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (lvl < MAX_LEVEL && random.nextInt(4) == 0) {
+            lvl++;
+        }
+        return lvl;
+    }
+
+    private static final class Node {
+
+        final long id;
+        final long score;
+        final long secondary;
+        final Node[] next;
+        final int[] span;
+
+        Node(long id, long score, long secondary, int level) {
+            this.id = id;
+            this.score = score;
+            this.secondary = secondary;
+            this.next = new Node[level];
+            this.span = new int[level];
+        }
+
+        /**
+         * 当前节点是否排在给定元素之前
+         */
+        boolean before(long otherId, long otherScore, long otherSecondary) {
+            if (score != otherScore) {
+                return score > otherScore;
+            }
+            if (secondary != otherSecondary) {
+                return secondary > otherSecondary;
+            }
+            return id < otherId;
+        }
+    }
+}
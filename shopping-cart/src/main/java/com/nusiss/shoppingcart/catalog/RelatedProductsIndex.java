@@ -0,0 +1,440 @@
+package com.nusiss.shoppingcart.catalog;
+
+import com.nusiss.shoppingcart.entity.Product;
+import com.nusiss.shoppingcart.event.ProductChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 相关商品推荐图
+ * 后台任务为每个上架商品预先计算 Top-N 相关商品ID（综合同分类、同品牌和热度信号），
+ * 以 long[] 邻接表保存；商品变更后只重算受影响的商品，详情页获取推荐无需查询数据库
+ * @author SpringCA Team
+ */
+@Component
+public class RelatedProductsIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(RelatedProductsIndex.class);
+
+    // 同分类优先于同品牌，同品牌优先于单纯的热门商品，与原先的查询顺序一致
+    private static final double CATEGORY_WEIGHT = 4.0;
+    private static final double BRAND_WEIGHT = 2.0;
+    private static final double POPULARITY_WEIGHT = 1.0;
+
+    private final ActiveProductScanner activeProductScanner;
+    private final boolean enabled;
+    private final int topN;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<ProductChangedEvent> pendingEvents = new ArrayList<>();
+    private GraphData data = new GraphData();
+    private boolean loading = false;
+    private volatile boolean ready = false;
+    // 上一轮重算使用的热门商品（只在 refresh 中访问）
+    private long[] popular = new long[0];
+
+    // 商品ID -> 相关商品ID（按相关度降序）
+    private final Map<Long, long[]> adjacency = new ConcurrentHashMap<>();
+
+    public RelatedProductsIndex(ActiveProductScanner activeProductScanner,
+                                @Value("${app.catalog.related.enabled:true}") boolean enabled,
+                                @Value("${app.catalog.related.top-n:8}") int topN) {
+        this.activeProductScanner = activeProductScanner;
+        this.enabled = enabled;
+        this.topN = topN;
+    }
+
+    /**
+     * 推荐图是否已启用并计算完成
+     */
+    public boolean isAvailable() {
+        return enabled && ready;
+    }
+
+    /**
+     * 获取相关商品ID
+     * @param productId 商品ID
+     * @param limit 返回数量上限
+     * @return 相关商品ID（按相关度降序），商品不在推荐图中时返回 null
+     */
+    public long[] getRelatedIds(Long productId, int limit) {
+        long[] related = adjacency.get(productId);
+        if (related == null) {
+            return null;
+        }
+        return related.length <= limit ? related : Arrays.copyOf(related, limit);
+    }
+
+    /**
+     * 应用启动完成后加载商品并计算完整推荐图
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            loading = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        GraphData fresh = new GraphData();
+        fresh.fullRebuild = true;
+        try {
+            activeProductScanner.scan(fresh::put);
+        } catch (Exception e) {
+            log.error("加载相关商品推荐图失败：{}", e.getMessage());
+            fresh = null;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (fresh != null) {
+                for (ProductChangedEvent event : pendingEvents) {
+                    fresh.apply(event);
+                }
+                data = fresh;
+            }
+            pendingEvents.clear();
+            loading = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (fresh != null) {
+            refresh();
+            ready = true;
+        }
+    }
+
+    /**
+     * 商品变更后更新节点，并将受影响的商品标记为待重算
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (!enabled || event.getProduct().getId() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            data.apply(event);
+            if (loading) {
+                pendingEvents.add(event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 后台定时重算待更新商品的推荐列表
+     * 热门商品榜发生变化时所有商品的候选集都会变化，此时整体重算
+     */
+    @Scheduled(fixedDelayString = "${app.catalog.related.refresh-interval-ms:5000}")
+    public synchronized void refresh() {
+        if (!enabled) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        // 写锁内只复制待重算的数据，重算在锁外进行，不阻塞提交事务的商品变更事件；
+        // 重算期间到达的变更重新标记为待重算，下一轮处理
+        GraphSnapshot snapshot;
+        lock.writeLock().lock();
+        try {
+            snapshot = data.takeSnapshot();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (snapshot == null) {
+            return;
+        }
+        int recomputed = snapshot.recompute(adjacency, topN, popular);
+        popular = snapshot.popular;
+        if (recomputed > 0) {
+            log.debug("相关商品推荐图已更新：重算 {} 个商品，耗时 {}ms",
+                    recomputed, System.currentTimeMillis() - startTime);
+        }
+    }
+
+    /**
+     * 推荐图数据：商品节点、分类/品牌分组以及待重算集合
+     */
+    private static final class GraphData {
+
+        final Map<Long, Node> nodes = new HashMap<>();
+        final Map<String, Set<Long>> byCategory = new HashMap<>();
+        final Map<String, Set<Long>> byBrand = new HashMap<>();
+        final Set<Long> dirty = new HashSet<>();
+        final Set<Long> removed = new HashSet<>();
+        boolean fullRebuild = false;
+
+        void apply(ProductChangedEvent event) {
+            Product product = event.getProduct();
+            Node previous = nodes.get(product.getId());
+            if (event.isActiveAfterChange()) {
+                Node current = Node.of(product);
+                if (current.equals(previous)) {
+                    return;
+                }
+                remove(product.getId());
+                put(product);
+            } else if (previous != null) {
+                remove(product.getId());
+                removed.add(product.getId());
+            }
+        }
+
+        void put(Product product) {
+            Node node = Node.of(product);
+            nodes.put(node.id, node);
+            removed.remove(node.id);
+            markDirty(Set.of(node.id));
+            join(byCategory, node.category, node.id);
+            join(byBrand, node.brand, node.id);
+        }
+
+        void remove(Long id) {
+            Node node = nodes.remove(id);
+            if (node != null) {
+                leave(byCategory, node.category, id);
+                leave(byBrand, node.brand, id);
+            }
+        }
+
+        /**
+         * 复制重算所需的数据并清空待重算集合
+         * @return 数据快照，没有待重算的商品时为 null（热度只随商品变更改变，变更会标记待重算）
+         */
+        GraphSnapshot takeSnapshot() {
+            if (!fullRebuild && dirty.isEmpty() && removed.isEmpty()) {
+                return null;
+            }
+            GraphSnapshot snapshot = new GraphSnapshot(new HashMap<>(nodes), copyGroups(byCategory),
+                    copyGroups(byBrand), new HashSet<>(dirty), new HashSet<>(removed), fullRebuild);
+            dirty.clear();
+            removed.clear();
+            fullRebuild = false;
+            return snapshot;
+        }
+
+        private static Map<String, Set<Long>> copyGroups(Map<String, Set<Long>> groups) {
+            Map<String, Set<Long>> copy = new HashMap<>(groups.size() * 2);
+            groups.forEach((key, members) -> copy.put(key, new HashSet<>(members)));
+            return copy;
+        }
+
+        /**
+         * 标记待重算商品；已安排整体重算时无需逐个记录
+         */
+        private void markDirty(Set<Long> ids) {
+            if (!fullRebuild) {
+                dirty.addAll(ids);
+            }
+        }
+
+        private void join(Map<String, Set<Long>> groups, String key, Long id) {
+            if (key == null) {
+                return;
+            }
+            Set<Long> members = groups.computeIfAbsent(key, k -> new HashSet<>());
+            markDirty(members);
+            members.add(id);
+        }
+
+        private void leave(Map<String, Set<Long>> groups, String key, Long id) {
+            if (key == null) {
+                return;
+            }
+            Set<Long> members = groups.get(key);
+            if (members == null) {
+                return;
+            }
+            members.remove(id);
+            markDirty(members);
+            if (members.isEmpty()) {
+                groups.remove(key);
+            }
+        }
+    }
+
+    /**
+     * 重算用的推荐图数据快照（在写锁内复制，锁外计算）
+     */
+    private static final class GraphSnapshot {
+
+        final Map<Long, Node> nodes;
+        final Map<String, Set<Long>> byCategory;
+        final Map<String, Set<Long>> byBrand;
+        final Set<Long> dirty;
+        final Set<Long> removed;
+        final boolean fullRebuild;
+        long[] popular = new long[0];
+
+        GraphSnapshot(Map<Long, Node> nodes, Map<String, Set<Long>> byCategory, Map<String, Set<Long>> byBrand,
+                      Set<Long> dirty, Set<Long> removed, boolean fullRebuild) {
+            this.nodes = nodes;
+            this.byCategory = byCategory;
+            this.byBrand = byBrand;
+            this.dirty = dirty;
+            this.removed = removed;
+            this.fullRebuild = fullRebuild;
+        }
+
+        /**
+         * 重算待更新商品的推荐列表
+         * @return 重算的商品数量
+         */
+        int recompute(Map<Long, long[]> adjacency, int topN, long[] previousPopular) {
+            long[] currentPopular = topPopular(topN + 1);
+            boolean all = fullRebuild || !Arrays.equals(currentPopular, previousPopular);
+            popular = currentPopular;
+
+            for (Long id : removed) {
+                adjacency.remove(id);
+            }
+
+            Set<Long> targets = all ? nodes.keySet() : dirty;
+            int count = targets.size();
+            if (count == 0) {
+                return 0;
+            }
+
+            double maxPopularity = 0;
+            for (Node node : nodes.values()) {
+                maxPopularity = Math.max(maxPopularity, node.popularity);
+            }
+            for (Long id : targets) {
+                Node node = nodes.get(id);
+                if (node != null) {
+                    adjacency.put(id, relatedFor(node, topN, maxPopularity));
+                }
+            }
+            return count;
+        }
+
+        private long[] relatedFor(Node node, int topN, double maxPopularity) {
+            Set<Long> candidates = new LinkedHashSet<>();
+            candidates.addAll(byCategory.getOrDefault(node.category, Set.of()));
+            candidates.addAll(byBrand.getOrDefault(node.brand, Set.of()));
+            for (long id : popular) {
+                candidates.add(id);
+            }
+            candidates.remove(node.id);
+
+            Node[] ranked = new Node[candidates.size()];
+            double[] scores = new double[candidates.size()];
+            int n = 0;
+            for (Long candidateId : candidates) {
+                Node candidate = nodes.get(candidateId);
+                if (candidate == null) {
+                    continue;
+                }
+                double score = maxPopularity > 0 ? POPULARITY_WEIGHT * candidate.popularity / maxPopularity : 0;
+                if (node.category != null && node.category.equals(candidate.category)) {
+                    score += CATEGORY_WEIGHT;
+                }
+                if (node.brand != null && node.brand.equals(candidate.brand)) {
+                    score += BRAND_WEIGHT;
+                }
+                ranked[n] = candidate;
+                scores[n++] = score;
+            }
+
+            // 按得分降序、ID 升序选出前 N 个
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> {
+                int byScore = Double.compare(scores[b], scores[a]);
+                return byScore != 0 ? byScore : Long.compare(ranked[a].id, ranked[b].id);
+            });
+            long[] result = new long[Math.min(n, topN)];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = ranked[order[i]].id;
+            }
+            return result;
+        }
+
+        /**
+         * 按热度降序、ID 升序取前 k 个商品
+         */
+        private long[] topPopular(int k) {
+            List<Node> all = new ArrayList<>(nodes.values());
+            all.sort((a, b) -> {
+                int byPopularity = Double.compare(b.popularity, a.popularity);
+                return byPopularity != 0 ? byPopularity : Long.compare(a.id, b.id);
+            });
+            long[] result = new long[Math.min(k, all.size())];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = all.get(i).id;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 推荐图节点：商品的分类、品牌和热度
+     */
+    private static final class Node {
+
+        final Long id;
+        final String category;
+        final String brand;
+        final double popularity;
+
+        private Node(Long id, String category, String brand, double popularity) {
+            this.id = id;
+            this.category = category;
+            this.brand = brand;
+            this.popularity = popularity;
+        }
+
+        /**
+         * 热度 = log(1 + 评论数) × 评分权重（无评分按 3 分计）
+         */
+        static Node of(Product product) {
+            int reviewCount = product.getReviewCount() == null ? 0 : product.getReviewCount();
+            BigDecimal rating = product.getRating() == null ? BigDecimal.valueOf(3) : product.getRating();
+            double popularity = Math.log1p(reviewCount) * (0.5 + rating.doubleValue() / 10.0);
+            return new Node(product.getId(), product.getCategory(), product.getBrand(), popularity);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Node that)) {
+                return false;
+            }
+            return id.equals(that.id)
+                    && Objects.equals(category, that.category)
+                    && Objects.equals(brand, that.brand)
+                    && Double.compare(popularity, that.popularity) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, category, brand, popularity);
+        }
+    }
+}
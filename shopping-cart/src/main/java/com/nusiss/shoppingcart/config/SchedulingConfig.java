@@ -0,0 +1,15 @@
+package com.nusiss.shoppingcart.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * 定时任务配置
+ * 启用索引刷新等后台定时任务；调度线程池大小由 spring.task.scheduling.pool.size 配置，
+ * 购物车清理、过期占用清理等分批暂停的长任务不会阻塞购物车写回、订单事件投递、秒杀对账等短周期任务
+ * @author SpringCA Team
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,6 +1,7 @@
 package com.nusiss.shoppingcart.controller;
 
 import com.nusiss.shoppingcart.entity.User;
+import com.nusiss.shoppingcart.service.GuestCartService;
 import com.nusiss.shoppingcart.service.UserService;
 import jakarta.servlet.http.HttpSession;
 import org.slf4j.Logger;
@@ -23,9 +24,11 @@ public class AuthController {
     private static final Logger log = LoggerFactory.getLogger(AuthController.class);
     
     private final UserService userService;
+    private final GuestCartService guestCartService;
     
-    public AuthController(UserService userService) {
+    public AuthController(UserService userService, GuestCartService guestCartService) {
         this.userService = userService;
+        this.guestCartService = guestCartService;
     }
     
     /**
@@ -59,6 +62,13 @@ public class AuthController {
                 session.setAttribute("userId", user.getId());
                 session.setAttribute("username", user.getUsername());
                 
+                // 合并登录前的游客购物车，合并失败不影响登录
+                try {
+                    guestCartService.mergeInto(user, session.getId());
+                } catch (Exception e) {
+                    log.error("合并游客购物车失败：用户 {}, {}", username, e.getMessage());
+                }
+                
                 log.info("用户 {} 登录成功", username);
                 redirectAttributes.addFlashAttribute("successMessage", "登录成功！欢迎回来，" + user.getFirstName());
                 
@@ -1,8 +1,11 @@
 package com.nusiss.shoppingcart.controller;
 
-import com.nusiss.shoppingcart.entity.CartItem;
+import com.nusiss.shoppingcart.dto.CartDelta;
+import com.nusiss.shoppingcart.dto.CartSummary;
+import com.nusiss.shoppingcart.dto.CartTotals;
 import com.nusiss.shoppingcart.entity.User;
 import com.nusiss.shoppingcart.service.CartService;
+import com.nusiss.shoppingcart.service.GuestCartService;
 import jakarta.servlet.http.HttpSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,11 +17,12 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.math.BigDecimal;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * 购物车控制器
+ * 未登录时使用按会话保存在内存中的游客购物车，登录后合并到用户购物车
  * @author SpringCA Team
  */
 @Controller
@@ -28,9 +32,11 @@ public class CartController {
     private static final Logger log = LoggerFactory.getLogger(CartController.class);
     
     private final CartService cartService;
+    private final GuestCartService guestCartService;
     
-    public CartController(CartService cartService) {
+    public CartController(CartService cartService, GuestCartService guestCartService) {
         this.cartService = cartService;
+        this.guestCartService = guestCartService;
     }
     
     /**
@@ -41,17 +47,16 @@ public class CartController {
         long startTime = System.currentTimeMillis();
         
         User currentUser = (User) session.getAttribute("currentUser");
-        if (currentUser == null) {
-            return "redirect:/auth/login";
-        }
         
         try {
-            // 并行获取购物车数据以提高性能
-            List<CartItem> cartItems = cartService.getCartItems(currentUser);
+            // 一次查询获取购物车商品、金额和数量
+            CartSummary summary = currentUser != null
+                    ? cartService.getCartSummary(currentUser)
+                    : guestCartService.getCartSummary(session.getId());
             
             // 如果购物车为空，直接返回
-            if (cartItems.isEmpty()) {
-                model.addAttribute("cartItems", cartItems);
+            if (summary.getItems().isEmpty()) {
+                model.addAttribute("cartItems", summary.getItems());
                 model.addAttribute("totalAmount", BigDecimal.ZERO);
                 model.addAttribute("totalQuantity", 0);
                 model.addAttribute("isEmpty", true);
@@ -61,13 +66,9 @@ public class CartController {
                 return "cart/cart";
             }
             
-            // 计算总金额和数量
-            BigDecimal totalAmount = cartService.getCartTotalAmount(currentUser);
-            Integer totalQuantity = cartService.getCartTotalQuantity(currentUser);
-            
-            model.addAttribute("cartItems", cartItems);
-            model.addAttribute("totalAmount", totalAmount);
-            model.addAttribute("totalQuantity", totalQuantity);
+            model.addAttribute("cartItems", summary.getItems());
+            model.addAttribute("totalAmount", summary.getTotalAmount());
+            model.addAttribute("totalQuantity", summary.getTotalQuantity());
             model.addAttribute("isEmpty", false);
             
             long endTime = System.currentTimeMillis();
@@ -93,20 +94,16 @@ public class CartController {
         Map<String, Object> response = new HashMap<>();
         
         User currentUser = (User) session.getAttribute("currentUser");
-        if (currentUser == null) {
-            response.put("success", false);
-            response.put("message", "请先登录");
-            response.put("redirect", "/auth/login");
-            return ResponseEntity.ok(response);
-        }
         
         try {
-            boolean success = cartService.addToCart(currentUser, productId, quantity);
-            if (success) {
-                Integer totalQuantity = cartService.getCartTotalQuantity(currentUser);
+            Optional<CartDelta> delta = currentUser != null
+                    ? cartService.addItem(currentUser, productId, quantity)
+                    : guestCartService.addItem(session.getId(), productId, quantity);
+            if (delta.isPresent()) {
+                CartTotals totals = delta.get().getTotals();
                 response.put("success", true);
                 response.put("message", "商品已添加到购物车");
-                response.put("cartQuantity", totalQuantity);
+                response.put("cartQuantity", totals.getTotalQuantity());
             } else {
                 response.put("success", false);
                 response.put("message", "添加失败，可能是库存不足或商品不存在");
@@ -131,22 +128,18 @@ public class CartController {
         Map<String, Object> response = new HashMap<>();
         
         User currentUser = (User) session.getAttribute("currentUser");
-        if (currentUser == null) {
-            response.put("success", false);
-            response.put("message", "请先登录");
-            return ResponseEntity.ok(response);
-        }
         
         try {
-            boolean success = cartService.updateCartItemQuantity(currentUser, cartItemId, quantity);
-            if (success) {
-                BigDecimal totalAmount = cartService.getCartTotalAmount(currentUser);
-                Integer totalQuantity = cartService.getCartTotalQuantity(currentUser);
+            Optional<CartDelta> delta = currentUser != null
+                    ? cartService.updateItem(currentUser, cartItemId, quantity)
+                    : guestCartService.updateItem(session.getId(), cartItemId, quantity);
+            if (delta.isPresent()) {
+                CartTotals totals = delta.get().getTotals();
                 
                 response.put("success", true);
                 response.put("message", "数量已更新");
-                response.put("totalAmount", totalAmount);
-                response.put("cartQuantity", totalQuantity);
+                response.put("totalAmount", totals.getTotalAmount());
+                response.put("cartQuantity", totals.getTotalQuantity());
             } else {
                 response.put("success", false);
                 response.put("message", "更新失败，可能是库存不足");
@@ -170,24 +163,19 @@ public class CartController {
         Map<String, Object> response = new HashMap<>();
         
         User currentUser = (User) session.getAttribute("currentUser");
-        if (currentUser == null) {
-            response.put("success", false);
-            response.put("message", "请先登录");
-            return ResponseEntity.ok(response);
-        }
         
         try {
-            boolean success = cartService.removeFromCart(currentUser, cartItemId);
-            if (success) {
-                BigDecimal totalAmount = cartService.getCartTotalAmount(currentUser);
-                Integer totalQuantity = cartService.getCartTotalQuantity(currentUser);
-                boolean isEmpty = cartService.isCartEmpty(currentUser);
+            Optional<CartDelta> delta = currentUser != null
+                    ? cartService.removeItem(currentUser, cartItemId)
+                    : guestCartService.removeItem(session.getId(), cartItemId);
+            if (delta.isPresent()) {
+                CartTotals totals = delta.get().getTotals();
                 
                 response.put("success", true);
                 response.put("message", "商品已移除");
-                response.put("totalAmount", totalAmount);
-                response.put("cartQuantity", totalQuantity);
-                response.put("isEmpty", isEmpty);
+                response.put("totalAmount", totals.getTotalAmount());
+                response.put("cartQuantity", totals.getTotalQuantity());
+                response.put("isEmpty", totals.isEmpty());
             } else {
                 response.put("success", false);
                 response.put("message", "移除失败");
@@ -210,14 +198,14 @@ public class CartController {
         Map<String, Object> response = new HashMap<>();
         
         User currentUser = (User) session.getAttribute("currentUser");
-        if (currentUser == null) {
-            response.put("success", false);
-            response.put("message", "请先登录");
-            return ResponseEntity.ok(response);
-        }
         
         try {
-            boolean success = cartService.clearCart(currentUser);
+            boolean success = true;
+            if (currentUser != null) {
+                success = cartService.clearCart(currentUser);
+            } else {
+                guestCartService.clearCart(session.getId());
+            }
             if (success) {
                 response.put("success", true);
                 response.put("message", "购物车已清空");
@@ -244,14 +232,12 @@ public class CartController {
         Map<String, Object> response = new HashMap<>();
         
         User currentUser = (User) session.getAttribute("currentUser");
-        if (currentUser == null) {
-            response.put("count", 0);
-            return ResponseEntity.ok(response);
-        }
         
         try {
-            Integer totalQuantity = cartService.getCartTotalQuantity(currentUser);
-            response.put("count", totalQuantity);
+            CartTotals totals = currentUser != null
+                    ? cartService.getCartTotals(currentUser)
+                    : guestCartService.getCartTotals(session.getId());
+            response.put("count", totals.getTotalQuantity());
         } catch (Exception e) {
             log.error("获取购物车数量失败：{}", e.getMessage());
             response.put("count", 0);
@@ -299,12 +285,11 @@ public class CartController {
                                 HttpSession session,
                                 RedirectAttributes redirectAttributes) {
         User currentUser = (User) session.getAttribute("currentUser");
-        if (currentUser == null) {
-            return "redirect:/auth/login";
-        }
         
         try {
-            boolean success = cartService.addToCart(currentUser, productId, quantity);
+            boolean success = currentUser != null
+                    ? cartService.addToCart(currentUser, productId, quantity)
+                    : guestCartService.addItem(session.getId(), productId, quantity).isPresent();
             if (success) {
                 redirectAttributes.addFlashAttribute("success", "商品已添加到购物车");
             } else {
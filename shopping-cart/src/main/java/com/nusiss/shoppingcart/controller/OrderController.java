@@ -1,10 +1,14 @@
 package com.nusiss.shoppingcart.controller;
 
-import com.nusiss.shoppingcart.entity.CartItem;
+import com.nusiss.shoppingcart.dto.CartSummary;
 import com.nusiss.shoppingcart.entity.Order;
 import com.nusiss.shoppingcart.entity.OrderItem;
 import com.nusiss.shoppingcart.entity.User;
+import com.nusiss.shoppingcart.exception.BusinessException;
+import com.nusiss.shoppingcart.order.OrderAdmissionQueue;
+import com.nusiss.shoppingcart.order.OrderTicket;
 import com.nusiss.shoppingcart.service.CartService;
+import com.nusiss.shoppingcart.service.InventoryService;
 import com.nusiss.shoppingcart.service.OrderService;
 import jakarta.servlet.http.HttpSession;
 import org.slf4j.Logger;
@@ -16,7 +20,6 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
-import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -34,45 +37,90 @@ public class OrderController {
     
     private final OrderService orderService;
     private final CartService cartService;
+    private final InventoryService inventoryService;
+    private final OrderAdmissionQueue admissionQueue;
     
-    public OrderController(OrderService orderService, CartService cartService) {
+    public OrderController(OrderService orderService, CartService cartService, InventoryService inventoryService,
+                           OrderAdmissionQueue admissionQueue) {
         this.orderService = orderService;
         this.cartService = cartService;
+        this.inventoryService = inventoryService;
+        this.admissionQueue = admissionQueue;
     }
     
     /**
-     * 显示结账页面
+     * 开始结账：占用库存后跳转到结账页面
+     * 占用只在提交结账时进行，浏览、刷新或预加载结账页面不会加锁和写入占用记录
      */
-    @GetMapping("/checkout")
-    public String showCheckout(HttpSession session, Model model) {
+    @PostMapping("/checkout")
+    public String beginCheckout(HttpSession session, RedirectAttributes redirectAttributes) {
         User currentUser = (User) session.getAttribute("currentUser");
         if (currentUser == null) {
             return "redirect:/auth/login";
         }
         
         try {
+            CartSummary summary = cartService.getCartSummary(currentUser);
+            
             // 检查购物车是否为空
-            if (cartService.isCartEmpty(currentUser)) {
+            if (summary.isEmpty()) {
                 return "redirect:/cart";
             }
             
             // 验证购物车库存
-            if (!cartService.validateCartStock(currentUser)) {
-                model.addAttribute("error", "购物车中有商品库存不足，请返回购物车调整");
+            if (!cartService.validateCartStock(summary)) {
+                redirectAttributes.addFlashAttribute("error", "购物车中有商品库存不足，请返回购物车调整");
                 return "redirect:/cart";
             }
             
-            List<CartItem> cartItems = cartService.getCartItems(currentUser);
-            BigDecimal totalAmount = cartService.getCartTotalAmount(currentUser);
+            // 占用库存，过期前下单不会因为其他用户抢购而失败（数量未变化时沿用已有占用）
+            inventoryService.holdForCheckout(currentUser, quantitiesOf(summary));
+            return "redirect:/orders/checkout";
+        } catch (BusinessException e) {
+            log.warn("结账占用库存失败：{}", e.getMessage());
+            redirectAttributes.addFlashAttribute("error", e.getMessage());
+            return "redirect:/cart";
+        } catch (Exception e) {
+            log.error("开始结账失败：{}", e.getMessage());
+            redirectAttributes.addFlashAttribute("error", "加载结账页面失败，请稍后重试");
+            return "redirect:/cart";
+        }
+    }
+    
+    /**
+     * 显示结账页面（只读，显示已有结账占用的过期时间）
+     */
+    @GetMapping("/checkout")
+    public String showCheckout(HttpSession session, Model model, RedirectAttributes redirectAttributes) {
+        User currentUser = (User) session.getAttribute("currentUser");
+        if (currentUser == null) {
+            return "redirect:/auth/login";
+        }
+        
+        try {
+            CartSummary summary = cartService.getCartSummary(currentUser);
+            
+            // 检查购物车是否为空
+            if (summary.isEmpty()) {
+                return "redirect:/cart";
+            }
             
-            model.addAttribute("cartItems", cartItems);
-            model.addAttribute("totalAmount", totalAmount);
+            // 验证购物车库存
+            if (!cartService.validateCartStock(summary)) {
+                redirectAttributes.addFlashAttribute("error", "购物车中有商品库存不足，请返回购物车调整");
+                return "redirect:/cart";
+            }
+            
+            model.addAttribute("cartItems", summary.getItems());
+            model.addAttribute("totalAmount", summary.getTotalAmount());
             model.addAttribute("user", currentUser);
+            inventoryService.findCheckoutHold(currentUser, quantitiesOf(summary))
+                    .ifPresent(holdExpiresAt -> model.addAttribute("holdExpiresAt", holdExpiresAt));
             
             return "orders/checkout";
         } catch (Exception e) {
             log.error("显示结账页面失败：{}", e.getMessage());
-            model.addAttribute("error", "加载结账页面失败，请稍后重试");
+            redirectAttributes.addFlashAttribute("error", "加载结账页面失败，请稍后重试");
             return "redirect:/cart";
         }
     }
@@ -102,6 +150,23 @@ public class OrderController {
                 return "redirect:/orders/checkout";
             }
             
+            // 开启下单排队时进入队列，跳转到凭证页面等待结果
+            if (admissionQueue.isEnabled()) {
+                Optional<OrderTicket> ticketOpt = admissionQueue.submit(
+                    currentUser, 
+                    shippingAddress.trim(), 
+                    recipientName.trim(), 
+                    recipientPhone.trim(), 
+                    paymentMethod, 
+                    notes.trim()
+                );
+                if (ticketOpt.isEmpty()) {
+                    redirectAttributes.addFlashAttribute("error", "当前下单人数过多，请稍后再试");
+                    return "redirect:/orders/checkout";
+                }
+                return "redirect:/orders/tickets/" + ticketOpt.get().getId();
+            }
+            
             Optional<Order> orderOpt = orderService.createOrder(
                 currentUser, 
                 shippingAddress.trim(), 
@@ -126,6 +191,31 @@ public class OrderController {
         }
     }
     
+    /**
+     * 显示排队下单的凭证页面（页面轮询下单结果，成功后跳转到订单详情）
+     */
+    @GetMapping("/tickets/{ticketId}")
+    public String showTicket(@PathVariable String ticketId, HttpSession session, Model model) {
+        User currentUser = (User) session.getAttribute("currentUser");
+        if (currentUser == null) {
+            return "redirect:/auth/login";
+        }
+        
+        Optional<OrderTicket> ticketOpt = admissionQueue.getTicket(ticketId, currentUser.getId());
+        if (ticketOpt.isEmpty()) {
+            model.addAttribute("error", "下单凭证不存在或已过期");
+            return "orders/order-not-found";
+        }
+        
+        OrderTicket ticket = ticketOpt.get();
+        if (ticket.getStatus() == OrderTicket.TicketStatus.COMPLETED) {
+            return "redirect:/orders/" + ticket.getOrderNumber();
+        }
+        model.addAttribute("ticket", ticket);
+        model.addAttribute("position", admissionQueue.positionOf(ticket));
+        return "orders/ticket";
+    }
+    
     /**
      * 显示订单详情页面
      */
@@ -173,6 +263,7 @@ public class OrderController {
     public String showOrderHistory(@RequestParam(defaultValue = "0") int page,
                                   @RequestParam(defaultValue = "10") int size,
                                   @RequestParam(defaultValue = "") String status,
+                                  @RequestParam(required = false) String cursor,
                                   HttpSession session,
                                   Model model) {
         User currentUser = (User) session.getAttribute("currentUser");
@@ -181,6 +272,23 @@ public class OrderController {
         }
         
         try {
+            // 传入 cursor 参数时使用游标分页
+            if (cursor != null) {
+                Order.OrderStatus orderStatus = null;
+                if (!status.isEmpty()) {
+                    try {
+                        orderStatus = Order.OrderStatus.valueOf(status.toUpperCase());
+                    } catch (IllegalArgumentException e) {
+                        // 无效状态按全部状态处理
+                    }
+                }
+                model.addAttribute("orderPage", orderService.getUserOrders(currentUser, orderStatus, cursor, size));
+                model.addAttribute("cursorMode", true);
+                model.addAttribute("currentStatus", status);
+                model.addAttribute("orderStatuses", Order.OrderStatus.values());
+                return "orders/order-history";
+            }
+            
             Page<Order> orderPage;
             
             if (status.isEmpty()) {
@@ -358,4 +466,14 @@ public class OrderController {
             return "redirect:/products/" + productId;
         }
     }
+    
+    /**
+     * 按商品合并购物车数量
+     */
+    private static Map<Long, Integer> quantitiesOf(CartSummary summary) {
+        Map<Long, Integer> quantities = new HashMap<>();
+        summary.getItems().forEach(item ->
+                quantities.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum));
+        return quantities;
+    }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.nusiss.shoppingcart.controller;
 
+import com.nusiss.shoppingcart.dto.ProductCard;
 import com.nusiss.shoppingcart.entity.Product;
 import com.nusiss.shoppingcart.service.ProductService;
 import org.slf4j.Logger;
@@ -42,7 +43,7 @@ public class ProductController {
                               Model model) {
         
         try {
-            Page<Product> productPage;
+            Page<ProductCard> productPage;
             
             // 根据不同条件进行查询
             if (!q.trim().isEmpty()) {
@@ -76,9 +77,9 @@ public class ProductController {
             model.addAttribute("category", category);
             model.addAttribute("brand", brand);
             
-            // 添加分类和品牌列表用于筛选
-            model.addAttribute("categories", productService.getAllCategories());
-            model.addAttribute("brands", productService.getAllBrands());
+            // 添加分类和品牌筛选项（含商品数量）
+            model.addAttribute("categories", productService.getCategoryFacets());
+            model.addAttribute("brands", productService.getBrandFacets());
             
             // 分页导航信息
             model.addAttribute("hasPrevious", productPage.hasPrevious());
@@ -107,16 +108,8 @@ public class ProductController {
                 Product product = productOpt.get();
                 model.addAttribute("product", product);
                 
-                // 获取相关商品（同分类的其他商品）
-                if (product.getCategory() != null) {
-                    Page<Product> relatedProducts = productService.getProductsByCategory(
-                        product.getCategory(), 0, 4);
-                    model.addAttribute("relatedProducts", 
-                        relatedProducts.getContent().stream()
-                            .filter(p -> !p.getId().equals(id))
-                            .limit(4)
-                            .toList());
-                }
+                // 获取相关商品推荐
+                model.addAttribute("relatedProducts", productService.getRelatedProducts(product, 4));
                 
                 return "product-detail";
             } else {
@@ -138,7 +131,7 @@ public class ProductController {
                                  @RequestParam(defaultValue = "12") int size,
                                  Model model) {
         try {
-            Page<Product> productPage = productService.getPopularProducts(page, size);
+            Page<ProductCard> productPage = productService.getPopularProducts(page, size);
             
             model.addAttribute("products", productPage.getContent());
             model.addAttribute("currentPage", page);
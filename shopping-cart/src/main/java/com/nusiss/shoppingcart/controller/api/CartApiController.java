@@ -1,22 +1,33 @@
 package com.nusiss.shoppingcart.controller.api;
 
-import com.nusiss.shoppingcart.entity.CartItem;
+import com.nusiss.shoppingcart.cart.CartReaper;
+import com.nusiss.shoppingcart.dto.CartBatchResult;
+import com.nusiss.shoppingcart.dto.CartDelta;
+import com.nusiss.shoppingcart.dto.CartLine;
+import com.nusiss.shoppingcart.dto.CartOperation;
+import com.nusiss.shoppingcart.dto.CartSummary;
+import com.nusiss.shoppingcart.dto.CartTotals;
 import com.nusiss.shoppingcart.entity.User;
+import com.nusiss.shoppingcart.exception.BusinessException;
+import com.nusiss.shoppingcart.retry.ConflictRetryAspect;
 import com.nusiss.shoppingcart.service.CartService;
+import com.nusiss.shoppingcart.service.GuestCartService;
 import jakarta.servlet.http.HttpSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * 购物车REST API控制器
- * 为React前端提供购物车相关的API接口
+ * 为React前端提供购物车相关的API接口；未登录时使用游客购物车（批量修改除外）
  * @author SpringCA Team
  */
 @RestController
@@ -27,40 +38,56 @@ public class CartApiController {
     private static final Logger log = LoggerFactory.getLogger(CartApiController.class);
     
     private final CartService cartService;
+    private final GuestCartService guestCartService;
+    private final CartReaper cartReaper;
+    private final ConflictRetryAspect conflictRetryAspect;
+    private final String adminUsername;
     
-    public CartApiController(CartService cartService) {
+    public CartApiController(CartService cartService, GuestCartService guestCartService, CartReaper cartReaper,
+                             ConflictRetryAspect conflictRetryAspect,
+                             @Value("${app.admin.username:admin}") String adminUsername) {
         this.cartService = cartService;
+        this.guestCartService = guestCartService;
+        this.cartReaper = cartReaper;
+        this.conflictRetryAspect = conflictRetryAspect;
+        this.adminUsername = adminUsername;
     }
     
     /**
      * 获取购物车信息
+     * 带 sinceVersion 时按版本增量同步：版本未变返回 304，客户端版本较旧时只返回之后变更过的商品行
+     * 及当前全部购物车项ID，无法比较时（如版本大于当前版本）返回完整购物车；未登录时返回游客购物车
      */
     @GetMapping
-    public ResponseEntity<Map<String, Object>> getCart(HttpSession session) {
+    public ResponseEntity<Map<String, Object>> getCart(
+            @RequestParam(required = false) Long sinceVersion,
+            HttpSession session) {
         try {
             User currentUser = (User) session.getAttribute("currentUser");
             if (currentUser == null) {
-                Map<String, Object> errorResponse = new HashMap<>();
-                errorResponse.put("success", false);
-                errorResponse.put("message", "用户未登录");
-                errorResponse.put("code", "UNAUTHORIZED");
-                return ResponseEntity.status(401).body(errorResponse);
+                CartTotals totals = guestCartService.getCartTotals(session.getId());
+                if (sinceVersion != null && sinceVersion == totals.getVersion()) {
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+                }
+                return ResponseEntity.ok(cartResponse(guestCartService.getCartSummary(session.getId()),
+                        totals.getVersion()));
             }
             
-            List<CartItem> cartItems = cartService.getCartItems(currentUser);
-            BigDecimal totalAmount = cartService.getCartTotalAmount(currentUser);
-            int totalQuantity = cartItems.stream().mapToInt(CartItem::getQuantity).sum();
-            
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("data", Map.of(
-                "items", cartItems,
-                "totalAmount", totalAmount,
-                "totalQuantity", totalQuantity,
-                "isEmpty", cartItems.isEmpty()
-            ));
+            // 先读版本号，之后读到的商品行不会比该版本旧
+            CartTotals totals = cartService.getCartTotals(currentUser);
+            if (sinceVersion != null && sinceVersion == totals.getVersion()) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+            }
+            if (sinceVersion != null && sinceVersion >= 0 && sinceVersion < totals.getVersion()) {
+                CartDelta delta = cartService.getCartChangesSince(currentUser, sinceVersion, totals);
+                
+                Map<String, Object> response = new HashMap<>();
+                response.put("success", true);
+                response.put("data", deltaData(delta));
+                return ResponseEntity.ok(response);
+            }
             
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(cartResponse(cartService.getCartSummary(currentUser), totals.getVersion()));
             
         } catch (Exception e) {
             log.error("获取购物车信息失败", e);
@@ -82,14 +109,6 @@ public class CartApiController {
         
         try {
             User currentUser = (User) session.getAttribute("currentUser");
-            if (currentUser == null) {
-                Map<String, Object> errorResponse = new HashMap<>();
-                errorResponse.put("success", false);
-                errorResponse.put("message", "用户未登录");
-                errorResponse.put("code", "UNAUTHORIZED");
-                return ResponseEntity.status(401).body(errorResponse);
-            }
-            
             if (quantity <= 0) {
                 Map<String, Object> errorResponse = new HashMap<>();
                 errorResponse.put("success", false);
@@ -97,21 +116,16 @@ public class CartApiController {
                 return ResponseEntity.badRequest().body(errorResponse);
             }
             
-            boolean success = cartService.addToCart(currentUser, productId, quantity);
+            Optional<CartDelta> delta = currentUser != null
+                    ? cartService.addItem(currentUser, productId, quantity)
+                    : guestCartService.addItem(session.getId(), productId, quantity);
             
-            if (success) {
-                // 返回更新后的购物车信息
-                List<CartItem> cartItems = cartService.getCartItems(currentUser);
-                BigDecimal totalAmount = cartService.getCartTotalAmount(currentUser);
-                int totalQuantity = cartItems.stream().mapToInt(CartItem::getQuantity).sum();
-                
+            if (delta.isPresent()) {
+                // 返回变更的商品行及更新后的汇总
                 Map<String, Object> response = new HashMap<>();
                 response.put("success", true);
                 response.put("message", "商品已添加到购物车");
-                response.put("data", Map.of(
-                    "totalQuantity", totalQuantity,
-                    "totalAmount", totalAmount
-                ));
+                response.put("data", deltaData(delta.get()));
                 
                 return ResponseEntity.ok(response);
             } else {
@@ -141,14 +155,6 @@ public class CartApiController {
         
         try {
             User currentUser = (User) session.getAttribute("currentUser");
-            if (currentUser == null) {
-                Map<String, Object> errorResponse = new HashMap<>();
-                errorResponse.put("success", false);
-                errorResponse.put("message", "用户未登录");
-                errorResponse.put("code", "UNAUTHORIZED");
-                return ResponseEntity.status(401).body(errorResponse);
-            }
-            
             if (quantity <= 0) {
                 Map<String, Object> errorResponse = new HashMap<>();
                 errorResponse.put("success", false);
@@ -156,21 +162,16 @@ public class CartApiController {
                 return ResponseEntity.badRequest().body(errorResponse);
             }
             
-            boolean success = cartService.updateCartItemQuantity(currentUser, cartItemId, quantity);
+            Optional<CartDelta> delta = currentUser != null
+                    ? cartService.updateItem(currentUser, cartItemId, quantity)
+                    : guestCartService.updateItem(session.getId(), cartItemId, quantity);
             
-            if (success) {
-                // 返回更新后的购物车信息
-                List<CartItem> cartItems = cartService.getCartItems(currentUser);
-                BigDecimal totalAmount = cartService.getCartTotalAmount(currentUser);
-                int totalQuantity = cartItems.stream().mapToInt(CartItem::getQuantity).sum();
-                
+            if (delta.isPresent()) {
+                // 返回变更的商品行及更新后的汇总
                 Map<String, Object> response = new HashMap<>();
                 response.put("success", true);
                 response.put("message", "购物车已更新");
-                response.put("data", Map.of(
-                    "totalQuantity", totalQuantity,
-                    "totalAmount", totalAmount
-                ));
+                response.put("data", deltaData(delta.get()));
                 
                 return ResponseEntity.ok(response);
             } else {
@@ -199,30 +200,16 @@ public class CartApiController {
         
         try {
             User currentUser = (User) session.getAttribute("currentUser");
-            if (currentUser == null) {
-                Map<String, Object> errorResponse = new HashMap<>();
-                errorResponse.put("success", false);
-                errorResponse.put("message", "用户未登录");
-                errorResponse.put("code", "UNAUTHORIZED");
-                return ResponseEntity.status(401).body(errorResponse);
-            }
+            Optional<CartDelta> delta = currentUser != null
+                    ? cartService.removeItem(currentUser, cartItemId)
+                    : guestCartService.removeItem(session.getId(), cartItemId);
             
-            boolean success = cartService.removeFromCart(currentUser, cartItemId);
-            
-            if (success) {
-                // 返回更新后的购物车信息
-                List<CartItem> cartItems = cartService.getCartItems(currentUser);
-                BigDecimal totalAmount = cartService.getCartTotalAmount(currentUser);
-                int totalQuantity = cartItems.stream().mapToInt(CartItem::getQuantity).sum();
-                
+            if (delta.isPresent()) {
+                // 返回被删除的购物车项ID及更新后的汇总
                 Map<String, Object> response = new HashMap<>();
                 response.put("success", true);
                 response.put("message", "商品已从购物车中删除");
-                response.put("data", Map.of(
-                    "totalQuantity", totalQuantity,
-                    "totalAmount", totalAmount,
-                    "isEmpty", cartItems.isEmpty()
-                ));
+                response.put("data", deltaData(delta.get()));
                 
                 return ResponseEntity.ok(response);
             } else {
@@ -242,10 +229,15 @@ public class CartApiController {
     }
     
     /**
-     * 清空购物车
+     * 批量修改购物车
+     * 请求体为操作列表，如 [{"op":"add","productId":1,"quantity":2},{"op":"remove","cartItemId":5}]，
+     * 所有操作在一个事务中整体生效，任一操作失败时购物车不做任何修改
      */
-    @DeleteMapping("/clear")
-    public ResponseEntity<Map<String, Object>> clearCart(HttpSession session) {
+    @PostMapping("/batch")
+    public ResponseEntity<Map<String, Object>> batchUpdate(
+            @RequestBody List<CartOperation> operations,
+            HttpSession session) {
+        
         try {
             User currentUser = (User) session.getAttribute("currentUser");
             if (currentUser == null) {
@@ -256,15 +248,68 @@ public class CartApiController {
                 return ResponseEntity.status(401).body(errorResponse);
             }
             
-            cartService.clearCart(currentUser);
+            CartBatchResult result = cartService.applyBatch(currentUser, operations);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", result.isApplied());
+            response.put("message", result.isApplied() ? "购物车已更新" : "批量操作未执行，购物车未修改");
+            if (!result.isApplied()) {
+                CartTotals totals = result.getTotals();
+                response.put("data", Map.of(
+                    "operationCount", result.getOperationCount(),
+                    "totalQuantity", totals.getTotalQuantity(),
+                    "totalAmount", totals.getTotalAmount(),
+                    "isEmpty", totals.isEmpty(),
+                    "version", totals.getVersion()
+                ));
+                response.put("errors", result.getErrors());
+                return ResponseEntity.badRequest().body(response);
+            }
+            
+            Map<String, Object> data = deltaData(result.getDelta());
+            data.put("operationCount", result.getOperationCount());
+            response.put("data", data);
+            return ResponseEntity.ok(response);
+            
+        } catch (BusinessException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("code", e.getCode());
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(e.getHttpStatus()).body(errorResponse);
+        } catch (Exception e) {
+            log.error("批量修改购物车失败", e);
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "批量修改购物车失败：" + e.getMessage());
+            return ResponseEntity.internalServerError().body(errorResponse);
+        }
+    }
+    
+    /**
+     * 清空购物车
+     */
+    @DeleteMapping("/clear")
+    public ResponseEntity<Map<String, Object>> clearCart(HttpSession session) {
+        try {
+            User currentUser = (User) session.getAttribute("currentUser");
+            CartTotals totals;
+            if (currentUser != null) {
+                cartService.clearCart(currentUser);
+                totals = cartService.getCartTotals(currentUser);
+            } else {
+                guestCartService.clearCart(session.getId());
+                totals = guestCartService.getCartTotals(session.getId());
+            }
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("message", "购物车已清空");
             response.put("data", Map.of(
-                "totalQuantity", 0,
-                "totalAmount", BigDecimal.ZERO,
-                "isEmpty", true
+                "totalQuantity", totals.getTotalQuantity(),
+                "totalAmount", totals.getTotalAmount(),
+                "isEmpty", totals.isEmpty(),
+                "version", totals.getVersion()
             ));
             
             return ResponseEntity.ok(response);
@@ -285,19 +330,13 @@ public class CartApiController {
     public ResponseEntity<Map<String, Object>> getCartCount(HttpSession session) {
         try {
             User currentUser = (User) session.getAttribute("currentUser");
-            if (currentUser == null) {
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", true);
-                response.put("data", Map.of("count", 0));
-                return ResponseEntity.ok(response);
-            }
-            
-            List<CartItem> cartItems = cartService.getCartItems(currentUser);
-            int totalQuantity = cartItems.stream().mapToInt(CartItem::getQuantity).sum();
+            CartTotals totals = currentUser != null
+                    ? cartService.getCartTotals(currentUser)
+                    : guestCartService.getCartTotals(session.getId());
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("data", Map.of("count", totalQuantity));
+            response.put("data", Map.of("count", totals.getTotalQuantity()));
             
             return ResponseEntity.ok(response);
             
@@ -309,4 +348,85 @@ public class CartApiController {
             return ResponseEntity.internalServerError().body(errorResponse);
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * 获取购物车写回统计信息（仅管理员）
+     */
+    @GetMapping("/write-behind/stats")
+    public ResponseEntity<Map<String, Object>> getWriteBehindStats(HttpSession session) {
+        requireAdmin(session);
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", cartService.getWriteBehindStats());
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * 获取废弃购物车清理统计信息（仅管理员）
+     */
+    @GetMapping("/reaper/stats")
+    public ResponseEntity<Map<String, Object>> getReaperStats(HttpSession session) {
+        requireAdmin(session);
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", cartReaper.getStats());
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * 获取购物车并发修改冲突与重试统计信息（仅管理员）
+     */
+    @GetMapping("/conflicts/stats")
+    public ResponseEntity<Map<String, Object>> getConflictStats(HttpSession session) {
+        requireAdmin(session);
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", conflictRetryAspect.getStats());
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * 完整购物车响应
+     */
+    private static Map<String, Object> cartResponse(CartSummary summary, long version) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", Map.of(
+            "items", summary.getItems().stream().map(CartLine::from).toList(),
+            "totalAmount", summary.getTotalAmount(),
+            "totalQuantity", summary.getTotalQuantity(),
+            "isEmpty", summary.isEmpty(),
+            "stockValid", summary.isStockValid(),
+            "version", version
+        ));
+        return response;
+    }
+    
+    /**
+     * 增量响应数据：变更的商品行、删除的购物车项ID、汇总及版本号
+     */
+    private static Map<String, Object> deltaData(CartDelta delta) {
+        CartTotals totals = delta.getTotals();
+        Map<String, Object> data = new HashMap<>();
+        data.put("items", delta.getLines());
+        data.put("removedItemIds", delta.getRemovedItemIds());
+        if (delta.getItemIds() != null) {
+            data.put("itemIds", delta.getItemIds());
+        }
+        data.put("totalQuantity", totals.getTotalQuantity());
+        data.put("totalAmount", totals.getTotalAmount());
+        data.put("isEmpty", totals.isEmpty());
+        data.put("version", totals.getVersion());
+        return data;
+    }
+    
+    private void requireAdmin(HttpSession session) {
+        User currentUser = (User) session.getAttribute("currentUser");
+        if (currentUser == null) {
+            throw BusinessException.userNotLoggedIn();
+        }
+        if (!adminUsername.equals(currentUser.getUsername())) {
+            throw BusinessException.accessDenied();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.nusiss.shoppingcart.controller.api;
+
+import com.nusiss.shoppingcart.entity.User;
+import com.nusiss.shoppingcart.exception.BusinessException;
+import com.nusiss.shoppingcart.inventory.FlashSaleBenchmark;
+import com.nusiss.shoppingcart.inventory.FlashSaleReconciler;
+import com.nusiss.shoppingcart.inventory.FlashSaleStock;
+import com.nusiss.shoppingcart.service.InventoryService;
+import jakarta.servlet.http.HttpSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 秒杀REST API控制器
+ * 开启、关闭商品秒杀，手动对账，查看秒杀统计和压测；管理操作只允许管理员账号调用
+ * @author SpringCA Team
+ */
+@RestController
+@RequestMapping("/api/flash-sale")
+@CrossOrigin(origins = {"http://localhost:3000", "http://localhost:8080"})
+public class FlashSaleApiController {
+
+    private static final Logger log = LoggerFactory.getLogger(FlashSaleApiController.class);
+
+    private final InventoryService inventoryService;
+    private final FlashSaleStock flashSaleStock;
+    private final FlashSaleReconciler flashSaleReconciler;
+    private final FlashSaleBenchmark flashSaleBenchmark;
+    private final String adminUsername;
+
+    public FlashSaleApiController(InventoryService inventoryService,
+                                  FlashSaleStock flashSaleStock,
+                                  FlashSaleReconciler flashSaleReconciler,
+                                  FlashSaleBenchmark flashSaleBenchmark,
+                                  @Value("${app.admin.username:admin}") String adminUsername) {
+        this.inventoryService = inventoryService;
+        this.flashSaleStock = flashSaleStock;
+        this.flashSaleReconciler = flashSaleReconciler;
+        this.flashSaleBenchmark = flashSaleBenchmark;
+        this.adminUsername = adminUsername;
+    }
+
+    /**
+     * 开启商品秒杀
+     */
+    @PostMapping("/products/{productId}")
+    public ResponseEntity<Map<String, Object>> start(@PathVariable Long productId, HttpSession session) {
+        requireAdmin(session);
+        boolean started = inventoryService.startFlashSale(productId);
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", started);
+        response.put("message", started ? "秒杀已开启" : "商品已在秒杀中或上一次秒杀尚未对账完成");
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 关闭商品秒杀，并立即把净扣减写回商品库存
+     */
+    @DeleteMapping("/products/{productId}")
+    public ResponseEntity<Map<String, Object>> stop(@PathVariable Long productId, HttpSession session) {
+        requireAdmin(session);
+        boolean stopped = flashSaleStock.deactivate(productId);
+        Map<Long, Long> reconciled = flashSaleReconciler.reconcile();
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", stopped);
+        response.put("message", stopped ? "秒杀已关闭" : "商品不在秒杀中");
+        response.put("data", reconciled);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 立即对账：把各秒杀商品的净扣减写回商品库存
+     */
+    @PostMapping("/reconcile")
+    public ResponseEntity<Map<String, Object>> reconcile(HttpSession session) {
+        requireAdmin(session);
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", flashSaleReconciler.reconcile());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 获取秒杀统计信息（计数器和对账情况）
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getStats(HttpSession session) {
+        requireAdmin(session);
+        Map<String, Object> data = new HashMap<>();
+        data.put("stock", flashSaleStock.getStats());
+        data.put("reconciler", flashSaleReconciler.getStats());
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", data);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 压测：对比分片计数器、单分片计数器和商品行锁的扣减吞吐量（不修改实际库存）
+     */
+    @PostMapping("/benchmark")
+    public ResponseEntity<Map<String, Object>> benchmark(@RequestParam Long productId,
+                                                         @RequestParam(defaultValue = "16") int threads,
+                                                         @RequestParam(defaultValue = "10000") int operations,
+                                                         HttpSession session) {
+        requireAdmin(session);
+        if (!flashSaleBenchmark.isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", flashSaleBenchmark.run(productId, threads, operations));
+            return ResponseEntity.ok(response);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "压测被中断");
+            return ResponseEntity.internalServerError().body(errorResponse);
+        } catch (Exception e) {
+            log.error("秒杀压测失败", e);
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "压测失败：" + e.getMessage());
+            return ResponseEntity.internalServerError().body(errorResponse);
+        }
+    }
+
+    private void requireAdmin(HttpSession session) {
+        User currentUser = (User) session.getAttribute("currentUser");
+        if (currentUser == null) {
+            throw BusinessException.userNotLoggedIn();
+        }
+        if (!adminUsername.equals(currentUser.getUsername())) {
+            throw BusinessException.accessDenied();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.nusiss.shoppingcart.controller.api;
+
+import com.nusiss.shoppingcart.entity.Order;
+import com.nusiss.shoppingcart.entity.User;
+import com.nusiss.shoppingcart.exception.BusinessException;
+import com.nusiss.shoppingcart.order.OrderAdmissionQueue;
+import com.nusiss.shoppingcart.order.OrderEventRelay;
+import com.nusiss.shoppingcart.order.OrderTicket;
+import com.nusiss.shoppingcart.service.OrderService;
+import jakarta.servlet.http.HttpSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 订单REST API控制器
+ * 开启下单排队时，下单请求返回 202 和下单凭证，客户端轮询凭证或带 waitMs 参数挂起等待结果；
+ * 队列已满时返回 503 和 Retry-After，提示稍后重试
+ * @author SpringCA Team
+ */
+@RestController
+@RequestMapping("/api/orders")
+@CrossOrigin(origins = {"http://localhost:3000", "http://localhost:8080"})
+public class OrderApiController {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderApiController.class);
+
+    // 挂起等待下单结果的最长时间（小于异步请求超时时间）
+    private static final long MAX_WAIT_MILLIS = 20_000;
+    // 队列已满时建议客户端重试的间隔（秒）
+    private static final String RETRY_AFTER_SECONDS = "5";
+
+    private final OrderService orderService;
+    private final OrderAdmissionQueue admissionQueue;
+    private final OrderEventRelay orderEventRelay;
+    private final String adminUsername;
+
+    public OrderApiController(OrderService orderService, OrderAdmissionQueue admissionQueue,
+                              OrderEventRelay orderEventRelay,
+                              @Value("${app.admin.username:admin}") String adminUsername) {
+        this.orderService = orderService;
+        this.admissionQueue = admissionQueue;
+        this.orderEventRelay = orderEventRelay;
+        this.adminUsername = adminUsername;
+    }
+
+    /**
+     * 创建订单
+     * 请求体：shippingAddress、recipientName、recipientPhone、paymentMethod、notes
+     */
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> createOrder(@RequestBody Map<String, String> request,
+                                                           HttpSession session) {
+        Map<String, Object> response = new HashMap<>();
+        User currentUser = (User) session.getAttribute("currentUser");
+        if (currentUser == null) {
+            response.put("success", false);
+            response.put("message", "请先登录");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
+        }
+
+        String shippingAddress = request.getOrDefault("shippingAddress", "").trim();
+        String recipientName = request.getOrDefault("recipientName", "").trim();
+        String recipientPhone = request.getOrDefault("recipientPhone", "").trim();
+        String paymentMethod = request.getOrDefault("paymentMethod", "在线支付");
+        String notes = request.getOrDefault("notes", "").trim();
+        if (shippingAddress.isEmpty() || recipientName.isEmpty() || recipientPhone.isEmpty()) {
+            response.put("success", false);
+            response.put("message", "请填写完整的收货信息");
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        if (admissionQueue.isEnabled()) {
+            Optional<OrderTicket> ticketOpt = admissionQueue.submit(currentUser, shippingAddress, recipientName,
+                    recipientPhone, paymentMethod, notes);
+            if (ticketOpt.isEmpty()) {
+                response.put("success", false);
+                response.put("message", "当前下单人数过多，请稍后再试");
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                        .body(response);
+            }
+            response.put("success", true);
+            response.put("message", "订单已进入排队");
+            response.put("data", ticketOpt.get());
+            response.put("position", admissionQueue.positionOf(ticketOpt.get()));
+            return ResponseEntity.accepted().body(response);
+        }
+
+        try {
+            Optional<Order> orderOpt = orderService.createOrder(currentUser, shippingAddress, recipientName,
+                    recipientPhone, paymentMethod, notes);
+            if (orderOpt.isEmpty()) {
+                response.put("success", false);
+                response.put("message", "订单创建失败，请检查商品库存");
+                return ResponseEntity.badRequest().body(response);
+            }
+            response.put("success", true);
+            response.put("message", "订单创建成功");
+            response.put("orderNumber", orderOpt.get().getOrderNumber());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("创建订单失败", e);
+            response.put("success", false);
+            response.put("message", "订单创建失败，请稍后重试");
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
+    /**
+     * 查询下单凭证
+     * waitMs 大于 0 时挂起等待（不占用 Web 线程），下单完成或超时后返回凭证当前状态
+     */
+    @GetMapping("/tickets/{ticketId}")
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> getTicket(
+            @PathVariable String ticketId,
+            @RequestParam(defaultValue = "0") long waitMs,
+            HttpSession session) {
+        User currentUser = (User) session.getAttribute("currentUser");
+        if (currentUser == null) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "请先登录");
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(errorResponse));
+        }
+
+        Optional<OrderTicket> ticketOpt = admissionQueue.getTicket(ticketId, currentUser.getId());
+        if (ticketOpt.isEmpty()) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "下单凭证不存在或已过期");
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse));
+        }
+
+        OrderTicket ticket = ticketOpt.get();
+        CompletableFuture<OrderTicket> result = waitMs > 0 && !ticket.isDone()
+                ? admissionQueue.await(ticket, Math.min(waitMs, MAX_WAIT_MILLIS))
+                : CompletableFuture.completedFuture(ticket);
+        return result.thenApply(current -> {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", current);
+            response.put("position", admissionQueue.positionOf(current));
+            return ResponseEntity.ok(response);
+        });
+    }
+
+    /**
+     * 获取下单排队统计信息（队列长度、排队时间、拒绝数等），仅管理员
+     */
+    @GetMapping("/admission/stats")
+    public ResponseEntity<Map<String, Object>> getAdmissionStats(HttpSession session) {
+        requireAdmin(session);
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", admissionQueue.getStats());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 获取订单事件投递统计信息（积压事件数、投递延迟、失败次数等），仅管理员
+     */
+    @GetMapping("/events/stats")
+    public ResponseEntity<Map<String, Object>> getEventStats(HttpSession session) {
+        requireAdmin(session);
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", orderEventRelay.getStats());
+        return ResponseEntity.ok(response);
+    }
+
+    private void requireAdmin(HttpSession session) {
+        User currentUser = (User) session.getAttribute("currentUser");
+        if (currentUser == null) {
+            throw BusinessException.userNotLoggedIn();
+        }
+        if (!adminUsername.equals(currentUser.getUsername())) {
+            throw BusinessException.accessDenied();
+        }
+    }
+}
@@ -1,13 +1,30 @@
 package com.nusiss.shoppingcart.controller.api;
 
+import com.nusiss.shoppingcart.catalog.ProductFilter;
+import com.nusiss.shoppingcart.dto.ProductCard;
 import com.nusiss.shoppingcart.entity.Product;
+import com.nusiss.shoppingcart.entity.User;
+import com.nusiss.shoppingcart.exception.BusinessException;
+import com.nusiss.shoppingcart.inventory.ReservationSweeper;
+import com.nusiss.shoppingcart.pagination.KeysetPage;
+import com.nusiss.shoppingcart.sales.BestSeller;
+import com.nusiss.shoppingcart.sales.SalesWindow;
+import com.nusiss.shoppingcart.search.ProductSuggestion;
 import com.nusiss.shoppingcart.service.ProductService;
+import jakarta.servlet.http.HttpSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -20,19 +37,34 @@ import java.util.Optional;
  */
 @RestController
 @RequestMapping("/api/products")
-@CrossOrigin(origins = {"http://localhost:3000", "http://localhost:8080"})
+@CrossOrigin(origins = {"http://localhost:3000", "http://localhost:8080"}, exposedHeaders = HttpHeaders.ETAG)
 public class ProductApiController {
     
     private static final Logger log = LoggerFactory.getLogger(ProductApiController.class);
     
+    // 商品详情中的推荐商品数量
+    private static final int RELATED_PRODUCT_LIMIT = 4;
+    
+    // 热销商品数量上限
+    private static final int MAX_BEST_SELLER_LIMIT = 100;
+    
     private final ProductService productService;
+    private final ReservationSweeper reservationSweeper;
+    private final String adminUsername;
     
-    public ProductApiController(ProductService productService) {
+    public ProductApiController(ProductService productService, ReservationSweeper reservationSweeper,
+                                @Value("${app.admin.username:admin}") String adminUsername) {
         this.productService = productService;
+        this.reservationSweeper = reservationSweeper;
+        this.adminUsername = adminUsername;
     }
     
     /**
      * 获取商品列表（分页）
+     * 传入 cursor 参数（第一页传空字符串）时使用游标分页，否则沿用 page/size 分页；
+     * 关键词搜索按相关度排序，始终使用 page/size 分页；
+     * 非搜索请求可任意组合分类、品牌、价格区间和是否有货筛选；
+     * 响应带目录版本实体标签，If-None-Match 命中时直接返回 304
      */
     @GetMapping
     public ResponseEntity<Map<String, Object>> getProducts(
@@ -42,20 +74,60 @@ public class ProductApiController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "12") int size,
             @RequestParam(defaultValue = "name") String sortBy,
-            @RequestParam(defaultValue = "asc") String sortDir) {
+            @RequestParam(defaultValue = "asc") String sortDir,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) BigDecimal minPrice,
+            @RequestParam(required = false) BigDecimal maxPrice,
+            @RequestParam(defaultValue = "false") boolean inStock,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        
+        String etag = productService.getCatalogETag();
+        if (matches(ifNoneMatch, etag)) {
+            return notModified(etag);
+        }
         
         try {
-            Page<Product> productPage;
+            Page<ProductCard> productPage;
+            
+            if (cursor != null && q.trim().isEmpty()) {
+                KeysetPage<ProductCard> keysetPage;
+                if (!category.trim().isEmpty()) {
+                    keysetPage = productService.getProductsByCategory(category, cursor, size);
+                } else if (!brand.trim().isEmpty()) {
+                    keysetPage = productService.getProductsByBrand(brand, cursor, size);
+                } else {
+                    keysetPage = productService.getAllProducts(cursor, size, sortBy, sortDir);
+                }
+                
+                Map<String, Object> pagination = new HashMap<>();
+                pagination.put("size", keysetPage.getSize());
+                pagination.put("hasNext", keysetPage.hasNext());
+                pagination.put("nextCursor", keysetPage.getNextCursor());
+                
+                Map<String, Object> response = new HashMap<>();
+                response.put("success", true);
+                response.put("data", keysetPage.getContent());
+                response.put("pagination", pagination);
+                response.put("facets", Map.of(
+                    "categories", productService.getCategoryFacets(),
+                    "brands", productService.getBrandFacets()
+                ));
+                response.put("filters", Map.of(
+                    "query", q,
+                    "category", category,
+                    "brand", brand,
+                    "sortBy", sortBy,
+                    "sortDir", sortDir
+                ));
+                return ok(response, etag);
+            }
             
             // 根据不同条件进行查询
             if (!q.trim().isEmpty()) {
                 productPage = productService.searchProducts(q, page, size);
-            } else if (!category.trim().isEmpty()) {
-                productPage = productService.getProductsByCategory(category, page, size);
-            } else if (!brand.trim().isEmpty()) {
-                productPage = productService.getProductsByBrand(brand, page, size);
             } else {
-                productPage = productService.getAllProducts(page, size, sortBy, sortDir);
+                ProductFilter filter = new ProductFilter(category, brand, minPrice, maxPrice, inStock);
+                productPage = productService.filterProducts(filter, page, size, sortBy, sortDir);
             }
             
             Map<String, Object> response = new HashMap<>();
@@ -69,16 +141,29 @@ public class ProductApiController {
                 "hasNext", productPage.hasNext(),
                 "hasPrevious", productPage.hasPrevious()
             ));
-            response.put("filters", Map.of(
-                "query", q,
-                "category", category,
-                "brand", brand,
-                "sortBy", sortBy,
-                "sortDir", sortDir
+            response.put("facets", Map.of(
+                "categories", productService.getCategoryFacets(),
+                "brands", productService.getBrandFacets()
             ));
+            Map<String, Object> filters = new HashMap<>();
+            filters.put("query", q);
+            filters.put("category", category);
+            filters.put("brand", brand);
+            filters.put("minPrice", minPrice);
+            filters.put("maxPrice", maxPrice);
+            filters.put("inStock", inStock);
+            filters.put("sortBy", sortBy);
+            filters.put("sortDir", sortDir);
+            response.put("filters", filters);
             
-            return ResponseEntity.ok(response);
+            return ok(response, etag);
             
+        } catch (BusinessException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("code", e.getCode());
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(e.getHttpStatus()).body(errorResponse);
         } catch (Exception e) {
             log.error("获取商品列表失败", e);
             Map<String, Object> errorResponse = new HashMap<>();
@@ -90,9 +175,17 @@ public class ProductApiController {
     
     /**
      * 获取商品详情
+     * 响应带商品版本实体标签，If-None-Match 命中时直接返回 304
      */
     @GetMapping("/{id}")
-    public ResponseEntity<Map<String, Object>> getProduct(@PathVariable Long id) {
+    public ResponseEntity<Map<String, Object>> getProduct(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String etag = productService.getProductETag(id, RELATED_PRODUCT_LIMIT);
+        if (matches(ifNoneMatch, etag)) {
+            return notModified(etag);
+        }
+        
         try {
             Optional<Product> productOpt = productService.getProductById(id);
             
@@ -100,14 +193,14 @@ public class ProductApiController {
                 Product product = productOpt.get();
                 
                 // 获取相关商品推荐
-                List<Product> relatedProducts = productService.getRelatedProducts(product, 4);
+                List<ProductCard> relatedProducts = productService.getRelatedProducts(product, RELATED_PRODUCT_LIMIT);
                 
                 Map<String, Object> response = new HashMap<>();
                 response.put("success", true);
                 response.put("data", product);
                 response.put("relatedProducts", relatedProducts);
                 
-                return ResponseEntity.ok(response);
+                return ok(response, etag);
             } else {
                 Map<String, Object> errorResponse = new HashMap<>();
                 errorResponse.put("success", false);
@@ -128,7 +221,13 @@ public class ProductApiController {
      * 获取商品分类列表
      */
     @GetMapping("/categories")
-    public ResponseEntity<Map<String, Object>> getCategories() {
+    public ResponseEntity<Map<String, Object>> getCategories(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String etag = productService.getCatalogETag();
+        if (matches(ifNoneMatch, etag)) {
+            return notModified(etag);
+        }
+        
         try {
             List<String> categories = productService.getAllCategories();
             
@@ -136,7 +235,7 @@ public class ProductApiController {
             response.put("success", true);
             response.put("data", categories);
             
-            return ResponseEntity.ok(response);
+            return ok(response, etag);
             
         } catch (Exception e) {
             log.error("获取商品分类失败", e);
@@ -151,7 +250,13 @@ public class ProductApiController {
      * 获取商品品牌列表
      */
     @GetMapping("/brands")
-    public ResponseEntity<Map<String, Object>> getBrands() {
+    public ResponseEntity<Map<String, Object>> getBrands(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String etag = productService.getCatalogETag();
+        if (matches(ifNoneMatch, etag)) {
+            return notModified(etag);
+        }
+        
         try {
             List<String> brands = productService.getAllBrands();
             
@@ -159,7 +264,7 @@ public class ProductApiController {
             response.put("success", true);
             response.put("data", brands);
             
-            return ResponseEntity.ok(response);
+            return ok(response, etag);
             
         } catch (Exception e) {
             log.error("获取商品品牌失败", e);
@@ -170,6 +275,90 @@ public class ProductApiController {
         }
     }
     
+    /**
+     * 获取商品缓存统计信息（仅管理员）
+     */
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats(HttpSession session) {
+        requireAdmin(session);
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", productService.getProductCacheStats());
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * 获取商品的可售库存（库存减去有效的库存占用）
+     */
+    @GetMapping("/{id}/availability")
+    public ResponseEntity<Map<String, Object>> getAvailability(@PathVariable Long id) {
+        Optional<Product> productOpt = productService.getProductById(id);
+        if (productOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", productService.getStockAvailability(productOpt.get()));
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * 获取库存占用统计信息（内存占用数量和过期占用清理情况），仅管理员
+     */
+    @GetMapping("/inventory/stats")
+    public ResponseEntity<Map<String, Object>> getInventoryStats(HttpSession session) {
+        requireAdmin(session);
+        Map<String, Object> data = new HashMap<>();
+        data.put("holds", productService.getStockAvailabilityStats());
+        data.put("sweeper", reservationSweeper.getStats());
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", data);
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * 获取热销商品（window 取值 1h、24h、7d）
+     */
+    @GetMapping("/best-sellers")
+    public ResponseEntity<Map<String, Object>> getBestSellers(
+            @RequestParam(defaultValue = "24h") String window,
+            @RequestParam(defaultValue = "10") int limit) {
+        Optional<SalesWindow> salesWindow = SalesWindow.fromCode(window);
+        if (salesWindow.isEmpty()) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "不支持的统计窗口：" + window);
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+        
+        try {
+            List<Map<String, Object>> bestSellers = new ArrayList<>();
+            int cappedLimit = Math.min(limit, MAX_BEST_SELLER_LIMIT);
+            for (BestSeller bestSeller : productService.getBestSellers(salesWindow.get(), cappedLimit)) {
+                productService.getProductById(bestSeller.getProductId()).ifPresent(product -> {
+                    Map<String, Object> item = new HashMap<>();
+                    item.put("product", product);
+                    item.put("quantity", bestSeller.getQuantity());
+                    bestSellers.add(item);
+                });
+            }
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", bestSellers);
+            response.put("window", salesWindow.get().getCode());
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            log.error("获取热销商品失败", e);
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "获取热销商品失败：" + e.getMessage());
+            return ResponseEntity.internalServerError().body(errorResponse);
+        }
+    }
+    
     /**
      * 搜索商品建议
      */
@@ -183,7 +372,7 @@ public class ProductApiController {
                 return ResponseEntity.ok(response);
             }
             
-            List<Product> suggestions = productService.getSearchSuggestions(q, 5);
+            List<ProductSuggestion> suggestions = productService.getSearchSuggestions(q, 5);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -204,4 +393,35 @@ public class ProductApiController {
             return ResponseEntity.internalServerError().body(errorResponse);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 判断 If-None-Match 是否命中当前实体标签（弱比较，支持逗号分隔的多个标签）
+     */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        return Arrays.stream(ifNoneMatch.split(","))
+                .map(String::trim)
+                .map(tag -> tag.startsWith("W/") ? tag.substring(2) : tag)
+                .anyMatch(etag::equals);
+    }
+    
+    private static ResponseEntity<Map<String, Object>> ok(Map<String, Object> body, String etag) {
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(body);
+    }
+    
+    private static ResponseEntity<Map<String, Object>> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CacheControl.noCache()).build();
+    }
+    
+    private void requireAdmin(HttpSession session) {
+        User currentUser = (User) session.getAttribute("currentUser");
+        if (currentUser == null) {
+            throw BusinessException.userNotLoggedIn();
+        }
+        if (!adminUsername.equals(currentUser.getUsername())) {
+            throw BusinessException.accessDenied();
+        }
+    }
+}
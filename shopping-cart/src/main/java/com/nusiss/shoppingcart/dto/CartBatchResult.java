@@ -0,0 +1,68 @@
+package com.nusiss.shoppingcart.dto;
+
+import java.util.List;
+
+/**
+ * 购物车批量操作结果
+ * 批量操作整体生效或整体不生效：任一操作无效或库存不足时不做任何修改，并列出所有错误
+ * @author SpringCA Team
+ */
+public class CartBatchResult {
+
+    private final boolean applied;
+    private final int operationCount;
+    private final List<String> errors;
+    private final CartTotals totals;
+    private final CartDelta delta;
+
+    private CartBatchResult(boolean applied, int operationCount, List<String> errors, CartTotals totals,
+                            CartDelta delta) {
+        this.applied = applied;
+        this.operationCount = operationCount;
+        this.errors = errors;
+        this.totals = totals;
+        this.delta = delta;
+    }
+
+    /**
+     * 全部操作已生效
+     * @param operationCount 操作数量
+     * @param delta 本次变更的商品行、操作后的汇总及版本号
+     */
+    public static CartBatchResult applied(int operationCount, CartDelta delta) {
+        return new CartBatchResult(true, operationCount, List.of(), delta.getTotals(), delta);
+    }
+
+    /**
+     * 操作被拒绝，购物车未修改
+     * @param operationCount 操作数量
+     * @param errors 错误信息
+     * @param totals 当前购物车汇总
+     */
+    public static CartBatchResult rejected(int operationCount, List<String> errors, CartTotals totals) {
+        return new CartBatchResult(false, operationCount, List.copyOf(errors), totals, null);
+    }
+
+    public boolean isApplied() {
+        return applied;
+    }
+
+    public int getOperationCount() {
+        return operationCount;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public CartTotals getTotals() {
+        return totals;
+    }
+
+    /**
+     * 本次变更的增量，操作被拒绝时为 null
+     */
+    public CartDelta getDelta() {
+        return delta;
+    }
+}
@@ -0,0 +1,68 @@
+package com.nusiss.shoppingcart.dto;
+
+import java.util.List;
+
+/**
+ * 购物车增量
+ * 变更接口返回本次变更的商品行和被删除的购物车项ID；
+ * 按版本同步时返回指定版本之后变更过的商品行和当前全部购物车项ID，客户端据此删除不在列表中的商品行；
+ * 两种情况都附带变更后的汇总及版本号
+ * @author SpringCA Team
+ */
+public class CartDelta {
+
+    private final CartTotals totals;
+    private final List<CartLine> lines;
+    private final List<Long> removedItemIds;
+    private final List<Long> itemIds;
+
+    private CartDelta(CartTotals totals, List<CartLine> lines, List<Long> removedItemIds, List<Long> itemIds) {
+        this.totals = totals;
+        this.lines = lines;
+        this.removedItemIds = removedItemIds;
+        this.itemIds = itemIds;
+    }
+
+    /**
+     * 一次变更产生的增量
+     * @param totals 变更后的购物车汇总
+     * @param lines 新增或修改的商品行
+     * @param removedItemIds 被删除的购物车项ID
+     */
+    public static CartDelta ofChanges(CartTotals totals, List<CartLine> lines, List<Long> removedItemIds) {
+        return new CartDelta(totals, List.copyOf(lines), List.copyOf(removedItemIds), null);
+    }
+
+    /**
+     * 相对客户端已同步版本的增量
+     * @param totals 当前购物车汇总
+     * @param lines 该版本之后变更过的商品行
+     * @param itemIds 当前全部购物车项ID
+     */
+    public static CartDelta since(CartTotals totals, List<CartLine> lines, List<Long> itemIds) {
+        return new CartDelta(totals, List.copyOf(lines), List.of(), List.copyOf(itemIds));
+    }
+
+    public CartTotals getTotals() {
+        return totals;
+    }
+
+    public long getVersion() {
+        return totals.getVersion();
+    }
+
+    public List<CartLine> getLines() {
+        return lines;
+    }
+
+    public List<Long> getRemovedItemIds() {
+        return removedItemIds;
+    }
+
+    /**
+     * 当前全部购物车项ID，仅按版本同步时返回，其余情况为 null
+     */
+    public List<Long> getItemIds() {
+        return itemIds;
+    }
+}
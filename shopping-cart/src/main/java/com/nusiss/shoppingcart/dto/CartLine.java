@@ -0,0 +1,83 @@
+package com.nusiss.shoppingcart.dto;
+
+import com.nusiss.shoppingcart.entity.CartItem;
+import com.nusiss.shoppingcart.entity.Product;
+
+import java.math.BigDecimal;
+
+/**
+ * 购物车商品行
+ * 购物车接口返回的扁平结构，只包含展示和库存校验需要的商品字段，不携带实体关联
+ * @author SpringCA Team
+ */
+public class CartLine {
+
+    private final Long cartItemId;
+    private final Long productId;
+    private final String productName;
+    private final String imageUrl;
+    private final BigDecimal unitPrice;
+    private final int quantity;
+    private final BigDecimal subtotal;
+    private final int stock;
+    private final boolean active;
+
+    private CartLine(Long cartItemId, Long productId, String productName, String imageUrl, BigDecimal unitPrice,
+                     int quantity, BigDecimal subtotal, int stock, boolean active) {
+        this.cartItemId = cartItemId;
+        this.productId = productId;
+        this.productName = productName;
+        this.imageUrl = imageUrl;
+        this.unitPrice = unitPrice;
+        this.quantity = quantity;
+        this.subtotal = subtotal;
+        this.stock = stock;
+        this.active = active;
+    }
+
+    /**
+     * 由购物车项构建（商品需已加载）
+     */
+    public static CartLine from(CartItem item) {
+        Product product = item.getProduct();
+        return new CartLine(item.getId(), product.getId(), product.getName(), product.getImageUrl(),
+                item.getUnitPrice(), item.getQuantity(), item.getSubtotal(), product.getStock(),
+                Boolean.TRUE.equals(product.getActive()));
+    }
+
+    public Long getCartItemId() {
+        return cartItemId;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public String getImageUrl() {
+        return imageUrl;
+    }
+
+    public BigDecimal getUnitPrice() {
+        return unitPrice;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public BigDecimal getSubtotal() {
+        return subtotal;
+    }
+
+    public int getStock() {
+        return stock;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+}
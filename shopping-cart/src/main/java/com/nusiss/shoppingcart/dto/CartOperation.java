@@ -0,0 +1,77 @@
+package com.nusiss.shoppingcart.dto;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * 购物车批量操作项
+ * add 按商品ID累加数量；update、remove 按购物车项ID（或商品ID）定位购物车中的商品
+ * @author SpringCA Team
+ */
+public class CartOperation {
+
+    // 操作类型枚举
+    public enum Type {
+        ADD,
+        UPDATE,
+        REMOVE
+    }
+
+    private String op;
+    private Long productId;
+    private Long cartItemId;
+    private Integer quantity;
+
+    // 构造函数
+    public CartOperation() {}
+
+    public CartOperation(String op, Long productId, Long cartItemId, Integer quantity) {
+        this.op = op;
+        this.productId = productId;
+        this.cartItemId = cartItemId;
+        this.quantity = quantity;
+    }
+
+    /**
+     * 解析操作类型（不区分大小写）
+     */
+    public Optional<Type> resolveType() {
+        if (op == null) {
+            return Optional.empty();
+        }
+        return Arrays.stream(Type.values()).filter(type -> type.name().equalsIgnoreCase(op.trim())).findFirst();
+    }
+
+    // Getter和Setter方法
+    public String getOp() {
+        return op;
+    }
+
+    public void setOp(String op) {
+        this.op = op;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+
+    public Long getCartItemId() {
+        return cartItemId;
+    }
+
+    public void setCartItemId(Long cartItemId) {
+        this.cartItemId = cartItemId;
+    }
+
+    public Integer getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+}
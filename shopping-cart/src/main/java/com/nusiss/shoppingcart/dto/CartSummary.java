@@ -0,0 +1,97 @@
+package com.nusiss.shoppingcart.dto;
+
+import com.nusiss.shoppingcart.entity.CartItem;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 购物车汇总
+ * 由一次购物车、商品项、商品的联合查询构建，供购物车页面、购物车接口和结算页一次性读取；
+ * 金额和数量只统计仍在上架的商品，与 Cart 的计算口径一致
+ * @author SpringCA Team
+ */
+public class CartSummary {
+
+    private static final CartSummary EMPTY = new CartSummary(List.of(), BigDecimal.ZERO, 0, true, true);
+
+    private final List<CartItem> items;
+    private final BigDecimal totalAmount;
+    private final int totalQuantity;
+    private final boolean empty;
+    private final boolean stockValid;
+
+    private CartSummary(List<CartItem> items, BigDecimal totalAmount, int totalQuantity,
+                        boolean empty, boolean stockValid) {
+        this.items = items;
+        this.totalAmount = totalAmount;
+        this.totalQuantity = totalQuantity;
+        this.empty = empty;
+        this.stockValid = stockValid;
+    }
+
+    /**
+     * 空购物车汇总
+     */
+    public static CartSummary empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 根据已加载商品的购物车项计算汇总
+     * @param items 购物车项（商品已随查询一并加载）
+     * @return 购物车汇总
+     */
+    public static CartSummary of(List<CartItem> items) {
+        if (items.isEmpty()) {
+            return EMPTY;
+        }
+        BigDecimal totalAmount = BigDecimal.ZERO;
+        int totalQuantity = 0;
+        boolean hasActiveItem = false;
+        boolean stockValid = true;
+        for (CartItem item : items) {
+            if (Boolean.TRUE.equals(item.getProduct().getActive())) {
+                totalAmount = totalAmount.add(item.getSubtotal());
+                totalQuantity += item.getQuantity();
+                hasActiveItem = true;
+            }
+            stockValid &= item.hasEnoughStock();
+        }
+        return new CartSummary(List.copyOf(items), totalAmount, totalQuantity, !hasActiveItem, stockValid);
+    }
+
+    /**
+     * 第一个库存不足的购物车项
+     */
+    public Optional<CartItem> findInsufficientStockItem() {
+        return items.stream().filter(item -> !item.hasEnoughStock()).findFirst();
+    }
+
+    public List<CartItem> getItems() {
+        return items;
+    }
+
+    public BigDecimal getTotalAmount() {
+        return totalAmount;
+    }
+
+    public int getTotalQuantity() {
+        return totalQuantity;
+    }
+
+    /**
+     * 是否没有任何上架商品
+     */
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * 是否所有商品库存充足
+     */
+    public boolean isStockValid() {
+        return stockValid;
+    }
+}
@@ -0,0 +1,76 @@
+package com.nusiss.shoppingcart.dto;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * 购物车汇总数值
+ * 直接投影购物车行上维护的汇总列，供购物车角标和变更后的接口响应使用，无需加载商品项；
+ * 投影查询不经过持久化上下文，同一请求内刚发生的增量更新也能读到；
+ * 版本号随购物车每次变更递增，客户端据此判断购物车是否变化
+ * @author SpringCA Team
+ */
+public class CartTotals {
+
+    private static final CartTotals EMPTY = new CartTotals(0, BigDecimal.ZERO.setScale(2), 0, 0);
+
+    private final int totalQuantity;
+    private final BigDecimal totalAmount;
+    private final int itemCount;
+    private final long version;
+
+    private CartTotals(int totalQuantity, BigDecimal totalAmount, int itemCount, long version) {
+        this.totalQuantity = totalQuantity;
+        this.totalAmount = totalAmount;
+        this.itemCount = itemCount;
+        this.version = version;
+    }
+
+    /**
+     * 查询投影使用的构造函数
+     * @param totalQuantity 总数量
+     * @param totalAmountCents 总金额（分）
+     * @param itemCount 商品种类数
+     * @param version 购物车版本号
+     */
+    public CartTotals(Integer totalQuantity, Long totalAmountCents, Integer itemCount, Long version) {
+        this(totalQuantity, BigDecimal.valueOf(totalAmountCents, 2), itemCount, version);
+    }
+
+    /**
+     * 空购物车汇总
+     */
+    public static CartTotals empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 金额转换为分
+     */
+    public static long toCents(BigDecimal amount) {
+        return amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    public int getTotalQuantity() {
+        return totalQuantity;
+    }
+
+    public BigDecimal getTotalAmount() {
+        return totalAmount;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 是否没有任何上架商品
+     */
+    public boolean isEmpty() {
+        return itemCount == 0;
+    }
+}
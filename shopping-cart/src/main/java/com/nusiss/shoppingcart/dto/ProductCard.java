@@ -0,0 +1,89 @@
+package com.nusiss.shoppingcart.dto;
+
+import com.nusiss.shoppingcart.entity.Product;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 商品卡片
+ * 商品列表只需要的字段投影，不包含商品描述等大字段；完整商品实体只在详情页加载
+ * @author SpringCA Team
+ */
+public class ProductCard {
+
+    private final Long id;
+    private final String name;
+    private final BigDecimal price;
+    private final Integer stock;
+    private final String category;
+    private final String brand;
+    private final String imageUrl;
+    private final BigDecimal rating;
+    private final Integer reviewCount;
+    // 游标分页支持按创建时间排序，需要携带该字段生成游标
+    private final LocalDateTime createdAt;
+
+    public ProductCard(Long id, String name, BigDecimal price, Integer stock, String category, String brand,
+                       String imageUrl, BigDecimal rating, Integer reviewCount, LocalDateTime createdAt) {
+        this.id = id;
+        this.name = name;
+        this.price = price;
+        this.stock = stock;
+        this.category = category;
+        this.brand = brand;
+        this.imageUrl = imageUrl;
+        this.rating = rating;
+        this.reviewCount = reviewCount;
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * 从商品实体创建商品卡片
+     */
+    public static ProductCard from(Product product) {
+        return new ProductCard(product.getId(), product.getName(), product.getPrice(), product.getStock(),
+                product.getCategory(), product.getBrand(), product.getImageUrl(), product.getRating(),
+                product.getReviewCount(), product.getCreatedAt());
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public Integer getStock() {
+        return stock;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public String getBrand() {
+        return brand;
+    }
+
+    public String getImageUrl() {
+        return imageUrl;
+    }
+
+    public BigDecimal getRating() {
+        return rating;
+    }
+
+    public Integer getReviewCount() {
+        return reviewCount;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
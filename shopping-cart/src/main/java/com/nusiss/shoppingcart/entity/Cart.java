@@ -1,7 +1,9 @@
 package com.nusiss.shoppingcart.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.math.BigDecimal;
@@ -11,10 +13,13 @@ import java.util.List;
 
 /**
  * 购物车实体类
+ * 汇总列（总数量、总金额、商品种类数）只统计上架商品，由购物车变更时原子增减维护，
+ * 动态更新避免实体保存时用过期的汇总值覆盖；版本号随每次变更原子递增，供客户端增量同步
  * @author SpringCA Team
  */
 @Entity
 @Table(name = "carts")
+@DynamicUpdate
 public class Cart {
     
     @Id
@@ -31,6 +36,24 @@ public class Cart {
     @Column(nullable = false)
     private Boolean active = true;
     
+    @ColumnDefault("0")
+    @Column(name = "total_quantity", nullable = false)
+    private Integer totalQuantity = 0;
+    
+    @ColumnDefault("0")
+    @Column(name = "total_amount_cents", nullable = false)
+    private Long totalAmountCents = 0L;
+    
+    @ColumnDefault("0")
+    @Column(name = "item_count", nullable = false)
+    private Integer itemCount = 0;
+    
+    // 乐观锁版本号；汇总列的批量更新同样递增，持有旧版本的实体写入时会冲突
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+    
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
@@ -50,23 +73,17 @@ public class Cart {
     
     // 业务方法
     /**
-     * 计算购物车总金额
+     * 获取购物车总金额（汇总列）
      */
     public BigDecimal getTotalAmount() {
-        return cartItems.stream()
-                .filter(item -> item.getProduct().getActive())
-                .map(CartItem::getSubtotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return BigDecimal.valueOf(totalAmountCents, 2);
     }
     
     /**
-     * 获取购物车商品总数量
+     * 获取购物车商品总数量（汇总列）
      */
     public Integer getTotalQuantity() {
-        return cartItems.stream()
-                .filter(item -> item.getProduct().getActive())
-                .mapToInt(CartItem::getQuantity)
-                .sum();
+        return totalQuantity;
     }
     
     /**
@@ -96,8 +113,7 @@ public class Cart {
      * 检查购物车是否为空
      */
     public boolean isEmpty() {
-        return cartItems.isEmpty() || 
-               cartItems.stream().noneMatch(item -> item.getProduct().getActive());
+        return itemCount == 0;
     }
     
     // Getter和Setter方法
@@ -133,6 +149,34 @@ public class Cart {
         this.active = active;
     }
     
+    public void setTotalQuantity(Integer totalQuantity) {
+        this.totalQuantity = totalQuantity;
+    }
+    
+    public Long getTotalAmountCents() {
+        return totalAmountCents;
+    }
+    
+    public void setTotalAmountCents(Long totalAmountCents) {
+        this.totalAmountCents = totalAmountCents;
+    }
+    
+    public Integer getItemCount() {
+        return itemCount;
+    }
+    
+    public void setItemCount(Integer itemCount) {
+        this.itemCount = itemCount;
+    }
+    
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+    
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
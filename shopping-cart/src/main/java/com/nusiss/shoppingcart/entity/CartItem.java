@@ -1,6 +1,7 @@
 package com.nusiss.shoppingcart.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -12,7 +13,10 @@ import java.time.LocalDateTime;
  * @author SpringCA Team
  */
 @Entity
-@Table(name = "cart_items")
+@Table(name = "cart_items", uniqueConstraints = {
+        // 同一购物车中每个商品只有一行，并发加入同一商品时由数据库保证不产生重复行
+        @UniqueConstraint(name = "uk_cart_items_cart_product", columnNames = {"cart_id", "product_id"})
+})
 public class CartItem {
     
     @Id
@@ -33,6 +37,17 @@ public class CartItem {
     @Column(nullable = false, precision = 10, scale = 2)
     private BigDecimal unitPrice;
     
+    // 最后一次变更时的购物车版本号
+    @ColumnDefault("0")
+    @Column(name = "cart_version", nullable = false)
+    private Long cartVersion = 0L;
+    
+    // 乐观锁版本号，并发修改同一商品项时后提交的一方冲突
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+    
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
@@ -139,6 +154,22 @@ public class CartItem {
         this.unitPrice = unitPrice;
     }
     
+    public Long getCartVersion() {
+        return cartVersion;
+    }
+    
+    public void setCartVersion(Long cartVersion) {
+        this.cartVersion = cartVersion;
+    }
+    
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+    
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -65,6 +65,10 @@ public class Order {
     @Column(name = "cancelled_at")
     private LocalDateTime cancelledAt;
     
+    // 下单时是否从秒杀计数器扣减了库存（超时未支付时自动取消，之前的订单为空）
+    @Column(name = "flash_sale")
+    private Boolean flashSale;
+    
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
@@ -334,6 +338,14 @@ public class Order {
         this.cancelledAt = cancelledAt;
     }
     
+    public Boolean getFlashSale() {
+        return flashSale;
+    }
+    
+    public void setFlashSale(Boolean flashSale) {
+        this.flashSale = flashSale;
+    }
+    
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -0,0 +1,257 @@
+package com.nusiss.shoppingcart.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * 订单事件实体类（事务发件箱）
+ * 订单创建、支付、取消、确认收货时与订单状态在同一事务中写入，
+ * 由后台投递任务按事件ID顺序分批投递给各订单事件监听器，投递成功后标记为已投递
+ * @author SpringCA Team
+ */
+@Entity
+@Table(name = "order_events", indexes = {
+        @Index(name = "idx_order_events_status_id", columnList = "status, id"),
+        @Index(name = "idx_order_events_order", columnList = "order_id")
+})
+public class OrderEvent {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+    
+    @Column(name = "order_number", nullable = false, length = 50)
+    private String orderNumber;
+    
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false, length = 20)
+    private EventType eventType;
+    
+    // 各商品数量，格式为 商品ID:数量，多个商品以逗号分隔
+    @Column(columnDefinition = "TEXT")
+    private String items;
+    
+    @Column(name = "total_amount", precision = 10, scale = 2)
+    private BigDecimal totalAmount;
+    
+    // 订单创建时间（销量统计按下单时间归入时间桶）
+    @Column(name = "order_created_at", nullable = false)
+    private LocalDateTime orderCreatedAt;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private DispatchStatus status = DispatchStatus.PENDING;
+    
+    @Column(nullable = false)
+    private Integer attempts = 0;
+    
+    // 投递失败后下一次重试的时间
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+    
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+    
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "dispatched_at")
+    private LocalDateTime dispatchedAt;
+    
+    // 事件类型枚举
+    public enum EventType {
+        CREATED("订单创建"),
+        PAID("订单支付"),
+        CANCELLED("订单取消"),
+        DELIVERED("确认收货");
+        
+        private final String description;
+        
+        EventType(String description) {
+            this.description = description;
+        }
+        
+        public String getDescription() {
+            return description;
+        }
+    }
+    
+    // 投递状态枚举
+    public enum DispatchStatus {
+        PENDING("待投递"),
+        DISPATCHED("已投递"),
+        FAILED("投递失败");
+        
+        private final String description;
+        
+        DispatchStatus(String description) {
+            this.description = description;
+        }
+        
+        public String getDescription() {
+            return description;
+        }
+    }
+    
+    // 构造函数
+    public OrderEvent() {
+    }
+    
+    public OrderEvent(Order order, EventType eventType, Collection<OrderItem> orderItems) {
+        this.orderId = order.getId();
+        this.orderNumber = order.getOrderNumber();
+        this.userId = order.getUser().getId();
+        this.eventType = eventType;
+        this.totalAmount = order.getTotalAmount();
+        this.orderCreatedAt = order.getCreatedAt() != null ? order.getCreatedAt() : LocalDateTime.now();
+        StringJoiner joiner = new StringJoiner(",");
+        for (OrderItem item : orderItems) {
+            joiner.add(item.getProduct().getId() + ":" + item.getQuantity());
+        }
+        this.items = joiner.toString();
+    }
+    
+    /**
+     * 解析各商品数量（同一商品合并）
+     * @return 商品ID到数量的映射
+     */
+    public Map<Long, Integer> getQuantities() {
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        if (items == null || items.isEmpty()) {
+            return quantities;
+        }
+        for (String item : items.split(",")) {
+            int separator = item.indexOf(':');
+            quantities.merge(Long.valueOf(item.substring(0, separator)),
+                    Integer.valueOf(item.substring(separator + 1)), Integer::sum);
+        }
+        return quantities;
+    }
+    
+    // Getter和Setter方法
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public Long getOrderId() {
+        return orderId;
+    }
+    
+    public void setOrderId(Long orderId) {
+        this.orderId = orderId;
+    }
+    
+    public String getOrderNumber() {
+        return orderNumber;
+    }
+    
+    public void setOrderNumber(String orderNumber) {
+        this.orderNumber = orderNumber;
+    }
+    
+    public Long getUserId() {
+        return userId;
+    }
+    
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+    
+    public EventType getEventType() {
+        return eventType;
+    }
+    
+    public void setEventType(EventType eventType) {
+        this.eventType = eventType;
+    }
+    
+    public String getItems() {
+        return items;
+    }
+    
+    public void setItems(String items) {
+        this.items = items;
+    }
+    
+    public BigDecimal getTotalAmount() {
+        return totalAmount;
+    }
+    
+    public void setTotalAmount(BigDecimal totalAmount) {
+        this.totalAmount = totalAmount;
+    }
+    
+    public LocalDateTime getOrderCreatedAt() {
+        return orderCreatedAt;
+    }
+    
+    public void setOrderCreatedAt(LocalDateTime orderCreatedAt) {
+        this.orderCreatedAt = orderCreatedAt;
+    }
+    
+    public DispatchStatus getStatus() {
+        return status;
+    }
+    
+    public void setStatus(DispatchStatus status) {
+        this.status = status;
+    }
+    
+    public Integer getAttempts() {
+        return attempts;
+    }
+    
+    public void setAttempts(Integer attempts) {
+        this.attempts = attempts;
+    }
+    
+    public LocalDateTime getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+    
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+    
+    public String getLastError() {
+        return lastError;
+    }
+    
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    public LocalDateTime getDispatchedAt() {
+        return dispatchedAt;
+    }
+    
+    public void setDispatchedAt(LocalDateTime dispatchedAt) {
+        this.dispatchedAt = dispatchedAt;
+    }
+}
\ No newline at end of file
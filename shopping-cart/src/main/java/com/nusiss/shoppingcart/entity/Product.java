@@ -1,5 +1,6 @@
 package com.nusiss.shoppingcart.entity;
 
+import com.nusiss.shoppingcart.event.ProductEntityListener;
 import jakarta.persistence.*;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
@@ -13,6 +14,7 @@ import java.time.LocalDateTime;
  */
 @Entity
 @Table(name = "products")
+@EntityListeners(ProductEntityListener.class)
 public class Product {
     
     @Id
@@ -0,0 +1,54 @@
+package com.nusiss.shoppingcart.event;
+
+import java.util.List;
+
+/**
+ * 库存占用变更事件
+ * 占用记录进入或离开占用状态后发布，携带各商品占用数量的变化，供内存中的可售库存增量更新
+ * @author SpringCA Team
+ */
+public class InventoryHoldsChangedEvent {
+
+    private final List<Change> changes;
+
+    public InventoryHoldsChangedEvent(List<Change> changes) {
+        this.changes = changes;
+    }
+
+    public List<Change> getChanges() {
+        return changes;
+    }
+
+    /**
+     * 单个商品占用数量的变化
+     */
+    public static final class Change {
+
+        private final Long productId;
+        private final Long checkoutUserId;
+        private final int quantityDelta;
+
+        /**
+         * @param productId 商品ID
+         * @param checkoutUserId 结账占用的用户ID，已挂到订单上的占用为空
+         * @param quantityDelta 占用数量变化
+         */
+        public Change(Long productId, Long checkoutUserId, int quantityDelta) {
+            this.productId = productId;
+            this.checkoutUserId = checkoutUserId;
+            this.quantityDelta = quantityDelta;
+        }
+
+        public Long getProductId() {
+            return productId;
+        }
+
+        public Long getCheckoutUserId() {
+            return checkoutUserId;
+        }
+
+        public int getQuantityDelta() {
+            return quantityDelta;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.nusiss.shoppingcart.event;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * 订单销量事件
+ * 由订单创建或取消的订单事件转换而来，携带各商品的销售数量，供销量统计增量更新
+ * @author SpringCA Team
+ */
+public class OrderSalesEvent {
+
+    // 事件类型枚举
+    public enum Type {
+        PLACED,
+        CANCELLED
+    }
+
+    private final String orderNumber;
+    private final Type type;
+    private final LocalDateTime placedAt;
+    private final Map<Long, Integer> quantities;
+
+    public OrderSalesEvent(String orderNumber, Type type, LocalDateTime placedAt, Map<Long, Integer> quantities) {
+        this.orderNumber = orderNumber;
+        this.type = type;
+        this.placedAt = placedAt;
+        this.quantities = quantities;
+    }
+
+    public String getOrderNumber() {
+        return orderNumber;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public LocalDateTime getPlacedAt() {
+        return placedAt;
+    }
+
+    public Map<Long, Integer> getQuantities() {
+        return quantities;
+    }
+}
@@ -0,0 +1,41 @@
+package com.nusiss.shoppingcart.event;
+
+import com.nusiss.shoppingcart.entity.Product;
+
+/**
+ * 商品变更事件
+ * 商品被新增、更新或删除后发布，供各类内存索引增量更新
+ * @author SpringCA Team
+ */
+public class ProductChangedEvent {
+
+    // 变更类型枚举
+    public enum ChangeType {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private final Product product;
+    private final ChangeType changeType;
+
+    public ProductChangedEvent(Product product, ChangeType changeType) {
+        this.product = product;
+        this.changeType = changeType;
+    }
+
+    /**
+     * 判断变更后商品是否仍处于上架状态
+     */
+    public boolean isActiveAfterChange() {
+        return changeType != ChangeType.DELETED && Boolean.TRUE.equals(product.getActive());
+    }
+
+    public Product getProduct() {
+        return product;
+    }
+
+    public ChangeType getChangeType() {
+        return changeType;
+    }
+}
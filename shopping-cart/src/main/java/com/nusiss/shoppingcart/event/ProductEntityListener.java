@@ -0,0 +1,38 @@
+package com.nusiss.shoppingcart.event;
+
+import com.nusiss.shoppingcart.entity.Product;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * 商品JPA实体监听器
+ * 任何途径保存或删除商品时发布 {@link ProductChangedEvent}
+ * @author SpringCA Team
+ */
+@Component
+public class ProductEntityListener {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public ProductEntityListener(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostPersist
+    public void afterPersist(Product product) {
+        eventPublisher.publishEvent(new ProductChangedEvent(product, ProductChangedEvent.ChangeType.CREATED));
+    }
+
+    @PostUpdate
+    public void afterUpdate(Product product) {
+        eventPublisher.publishEvent(new ProductChangedEvent(product, ProductChangedEvent.ChangeType.UPDATED));
+    }
+
+    @PostRemove
+    public void afterRemove(Product product) {
+        eventPublisher.publishEvent(new ProductChangedEvent(product, ProductChangedEvent.ChangeType.DELETED));
+    }
+}
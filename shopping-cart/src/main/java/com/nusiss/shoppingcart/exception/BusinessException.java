@@ -141,6 +141,30 @@ public class BusinessException extends RuntimeException {
             "用户名或密码错误", HttpStatus.UNAUTHORIZED);
     }
     
+    /**
+     * 分页游标无效异常
+     */
+    public static BusinessException invalidCursor() {
+        return new BusinessException("INVALID_CURSOR", 
+            "分页游标无效或已过期", HttpStatus.BAD_REQUEST);
+    }
+    
+    /**
+     * 游标分页不支持的排序字段异常
+     */
+    public static BusinessException unsupportedSortField(String sortBy) {
+        return new BusinessException("UNSUPPORTED_SORT_FIELD", 
+            "游标分页不支持按该字段排序: " + sortBy, HttpStatus.BAD_REQUEST);
+    }
+    
+    /**
+     * 购物车批量操作数量无效异常
+     */
+    public static BusinessException invalidCartBatch(int maxOperations) {
+        return new BusinessException("INVALID_CART_BATCH", 
+            "批量操作数量必须在 1 到 " + maxOperations + " 之间", HttpStatus.BAD_REQUEST);
+    }
+    
     /**
      * 权限不足异常
      */
@@ -0,0 +1,115 @@
+package com.nusiss.shoppingcart.inventory;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 秒杀库存压测
+ * 多个线程同时扣减同一商品，对比分片计数器、单分片计数器和商品行锁三种方式的吞吐量；
+ * 计数器使用独立的实例，行锁方式在事务中对商品行执行条件扣减后回滚，都不修改实际库存
+ * 默认关闭，只在开发环境开启
+ * @author SpringCA Team
+ */
+@Component
+public class FlashSaleBenchmark {
+
+    // 单次压测的线程数和每线程操作数上限
+    private static final int MAX_THREADS = 64;
+    private static final int MAX_OPERATIONS = 100_000;
+    private static final int MAX_ROW_LOCK_OPERATIONS = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int shards;
+    private final boolean enabled;
+
+    public FlashSaleBenchmark(JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${app.flash-sale.shards:8}") int shards,
+                              @Value("${app.flash-sale.benchmark.enabled:false}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shards = shards;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 执行压测
+     * @param productId 行锁方式扣减的商品ID
+     * @param threads 并发线程数
+     * @param operations 每个线程的扣减次数（行锁方式另有更小的上限）
+     * @return 各方式的总操作数、耗时和每秒操作数
+     */
+    public Map<String, Object> run(Long productId, int threads, int operations) throws InterruptedException {
+        int threadCount = Math.max(1, Math.min(threads, MAX_THREADS));
+        int counterOperations = Math.max(1, Math.min(operations, MAX_OPERATIONS));
+        int rowLockOperations = Math.min(counterOperations, MAX_ROW_LOCK_OPERATIONS);
+        long stock = (long) threadCount * counterOperations;
+
+        StripedStockCounter striped = new StripedStockCounter(shards, stock);
+        StripedStockCounter single = new StripedStockCounter(1, stock);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("threads", threadCount);
+        result.put("striped", measure(threadCount, counterOperations, () -> striped.tryAcquire(1)));
+        result.put("singleShard", measure(threadCount, counterOperations, () -> single.tryAcquire(1)));
+        result.put("rowLock", measure(threadCount, rowLockOperations, () ->
+                transactionTemplate.executeWithoutResult(status -> {
+                    jdbcTemplate.update("UPDATE products SET stock = stock - 1 WHERE id = ? AND stock >= 1", productId);
+                    status.setRollbackOnly();
+                })));
+        return result;
+    }
+
+    private Map<String, Object> measure(int threads, int operationsPerThread, Runnable operation)
+            throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int n = 0; n < operationsPerThread; n++) {
+                        operation.run();
+                    }
+                    return null;
+                }));
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long elapsedNanos = System.nanoTime() - begin;
+
+            long total = (long) threads * operationsPerThread;
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("operations", total);
+            stats.put("elapsedMillis", elapsedNanos / 1_000_000);
+            stats.put("operationsPerSecond", elapsedNanos == 0 ? total : total * 1_000_000_000L / elapsedNanos);
+            return stats;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("压测执行失败：" + e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
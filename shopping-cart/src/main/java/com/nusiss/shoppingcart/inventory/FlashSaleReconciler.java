@@ -0,0 +1,105 @@
+package com.nusiss.shoppingcart.inventory;
+
+import com.nusiss.shoppingcart.service.InventoryService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 秒杀库存对账任务
+ * 定期取走各秒杀计数器尚未写回的净扣减，在一个短事务中按商品ID顺序写回商品库存；
+ * 写回失败时放回计数器，下次对账重试；关闭秒杀后也可以立即触发一次对账；
+ * 应用停止前关闭所有秒杀并对账，内存中尚未写回的净扣减不会随进程丢失
+ * @author SpringCA Team
+ */
+@Component
+public class FlashSaleReconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(FlashSaleReconciler.class);
+
+    // 应用停止时最多对账的次数（写回后的计数器在下一次对账时才移除）
+    private static final int SHUTDOWN_ATTEMPTS = 3;
+
+    private final FlashSaleStock flashSaleStock;
+    private final InventoryService inventoryService;
+
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder productsUpdated = new LongAdder();
+    private final LongAdder quantityWritten = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile LocalDateTime lastRunAt;
+
+    public FlashSaleReconciler(FlashSaleStock flashSaleStock, InventoryService inventoryService) {
+        this.flashSaleStock = flashSaleStock;
+        this.inventoryService = inventoryService;
+    }
+
+    /**
+     * 定时对账
+     */
+    @Scheduled(fixedDelayString = "${app.flash-sale.reconcile-interval-ms:1000}")
+    public void scheduledReconcile() {
+        reconcile();
+    }
+
+    /**
+     * 应用停止前关闭所有秒杀，把净扣减全部写回商品库存
+     */
+    @PreDestroy
+    public void shutdown() {
+        int deactivated = flashSaleStock.deactivateAll();
+        for (int attempt = 0; attempt < SHUTDOWN_ATTEMPTS && !flashSaleStock.isDrained(); attempt++) {
+            reconcile();
+        }
+        if (flashSaleStock.isDrained()) {
+            log.info("应用停止：已关闭秒杀 {} 个，净扣减已全部写回", deactivated);
+        } else {
+            log.error("应用停止：秒杀净扣减未能全部写回，请核对商品库存：{}", flashSaleStock.getStats());
+        }
+    }
+
+    /**
+     * 把净扣减写回商品库存
+     * @return 本次写回的商品ID到净扣减数量
+     */
+    public synchronized Map<Long, Long> reconcile() {
+        Map<Long, Long> deltas = flashSaleStock.drainPending();
+        if (!deltas.isEmpty()) {
+            try {
+                inventoryService.applyStockDeltas(deltas);
+                productsUpdated.add(deltas.size());
+                quantityWritten.add(deltas.values().stream().mapToLong(Long::longValue).sum());
+                log.debug("秒杀库存对账完成：商品 {} 种, 净扣减 {}", deltas.size(), deltas);
+            } catch (Exception e) {
+                flashSaleStock.restorePending(deltas);
+                failures.increment();
+                log.error("秒杀库存对账失败，下次重试：{}", e.getMessage());
+                deltas = Map.of();
+            }
+        }
+        runs.increment();
+        lastRunAt = LocalDateTime.now();
+        return deltas;
+    }
+
+    /**
+     * 获取对账统计信息
+     * @return 运行次数、写回的商品次数、写回的净扣减总数、失败次数
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("runs", runs.sum());
+        stats.put("productsUpdated", productsUpdated.sum());
+        stats.put("quantityWritten", quantityWritten.sum());
+        stats.put("failures", failures.sum());
+        stats.put("lastRunAt", lastRunAt);
+        return stats;
+    }
+}
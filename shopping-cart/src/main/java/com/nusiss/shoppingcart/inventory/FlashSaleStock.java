@@ -0,0 +1,261 @@
+package com.nusiss.shoppingcart.inventory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 秒杀商品库存
+ * 开启秒杀的商品把可售库存装入内存中的分片计数器，下单和加购的库存判断直接使用计数器，
+ * 不再锁定商品行；计数器的净扣减由对账任务定期写回商品库存
+ * 在事务中扣减时，事务回滚后自动归还；在事务中归还时，事务提交后才归还；
+ * 关闭秒杀后计数器保留到进行中的事务全部结束、净扣减全部写回为止
+ * @author SpringCA Team
+ */
+@Component
+public class FlashSaleStock {
+
+    private static final Logger log = LoggerFactory.getLogger(FlashSaleStock.class);
+
+    private final Map<Long, StripedStockCounter> counters = new ConcurrentHashMap<>();
+    private final int shards;
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder stolen = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder released = new LongAdder();
+
+    public FlashSaleStock(@Value("${app.flash-sale.shards:8}") int shards) {
+        this.shards = shards;
+    }
+
+    /**
+     * 开启秒杀：装入可售库存
+     * @param productId 商品ID
+     * @param available 可售库存（库存减去有效的库存占用）
+     * @return 是否开启（已经处于秒杀中时不重复开启）
+     */
+    public boolean activate(Long productId, long available) {
+        StripedStockCounter counter = new StripedStockCounter(shards, Math.max(0, available));
+        StripedStockCounter previous = counters.putIfAbsent(productId, counter);
+        if (previous != null) {
+            // 已经处于秒杀中，或上一次秒杀的净扣减还没写回
+            return false;
+        }
+        log.info("开启秒杀：商品 {}, 可售库存 {}, 分片 {}", productId, available, shards);
+        return true;
+    }
+
+    /**
+     * 关闭秒杀：之后的库存判断回到数据库，尚未写回的净扣减由对账任务写回
+     * @param productId 商品ID
+     * @return 是否处于秒杀中
+     */
+    public boolean deactivate(Long productId) {
+        StripedStockCounter counter = counters.get(productId);
+        if (counter == null || !counter.isActive()) {
+            return false;
+        }
+        counter.deactivate();
+        log.info("关闭秒杀：商品 {}, 剩余可售 {}", productId, counter.available());
+        return true;
+    }
+
+    /**
+     * 商品是否处于秒杀中
+     */
+    public boolean isActive(Long productId) {
+        StripedStockCounter counter = counters.get(productId);
+        return counter != null && counter.isActive();
+    }
+
+    /**
+     * 秒杀商品的可售库存
+     * @return 可售库存，不在秒杀中时为空
+     */
+    public OptionalInt available(Long productId) {
+        StripedStockCounter counter = counters.get(productId);
+        if (counter == null || !counter.isActive()) {
+            return OptionalInt.empty();
+        }
+        return OptionalInt.of((int) Math.min(Integer.MAX_VALUE, counter.available()));
+    }
+
+    /**
+     * 按商品ID顺序扣减多个秒杀商品，任一商品不足时归还已扣减的数量
+     * 处于事务中时，事务回滚后归还全部扣减
+     * @param quantities 商品ID到扣减数量（均为秒杀商品）
+     * @return 可售库存不足的商品ID，全部扣减成功时为空
+     */
+    public Long acquireAll(Map<Long, Integer> quantities) {
+        Map<StripedStockCounter, Integer> acquired = new LinkedHashMap<>();
+        for (Map.Entry<Long, Integer> entry : new TreeMap<>(quantities).entrySet()) {
+            StripedStockCounter counter = counters.get(entry.getKey());
+            StripedStockCounter.Acquisition result = StripedStockCounter.Acquisition.REJECTED;
+            if (counter != null) {
+                counter.enter();
+                if (counter.isActive()) {
+                    result = counter.tryAcquire(entry.getValue());
+                }
+                if (result == StripedStockCounter.Acquisition.REJECTED) {
+                    counter.exit();
+                }
+            }
+            if (result == StripedStockCounter.Acquisition.REJECTED) {
+                rejected.increment();
+                releaseAll(acquired);
+                exitAll(acquired);
+                return entry.getKey();
+            }
+            if (result == StripedStockCounter.Acquisition.STOLEN) {
+                stolen.increment();
+            }
+            acquired.put(counter, entry.getValue());
+        }
+        admitted.increment();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        releaseAll(acquired);
+                    }
+                    exitAll(acquired);
+                }
+            });
+        } else {
+            exitAll(acquired);
+        }
+        return null;
+    }
+
+    /**
+     * 归还秒杀商品的库存（取消订单）
+     * 处于事务中时，事务提交后才归还，回滚时不归还
+     * @param productId 商品ID
+     * @param quantity 归还数量
+     * @return 是否归还到计数器（商品不在秒杀中时由调用方恢复数据库库存）
+     */
+    public boolean release(Long productId, int quantity) {
+        StripedStockCounter counter = counters.get(productId);
+        if (counter == null) {
+            return false;
+        }
+        counter.enter();
+        if (!counter.isActive()) {
+            counter.exit();
+            return false;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        counter.release(quantity);
+                    }
+                    counter.exit();
+                }
+            });
+        } else {
+            counter.release(quantity);
+            counter.exit();
+        }
+        released.increment();
+        return true;
+    }
+
+    /**
+     * 关闭所有秒杀（应用停止前），尚未写回的净扣减由随后的对账写回
+     * @return 关闭的商品数
+     */
+    public int deactivateAll() {
+        int deactivated = 0;
+        for (Long productId : counters.keySet()) {
+            if (deactivate(productId)) {
+                deactivated++;
+            }
+        }
+        return deactivated;
+    }
+
+    /**
+     * 是否所有计数器都已移除（已关闭、没有进行中的事务、净扣减已全部写回）
+     */
+    public boolean isDrained() {
+        return counters.isEmpty();
+    }
+
+    /**
+     * 取走各商品尚未写回数据库的净扣减数量，已关闭且全部写回的计数器随之移除
+     * 关闭后仍有进行中的事务（事务结束时还会回滚归还或提交归还）的计数器保留到下次对账
+     * @return 商品ID到净扣减数量（只包含不为 0 的商品）
+     */
+    public Map<Long, Long> drainPending() {
+        Map<Long, Long> deltas = new TreeMap<>();
+        counters.forEach((productId, counter) -> {
+            // 先判断再取走：关闭且没有进行中的操作之后，净扣减不会再变化
+            boolean retired = !counter.isActive() && counter.inFlight() == 0;
+            long delta = counter.drainPending();
+            if (delta != 0) {
+                deltas.put(productId, delta);
+            } else if (retired) {
+                counters.remove(productId, counter);
+            }
+        });
+        return deltas;
+    }
+
+    /**
+     * 写回失败时放回取走的净扣减数量
+     */
+    public void restorePending(Map<Long, Long> deltas) {
+        deltas.forEach((productId, delta) -> {
+            StripedStockCounter counter = counters.get(productId);
+            if (counter != null) {
+                counter.restorePending(delta);
+            } else {
+                log.error("秒杀计数器已移除，净扣减无法放回：商品 {}, 数量 {}", productId, delta);
+            }
+        });
+    }
+
+    /**
+     * 获取秒杀统计信息
+     * @return 秒杀中的商品及可售库存、放行次数、跨分片扣减次数、拒绝次数、归还次数
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> products = new LinkedHashMap<>();
+        new TreeMap<>(counters).forEach((productId, counter) -> {
+            if (counter.isActive()) {
+                products.put(String.valueOf(productId), counter.available());
+            }
+        });
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("shards", shards);
+        stats.put("products", products);
+        stats.put("admitted", admitted.sum());
+        stats.put("stolen", stolen.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("released", released.sum());
+        return stats;
+    }
+
+    private static void releaseAll(Map<StripedStockCounter, Integer> acquired) {
+        acquired.forEach(StripedStockCounter::release);
+    }
+
+    private static void exitAll(Map<StripedStockCounter, Integer> acquired) {
+        acquired.keySet().forEach(StripedStockCounter::exit);
+    }
+}
@@ -0,0 +1,182 @@
+package com.nusiss.shoppingcart.inventory;
+
+import com.nusiss.shoppingcart.entity.InventoryReservation.ReservationStatus;
+import com.nusiss.shoppingcart.entity.Order;
+import com.nusiss.shoppingcart.entity.Order.OrderStatus;
+import com.nusiss.shoppingcart.repository.InventoryReservationRepository;
+import com.nusiss.shoppingcart.repository.OrderRepository;
+import com.nusiss.shoppingcart.service.InventoryService;
+import com.nusiss.shoppingcart.service.OrderService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 过期库存占用清理任务
+ * 定期按记录ID分批查找已过期仍处于占用状态的记录，每批在一个短事务中锁定并标记为已过期，
+ * 批之间暂停；过期的占用在数据库校验中已不再计入，清理后内存中的可售库存随之恢复；
+ * 下单时从秒杀计数器扣减、没有占用记录的商品不会随占用过期，超过订单占用时间仍未支付的秒杀订单
+ * 随后按同样的分批方式逐个自动取消，库存归还到计数器或商品库存；
+ * 另有定期任务按同样的分批方式删除超过保留天数的已结束占用记录
+ * @author SpringCA Team
+ */
+@Component
+public class ReservationSweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(ReservationSweeper.class);
+
+    private final InventoryReservationRepository reservationRepository;
+    private final InventoryService inventoryService;
+    private final OrderRepository orderRepository;
+    private final OrderService orderService;
+    private final long orderHoldMinutes;
+    private final int chunkSize;
+    private final long pauseMillis;
+    private final int retentionDays;
+
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder holdsExpired = new LongAdder();
+    private final LongAdder ordersCancelled = new LongAdder();
+    private final LongAdder timeSpentMillis = new LongAdder();
+    private final LongAdder holdsPurged = new LongAdder();
+    private volatile LocalDateTime lastRunAt;
+
+    public ReservationSweeper(InventoryReservationRepository reservationRepository,
+                              InventoryService inventoryService,
+                              OrderRepository orderRepository,
+                              OrderService orderService,
+                              @Value("${app.inventory.hold.order-ttl-minutes:30}") long orderHoldMinutes,
+                              @Value("${app.inventory.sweeper.chunk-size:500}") int chunkSize,
+                              @Value("${app.inventory.sweeper.pause-ms:50}") long pauseMillis,
+                              @Value("${app.inventory.sweeper.retention-days:7}") int retentionDays) {
+        this.reservationRepository = reservationRepository;
+        this.inventoryService = inventoryService;
+        this.orderRepository = orderRepository;
+        this.orderService = orderService;
+        this.orderHoldMinutes = orderHoldMinutes;
+        this.chunkSize = chunkSize;
+        this.pauseMillis = pauseMillis;
+        this.retentionDays = retentionDays;
+    }
+
+    /**
+     * 释放已过期的库存占用，取消超时未支付的秒杀订单
+     */
+    @Scheduled(fixedDelayString = "${app.inventory.sweeper.interval-ms:30000}")
+    public void sweep() {
+        long startTime = System.currentTimeMillis();
+        LocalDateTime now = LocalDateTime.now();
+        int expired = 0;
+        int cancelled = 0;
+        try {
+            long afterId = 0;
+            while (true) {
+                List<Long> ids = reservationRepository.findExpiredIds(
+                        ReservationStatus.ACTIVE, now, afterId, PageRequest.of(0, chunkSize));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                expired += inventoryService.expireHolds(ids, now);
+                afterId = ids.get(ids.size() - 1);
+                if (ids.size() < chunkSize) {
+                    break;
+                }
+                Thread.sleep(pauseMillis);
+            }
+            
+            LocalDateTime cutoff = now.minusMinutes(orderHoldMinutes);
+            afterId = 0;
+            while (true) {
+                List<Order> orders = orderRepository.findFlashSalePendingOrdersBeforeTime(
+                        cutoff, afterId, PageRequest.of(0, chunkSize));
+                if (orders.isEmpty()) {
+                    break;
+                }
+                for (Order order : orders) {
+                    if (orderService.cancelUnpaidOrder(order.getOrderNumber())) {
+                        cancelled++;
+                    }
+                }
+                afterId = orders.get(orders.size() - 1).getId();
+                if (orders.size() < chunkSize) {
+                    break;
+                }
+                Thread.sleep(pauseMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("释放过期库存占用失败：{}", e.getMessage());
+        }
+
+        long elapsed = System.currentTimeMillis() - startTime;
+        runs.increment();
+        holdsExpired.add(expired);
+        ordersCancelled.add(cancelled);
+        timeSpentMillis.add(elapsed);
+        lastRunAt = LocalDateTime.now();
+        if (expired > 0 || cancelled > 0) {
+            log.info("过期库存占用清理完成：释放 {} 条，取消未支付订单 {} 个，耗时 {}ms", expired, cancelled, elapsed);
+        } else {
+            log.debug("过期库存占用清理完成：无过期占用，耗时 {}ms", elapsed);
+        }
+    }
+
+    /**
+     * 删除超过保留天数的已扣减、已释放、已过期占用记录（待支付订单的过期占用保留）
+     */
+    @Scheduled(fixedDelayString = "${app.inventory.sweeper.purge-interval-ms:3600000}")
+    public void purge() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+        List<ReservationStatus> closed = List.of(ReservationStatus.CONVERTED, ReservationStatus.RELEASED);
+        int deleted = 0;
+        try {
+            long afterId = 0;
+            while (true) {
+                List<Long> ids = reservationRepository.findPurgeableIds(closed, ReservationStatus.EXPIRED,
+                        OrderStatus.PENDING, cutoff, afterId, PageRequest.of(0, chunkSize));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                deleted += reservationRepository.deleteByIds(ids);
+                afterId = ids.get(ids.size() - 1);
+                if (ids.size() < chunkSize) {
+                    break;
+                }
+                Thread.sleep(pauseMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("删除已结束的库存占用失败：{}", e.getMessage());
+        }
+        holdsPurged.add(deleted);
+        if (deleted > 0) {
+            log.info("已删除 {} 条已结束的库存占用", deleted);
+        }
+    }
+
+    /**
+     * 获取清理统计信息
+     * @return 运行次数、释放的占用数、自动取消的订单数、累计耗时、删除的已结束占用数
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("runs", runs.sum());
+        stats.put("holdsExpired", holdsExpired.sum());
+        stats.put("ordersCancelled", ordersCancelled.sum());
+        stats.put("timeSpentMillis", timeSpentMillis.sum());
+        stats.put("holdsPurged", holdsPurged.sum());
+        stats.put("lastRunAt", lastRunAt);
+        return stats;
+    }
+}
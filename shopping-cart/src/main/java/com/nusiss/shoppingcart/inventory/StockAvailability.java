@@ -0,0 +1,124 @@
+package com.nusiss.shoppingcart.inventory;
+
+import com.nusiss.shoppingcart.entity.InventoryReservation.ReservationStatus;
+import com.nusiss.shoppingcart.entity.Product;
+import com.nusiss.shoppingcart.event.InventoryHoldsChangedEvent;
+import com.nusiss.shoppingcart.repository.InventoryReservationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 可售库存
+ * 在内存中维护各商品处于占用状态的数量（结账占用另按用户记录），可售库存 = 商品缓存中的库存 - 占用数量；
+ * 启动完成后从占用记录加载，之后按占用变更事件在事务提交后增量更新，热门商品的库存检查不访问数据库
+ * 这里只用于下单前的快速检查，结账占用和支付扣减仍在数据库中加锁校验；秒杀商品的可售库存取自秒杀计数器
+ * @author SpringCA Team
+ */
+@Component
+public class StockAvailability {
+
+    private static final Logger log = LoggerFactory.getLogger(StockAvailability.class);
+
+    private final InventoryReservationRepository reservationRepository;
+    private final FlashSaleStock flashSaleStock;
+    private final Map<Long, Integer> heldByProduct = new ConcurrentHashMap<>();
+    private final Map<Long, Map<Long, Integer>> checkoutHoldsByUser = new ConcurrentHashMap<>();
+
+    public StockAvailability(InventoryReservationRepository reservationRepository, FlashSaleStock flashSaleStock) {
+        this.reservationRepository = reservationRepository;
+        this.flashSaleStock = flashSaleStock;
+    }
+
+    /**
+     * 应用启动完成后加载所有处于占用状态的记录
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            heldByProduct.clear();
+            checkoutHoldsByUser.clear();
+            for (Object[] row : reservationRepository.sumQuantitiesByStatus(ReservationStatus.ACTIVE)) {
+                apply((Long) row[0], (Long) row[1], ((Number) row[2]).intValue());
+            }
+            log.info("可售库存加载完成：占用商品 {} 种", heldByProduct.size());
+        } catch (Exception e) {
+            log.error("加载库存占用失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 占用变更提交后更新占用数量
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onHoldsChanged(InventoryHoldsChangedEvent event) {
+        for (InventoryHoldsChangedEvent.Change change : event.getChanges()) {
+            apply(change.getProductId(), change.getCheckoutUserId(), change.getQuantityDelta());
+        }
+    }
+
+    /**
+     * 商品的可售库存
+     * @param product 商品（库存取自商品缓存或实体）
+     * @param userId 当前用户ID，该用户自己的结账占用计入可售库存；游客为空
+     * @return 可售库存
+     */
+    public int available(Product product, Long userId) {
+        OptionalInt flashSale = flashSaleStock.available(product.getId());
+        if (flashSale.isPresent()) {
+            return flashSale.getAsInt();
+        }
+        int held = heldByProduct.getOrDefault(product.getId(), 0);
+        if (userId != null) {
+            Map<Long, Integer> own = checkoutHoldsByUser.get(userId);
+            if (own != null) {
+                held -= own.getOrDefault(product.getId(), 0);
+            }
+        }
+        return Math.max(0, product.getStock() - held);
+    }
+
+    /**
+     * 商品处于占用状态的总数量
+     * @param productId 商品ID
+     */
+    public int getHeld(Long productId) {
+        return heldByProduct.getOrDefault(productId, 0);
+    }
+
+    /**
+     * 获取占用统计信息
+     * @return 有占用的商品数、占用总数量、有结账占用的用户数
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("productsHeld", heldByProduct.size());
+        stats.put("quantityHeld", heldByProduct.values().stream().mapToLong(Integer::longValue).sum());
+        stats.put("usersWithCheckoutHolds", checkoutHoldsByUser.size());
+        return stats;
+    }
+
+    private void apply(Long productId, Long checkoutUserId, int delta) {
+        heldByProduct.compute(productId, (id, held) -> positiveOrNull(held, delta));
+        if (checkoutUserId != null) {
+            checkoutHoldsByUser.compute(checkoutUserId, (id, holds) -> {
+                Map<Long, Integer> result = holds != null ? holds : new ConcurrentHashMap<>();
+                result.compute(productId, (pid, held) -> positiveOrNull(held, delta));
+                return result.isEmpty() ? null : result;
+            });
+        }
+    }
+
+    private static Integer positiveOrNull(Integer current, int delta) {
+        int value = (current != null ? current : 0) + delta;
+        return value > 0 ? value : null;
+    }
+}
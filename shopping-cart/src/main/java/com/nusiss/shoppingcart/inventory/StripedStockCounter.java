@@ -0,0 +1,173 @@
+package com.nusiss.shoppingcart.inventory;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 分片库存计数器
+ * 可售数量平均分到多个分片，每次扣减随机选一个分片做 CAS，并发扣减分散在不同的缓存行上；
+ * 所选分片不够时依次从其他分片取走剩余数量（取不够时全部退回）；
+ * 每个分片另记录尚未写回数据库的净扣减数量，由对账任务取走后写回商品库存；
+ * 另记录仍在进行中（事务尚未结束）的扣减和归还数量，关闭后须等它们全部结束才能移除
+ * @author SpringCA Team
+ */
+final class StripedStockCounter {
+
+    // 每个分片占 8 个 long（64 字节），不同分片不在同一缓存行上
+    private static final int STRIDE = 8;
+    private static final int AVAILABLE = 0;
+    private static final int PENDING = 1;
+
+    private final int shards;
+    private final AtomicLongArray cells;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile boolean active = true;
+
+    StripedStockCounter(int shards, long stock) {
+        this.shards = Math.max(1, shards);
+        this.cells = new AtomicLongArray(this.shards * STRIDE);
+        long base = stock / this.shards;
+        long remainder = stock % this.shards;
+        for (int shard = 0; shard < this.shards; shard++) {
+            cells.set(shard * STRIDE + AVAILABLE, base + (shard < remainder ? 1 : 0));
+        }
+    }
+
+    /**
+     * 扣减可售数量
+     * @param quantity 扣减数量
+     * @return 扣减结果
+     */
+    Acquisition tryAcquire(int quantity) {
+        int home = ThreadLocalRandom.current().nextInt(shards);
+        if (takeAll(home, quantity)) {
+            cells.addAndGet(home * STRIDE + PENDING, quantity);
+            return Acquisition.LOCAL;
+        }
+
+        // 所选分片不够，依次从其他分片取走剩余数量
+        long[] taken = new long[shards];
+        long needed = quantity;
+        for (int i = 0; i < shards && needed > 0; i++) {
+            int shard = (home + i) % shards;
+            long got = takeUpTo(shard, needed);
+            taken[shard] = got;
+            needed -= got;
+        }
+        if (needed > 0) {
+            for (int shard = 0; shard < shards; shard++) {
+                if (taken[shard] > 0) {
+                    cells.addAndGet(shard * STRIDE + AVAILABLE, taken[shard]);
+                }
+            }
+            return Acquisition.REJECTED;
+        }
+        cells.addAndGet(home * STRIDE + PENDING, quantity);
+        return Acquisition.STOLEN;
+    }
+
+    /**
+     * 归还可售数量（订单取消、事务回滚）
+     * @param quantity 归还数量
+     */
+    void release(int quantity) {
+        int home = ThreadLocalRandom.current().nextInt(shards);
+        cells.addAndGet(home * STRIDE + AVAILABLE, quantity);
+        cells.addAndGet(home * STRIDE + PENDING, -quantity);
+    }
+
+    /**
+     * 当前可售数量（各分片之和，并发扣减时只是近似值）
+     */
+    long available() {
+        long total = 0;
+        for (int shard = 0; shard < shards; shard++) {
+            total += cells.get(shard * STRIDE + AVAILABLE);
+        }
+        return total;
+    }
+
+    /**
+     * 取走尚未写回数据库的净扣减数量
+     * @return 净扣减数量（归还多于扣减时为负数）
+     */
+    long drainPending() {
+        long total = 0;
+        for (int shard = 0; shard < shards; shard++) {
+            total += cells.getAndSet(shard * STRIDE + PENDING, 0);
+        }
+        return total;
+    }
+
+    /**
+     * 写回失败时放回取走的净扣减数量，下次对账时重试
+     */
+    void restorePending(long delta) {
+        cells.addAndGet(PENDING, delta);
+    }
+
+    boolean isActive() {
+        return active;
+    }
+
+    /**
+     * 开始一次扣减或归还；须先调用再判断是否处于秒杀中，关闭后才能可靠地判断是否还有进行中的操作
+     */
+    void enter() {
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * 结束一次扣减或归还（事务结束或放弃操作）
+     */
+    void exit() {
+        inFlight.decrementAndGet();
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    void deactivate() {
+        active = false;
+    }
+
+    int getShards() {
+        return shards;
+    }
+
+    private boolean takeAll(int shard, int quantity) {
+        int index = shard * STRIDE + AVAILABLE;
+        while (true) {
+            long current = cells.get(index);
+            if (current < quantity) {
+                return false;
+            }
+            if (cells.compareAndSet(index, current, current - quantity)) {
+                return true;
+            }
+        }
+    }
+
+    private long takeUpTo(int shard, long max) {
+        int index = shard * STRIDE + AVAILABLE;
+        while (true) {
+            long current = cells.get(index);
+            if (current <= 0) {
+                return 0;
+            }
+            long got = Math.min(current, max);
+            if (cells.compareAndSet(index, current, current - got)) {
+                return got;
+            }
+        }
+    }
+
+    /**
+     * 扣减结果：在所选分片内完成、从其他分片取到剩余数量、可售数量不足
+     */
+    enum Acquisition {
+        LOCAL, STOLEN, REJECTED
+    }
+}
@@ -0,0 +1,278 @@
+package com.nusiss.shoppingcart.order;
+
+import com.nusiss.shoppingcart.entity.Order;
+import com.nusiss.shoppingcart.entity.User;
+import com.nusiss.shoppingcart.service.OrderService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 下单排队
+ * 开启后下单请求进入有界队列并立即返回下单凭证，固定数量的下单线程按提交顺序取出创建订单，
+ * 高峰期等待数据库锁的只有下单线程，不会占满 Web 线程影响浏览；
+ * 队列已满时直接拒绝，由客户端稍后重试；同一用户未完成的凭证只有一张，重复提交返回原凭证
+ * @author SpringCA Team
+ */
+@Component
+public class OrderAdmissionQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderAdmissionQueue.class);
+
+    // 下单线程取凭证的等待间隔（停止时空闲线程最多等这么久退出）
+    private static final long POLL_MILLIS = 500;
+    // 停止时等待进行中的下单完成的最长时间
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 10_000;
+
+    private final OrderService orderService;
+    private final boolean enabled;
+    private final int capacity;
+    private final int workerCount;
+    private final long ticketTtlSeconds;
+
+    private final BlockingQueue<OrderTicket> queue;
+    private final Map<String, OrderTicket> tickets = new ConcurrentHashMap<>();
+    private final Map<Long, OrderTicket> pendingByUser = new ConcurrentHashMap<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean accepting;
+    private volatile boolean running;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder waitMillis = new LongAdder();
+    private final LongAccumulator maxWaitMillis = new LongAccumulator(Math::max, 0);
+    private final LongAdder processingMillis = new LongAdder();
+
+    public OrderAdmissionQueue(OrderService orderService,
+                               @Value("${app.order.admission.enabled:false}") boolean enabled,
+                               @Value("${app.order.admission.queue-capacity:200}") int capacity,
+                               @Value("${app.order.admission.workers:4}") int workerCount,
+                               @Value("${app.order.admission.ticket-ttl-seconds:600}") long ticketTtlSeconds) {
+        this.orderService = orderService;
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.workerCount = workerCount;
+        this.ticketTtlSeconds = ticketTtlSeconds;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * 启动下单线程
+     */
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::work, "order-worker-" + (i + 1));
+            worker.start();
+            workers.add(worker);
+        }
+        accepting = true;
+        log.info("下单排队已开启：队列容量 {}, 下单线程 {}", capacity, workerCount);
+    }
+
+    /**
+     * 停止接收下单请求，下单线程完成手上的订单后退出（不中断进行中的事务）；仍在排队的凭证标记为失败
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        accepting = false;
+        running = false;
+        long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT_MILLIS;
+        for (Thread worker : workers) {
+            try {
+                worker.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (worker.isAlive()) {
+                log.warn("下单线程未在 {}ms 内完成进行中的订单：{}", SHUTDOWN_TIMEOUT_MILLIS, worker.getName());
+            }
+        }
+        List<OrderTicket> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        remaining.forEach(ticket -> finish(ticket, null, "服务正在停止，请重新提交订单"));
+    }
+
+    /**
+     * 下单排队是否开启
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 提交下单请求
+     * @param user 用户对象
+     * @return 下单凭证；队列已满时为空
+     */
+    public Optional<OrderTicket> submit(User user, String shippingAddress, String recipientName,
+                                        String recipientPhone, String paymentMethod, String notes) {
+        if (!accepting) {
+            rejected.increment();
+            return Optional.empty();
+        }
+        OrderTicket ticket = new OrderTicket(user, shippingAddress, recipientName, recipientPhone,
+                paymentMethod, notes);
+        OrderTicket pending = pendingByUser.putIfAbsent(user.getId(), ticket);
+        if (pending != null) {
+            log.debug("用户已有排队中的下单请求：用户 {}, 凭证 {}", user.getId(), pending.getId());
+            return Optional.of(pending);
+        }
+        tickets.put(ticket.getId(), ticket);
+        if (!queue.offer(ticket)) {
+            tickets.remove(ticket.getId());
+            pendingByUser.remove(user.getId(), ticket);
+            rejected.increment();
+            log.warn("下单排队已满，拒绝下单请求：用户 {}, 队列长度 {}", user.getId(), queue.size());
+            return Optional.empty();
+        }
+        submitted.increment();
+        return Optional.of(ticket);
+    }
+
+    /**
+     * 查找用户的下单凭证
+     * @param ticketId 凭证ID
+     * @param userId 用户ID（只能查看自己的凭证）
+     * @return 下单凭证
+     */
+    public Optional<OrderTicket> getTicket(String ticketId, Long userId) {
+        OrderTicket ticket = tickets.get(ticketId);
+        if (ticket == null || !ticket.getUserId().equals(userId)) {
+            return Optional.empty();
+        }
+        return Optional.of(ticket);
+    }
+
+    /**
+     * 等待下单完成
+     * @param ticket 下单凭证
+     * @param timeoutMillis 最长等待毫秒数，超时后返回当前状态
+     * @return 下单完成或超时时完成的结果
+     */
+    public CompletableFuture<OrderTicket> await(OrderTicket ticket, long timeoutMillis) {
+        return ticket.completion().copy().completeOnTimeout(ticket, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 凭证在队列中的位置（前面还有多少个请求），不在排队时为 0
+     */
+    public int positionOf(OrderTicket ticket) {
+        if (ticket.getStatus() != OrderTicket.TicketStatus.QUEUED) {
+            return 0;
+        }
+        int position = 0;
+        for (OrderTicket queued : queue) {
+            if (queued == ticket) {
+                return position;
+            }
+            position++;
+        }
+        return 0;
+    }
+
+    /**
+     * 清理已完成且超过保留时间的凭证
+     */
+    @Scheduled(fixedDelayString = "${app.order.admission.purge-interval-ms:60000}")
+    public void purgeTickets() {
+        LocalDateTime cutoff = LocalDateTime.now().minusSeconds(ticketTtlSeconds);
+        tickets.values().removeIf(ticket -> ticket.isDone() && ticket.getCompletedAt().isBefore(cutoff));
+    }
+
+    /**
+     * 获取下单排队统计信息
+     * @return 队列长度、提交数、拒绝数、完成数、失败数、平均和最长排队时间、平均处理时间
+     */
+    public Map<String, Object> getStats() {
+        long started = completed.sum() + failed.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("capacity", capacity);
+        stats.put("workers", workerCount);
+        stats.put("depth", queue.size());
+        stats.put("submitted", submitted.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("completed", completed.sum());
+        stats.put("failed", failed.sum());
+        stats.put("avgWaitMillis", started == 0 ? 0 : waitMillis.sum() / started);
+        stats.put("maxWaitMillis", maxWaitMillis.get());
+        stats.put("avgProcessingMillis", started == 0 ? 0 : processingMillis.sum() / started);
+        stats.put("ticketsTracked", tickets.size());
+        return stats;
+    }
+
+    /**
+     * 按提交顺序取出凭证创建订单；停止后不再取新的凭证，已取出的凭证处理完再退出
+     */
+    private void work() {
+        while (running) {
+            OrderTicket ticket;
+            try {
+                ticket = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (ticket != null) {
+                process(ticket);
+            }
+        }
+    }
+
+    private void process(OrderTicket ticket) {
+        long waited = ticket.start();
+        waitMillis.add(waited);
+        maxWaitMillis.accumulate(waited);
+        long startTime = System.currentTimeMillis();
+        try {
+            Optional<Order> order = orderService.createOrder(ticket.user, ticket.shippingAddress,
+                    ticket.recipientName, ticket.recipientPhone, ticket.paymentMethod, ticket.notes);
+            finish(ticket, order.map(Order::getOrderNumber).orElse(null), "订单创建失败，请检查商品库存");
+        } catch (Exception e) {
+            log.error("排队下单失败：凭证 {}, {}", ticket.getId(), e.getMessage());
+            finish(ticket, null, "订单创建失败，请稍后重试");
+        } finally {
+            processingMillis.add(System.currentTimeMillis() - startTime);
+        }
+    }
+
+    private void finish(OrderTicket ticket, String orderNumber, String failureMessage) {
+        pendingByUser.remove(ticket.getUserId(), ticket);
+        if (orderNumber != null) {
+            completed.increment();
+            ticket.complete(orderNumber);
+        } else {
+            failed.increment();
+            ticket.fail(failureMessage);
+        }
+    }
+}
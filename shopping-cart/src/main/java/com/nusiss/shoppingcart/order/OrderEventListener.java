@@ -0,0 +1,27 @@
+package com.nusiss.shoppingcart.order;
+
+import com.nusiss.shoppingcart.entity.OrderEvent;
+import org.springframework.util.ClassUtils;
+
+/**
+ * 订单事件监听器
+ * 实现该接口的组件由订单事件投递任务在订单事务提交后调用（销量统计、缓存失效、通知等）；
+ * 同一订单的事件按发生顺序投递，投递至少一次：抛出异常时该事件稍后重试，
+ * 服务重启前未标记为已投递的事件会再次投递，监听器需能容忍重复事件
+ * @author SpringCA Team
+ */
+public interface OrderEventListener {
+
+    /**
+     * 处理订单事件
+     * @param event 订单事件
+     */
+    void onOrderEvent(OrderEvent event);
+
+    /**
+     * 监听器名称（统计和日志用）
+     */
+    default String getName() {
+        return ClassUtils.getUserClass(this).getSimpleName();
+    }
+}
@@ -0,0 +1,305 @@
+package com.nusiss.shoppingcart.order;
+
+import com.nusiss.shoppingcart.entity.OrderEvent;
+import com.nusiss.shoppingcart.entity.OrderEvent.DispatchStatus;
+import com.nusiss.shoppingcart.repository.OrderEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 订单事件投递任务（事务发件箱）
+ * 定期按事件ID顺序分批读取已到重试时间的待投递订单事件，依次交给所有订单事件监听器，投递成功的事件在一个短事务中标记为已投递；
+ * 某个事件投递失败时按指数退避稍后重试，同一订单后续的事件暂不投递，保证每个订单的事件按顺序到达，
+ * 其他订单的事件继续投递；超过最大尝试次数的事件标记为投递失败，不再阻塞该订单后续的事件；
+ * 已投递事件和投递失败的事件分别超过保留天数后删除
+ * @author SpringCA Team
+ */
+@Component
+public class OrderEventRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderEventRelay.class);
+
+    // 失败原因最大长度（与 last_error 列一致）
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final OrderEventRepository orderEventRepository;
+    private final List<OrderEventListener> listeners;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final int retentionDays;
+    private final int deadLetterRetentionDays;
+
+    // 部分监听器已处理、尚未整体投递成功的事件：重试时跳过已处理的监听器
+    private final Map<Long, Set<String>> partiallyDelivered = new HashMap<>();
+    // 已全部投递但标记失败的事件：下一轮只补标记，不再重复投递
+    private final Set<Long> unmarked = new HashSet<>();
+
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private final LongAdder purged = new LongAdder();
+    private final LongAdder deadLettersPurged = new LongAdder();
+    private final LongAdder lagMillis = new LongAdder();
+    private final LongAccumulator maxLagMillis = new LongAccumulator(Math::max, 0);
+    private final Map<String, LongAdder> listenerFailures = new ConcurrentHashMap<>();
+    private volatile LocalDateTime lastRunAt;
+
+    public OrderEventRelay(OrderEventRepository orderEventRepository,
+                           List<OrderEventListener> listeners,
+                           @Value("${app.order.outbox.batch-size:100}") int batchSize,
+                           @Value("${app.order.outbox.max-attempts:10}") int maxAttempts,
+                           @Value("${app.order.outbox.initial-backoff-ms:1000}") long initialBackoffMillis,
+                           @Value("${app.order.outbox.max-backoff-ms:300000}") long maxBackoffMillis,
+                           @Value("${app.order.outbox.retention-days:7}") int retentionDays,
+                           @Value("${app.order.outbox.dead-letter-retention-days:30}") int deadLetterRetentionDays) {
+        this.orderEventRepository = orderEventRepository;
+        this.listeners = listeners;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.retentionDays = retentionDays;
+        this.deadLetterRetentionDays = deadLetterRetentionDays;
+        listeners.forEach(listener -> listenerFailures.put(listener.getName(), new LongAdder()));
+    }
+
+    /**
+     * 定期投递待投递的订单事件
+     */
+    @Scheduled(fixedDelayString = "${app.order.outbox.poll-interval-ms:500}")
+    public void scheduledRelay() {
+        try {
+            relay();
+        } catch (Exception e) {
+            log.error("投递订单事件失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 投递已到重试时间的待投递订单事件
+     * 按事件ID向后分批读取直到没有更多事件，投递失败的订单本次运行中后续的事件不再投递
+     * @return 本次投递成功的事件数
+     */
+    public synchronized int relay() {
+        int total = 0;
+        // 本次运行中有事件未投递的订单：后续事件留到之前的事件投递成功后再投递
+        Set<Long> blockedOrders = new HashSet<>();
+        try {
+            long afterId = 0;
+            while (true) {
+                List<OrderEvent> batch = orderEventRepository.findDueAfter(
+                        DispatchStatus.PENDING, afterId, LocalDateTime.now(), PageRequest.of(0, batchSize));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                total += dispatchBatch(batch, blockedOrders);
+                afterId = batch.get(batch.size() - 1).getId();
+                if (batch.size() < batchSize) {
+                    break;
+                }
+            }
+        } finally {
+            runs.increment();
+            lastRunAt = LocalDateTime.now();
+        }
+        if (total > 0) {
+            log.debug("订单事件投递完成：{} 条", total);
+        }
+        return total;
+    }
+
+    /**
+     * 删除超过保留天数的已投递事件和投递失败的事件
+     */
+    @Scheduled(fixedDelayString = "${app.order.outbox.purge-interval-ms:3600000}")
+    public void purge() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime cutoff = now.minusDays(retentionDays);
+        int deleted = 0;
+        try {
+            while (true) {
+                List<Long> ids = orderEventRepository.findDispatchedIdsBefore(
+                        DispatchStatus.DISPATCHED, cutoff, PageRequest.of(0, batchSize));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                deleted += orderEventRepository.deleteByIds(ids);
+                if (ids.size() < batchSize) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.error("删除已投递的订单事件失败：{}", e.getMessage());
+        }
+        purged.add(deleted);
+        if (deleted > 0) {
+            log.info("已删除 {} 条已投递的订单事件", deleted);
+        }
+
+        LocalDateTime deadLetterCutoff = now.minusDays(deadLetterRetentionDays);
+        int deadLetters = 0;
+        try {
+            while (true) {
+                List<Long> ids = orderEventRepository.findCreatedIdsBefore(
+                        DispatchStatus.FAILED, deadLetterCutoff, PageRequest.of(0, batchSize));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                deadLetters += orderEventRepository.deleteByIds(ids);
+                if (ids.size() < batchSize) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.error("删除投递失败的订单事件失败：{}", e.getMessage());
+        }
+        deadLettersPurged.add(deadLetters);
+        if (deadLetters > 0) {
+            log.warn("已删除 {} 条超过保留天数的投递失败订单事件", deadLetters);
+        }
+    }
+
+    /**
+     * 获取投递统计信息
+     * @return 积压事件数、投递成功数、失败次数、投递失败（不再重试）数、删除的已投递和投递失败事件数、
+     *         平均和最大投递延迟、各监听器失败次数
+     */
+    public Map<String, Object> getStats() {
+        long delivered = dispatched.sum();
+        Map<String, Object> failuresByListener = new LinkedHashMap<>();
+        listenerFailures.forEach((name, count) -> failuresByListener.put(name, count.sum()));
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("listeners", listeners.stream().map(OrderEventListener::getName).toList());
+        stats.put("pending", orderEventRepository.countByStatus(DispatchStatus.PENDING));
+        stats.put("deadLetters", orderEventRepository.countByStatus(DispatchStatus.FAILED));
+        stats.put("runs", runs.sum());
+        stats.put("dispatched", delivered);
+        stats.put("failures", failures.sum());
+        stats.put("deadLettered", deadLettered.sum());
+        stats.put("purged", purged.sum());
+        stats.put("deadLettersPurged", deadLettersPurged.sum());
+        stats.put("avgLagMillis", delivered == 0 ? 0 : lagMillis.sum() / delivered);
+        stats.put("maxLagMillis", maxLagMillis.get());
+        stats.put("listenerFailures", failuresByListener);
+        stats.put("lastRunAt", lastRunAt);
+        return stats;
+    }
+
+    private int dispatchBatch(List<OrderEvent> batch, Set<Long> blockedOrders) {
+        LocalDateTime now = LocalDateTime.now();
+        List<OrderEvent> delivered = new ArrayList<>();
+        for (OrderEvent event : batch) {
+            if (blockedOrders.contains(event.getOrderId())) {
+                continue;
+            }
+            String error = unmarked.contains(event.getId()) ? null : deliver(event);
+            if (error == null) {
+                delivered.add(event);
+            } else {
+                blockedOrders.add(event.getOrderId());
+                recordFailure(event, error, now);
+            }
+        }
+        if (delivered.isEmpty()) {
+            return 0;
+        }
+
+        List<Long> ids = delivered.stream().map(OrderEvent::getId).toList();
+        try {
+            orderEventRepository.markDispatched(ids, DispatchStatus.DISPATCHED, LocalDateTime.now());
+        } catch (Exception e) {
+            unmarked.addAll(ids);
+            delivered.forEach(event -> blockedOrders.add(event.getOrderId()));
+            log.error("标记订单事件为已投递失败：{}", e.getMessage());
+            return 0;
+        }
+        ids.forEach(unmarked::remove);
+        dispatched.add(ids.size());
+        for (OrderEvent event : delivered) {
+            long lag = Duration.between(event.getCreatedAt(), now).toMillis();
+            lagMillis.add(lag);
+            maxLagMillis.accumulate(lag);
+        }
+        return ids.size();
+    }
+
+    /**
+     * 把事件交给每个监听器，跳过之前已处理过该事件的监听器
+     * @return 失败原因，全部成功时为空
+     */
+    private String deliver(OrderEvent event) {
+        Set<String> done = partiallyDelivered.getOrDefault(event.getId(), Set.of());
+        StringBuilder errors = new StringBuilder();
+        Set<String> succeeded = new HashSet<>(done);
+        for (OrderEventListener listener : listeners) {
+            String name = listener.getName();
+            if (done.contains(name)) {
+                continue;
+            }
+            try {
+                listener.onOrderEvent(event);
+                succeeded.add(name);
+            } catch (Exception e) {
+                listenerFailures.computeIfAbsent(name, key -> new LongAdder()).increment();
+                log.warn("订单事件监听器处理失败：监听器 {}, 事件 {}, 订单 {}, {}", name, event.getId(),
+                        event.getOrderNumber(), e.getMessage());
+                if (errors.length() > 0) {
+                    errors.append("; ");
+                }
+                errors.append(name).append(": ").append(e.getMessage());
+            }
+        }
+        if (errors.length() == 0) {
+            partiallyDelivered.remove(event.getId());
+            return null;
+        }
+        partiallyDelivered.put(event.getId(), succeeded);
+        return errors.toString();
+    }
+
+    private void recordFailure(OrderEvent event, String error, LocalDateTime now) {
+        failures.increment();
+        int attempts = event.getAttempts() + 1;
+        String lastError = error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+        DispatchStatus status = DispatchStatus.PENDING;
+        LocalDateTime nextAttemptAt = now.plusNanos(backoffMillis(attempts) * 1_000_000);
+        if (attempts >= maxAttempts) {
+            status = DispatchStatus.FAILED;
+            nextAttemptAt = null;
+            partiallyDelivered.remove(event.getId());
+            deadLettered.increment();
+            log.error("订单事件投递失败，不再重试：事件 {}, 订单 {}, 类型 {}, 尝试 {} 次", event.getId(),
+                    event.getOrderNumber(), event.getEventType(), attempts);
+        }
+        try {
+            orderEventRepository.recordFailure(event.getId(), status, nextAttemptAt, lastError);
+        } catch (Exception e) {
+            log.error("记录订单事件投递失败出错：事件 {}, {}", event.getId(), e.getMessage());
+        }
+    }
+
+    private long backoffMillis(int attempts) {
+        int shift = Math.min(attempts - 1, 30);
+        return Math.min(initialBackoffMillis << shift, maxBackoffMillis);
+    }
+}
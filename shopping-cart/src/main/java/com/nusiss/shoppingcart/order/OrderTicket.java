@@ -0,0 +1,146 @@
+package com.nusiss.shoppingcart.order;
+
+import com.nusiss.shoppingcart.entity.User;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 下单凭证
+ * 异步下单时提交的下单请求进入队列后立即返回凭证，客户端凭凭证ID轮询或等待下单结果
+ * @author SpringCA Team
+ */
+public class OrderTicket {
+
+    private final String id = UUID.randomUUID().toString().replace("-", "");
+    private final Long userId;
+    private final LocalDateTime submittedAt = LocalDateTime.now();
+    private final long submittedNanos = System.nanoTime();
+    private final CompletableFuture<OrderTicket> completion = new CompletableFuture<>();
+
+    // 下单参数
+    final User user;
+    final String shippingAddress;
+    final String recipientName;
+    final String recipientPhone;
+    final String paymentMethod;
+    final String notes;
+
+    private volatile TicketStatus status = TicketStatus.QUEUED;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime completedAt;
+    private volatile String orderNumber;
+    private volatile String message;
+
+    OrderTicket(User user, String shippingAddress, String recipientName, String recipientPhone,
+                String paymentMethod, String notes) {
+        this.userId = user.getId();
+        this.user = user;
+        this.shippingAddress = shippingAddress;
+        this.recipientName = recipientName;
+        this.recipientPhone = recipientPhone;
+        this.paymentMethod = paymentMethod;
+        this.notes = notes;
+    }
+
+    /**
+     * 开始处理
+     * @return 排队等待的毫秒数
+     */
+    long start() {
+        startedAt = LocalDateTime.now();
+        status = TicketStatus.PROCESSING;
+        return (System.nanoTime() - submittedNanos) / 1_000_000;
+    }
+
+    /**
+     * 下单成功
+     */
+    void complete(String orderNumber) {
+        this.orderNumber = orderNumber;
+        this.message = "订单创建成功";
+        finish(TicketStatus.COMPLETED);
+    }
+
+    /**
+     * 下单失败
+     */
+    void fail(String message) {
+        this.message = message;
+        finish(TicketStatus.FAILED);
+    }
+
+    private void finish(TicketStatus status) {
+        this.completedAt = LocalDateTime.now();
+        this.status = status;
+        completion.complete(this);
+    }
+
+    public boolean isDone() {
+        return status == TicketStatus.COMPLETED || status == TicketStatus.FAILED;
+    }
+
+    /**
+     * 下单完成（成功或失败）时完成的结果
+     */
+    CompletableFuture<OrderTicket> completion() {
+        return completion;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public TicketStatus getStatus() {
+        return status;
+    }
+
+    public String getStatusDescription() {
+        return status.getDescription();
+    }
+
+    public String getOrderNumber() {
+        return orderNumber;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public LocalDateTime getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public LocalDateTime getCompletedAt() {
+        return completedAt;
+    }
+
+    /**
+     * 凭证状态
+     */
+    public enum TicketStatus {
+        QUEUED("排队中"),
+        PROCESSING("处理中"),
+        COMPLETED("下单成功"),
+        FAILED("下单失败");
+
+        private final String description;
+
+        TicketStatus(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+}
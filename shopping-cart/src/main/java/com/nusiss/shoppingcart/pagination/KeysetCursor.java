@@ -0,0 +1,155 @@
+package com.nusiss.shoppingcart.pagination;
+
+import com.nusiss.shoppingcart.exception.BusinessException;
+import jakarta.persistence.criteria.Path;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Set;
+
+/**
+ * 键集（seek）分页游标
+ * 记录上一页最后一条记录的排序字段值和ID，编码为不透明的 URL 安全字符串；
+ * 下一页通过 (排序字段, id) 的比较条件直接定位，而不是跳过 OFFSET 行
+ * @author SpringCA Team
+ */
+public final class KeysetCursor {
+
+    private static final String VERSION = "v1";
+    private static final String ID_FIELD = "id";
+    private static final char SEPARATOR = '\n';
+
+    private final String sortField;
+    private final Sort.Direction direction;
+    private final String lastValue;
+    private final Long lastId;
+
+    private KeysetCursor(String sortField, Sort.Direction direction, String lastValue, Long lastId) {
+        this.sortField = sortField;
+        this.direction = direction;
+        this.lastValue = lastValue;
+        this.lastId = lastId;
+    }
+
+    /**
+     * 根据实体生成指向其之后位置的游标
+     * @param entity 当前页最后一条记录
+     * @param sortField 排序字段（必须为非空字段）
+     * @param direction 排序方向
+     * @return 游标
+     */
+    public static KeysetCursor after(Object entity, String sortField, Sort.Direction direction) {
+        BeanWrapperImpl wrapper = new BeanWrapperImpl(entity);
+        Long id = (Long) wrapper.getPropertyValue(ID_FIELD);
+        Object value = wrapper.getPropertyValue(sortField);
+        return new KeysetCursor(sortField, direction, format(value), id);
+    }
+
+    /**
+     * 解析游标
+     * @param token 游标字符串，为空表示从第一页开始
+     * @param allowedFields 允许的排序字段
+     * @return 游标，token 为空时返回 null
+     */
+    public static KeysetCursor decode(String token, Set<String> allowedFields) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token.trim()), StandardCharsets.UTF_8);
+            String[] parts = decoded.split(String.valueOf(SEPARATOR), 5);
+            if (parts.length != 5 || !VERSION.equals(parts[0]) || !allowedFields.contains(parts[1])) {
+                throw BusinessException.invalidCursor();
+            }
+            return new KeysetCursor(parts[1], Sort.Direction.valueOf(parts[2]), parts[4], Long.valueOf(parts[3]));
+        } catch (IllegalArgumentException e) {
+            throw BusinessException.invalidCursor();
+        }
+    }
+
+    /**
+     * 编码为不透明字符串
+     */
+    public String encode() {
+        String raw = VERSION + SEPARATOR + sortField + SEPARATOR + direction.name()
+                + SEPARATOR + lastId + SEPARATOR + lastValue;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 键集分页使用的排序：排序字段 + ID 作为唯一的次序键
+     */
+    public static Sort sort(String sortField, Sort.Direction direction) {
+        if (ID_FIELD.equals(sortField)) {
+            return Sort.by(direction, ID_FIELD);
+        }
+        return Sort.by(direction, sortField).and(Sort.by(direction, ID_FIELD));
+    }
+
+    /**
+     * 生成 seek 条件：(sortField, id) 严格位于游标之后
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public <T> Specification<T> toSpecification() {
+        return (root, query, cb) -> {
+            Path<Long> idPath = root.get(ID_FIELD);
+            boolean ascending = direction.isAscending();
+            if (ID_FIELD.equals(sortField)) {
+                return ascending ? cb.greaterThan(idPath, lastId) : cb.lessThan(idPath, lastId);
+            }
+            Path<Comparable> path = root.get(sortField);
+            Comparable value = parse(lastValue, path.getJavaType());
+            return cb.or(
+                    ascending ? cb.greaterThan(path, value) : cb.lessThan(path, value),
+                    cb.and(cb.equal(path, value),
+                            ascending ? cb.greaterThan(idPath, lastId) : cb.lessThan(idPath, lastId)));
+        };
+    }
+
+    public String getSortField() {
+        return sortField;
+    }
+
+    public Sort.Direction getDirection() {
+        return direction;
+    }
+
+    private static String format(Object value) {
+        if (value == null) {
+            throw new IllegalStateException("键集分页的排序字段不能为空");
+        }
+        if (value instanceof BigDecimal decimal) {
+            return decimal.toPlainString();
+        }
+        return value.toString();
+    }
+
+    private static Comparable<?> parse(String value, Class<?> type) {
+        try {
+            if (type == String.class) {
+                return value;
+            }
+            if (type == BigDecimal.class) {
+                return new BigDecimal(value);
+            }
+            if (type == Integer.class || type == int.class) {
+                return Integer.valueOf(value);
+            }
+            if (type == Long.class || type == long.class) {
+                return Long.valueOf(value);
+            }
+            if (type == LocalDateTime.class) {
+                return LocalDateTime.parse(value);
+            }
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw BusinessException.invalidCursor();
+        }
+        throw BusinessException.invalidCursor();
+    }
+}
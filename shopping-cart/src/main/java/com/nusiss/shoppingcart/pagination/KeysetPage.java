@@ -0,0 +1,60 @@
+package com.nusiss.shoppingcart.pagination;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 键集分页结果
+ * 不统计总数，只返回当前页内容以及获取下一页所需的游标
+ * @author SpringCA Team
+ */
+public class KeysetPage<T> {
+
+    private final List<T> content;
+    private final int size;
+    private final String nextCursor;
+
+    private KeysetPage(List<T> content, int size, String nextCursor) {
+        this.content = content;
+        this.size = size;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * 根据多查询一条的结果构建分页
+     * @param rows 按 size + 1 条限制查询得到的记录
+     * @param size 每页大小
+     * @param cursorOf 根据最后一条记录生成游标
+     * @return 分页结果
+     */
+    public static <T> KeysetPage<T> of(List<T> rows, int size, Function<T, KeysetCursor> cursorOf) {
+        if (rows.size() <= size) {
+            return new KeysetPage<>(rows, size, null);
+        }
+        List<T> content = rows.subList(0, size);
+        return new KeysetPage<>(content, size, cursorOf.apply(content.get(size - 1)).encode());
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * 下一页游标，没有下一页时为 null
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasContent() {
+        return !content.isEmpty();
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
@@ -4,10 +4,12 @@ import com.nusiss.shoppingcart.entity.Cart;
 import com.nusiss.shoppingcart.entity.CartItem;
 import com.nusiss.shoppingcart.entity.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -33,6 +35,24 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     @Query("SELECT ci FROM CartItem ci WHERE ci.cart.id = :cartId")
     List<CartItem> findByCartId(@Param("cartId") Long cartId);
     
+    /**
+     * 查找用户活跃购物车中在指定版本之后变更过的商品项，并一次性加载商品
+     * @param userId 用户ID
+     * @param sinceVersion 客户端已同步的购物车版本号
+     * @return 商品项列表
+     */
+    @Query("SELECT ci FROM CartItem ci JOIN FETCH ci.product WHERE ci.cart.user.id = :userId " +
+           "AND ci.cart.active = true AND ci.cartVersion > :sinceVersion ORDER BY ci.id")
+    List<CartItem> findChangedSince(@Param("userId") Long userId, @Param("sinceVersion") Long sinceVersion);
+    
+    /**
+     * 查找用户活跃购物车中所有商品项的ID
+     * @param userId 用户ID
+     * @return 商品项ID列表
+     */
+    @Query("SELECT ci.id FROM CartItem ci WHERE ci.cart.user.id = :userId AND ci.cart.active = true ORDER BY ci.id")
+    List<Long> findIdsByUserId(@Param("userId") Long userId);
+    
     /**
      * 根据购物车和商品查找商品项
      * @param cart 购物车对象
@@ -50,6 +70,60 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     @Query("SELECT ci FROM CartItem ci WHERE ci.cart.id = :cartId AND ci.product.id = :productId")
     Optional<CartItem> findByCartIdAndProductId(@Param("cartId") Long cartId, @Param("productId") Long productId);
     
+    /**
+     * 根据购物车ID和商品ID查找商品项，并一次性加载商品
+     * @param cartId 购物车ID
+     * @param productId 商品ID
+     * @return 商品项对象
+     */
+    @Query("SELECT ci FROM CartItem ci JOIN FETCH ci.product WHERE ci.cart.id = :cartId AND ci.product.id = :productId")
+    Optional<CartItem> findWithProduct(@Param("cartId") Long cartId, @Param("productId") Long productId);
+    
+    /**
+     * 单条语句加入商品（H2）：已有商品行时原子累加数量，否则按商品当前价格插入新行；
+     * 商品已下架或累加后超过库存时不做任何修改
+     * @param cartId 购物车ID
+     * @param productId 商品ID
+     * @param quantity 增加的数量
+     * @param now 更新时间
+     * @return 插入或更新的行数，库存不足时为 0
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "MERGE INTO cart_items ci " +
+           "USING (SELECT p.id AS product_id, p.price AS price, p.stock AS stock FROM products p " +
+           "WHERE p.id = :productId AND p.active = TRUE) s " +
+           "ON ci.cart_id = :cartId AND ci.product_id = s.product_id " +
+           "WHEN MATCHED AND ci.quantity + :quantity <= s.stock THEN " +
+           "UPDATE SET quantity = ci.quantity + :quantity, version = ci.version + 1, updated_at = :now " +
+           "WHEN NOT MATCHED AND :quantity <= s.stock THEN " +
+           "INSERT (cart_id, product_id, quantity, unit_price, cart_version, created_at, updated_at) " +
+           "VALUES (:cartId, s.product_id, :quantity, s.price, 0, :now, :now)", nativeQuery = true)
+    int mergeQuantity(@Param("cartId") Long cartId,
+                      @Param("productId") Long productId,
+                      @Param("quantity") int quantity,
+                      @Param("now") LocalDateTime now);
+    
+    /**
+     * 单条语句加入商品（MySQL）：依赖 (cart_id, product_id) 唯一索引，已有商品行时原子累加数量，
+     * 否则按商品当前价格插入新行；商品已下架或累加后超过库存时不做任何修改
+     * @param cartId 购物车ID
+     * @param productId 商品ID
+     * @param quantity 增加的数量
+     * @param now 更新时间
+     * @return 影响的行数（插入为 1，更新为 2），库存不足时为 0
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "INSERT INTO cart_items (cart_id, product_id, quantity, unit_price, cart_version, created_at, updated_at) " +
+           "SELECT :cartId, p.id, :quantity, p.price, 0, :now, :now FROM products p " +
+           "WHERE p.id = :productId AND p.active = TRUE AND :quantity + COALESCE((SELECT ci.quantity FROM cart_items ci " +
+           "WHERE ci.cart_id = :cartId AND ci.product_id = :productId), 0) <= p.stock " +
+           "ON DUPLICATE KEY UPDATE quantity = cart_items.quantity + :quantity, " +
+           "version = cart_items.version + 1, updated_at = :now", nativeQuery = true)
+    int insertOrIncrementQuantity(@Param("cartId") Long cartId,
+                                  @Param("productId") Long productId,
+                                  @Param("quantity") int quantity,
+                                  @Param("now") LocalDateTime now);
+    
     /**
      * 检查购物车中是否包含指定商品
      * @param cart 购物车对象
@@ -93,4 +167,13 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long> {
      * @return 购物车项列表
      */
     List<CartItem> findByProduct(Product product);
+    
+    /**
+     * 删除多个购物车的所有商品项
+     * @param cartIds 购物车ID
+     * @return 删除行数
+     */
+    @Modifying
+    @Query("DELETE FROM CartItem ci WHERE ci.cart.id IN :cartIds")
+    int deleteByCartIds(@Param("cartIds") List<Long> cartIds);
 }
\ No newline at end of file
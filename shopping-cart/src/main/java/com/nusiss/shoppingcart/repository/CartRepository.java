@@ -1,12 +1,20 @@
 package com.nusiss.shoppingcart.repository;
 
+import com.nusiss.shoppingcart.dto.CartTotals;
 import com.nusiss.shoppingcart.entity.Cart;
 import com.nusiss.shoppingcart.entity.User;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -31,6 +39,25 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
     @Query("SELECT c FROM Cart c WHERE c.user.id = :userId AND c.active = true")
     Optional<Cart> findByUserIdAndActiveTrue(@Param("userId") Long userId);
     
+    /**
+     * 根据用户ID查找活跃的购物车，并一次性加载其商品项及商品
+     * @param userId 用户ID
+     * @return 购物车对象
+     */
+    @Query("SELECT c FROM Cart c LEFT JOIN FETCH c.cartItems ci LEFT JOIN FETCH ci.product " +
+           "WHERE c.user.id = :userId AND c.active = true ORDER BY ci.id")
+    Optional<Cart> findActiveWithItemsByUserId(@Param("userId") Long userId);
+    
+    /**
+     * 根据用户ID读取活跃购物车的汇总列
+     * @param userId 用户ID
+     * @return 购物车汇总数值
+     */
+    @Query("SELECT new com.nusiss.shoppingcart.dto.CartTotals(c.totalQuantity, c.totalAmountCents, c.itemCount, " +
+           "c.version) " +
+           "FROM Cart c WHERE c.user.id = :userId AND c.active = true")
+    Optional<CartTotals> findTotalsByUserId(@Param("userId") Long userId);
+    
     /**
      * 根据用户查找购物车（包括非活跃的）
      * @param user 用户对象
@@ -58,4 +85,120 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
      * @param user 用户对象
      */
     void deleteByUserAndActiveFalse(User user);
+    
+    /**
+     * 读取购物车当前版本号
+     * @param cartId 购物车ID
+     * @return 版本号
+     */
+    @Query("SELECT c.version FROM Cart c WHERE c.id = :cartId")
+    Long findVersionById(@Param("cartId") Long cartId);
+    
+    /**
+     * 原子增减购物车汇总列并递增版本号
+     * @param cartId 购物车ID
+     * @param quantityDelta 总数量增量
+     * @param amountCentsDelta 总金额增量（分）
+     * @param itemCountDelta 商品种类数增量
+     * @param now 更新时间
+     * @return 更新行数
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Cart c SET c.totalQuantity = c.totalQuantity + :quantityDelta, " +
+           "c.totalAmountCents = c.totalAmountCents + :amountCentsDelta, " +
+           "c.itemCount = c.itemCount + :itemCountDelta, c.version = c.version + 1, " +
+           "c.updatedAt = :now WHERE c.id = :cartId")
+    int adjustTotals(@Param("cartId") Long cartId,
+                     @Param("quantityDelta") int quantityDelta,
+                     @Param("amountCentsDelta") long amountCentsDelta,
+                     @Param("itemCountDelta") int itemCountDelta,
+                     @Param("now") LocalDateTime now);
+    
+    /**
+     * 清零购物车汇总列并递增版本号
+     * @param cartId 购物车ID
+     * @param now 更新时间
+     * @return 更新行数
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Cart c SET c.totalQuantity = 0, c.totalAmountCents = 0, c.itemCount = 0, " +
+           "c.version = c.version + 1, c.updatedAt = :now WHERE c.id = :cartId")
+    int resetTotals(@Param("cartId") Long cartId, @Param("now") LocalDateTime now);
+    
+    /**
+     * 按购物车ID顺序分批读取汇总列及按商品项重新计算的实际值（只统计上架商品）
+     * @param afterId 上一批最后一个购物车ID
+     * @param pageable 批大小
+     * @return 购物车ID、总数量、总金额（分）、商品种类数、实际总数量、实际总金额、实际商品种类数
+     */
+    @Query("SELECT c.id, c.totalQuantity, c.totalAmountCents, c.itemCount, " +
+           "COALESCE(SUM(CASE WHEN p.active = true THEN ci.quantity ELSE 0 END), 0), " +
+           "COALESCE(SUM(CASE WHEN p.active = true THEN ci.unitPrice * ci.quantity ELSE 0 END), 0), " +
+           "COUNT(CASE WHEN p.active = true THEN ci.id END) " +
+           "FROM Cart c LEFT JOIN c.cartItems ci LEFT JOIN ci.product p " +
+           "WHERE c.active = true AND c.id > :afterId " +
+           "GROUP BY c.id, c.totalQuantity, c.totalAmountCents, c.itemCount ORDER BY c.id")
+    List<Object[]> findTotalsForReconciliation(@Param("afterId") Long afterId, Pageable pageable);
+    
+    /**
+     * 修复汇总列：仅当汇总列仍为读取时的值才写入，避免覆盖期间发生的增量更新；
+     * 修复后递增版本号，让客户端重新同步汇总
+     * @param cartId 购物车ID
+     * @param expectedQuantity 读取时的总数量
+     * @param expectedAmountCents 读取时的总金额（分）
+     * @param expectedItemCount 读取时的商品种类数
+     * @param quantity 实际总数量
+     * @param amountCents 实际总金额（分）
+     * @param itemCount 实际商品种类数
+     * @return 更新行数
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Cart c SET c.totalQuantity = :quantity, c.totalAmountCents = :amountCents, " +
+           "c.itemCount = :itemCount, c.version = c.version + 1 " +
+           "WHERE c.id = :cartId AND c.totalQuantity = :expectedQuantity " +
+           "AND c.totalAmountCents = :expectedAmountCents AND c.itemCount = :expectedItemCount")
+    int repairTotals(@Param("cartId") Long cartId,
+                     @Param("expectedQuantity") int expectedQuantity,
+                     @Param("expectedAmountCents") long expectedAmountCents,
+                     @Param("expectedItemCount") int expectedItemCount,
+                     @Param("quantity") int quantity,
+                     @Param("amountCents") long amountCents,
+                     @Param("itemCount") int itemCount);
+    
+    /**
+     * 按购物车ID顺序分批查找长时间未更新的活跃购物车
+     * @param cutoff 最后更新时间早于该时间的购物车视为废弃
+     * @param afterId 上一批最后一个购物车ID
+     * @param pageable 批大小
+     * @return 购物车ID、用户ID
+     */
+    @Query("SELECT c.id, c.user.id FROM Cart c WHERE c.active = true AND c.updatedAt < :cutoff " +
+           "AND c.id > :afterId ORDER BY c.id")
+    List<Object[]> findStaleCarts(@Param("cutoff") LocalDateTime cutoff,
+                                  @Param("afterId") Long afterId,
+                                  Pageable pageable);
+    
+    /**
+     * 锁定仍然处于废弃状态的购物车（加锁期间并发的购物车变更会等待）
+     * @param cartIds 购物车ID
+     * @param cutoff 最后更新时间早于该时间的购物车视为废弃
+     * @return 购物车列表
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Cart c WHERE c.id IN :cartIds AND c.active = true AND c.updatedAt < :cutoff")
+    List<Cart> lockStaleCarts(@Param("cartIds") List<Long> cartIds, @Param("cutoff") LocalDateTime cutoff);
+    
+    /**
+     * 停用购物车并清零汇总列
+     * @param cartIds 购物车ID
+     * @param now 更新时间
+     * @return 更新行数
+     */
+    @Modifying
+    @Query("UPDATE Cart c SET c.active = false, c.totalQuantity = 0, c.totalAmountCents = 0, c.itemCount = 0, " +
+           "c.version = c.version + 1, c.updatedAt = :now WHERE c.id IN :cartIds")
+    int deactivateAll(@Param("cartIds") List<Long> cartIds, @Param("now") LocalDateTime now);
 }
\ No newline at end of file
@@ -0,0 +1,107 @@
+package com.nusiss.shoppingcart.repository;
+
+import com.nusiss.shoppingcart.entity.InventoryReservation;
+import com.nusiss.shoppingcart.entity.InventoryReservation.ReservationStatus;
+import com.nusiss.shoppingcart.entity.Order.OrderStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 库存占用数据访问层
+ * @author SpringCA Team
+ */
+@Repository
+public interface InventoryReservationRepository extends JpaRepository<InventoryReservation, Long> {
+    
+    /**
+     * 统计各商品处于占用状态的数量，结账占用按用户分开
+     * @param status 占用状态
+     * @return 商品ID、结账占用的用户ID（已挂到订单上时为空）、占用数量
+     */
+    @Query("SELECT r.product.id, CASE WHEN r.order IS NULL THEN r.user.id ELSE NULL END, SUM(r.quantity) " +
+           "FROM InventoryReservation r WHERE r.status = :status " +
+           "GROUP BY r.product.id, CASE WHEN r.order IS NULL THEN r.user.id ELSE NULL END")
+    List<Object[]> sumQuantitiesByStatus(@Param("status") ReservationStatus status);
+    
+    /**
+     * 按ID顺序分批查找已过期仍处于占用状态的记录
+     * @param status 占用状态
+     * @param now 当前时间
+     * @param afterId 上一批最后一个记录ID
+     * @param pageable 批大小
+     * @return 记录ID列表
+     */
+    @Query("SELECT r.id FROM InventoryReservation r WHERE r.status = :status AND r.expiresAt <= :now " +
+           "AND r.id > :afterId ORDER BY r.id")
+    List<Long> findExpiredIds(@Param("status") ReservationStatus status,
+                              @Param("now") LocalDateTime now,
+                              @Param("afterId") Long afterId,
+                              Pageable pageable);
+    
+    /**
+     * 锁定仍然处于占用状态且已过期的记录（加锁期间并发的支付、取消会等待）
+     * @param ids 记录ID
+     * @param status 占用状态
+     * @param now 当前时间
+     * @return 占用记录列表
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM InventoryReservation r WHERE r.id IN :ids AND r.status = :status AND r.expiresAt <= :now")
+    List<InventoryReservation> lockExpired(@Param("ids") List<Long> ids,
+                                           @Param("status") ReservationStatus status,
+                                           @Param("now") LocalDateTime now);
+    
+    /**
+     * 批量修改占用状态
+     * @param ids 记录ID
+     * @param status 新状态
+     * @param now 更新时间
+     * @return 更新行数
+     */
+    @Modifying
+    @Query("UPDATE InventoryReservation r SET r.status = :status, r.updatedAt = :now WHERE r.id IN :ids")
+    int updateStatus(@Param("ids") List<Long> ids,
+                     @Param("status") ReservationStatus status,
+                     @Param("now") LocalDateTime now);
+    
+    /**
+     * 按ID顺序分批查找更新时间早于指定时间的已结束占用
+     * 已过期的订单占用在订单仍待支付时保留（支付时按其转为扣减，取消时据此判断无需恢复库存）
+     * @param closed 已结束的状态（已扣减、已释放）
+     * @param expired 已过期状态
+     * @param pending 待支付订单状态
+     * @param before 截止时间
+     * @param afterId 上一批最后一个记录ID
+     * @param pageable 批大小
+     * @return 记录ID列表
+     */
+    @Query("SELECT r.id FROM InventoryReservation r LEFT JOIN r.order o WHERE r.updatedAt < :before " +
+           "AND r.id > :afterId AND (r.status IN :closed OR (r.status = :expired " +
+           "AND (o IS NULL OR o.status <> :pending))) ORDER BY r.id")
+    List<Long> findPurgeableIds(@Param("closed") List<ReservationStatus> closed,
+                                @Param("expired") ReservationStatus expired,
+                                @Param("pending") OrderStatus pending,
+                                @Param("before") LocalDateTime before,
+                                @Param("afterId") Long afterId,
+                                Pageable pageable);
+    
+    /**
+     * 批量删除占用记录
+     * @param ids 记录ID
+     * @return 删除行数
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM InventoryReservation r WHERE r.id IN :ids")
+    int deleteByIds(@Param("ids") List<Long> ids);
+}
\ No newline at end of file
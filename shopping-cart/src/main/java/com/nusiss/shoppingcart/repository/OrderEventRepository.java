@@ -0,0 +1,113 @@
+package com.nusiss.shoppingcart.repository;
+
+import com.nusiss.shoppingcart.entity.OrderEvent;
+import com.nusiss.shoppingcart.entity.OrderEvent.DispatchStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 订单事件（事务发件箱）数据访问层
+ * @author SpringCA Team
+ */
+@Repository
+public interface OrderEventRepository extends JpaRepository<OrderEvent, Long> {
+    
+    /**
+     * 按事件ID顺序分批查找已到重试时间的待投递事件
+     * 同一订单有更早的待投递事件尚未到重试时间时，该订单后续的事件不返回
+     * @param status 投递状态（待投递）
+     * @param afterId 上一批最后一个事件ID
+     * @param now 当前时间
+     * @param pageable 批大小
+     * @return 事件列表
+     */
+    @Query("SELECT e FROM OrderEvent e WHERE e.status = :status AND e.id > :afterId " +
+           "AND (e.nextAttemptAt IS NULL OR e.nextAttemptAt <= :now) " +
+           "AND NOT EXISTS (SELECT p.id FROM OrderEvent p WHERE p.orderId = e.orderId AND p.status = :status " +
+           "AND p.id < e.id AND p.nextAttemptAt > :now) ORDER BY e.id")
+    List<OrderEvent> findDueAfter(@Param("status") DispatchStatus status,
+                                  @Param("afterId") Long afterId,
+                                  @Param("now") LocalDateTime now,
+                                  Pageable pageable);
+    
+    /**
+     * 统计指定状态的事件数
+     * @param status 投递状态
+     * @return 事件数
+     */
+    long countByStatus(DispatchStatus status);
+    
+    /**
+     * 批量标记为已投递
+     * @param ids 事件ID
+     * @param status 投递状态
+     * @param now 投递时间
+     * @return 更新行数
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE OrderEvent e SET e.status = :status, e.dispatchedAt = :now, " +
+           "e.attempts = e.attempts + 1 WHERE e.id IN :ids")
+    int markDispatched(@Param("ids") List<Long> ids,
+                       @Param("status") DispatchStatus status,
+                       @Param("now") LocalDateTime now);
+    
+    /**
+     * 记录一次投递失败
+     * @param id 事件ID
+     * @param status 投递状态（超过最大尝试次数时为投递失败）
+     * @param nextAttemptAt 下一次重试时间
+     * @param lastError 失败原因
+     * @return 更新行数
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE OrderEvent e SET e.status = :status, e.attempts = e.attempts + 1, " +
+           "e.nextAttemptAt = :nextAttemptAt, e.lastError = :lastError WHERE e.id = :id")
+    int recordFailure(@Param("id") Long id,
+                      @Param("status") DispatchStatus status,
+                      @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                      @Param("lastError") String lastError);
+    
+    /**
+     * 按ID顺序分批查找投递时间早于指定时间的已投递事件
+     * @param status 投递状态
+     * @param before 截止时间
+     * @param pageable 批大小
+     * @return 事件ID列表
+     */
+    @Query("SELECT e.id FROM OrderEvent e WHERE e.status = :status AND e.dispatchedAt < :before ORDER BY e.id")
+    List<Long> findDispatchedIdsBefore(@Param("status") DispatchStatus status,
+                                       @Param("before") LocalDateTime before,
+                                       Pageable pageable);
+    
+    /**
+     * 按ID顺序分批查找创建时间早于指定时间的指定状态事件（投递失败的事件）
+     * @param status 投递状态
+     * @param before 截止时间
+     * @param pageable 批大小
+     * @return 事件ID列表
+     */
+    @Query("SELECT e.id FROM OrderEvent e WHERE e.status = :status AND e.createdAt < :before ORDER BY e.id")
+    List<Long> findCreatedIdsBefore(@Param("status") DispatchStatus status,
+                                    @Param("before") LocalDateTime before,
+                                    Pageable pageable);
+    
+    /**
+     * 批量删除事件
+     * @param ids 事件ID
+     * @return 删除行数
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM OrderEvent e WHERE e.id IN :ids")
+    int deleteByIds(@Param("ids") List<Long> ids);
+}
\ No newline at end of file
@@ -3,6 +3,7 @@ package com.nusiss.shoppingcart.repository;
 import com.nusiss.shoppingcart.entity.Order;
 import com.nusiss.shoppingcart.entity.OrderItem;
 import com.nusiss.shoppingcart.entity.Product;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -89,19 +90,29 @@ public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
                                                     @Param("endTime") LocalDateTime endTime);
     
     /**
-     * 查找热销商品（按销量排序）
+     * 查找热销商品（按销量排序，不含已取消订单）
      * @param startTime 开始时间
      * @param endTime 结束时间
-     * @param limit 限制数量
+     * @param pageable 分页参数（限制数量）
      * @return 商品ID和销量列表
      */
     @Query("SELECT oi.product.id, SUM(oi.quantity) as totalSold " +
            "FROM OrderItem oi " +
-           "WHERE oi.createdAt BETWEEN :startTime AND :endTime " +
+           "WHERE oi.createdAt BETWEEN :startTime AND :endTime AND oi.order.status <> 'CANCELLED' " +
            "GROUP BY oi.product.id " +
            "ORDER BY totalSold DESC")
     List<Object[]> findTopSellingProducts(@Param("startTime") LocalDateTime startTime, 
-                                          @Param("endTime") LocalDateTime endTime);
+                                          @Param("endTime") LocalDateTime endTime,
+                                          Pageable pageable);
+    
+    /**
+     * 查找指定时间之后的销售记录（不含已取消订单），用于重建销量统计
+     * @param since 起始时间
+     * @return 商品ID、数量、下单时间、订单号列表
+     */
+    @Query("SELECT oi.product.id, oi.quantity, oi.createdAt, oi.order.orderNumber FROM OrderItem oi " +
+           "WHERE oi.createdAt >= :since AND oi.order.status <> 'CANCELLED'")
+    List<Object[]> findSalesSince(@Param("since") LocalDateTime since);
     
     /**
      * 根据订单删除所有商品项
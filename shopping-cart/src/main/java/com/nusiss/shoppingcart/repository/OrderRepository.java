@@ -2,9 +2,12 @@ package com.nusiss.shoppingcart.repository;
 
 import com.nusiss.shoppingcart.entity.Order;
 import com.nusiss.shoppingcart.entity.User;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -18,7 +21,7 @@ import java.util.Optional;
  * @author SpringCA Team
  */
 @Repository
-public interface OrderRepository extends JpaRepository<Order, Long> {
+public interface OrderRepository extends JpaRepository<Order, Long>, JpaSpecificationExecutor<Order> {
     
     /**
      * 根据订单号查找订单
@@ -35,6 +38,15 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     @Query("SELECT o FROM Order o LEFT JOIN FETCH o.orderItems WHERE o.orderNumber = :orderNumber")
     Optional<Order> findByOrderNumberWithOrderItems(@Param("orderNumber") String orderNumber);
     
+    /**
+     * 根据订单号查找并锁定订单（支付、取消互斥）
+     * @param orderNumber 订单号
+     * @return 订单对象
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.orderNumber = :orderNumber")
+    Optional<Order> findByOrderNumberForUpdate(@Param("orderNumber") String orderNumber);
+    
     /**
      * 根据用户查找所有订单（分页）
      * @param user 用户对象
@@ -53,6 +65,14 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
            countQuery = "SELECT COUNT(o) FROM Order o WHERE o.user = :user")
     Page<Order> findByUserWithOrderItems(@Param("user") User user, Pageable pageable);
     
+    /**
+     * 根据ID列表查找订单（包含订单项）
+     * @param ids 订单ID列表
+     * @return 订单列表
+     */
+    @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.orderItems WHERE o.id IN :ids")
+    List<Order> findByIdInWithOrderItems(@Param("ids") List<Long> ids);
+    
     /**
      * 根据用户ID查找所有订单（分页）
      * @param userId 用户ID
@@ -148,6 +168,20 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     @Query("SELECT o FROM Order o WHERE o.status = 'PENDING' AND o.createdAt < :cutoffTime")
     List<Order> findPendingOrdersBeforeTime(@Param("cutoffTime") LocalDateTime cutoffTime);
     
+    /**
+     * 按ID顺序分批查找超时未支付、下单时从秒杀计数器扣减了库存的订单
+     * 秒杀商品没有库存占用记录，库存不会随占用过期而释放，须取消订单才能归还
+     * @param cutoffTime 截止时间
+     * @param afterId 上一批最后一个订单ID
+     * @param pageable 批大小
+     * @return 订单列表
+     */
+    @Query("SELECT o FROM Order o WHERE o.status = 'PENDING' AND o.flashSale = TRUE " +
+           "AND o.createdAt < :cutoffTime AND o.id > :afterId ORDER BY o.id")
+    List<Order> findFlashSalePendingOrdersBeforeTime(@Param("cutoffTime") LocalDateTime cutoffTime,
+                                                      @Param("afterId") Long afterId,
+                                                      Pageable pageable);
+    
     /**
      * 检查订单号是否存在
      * @param orderNumber 订单号
@@ -0,0 +1,35 @@
+package com.nusiss.shoppingcart.repository;
+
+import com.nusiss.shoppingcart.dto.ProductCard;
+import com.nusiss.shoppingcart.entity.Product;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * 商品卡片查询
+ * 只查询商品列表需要的列，不读取商品描述
+ * @author SpringCA Team
+ */
+public interface ProductCardRepository {
+
+    /**
+     * 按条件分页查询商品卡片
+     * @param spec 查询条件
+     * @param pageable 分页及排序参数
+     * @return 商品卡片分页结果
+     */
+    Page<ProductCard> findCards(Specification<Product> spec, Pageable pageable);
+
+    /**
+     * 按条件查询前若干个商品卡片
+     * @param spec 查询条件
+     * @param sort 排序
+     * @param limit 数量上限
+     * @return 商品卡片列表
+     */
+    List<ProductCard> findCards(Specification<Product> spec, Sort sort, int limit);
+}
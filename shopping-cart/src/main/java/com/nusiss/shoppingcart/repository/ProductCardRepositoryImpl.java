@@ -0,0 +1,77 @@
+package com.nusiss.shoppingcart.repository;
+
+import com.nusiss.shoppingcart.dto.ProductCard;
+import com.nusiss.shoppingcart.entity.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.util.List;
+
+/**
+ * 商品卡片查询实现
+ * 通过构造表达式只选择卡片字段，查询条件复用商品的 Specification
+ * @author SpringCA Team
+ */
+public class ProductCardRepositoryImpl implements ProductCardRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Page<ProductCard> findCards(Specification<Product> spec, Pageable pageable) {
+        TypedQuery<ProductCard> query = createCardQuery(spec, pageable.getSort());
+        if (pageable.isPaged()) {
+            query.setFirstResult((int) pageable.getOffset());
+            query.setMaxResults(pageable.getPageSize());
+        }
+        return PageableExecutionUtils.getPage(query.getResultList(), pageable, () -> count(spec));
+    }
+
+    @Override
+    public List<ProductCard> findCards(Specification<Product> spec, Sort sort, int limit) {
+        return createCardQuery(spec, sort).setMaxResults(limit).getResultList();
+    }
+
+    private TypedQuery<ProductCard> createCardQuery(Specification<Product> spec, Sort sort) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ProductCard> query = cb.createQuery(ProductCard.class);
+        Root<Product> root = query.from(Product.class);
+        query.select(cb.construct(ProductCard.class,
+                root.get("id"), root.get("name"), root.get("price"), root.get("stock"),
+                root.get("category"), root.get("brand"), root.get("imageUrl"),
+                root.get("rating"), root.get("reviewCount"), root.get("createdAt")));
+
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        if (sort.isSorted()) {
+            query.orderBy(QueryUtils.toOrders(sort, root, cb));
+        }
+        return entityManager.createQuery(query);
+    }
+
+    private long count(Specification<Product> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Product> root = query.from(Product.class);
+        query.select(cb.count(root));
+
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        return entityManager.createQuery(query).getSingleResult();
+    }
+}
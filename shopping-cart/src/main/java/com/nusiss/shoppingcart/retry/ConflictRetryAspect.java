@@ -0,0 +1,112 @@
+package com.nusiss.shoppingcart.retry;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 并发冲突重试切面（乐观锁版本号冲突、锁等待超时、死锁）
+ * 优先级高于事务切面，每次重试都在新事务中执行；退避间隔按次数翻倍并加随机抖动，不超过上限；
+ * 已经处于外层事务中时不重试（冲突后外层事务只能回滚），由外层的重试处理
+ * @author SpringCA Team
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ConflictRetryAspect {
+
+    private static final Logger log = LoggerFactory.getLogger(ConflictRetryAspect.class);
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder recovered = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+    private final Map<String, LongAdder> conflictsByMethod = new ConcurrentHashMap<>();
+
+    public ConflictRetryAspect(@Value("${app.retry.conflict.max-attempts:3}") int maxAttempts,
+                               @Value("${app.retry.conflict.initial-backoff-ms:10}") long initialBackoffMillis,
+                               @Value("${app.retry.conflict.max-backoff-ms:100}") long maxBackoffMillis) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    @Around("@annotation(com.nusiss.shoppingcart.retry.RetryOnConflict)")
+    public Object retryOnConflict(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+        String method = joinPoint.getSignature().toShortString();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Object result = joinPoint.proceed();
+                if (attempt > 1) {
+                    recovered.increment();
+                }
+                return result;
+            } catch (ConcurrencyFailureException e) {
+                conflicts.increment();
+                conflictsByMethod.computeIfAbsent(method, key -> new LongAdder()).increment();
+                if (attempt >= maxAttempts) {
+                    exhausted.increment();
+                    log.warn("并发冲突重试次数已用完：{}, 尝试 {} 次, {}", method, attempt, e.getClass().getSimpleName());
+                    throw e;
+                }
+                long backoff = backoffMillis(attempt);
+                log.debug("并发冲突（{}），{}ms 后重试：{}, 第 {} 次", e.getClass().getSimpleName(), backoff, method, attempt);
+                retries.increment();
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取冲突与重试统计信息
+     * @return 冲突次数、重试次数、重试后成功次数、重试用完次数及按方法统计的冲突次数
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Long> byMethod = new TreeMap<>();
+        conflictsByMethod.forEach((method, count) -> byMethod.put(method, count.sum()));
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxAttempts", maxAttempts);
+        stats.put("conflicts", conflicts.sum());
+        stats.put("retries", retries.sum());
+        stats.put("recovered", recovered.sum());
+        stats.put("exhausted", exhausted.sum());
+        stats.put("conflictsByMethod", byMethod);
+        return stats;
+    }
+
+    /**
+     * 第 attempt 次冲突后的退避间隔：初始间隔按次数翻倍，不超过上限，取一半到全部之间的随机值
+     */
+    private long backoffMillis(int attempt) {
+        long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+        return backoff <= 1 ? backoff : ThreadLocalRandom.current().nextLong(backoff / 2, backoff + 1);
+    }
+}
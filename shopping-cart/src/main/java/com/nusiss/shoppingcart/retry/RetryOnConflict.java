@@ -0,0 +1,19 @@
+package com.nusiss.shoppingcart.retry;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 并发冲突时自动重试
+ * 标注在 @Transactional 方法上：版本号冲突、锁等待超时或死锁导致事务回滚后，按退避间隔重新执行整个方法
+ * （新事务中重新读取并重新应用修改），重试次数用完后抛出原异常
+ * @author SpringCA Team
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RetryOnConflict {
+}
@@ -0,0 +1,24 @@
+package com.nusiss.shoppingcart.sales;
+
+/**
+ * 热销商品统计项
+ * @author SpringCA Team
+ */
+public class BestSeller {
+
+    private final Long productId;
+    private final long quantity;
+
+    public BestSeller(Long productId, long quantity) {
+        this.productId = productId;
+        this.quantity = quantity;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+}
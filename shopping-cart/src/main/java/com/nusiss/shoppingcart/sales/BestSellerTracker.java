@@ -0,0 +1,297 @@
+package com.nusiss.shoppingcart.sales;
+
+import com.nusiss.shoppingcart.entity.OrderEvent;
+import com.nusiss.shoppingcart.event.OrderSalesEvent;
+import com.nusiss.shoppingcart.order.OrderEventListener;
+import com.nusiss.shoppingcart.repository.OrderItemRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 热销商品滑动窗口统计
+ * 每个商品按分钟/小时/天维护环形时间桶，订单创建时累加、取消时扣减（由订单事件投递任务调用）；
+ * 最近 1 小时/24 小时/7 天的热销榜通过容量为 K 的小顶堆在内存中选出，
+ * 启动时从最近 7 天的订单项重建；按订单号去重，已计入的订单再次下单不重复累加，
+ * 未计入的订单取消时不扣减（重建前已存在的事件、重复投递的事件都由此去重）
+ * @author SpringCA Team
+ */
+@Component
+public class BestSellerTracker implements OrderEventListener {
+
+    private static final Logger log = LoggerFactory.getLogger(BestSellerTracker.class);
+
+    private static final SalesWindow[] WINDOWS = SalesWindow.values();
+
+    // 排序：销量降序、商品ID升序
+    private static final Comparator<BestSeller> RANKING = Comparator.comparingLong(BestSeller::getQuantity).reversed()
+            .thenComparing(BestSeller::getProductId);
+
+    private final OrderItemRepository orderItemRepository;
+    private final boolean enabled;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<OrderSalesEvent> pendingEvents = new ArrayList<>();
+    private Map<Long, SalesCounters> counters = new HashMap<>();
+    // 已计入销量的订单：订单号到下单时间，超出 7 天窗口后清理
+    private Map<String, Long> countedOrders = new HashMap<>();
+    private boolean loading = false;
+    private volatile boolean ready = false;
+
+    public BestSellerTracker(OrderItemRepository orderItemRepository,
+                             @Value("${app.sales.best-seller.enabled:true}") boolean enabled) {
+        this.orderItemRepository = orderItemRepository;
+        this.enabled = enabled;
+    }
+
+    /**
+     * 应用启动完成后从最近 7 天的订单项重建销量统计
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            loading = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Map<Long, SalesCounters> fresh = new HashMap<>();
+        Map<String, Long> loadedOrders = new HashMap<>();
+        try {
+            LocalDateTime since = LocalDateTime.now().minus(Duration.ofMillis(SalesWindow.LAST_WEEK.getSpanMillis()));
+            for (Object[] row : orderItemRepository.findSalesSince(since)) {
+                Long productId = (Long) row[0];
+                int quantity = ((Number) row[1]).intValue();
+                long time = toEpochMillis((LocalDateTime) row[2]);
+                loadedOrders.put((String) row[3], time);
+                fresh.computeIfAbsent(productId, id -> new SalesCounters()).add(time, quantity);
+            }
+        } catch (Exception e) {
+            log.error("加载热销商品统计失败：{}", e.getMessage());
+            fresh = null;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (fresh != null) {
+                // 重放加载期间的事件：只补上查询结果中尚未反映的下单和取消
+                for (OrderSalesEvent event : pendingEvents) {
+                    if (count(loadedOrders, event)) {
+                        apply(fresh, event);
+                    }
+                }
+                counters = fresh;
+                countedOrders = loadedOrders;
+                ready = true;
+            }
+            pendingEvents.clear();
+            loading = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (fresh != null) {
+            log.info("热销商品统计加载完成：{} 个商品", fresh.size());
+        }
+    }
+
+    /**
+     * 订单创建/取消事件投递后更新销量
+     */
+    @Override
+    public void onOrderEvent(OrderEvent event) {
+        OrderSalesEvent.Type type = switch (event.getEventType()) {
+            case CREATED -> OrderSalesEvent.Type.PLACED;
+            case CANCELLED -> OrderSalesEvent.Type.CANCELLED;
+            default -> null;
+        };
+        if (type == null) {
+            return;
+        }
+        onOrderSales(new OrderSalesEvent(event.getOrderNumber(), type, event.getOrderCreatedAt(),
+                event.getQuantities()));
+    }
+
+    /**
+     * 按订单销量事件更新销量
+     */
+    public void onOrderSales(OrderSalesEvent event) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (count(countedOrders, event)) {
+                apply(counters, event);
+            }
+            if (loading) {
+                pendingEvents.add(event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 获取时间窗口内的热销商品
+     * 统计未就绪时回退到数据库聚合查询
+     * @param window 时间窗口
+     * @param limit 数量上限
+     * @return 按销量降序排列的热销商品
+     */
+    public List<BestSeller> getTopSellers(SalesWindow window, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        if (!enabled || !ready) {
+            return findTopSellersFromDatabase(window, limit);
+        }
+
+        long now = System.currentTimeMillis();
+        // 小顶堆保留销量最高的 limit 个商品
+        PriorityQueue<BestSeller> heap;
+        lock.readLock().lock();
+        try {
+            heap = new PriorityQueue<>(Math.min(limit, counters.size()) + 1, RANKING.reversed());
+            for (Map.Entry<Long, SalesCounters> entry : counters.entrySet()) {
+                long quantity = entry.getValue().total(window, now);
+                if (quantity <= 0) {
+                    continue;
+                }
+                heap.offer(new BestSeller(entry.getKey(), quantity));
+                if (heap.size() > limit) {
+                    heap.poll();
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<BestSeller> result = new ArrayList<>(heap);
+        result.sort(RANKING);
+        return result;
+    }
+
+    /**
+     * 定期清理最近 7 天内没有销量的商品和超出窗口的已计入订单
+     */
+    @Scheduled(fixedDelayString = "${app.sales.best-seller.prune-interval-ms:3600000}")
+    public void prune() {
+        if (!ready) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            counters.values().removeIf(c -> c.isEmpty(now));
+            long oldest = now - SalesWindow.LAST_WEEK.getSpanMillis();
+            countedOrders.values().removeIf(placedAt -> placedAt < oldest);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private List<BestSeller> findTopSellersFromDatabase(SalesWindow window, int limit) {
+        LocalDateTime endTime = LocalDateTime.now();
+        LocalDateTime startTime = endTime.minus(Duration.ofMillis(window.getSpanMillis()));
+        return orderItemRepository.findTopSellingProducts(startTime, endTime, PageRequest.of(0, limit)).stream()
+                .map(row -> new BestSeller((Long) row[0], ((Number) row[1]).longValue()))
+                .toList();
+    }
+
+    /**
+     * 按订单号记录计入状态
+     * @return 是否需要计入：下单时订单尚未计入，取消时订单已经计入
+     */
+    private static boolean count(Map<String, Long> orders, OrderSalesEvent event) {
+        if (event.getType() == OrderSalesEvent.Type.PLACED) {
+            return orders.putIfAbsent(event.getOrderNumber(), toEpochMillis(event.getPlacedAt())) == null;
+        }
+        return orders.remove(event.getOrderNumber()) != null;
+    }
+
+    private static void apply(Map<Long, SalesCounters> target, OrderSalesEvent event) {
+        long time = toEpochMillis(event.getPlacedAt());
+        int sign = event.getType() == OrderSalesEvent.Type.CANCELLED ? -1 : 1;
+        event.getQuantities().forEach((productId, quantity) ->
+                target.computeIfAbsent(productId, id -> new SalesCounters()).add(time, sign * quantity));
+    }
+
+    private static long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * 单个商品的销量计数：每个时间窗口一组环形时间桶
+     */
+    private static final class SalesCounters {
+
+        // [窗口][槽位]：槽位当前对应的桶序号及该桶的销量
+        final long[][] bucketIds = new long[WINDOWS.length][];
+        final long[][] counts = new long[WINDOWS.length][];
+
+        SalesCounters() {
+            for (SalesWindow window : WINDOWS) {
+                bucketIds[window.ordinal()] = new long[window.getBucketCount()];
+                counts[window.ordinal()] = new long[window.getBucketCount()];
+                Arrays.fill(bucketIds[window.ordinal()], Long.MIN_VALUE);
+            }
+        }
+
+        void add(long time, long delta) {
+            for (SalesWindow window : WINDOWS) {
+                long bucket = time / window.getBucketMillis();
+                int slot = (int) Math.floorMod(bucket, (long) window.getBucketCount());
+                long[] ids = bucketIds[window.ordinal()];
+                if (ids[slot] > bucket) {
+                    // 槽位已被更新的桶占用，说明该时间点已滑出窗口
+                    continue;
+                }
+                if (ids[slot] < bucket) {
+                    ids[slot] = bucket;
+                    counts[window.ordinal()][slot] = 0;
+                }
+                counts[window.ordinal()][slot] += delta;
+            }
+        }
+
+        long total(SalesWindow window, long now) {
+            long current = now / window.getBucketMillis();
+            long oldest = current - window.getBucketCount() + 1;
+            long[] ids = bucketIds[window.ordinal()];
+            long[] values = counts[window.ordinal()];
+            long sum = 0;
+            for (int slot = 0; slot < ids.length; slot++) {
+                if (ids[slot] >= oldest && ids[slot] <= current) {
+                    sum += values[slot];
+                }
+            }
+            return Math.max(0, sum);
+        }
+
+        boolean isEmpty(long now) {
+            return total(SalesWindow.LAST_WEEK, now) == 0;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.nusiss.shoppingcart.sales;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * 销量统计时间窗口
+ * 每个窗口由若干固定长度的时间桶组成（当前桶 + 之前的桶）
+ * @author SpringCA Team
+ */
+public enum SalesWindow {
+
+    LAST_HOUR("1h", 60_000L, 60),
+    LAST_DAY("24h", 3_600_000L, 24),
+    LAST_WEEK("7d", 86_400_000L, 7);
+
+    private final String code;
+    private final long bucketMillis;
+    private final int bucketCount;
+
+    SalesWindow(String code, long bucketMillis, int bucketCount) {
+        this.code = code;
+        this.bucketMillis = bucketMillis;
+        this.bucketCount = bucketCount;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+
+    public int getBucketCount() {
+        return bucketCount;
+    }
+
+    /**
+     * 窗口覆盖的总时长
+     */
+    public long getSpanMillis() {
+        return bucketMillis * bucketCount;
+    }
+
+    /**
+     * 根据代码（1h/24h/7d）查找窗口
+     */
+    public static Optional<SalesWindow> fromCode(String code) {
+        return Arrays.stream(values()).filter(w -> w.code.equalsIgnoreCase(code)).findFirst();
+    }
+}
@@ -0,0 +1,334 @@
+package com.nusiss.shoppingcart.search;
+
+import com.nusiss.shoppingcart.catalog.ActiveProductScanner;
+import com.nusiss.shoppingcart.entity.Product;
+import com.nusiss.shoppingcart.event.ProductChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 商品全文搜索倒排索引
+ * 对名称、描述、分类、品牌建立进程内倒排索引，启动时全量构建，
+ * 商品保存后增量更新，替代 LIKE '%keyword%' 全表扫描
+ * @author SpringCA Team
+ */
+@Component
+public class ProductSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductSearchIndex.class);
+
+    private static final float NAME_WEIGHT = 3.0f;
+    private static final float BRAND_WEIGHT = 2.0f;
+    private static final float CATEGORY_WEIGHT = 2.0f;
+    private static final float DESCRIPTION_WEIGHT = 1.0f;
+    private static final float PREFIX_MATCH_FACTOR = 0.5f;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    private final ActiveProductScanner activeProductScanner;
+    private final boolean enabled;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<ProductChangedEvent> pendingEvents = new ArrayList<>();
+    private IndexData data = new IndexData();
+    private boolean rebuilding = false;
+    private volatile boolean ready = false;
+
+    public ProductSearchIndex(ActiveProductScanner activeProductScanner,
+                              @Value("${app.search.index.enabled:true}") boolean enabled) {
+        this.activeProductScanner = activeProductScanner;
+        this.enabled = enabled;
+    }
+
+    /**
+     * 索引是否已启用并构建完成
+     */
+    public boolean isAvailable() {
+        return enabled && ready;
+    }
+
+    /**
+     * 应用启动完成后全量构建索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    /**
+     * 全量重建索引，构建期间的增量事件会在切换后重放
+     */
+    public void rebuild() {
+        long startTime = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            rebuilding = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        IndexData fresh = new IndexData();
+        try {
+            activeProductScanner.scan(fresh::put);
+        } catch (Exception e) {
+            log.error("构建商品搜索索引失败：{}", e.getMessage());
+            fresh = null;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (fresh != null) {
+                for (ProductChangedEvent event : pendingEvents) {
+                    fresh.apply(event);
+                }
+                data = fresh;
+                ready = true;
+            }
+            pendingEvents.clear();
+            rebuilding = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (fresh != null) {
+            log.info("商品搜索索引构建完成：{} 个商品，{} 个词项，耗时 {}ms",
+                    fresh.documents.size(), fresh.postings.size(), System.currentTimeMillis() - startTime);
+        }
+    }
+
+    /**
+     * 商品变更后增量更新索引（事务提交后执行）
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (!enabled || event.getProduct().getId() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            data.apply(event);
+            if (rebuilding) {
+                pendingEvents.add(event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 搜索商品，按相关度降序、名称升序返回商品ID分页
+     * @param keyword 搜索关键词
+     * @param pageable 分页参数（忽略其中的排序）
+     * @return 商品ID分页结果
+     */
+    public Page<Long> search(String keyword, Pageable pageable) {
+        Set<String> queryTokens = new LinkedHashSet<>(SearchTokenizer.tokenizeForQuery(keyword));
+        if (queryTokens.isEmpty()) {
+            return Page.empty(pageable);
+        }
+
+        List<Map.Entry<Long, Float>> ranked;
+        lock.readLock().lock();
+        try {
+            Map<Long, Float> scores = null;
+            for (String token : queryTokens) {
+                Map<Long, Float> tokenScores = data.scoreToken(token);
+                if (scores == null) {
+                    scores = tokenScores;
+                } else {
+                    // 所有查询词都必须命中（AND 语义）
+                    scores.keySet().retainAll(tokenScores.keySet());
+                    scores.replaceAll((id, score) -> score + tokenScores.get(id));
+                }
+                if (scores.isEmpty()) {
+                    return new PageImpl<>(List.of(), pageable, 0);
+                }
+            }
+
+            Map<Long, IndexedDocument> documents = data.documents;
+            ranked = new ArrayList<>(scores.entrySet());
+            ranked.sort(Comparator.<Map.Entry<Long, Float>>comparingDouble(Map.Entry::getValue).reversed()
+                    .thenComparing(entry -> documents.get(entry.getKey()).sortName)
+                    .thenComparing(Map.Entry::getKey));
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        int from = (int) Math.min(pageable.getOffset(), ranked.size());
+        int to = Math.min(from + pageable.getPageSize(), ranked.size());
+        List<Long> ids = ranked.subList(from, to).stream().map(Map.Entry::getKey).toList();
+        return new PageImpl<>(ids, pageable, ranked.size());
+    }
+
+    /**
+     * 索引数据：词项 -> 倒排表，商品ID -> 文档信息
+     */
+    private static final class IndexData {
+
+        final TreeMap<String, PostingList> postings = new TreeMap<>();
+        final Map<Long, IndexedDocument> documents = new HashMap<>();
+
+        void apply(ProductChangedEvent event) {
+            Product product = event.getProduct();
+            if (event.isActiveAfterChange()) {
+                IndexedDocument existing = documents.get(product.getId());
+                if (existing == null || existing.contentHash != contentHash(product)) {
+                    put(product);
+                }
+            } else {
+                remove(product.getId());
+            }
+        }
+
+        void put(Product product) {
+            Long id = product.getId();
+            remove(id);
+
+            Map<String, Float> weights = new HashMap<>();
+            addField(weights, product.getName(), NAME_WEIGHT);
+            addField(weights, product.getBrand(), BRAND_WEIGHT);
+            addField(weights, product.getCategory(), CATEGORY_WEIGHT);
+            addField(weights, product.getDescription(), DESCRIPTION_WEIGHT);
+
+            for (Map.Entry<String, Float> entry : weights.entrySet()) {
+                postings.computeIfAbsent(entry.getKey(), term -> new PostingList()).add(id, entry.getValue());
+            }
+            String sortName = product.getName() == null ? "" : product.getName();
+            documents.put(id, new IndexedDocument(sortName, weights.keySet().toArray(new String[0]),
+                    contentHash(product)));
+        }
+
+        void remove(Long id) {
+            IndexedDocument document = documents.remove(id);
+            if (document == null) {
+                return;
+            }
+            for (String term : document.terms) {
+                PostingList list = postings.get(term);
+                if (list != null) {
+                    list.remove(id);
+                    if (list.size == 0) {
+                        postings.remove(term);
+                    }
+                }
+            }
+        }
+
+        /**
+         * 计算单个查询词的命中得分，拉丁词项允许前缀扩展
+         */
+        Map<Long, Float> scoreToken(String token) {
+            Map<Long, Float> scores = new HashMap<>();
+            NavigableMap<String, PostingList> matches = SearchTokenizer.isWordToken(token)
+                    ? postings.subMap(token, true, token + Character.MAX_VALUE, true)
+                    : postings.subMap(token, true, token, true);
+
+            int expansions = 0;
+            for (Map.Entry<String, PostingList> entry : matches.entrySet()) {
+                if (expansions++ >= MAX_PREFIX_EXPANSIONS) {
+                    break;
+                }
+                PostingList list = entry.getValue();
+                float idf = (float) Math.log(1.0 + (double) documents.size() / list.size);
+                float factor = entry.getKey().equals(token) ? 1.0f : PREFIX_MATCH_FACTOR;
+                for (int i = 0; i < list.size; i++) {
+                    float score = list.weights[i] * idf * factor;
+                    scores.merge(list.ids[i], score, Math::max);
+                }
+            }
+            return scores;
+        }
+
+        private static void addField(Map<String, Float> weights, String text, float fieldWeight) {
+            Map<String, Integer> termFrequencies = new HashMap<>();
+            for (String token : SearchTokenizer.tokenizeForIndex(text)) {
+                termFrequencies.merge(token, 1, Integer::sum);
+            }
+            for (Map.Entry<String, Integer> entry : termFrequencies.entrySet()) {
+                float weight = fieldWeight * (1.0f + (float) Math.log(entry.getValue()));
+                weights.merge(entry.getKey(), weight, Float::sum);
+            }
+        }
+
+        private static int contentHash(Product product) {
+            return Objects.hash(product.getName(), product.getDescription(),
+                    product.getCategory(), product.getBrand());
+        }
+    }
+
+    /**
+     * 已索引商品的元数据，用于删除旧词项和同分排序
+     */
+    private static final class IndexedDocument {
+
+        final String sortName;
+        final String[] terms;
+        final int contentHash;
+
+        IndexedDocument(String sortName, String[] terms, int contentHash) {
+            this.sortName = sortName;
+            this.terms = terms;
+            this.contentHash = contentHash;
+        }
+    }
+
+    /**
+     * 按商品ID有序存放的倒排表（基本类型数组，减少装箱开销）
+     */
+    private static final class PostingList {
+
+        long[] ids = new long[4];
+        float[] weights = new float[4];
+        int size = 0;
+
+        void add(long id, float weight) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) {
+                weights[pos] = weight;
+                return;
+            }
+            int insertAt = -pos - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+            System.arraycopy(weights, insertAt, weights, insertAt + 1, size - insertAt);
+            ids[insertAt] = id;
+            weights[insertAt] = weight;
+            size++;
+        }
+
+        void remove(long id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos < 0) {
+                return;
+            }
+            System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+            System.arraycopy(weights, pos + 1, weights, pos, size - pos - 1);
+            size--;
+        }
+    }
+}
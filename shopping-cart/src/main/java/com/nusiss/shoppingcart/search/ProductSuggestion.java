@@ -0,0 +1,85 @@
+package com.nusiss.shoppingcart.search;
+
+import com.nusiss.shoppingcart.entity.Product;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * 搜索建议条目
+ * 只保存建议下拉框需要的字段，查询时无需访问数据库
+ * @author SpringCA Team
+ */
+public class ProductSuggestion {
+
+    private final Long id;
+    private final String name;
+    private final String category;
+    private final String brand;
+    private final BigDecimal price;
+    private final int reviewCount;
+
+    public ProductSuggestion(Long id, String name, String category, String brand,
+                             BigDecimal price, int reviewCount) {
+        this.id = id;
+        this.name = name;
+        this.category = category;
+        this.brand = brand;
+        this.price = price;
+        this.reviewCount = reviewCount;
+    }
+
+    /**
+     * 从商品实体创建建议条目
+     */
+    public static ProductSuggestion from(Product product) {
+        int reviewCount = product.getReviewCount() == null ? 0 : product.getReviewCount();
+        return new ProductSuggestion(product.getId(), product.getName(), product.getCategory(),
+                product.getBrand(), product.getPrice(), reviewCount);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public String getBrand() {
+        return brand;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public int getReviewCount() {
+        return reviewCount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ProductSuggestion that)) {
+            return false;
+        }
+        return reviewCount == that.reviewCount
+                && Objects.equals(id, that.id)
+                && Objects.equals(name, that.name)
+                && Objects.equals(category, that.category)
+                && Objects.equals(brand, that.brand)
+                && (price == null ? that.price == null : that.price != null && price.compareTo(that.price) == 0);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, name, category, brand, reviewCount);
+    }
+}
@@ -0,0 +1,123 @@
+package com.nusiss.shoppingcart.search;
+
+import com.nusiss.shoppingcart.catalog.ActiveProductScanner;
+import com.nusiss.shoppingcart.entity.Product;
+import com.nusiss.shoppingcart.event.ProductChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 商品搜索建议索引
+ * 维护上架商品的建议条目，并在后台定期重建前缀树；
+ * 建议查询完全基于内存，不访问数据库
+ * @author SpringCA Team
+ */
+@Component
+public class ProductSuggestionIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductSuggestionIndex.class);
+
+    private final ActiveProductScanner activeProductScanner;
+    private final boolean enabled;
+    private final int topK;
+
+    private final Map<Long, ProductSuggestion> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+    private volatile SuggestionTrie trie = SuggestionTrie.EMPTY;
+    private volatile boolean ready = false;
+
+    public ProductSuggestionIndex(ActiveProductScanner activeProductScanner,
+                                  @Value("${app.search.suggestion.enabled:true}") boolean enabled,
+                                  @Value("${app.search.suggestion.top-k:10}") int topK) {
+        this.activeProductScanner = activeProductScanner;
+        this.enabled = enabled;
+        this.topK = topK;
+    }
+
+    /**
+     * 是否启用建议索引（启用后建议查询不再回退到数据库）
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 应用启动完成后加载所有上架商品并构建前缀树
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            activeProductScanner.scan(product -> entries.put(product.getId(), ProductSuggestion.from(product)));
+            rebuildTrie();
+            ready = true;
+        } catch (Exception e) {
+            log.error("加载搜索建议索引失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 商品变更后更新建议条目，前缀树由后台任务重建
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        Product product = event.getProduct();
+        if (!enabled || product.getId() == null) {
+            return;
+        }
+        if (event.isActiveAfterChange()) {
+            ProductSuggestion suggestion = ProductSuggestion.from(product);
+            ProductSuggestion previous = entries.put(product.getId(), suggestion);
+            if (!suggestion.equals(previous)) {
+                dirty.set(true);
+            }
+        } else if (entries.remove(product.getId()) != null) {
+            dirty.set(true);
+        }
+    }
+
+    /**
+     * 后台定时检查，有变更时重建前缀树
+     */
+    @Scheduled(fixedDelayString = "${app.search.suggestion.refresh-interval-ms:2000}")
+    public void refreshIfDirty() {
+        if (ready && dirty.compareAndSet(true, false)) {
+            rebuildTrie();
+        }
+    }
+
+    /**
+     * 查询搜索建议
+     * @param query 用户输入
+     * @param limit 返回数量上限
+     * @return 按评论数排序的建议列表
+     */
+    public List<ProductSuggestion> suggest(String query, int limit) {
+        String prefix = SuggestionTrie.normalize(query);
+        if (prefix.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        return trie.lookup(prefix, Math.min(limit, topK));
+    }
+
+    private void rebuildTrie() {
+        long startTime = System.currentTimeMillis();
+        SuggestionTrie rebuilt = SuggestionTrie.build(List.copyOf(entries.values()), topK);
+        trie = rebuilt;
+        log.debug("搜索建议前缀树重建完成：{} 个商品，{} 个节点，耗时 {}ms",
+                entries.size(), rebuilt.nodeCount(), System.currentTimeMillis() - startTime);
+    }
+}
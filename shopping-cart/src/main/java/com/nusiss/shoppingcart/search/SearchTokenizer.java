@@ -0,0 +1,102 @@
+package com.nusiss.shoppingcart.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 搜索分词器
+ * 拉丁字母/数字按单词切分，中日韩文字按单字和二元组（bigram）切分，
+ * 以支持中英文混排的商品名称
+ * @author SpringCA Team
+ */
+public final class SearchTokenizer {
+
+    private SearchTokenizer() {
+    }
+
+    /**
+     * 对索引文本分词：中日韩文字同时产出单字和二元组
+     * @param text 原始文本
+     * @return 词项列表（可能重复）
+     */
+    public static List<String> tokenizeForIndex(String text) {
+        List<String> tokens = new ArrayList<>();
+        tokenize(text, true, tokens);
+        return tokens;
+    }
+
+    /**
+     * 对查询文本分词：中日韩文字连续两字以上时只产出二元组
+     * @param text 查询文本
+     * @return 词项列表（可能重复）
+     */
+    public static List<String> tokenizeForQuery(String text) {
+        List<String> tokens = new ArrayList<>();
+        tokenize(text, false, tokens);
+        return tokens;
+    }
+
+    /**
+     * 判断词项是否由拉丁字母/数字组成（查询时可做前缀扩展）
+     */
+    public static boolean isWordToken(String token) {
+        return !token.isEmpty() && !isCjk(token.codePointAt(0));
+    }
+
+    private static void tokenize(String text, boolean forIndex, List<String> out) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        String normalized = text.toLowerCase(Locale.ROOT);
+        StringBuilder word = new StringBuilder();
+        List<String> cjkRun = new ArrayList<>();
+
+        int i = 0;
+        while (i < normalized.length()) {
+            int cp = normalized.codePointAt(i);
+            i += Character.charCount(cp);
+
+            if (isCjk(cp)) {
+                flushWord(word, out);
+                cjkRun.add(new String(Character.toChars(cp)));
+            } else if (Character.isLetterOrDigit(cp)) {
+                flushCjk(cjkRun, forIndex, out);
+                word.appendCodePoint(cp);
+            } else {
+                flushWord(word, out);
+                flushCjk(cjkRun, forIndex, out);
+            }
+        }
+        flushWord(word, out);
+        flushCjk(cjkRun, forIndex, out);
+    }
+
+    private static void flushWord(StringBuilder word, List<String> out) {
+        if (word.length() > 0) {
+            out.add(word.toString());
+            word.setLength(0);
+        }
+    }
+
+    private static void flushCjk(List<String> run, boolean forIndex, List<String> out) {
+        if (run.isEmpty()) {
+            return;
+        }
+        if (forIndex || run.size() == 1) {
+            out.addAll(run);
+        }
+        for (int i = 0; i + 1 < run.size(); i++) {
+            out.add(run.get(i) + run.get(i + 1));
+        }
+        run.clear();
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -0,0 +1,253 @@
+package com.nusiss.shoppingcart.search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+
+/**
+ * 不可变的前缀树（字典树）
+ * 节点按广度优先顺序平铺为基本类型数组，每个节点预先计算按评论数排序的 Top-K 建议，
+ * 查询只需沿前缀逐字符二分查找子节点，再截取该节点的 Top-K 列表
+ * @author SpringCA Team
+ */
+final class SuggestionTrie {
+
+    static final SuggestionTrie EMPTY = build(List.of(), 1);
+
+    private static final int MAX_KEY_LENGTH = 40;
+    private static final int MAX_SUFFIX_KEYS = 6;
+
+    // 建议条目，按权重排好序：下标越小排名越靠前
+    private final ProductSuggestion[] suggestions;
+    // 节点的入边字符（根节点无意义）
+    private final char[] labels;
+    // 子节点在广度优先顺序中连续存放：[firstChild, firstChild + childCount)
+    private final int[] firstChild;
+    private final int[] childCount;
+    // 每个节点的 Top-K 建议：topEntries[topStart .. topStart + topCount)
+    private final int[] topStart;
+    private final int[] topCount;
+    private final int[] topEntries;
+
+    private SuggestionTrie(ProductSuggestion[] suggestions, char[] labels, int[] firstChild, int[] childCount,
+                           int[] topStart, int[] topCount, int[] topEntries) {
+        this.suggestions = suggestions;
+        this.labels = labels;
+        this.firstChild = firstChild;
+        this.childCount = childCount;
+        this.topStart = topStart;
+        this.topCount = topCount;
+        this.topEntries = topEntries;
+    }
+
+    /**
+     * 查询前缀对应的建议
+     * @param prefix 已规范化的前缀
+     * @param limit 返回数量上限
+     * @return 建议列表
+     */
+    List<ProductSuggestion> lookup(String prefix, int limit) {
+        int node = 0;
+        for (int i = 0; i < prefix.length(); i++) {
+            node = findChild(node, prefix.charAt(i));
+            if (node < 0) {
+                return List.of();
+            }
+        }
+        int count = Math.min(topCount[node], limit);
+        List<ProductSuggestion> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(suggestions[topEntries[topStart[node] + i]]);
+        }
+        return result;
+    }
+
+    /**
+     * 节点数量（用于日志统计）
+     */
+    int nodeCount() {
+        return labels.length;
+    }
+
+    private int findChild(int node, char c) {
+        int low = firstChild[node];
+        int high = low + childCount[node] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (labels[mid] < c) {
+                low = mid + 1;
+            } else if (labels[mid] > c) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 规范化查询词或索引键：小写、去首尾空白、合并连续空白
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 构建前缀树
+     * @param items 建议条目
+     * @param topK 每个节点保留的建议数量
+     * @return 不可变前缀树
+     */
+    static SuggestionTrie build(Collection<ProductSuggestion> items, int topK) {
+        ProductSuggestion[] ranked = items.toArray(new ProductSuggestion[0]);
+        Arrays.sort(ranked, Comparator.comparingInt(ProductSuggestion::getReviewCount).reversed()
+                .thenComparing(s -> s.getName() == null ? "" : s.getName())
+                .thenComparing(ProductSuggestion::getId));
+
+        BuildNode root = new BuildNode();
+        for (int i = 0; i < ranked.length; i++) {
+            for (String key : keysFor(ranked[i])) {
+                BuildNode node = root;
+                for (int j = 0; j < key.length(); j++) {
+                    node = node.children.computeIfAbsent(key.charAt(j), c -> new BuildNode());
+                }
+                node.addEntry(i);
+            }
+        }
+        computeTop(root, topK);
+
+        // 广度优先平铺，使每个节点的子节点在数组中连续
+        List<BuildNode> order = new ArrayList<>();
+        List<Character> orderLabels = new ArrayList<>();
+        Deque<BuildNode> queue = new ArrayDeque<>();
+        order.add(root);
+        orderLabels.add('\0');
+        queue.add(root);
+        int[] firstChildTmp = new int[16];
+        int nodeIndex = 0;
+        while (!queue.isEmpty()) {
+            BuildNode node = queue.poll();
+            if (nodeIndex == firstChildTmp.length) {
+                firstChildTmp = Arrays.copyOf(firstChildTmp, nodeIndex * 2);
+            }
+            firstChildTmp[nodeIndex++] = order.size();
+            node.children.forEach((label, child) -> {
+                order.add(child);
+                orderLabels.add(label);
+                queue.add(child);
+            });
+        }
+
+        int size = order.size();
+        char[] labels = new char[size];
+        int[] firstChild = Arrays.copyOf(firstChildTmp, size);
+        int[] childCount = new int[size];
+        int[] topStart = new int[size];
+        int[] topCount = new int[size];
+        int totalTop = 0;
+        for (BuildNode node : order) {
+            totalTop += node.top.length;
+        }
+        int[] topEntries = new int[totalTop];
+        int cursor = 0;
+        for (int n = 0; n < size; n++) {
+            BuildNode node = order.get(n);
+            labels[n] = orderLabels.get(n);
+            childCount[n] = node.children.size();
+            topStart[n] = cursor;
+            topCount[n] = node.top.length;
+            System.arraycopy(node.top, 0, topEntries, cursor, node.top.length);
+            cursor += node.top.length;
+        }
+        return new SuggestionTrie(ranked, labels, firstChild, childCount, topStart, topCount, topEntries);
+    }
+
+    /**
+     * 后序遍历计算每个节点的 Top-K：合并自身条目与子节点的 Top-K，取下标最小的 K 个
+     * （条目按排名递增插入，自身条目天然有序且不重复）
+     */
+    private static void computeTop(BuildNode node, int topK) {
+        int[] merged = Arrays.copyOf(node.entries, Math.min(node.entryCount, topK));
+        for (BuildNode child : node.children.values()) {
+            computeTop(child, topK);
+            merged = mergeTop(merged, child.top, topK);
+        }
+        node.top = merged;
+        node.entries = null;
+    }
+
+    private static int[] mergeTop(int[] a, int[] b, int topK) {
+        int[] out = new int[Math.min(a.length + b.length, topK)];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        int last = -1;
+        while (n < out.length && (i < a.length || j < b.length)) {
+            int next = (j >= b.length || (i < a.length && a[i] <= b[j])) ? a[i++] : b[j++];
+            if (next != last) {
+                out[n++] = next;
+                last = next;
+            }
+        }
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    /**
+     * 生成条目的索引键：完整名称、品牌，以及名称中每个单词/汉字起始处的后缀
+     */
+    private static List<String> keysFor(ProductSuggestion suggestion) {
+        List<String> keys = new ArrayList<>();
+        String name = normalize(suggestion.getName());
+        addKey(keys, name);
+        addKey(keys, normalize(suggestion.getBrand()));
+
+        int suffixes = 0;
+        for (int i = 1; i < name.length() && suffixes < MAX_SUFFIX_KEYS; i++) {
+            char prev = name.charAt(i - 1);
+            char c = name.charAt(i);
+            boolean wordStart = !Character.isLetterOrDigit(prev) && Character.isLetterOrDigit(c);
+            boolean cjkStart = Character.isIdeographic(c);
+            if (wordStart || cjkStart) {
+                addKey(keys, name.substring(i));
+                suffixes++;
+            }
+        }
+        return keys;
+    }
+
+    private static void addKey(List<String> keys, String key) {
+        if (!key.isEmpty()) {
+            keys.add(key.length() > MAX_KEY_LENGTH ? key.substring(0, MAX_KEY_LENGTH) : key);
+        }
+    }
+
+    /**
+     * 构建阶段使用的可变节点
+     */
+    private static final class BuildNode {
+
+        final TreeMap<Character, BuildNode> children = new TreeMap<>();
+        int[] entries = new int[0];
+        int entryCount = 0;
+        int[] top;
+
+        void addEntry(int entry) {
+            if (entryCount > 0 && entries[entryCount - 1] == entry) {
+                return;
+            }
+            if (entryCount == entries.length) {
+                entries = Arrays.copyOf(entries, Math.max(2, entryCount * 2));
+            }
+            entries[entryCount++] = entry;
+        }
+    }
+}
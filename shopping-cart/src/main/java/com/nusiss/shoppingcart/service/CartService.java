@@ -1,18 +1,39 @@
 package com.nusiss.shoppingcart.service;
 
+import com.nusiss.shoppingcart.cart.CartWriteBehindStore;
+import com.nusiss.shoppingcart.dto.CartBatchResult;
+import com.nusiss.shoppingcart.dto.CartDelta;
+import com.nusiss.shoppingcart.dto.CartLine;
+import com.nusiss.shoppingcart.dto.CartOperation;
+import com.nusiss.shoppingcart.dto.CartSummary;
+import com.nusiss.shoppingcart.dto.CartTotals;
 import com.nusiss.shoppingcart.entity.Cart;
 import com.nusiss.shoppingcart.entity.CartItem;
 import com.nusiss.shoppingcart.entity.Product;
 import com.nusiss.shoppingcart.entity.User;
+import com.nusiss.shoppingcart.exception.BusinessException;
 import com.nusiss.shoppingcart.repository.CartItemRepository;
 import com.nusiss.shoppingcart.repository.CartRepository;
+import com.nusiss.shoppingcart.retry.RetryOnConflict;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.sql.DataSource;
 import java.math.BigDecimal;
+import java.sql.DatabaseMetaData;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -28,13 +49,42 @@ public class CartService {
     private final CartRepository cartRepository;
     private final CartItemRepository cartItemRepository;
     private final ProductService productService;
+    private final CartWriteBehindStore cartStore;
+    private final int maxBatchOperations;
+    private final boolean mysql;
     
     public CartService(CartRepository cartRepository, 
                       CartItemRepository cartItemRepository,
-                      ProductService productService) {
+                      ProductService productService,
+                      CartWriteBehindStore cartStore,
+                      DataSource dataSource,
+                      @Value("${app.cart.batch.max-operations:100}") int maxBatchOperations) {
         this.cartRepository = cartRepository;
         this.cartItemRepository = cartItemRepository;
         this.productService = productService;
+        this.cartStore = cartStore;
+        this.maxBatchOperations = maxBatchOperations;
+        // 加入商品的单条语句按数据库选择：MySQL、MariaDB 使用 ON DUPLICATE KEY UPDATE，H2 使用 MERGE
+        this.mysql = detectUpsertDialect(dataSource);
+    }
+    
+    /**
+     * 按数据源的元数据识别数据库（不依赖连接地址的写法），不支持的数据库启动时直接失败
+     * @return 是否使用 MySQL 语法
+     */
+    private static boolean detectUpsertDialect(DataSource dataSource) {
+        String productName;
+        try {
+            productName = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+        } catch (MetaDataAccessException e) {
+            throw new IllegalStateException("无法识别购物车使用的数据库：" + e.getMessage(), e);
+        }
+        DatabaseDriver driver = DatabaseDriver.fromProductName(productName);
+        return switch (driver) {
+            case MYSQL, MARIADB -> true;
+            case H2 -> false;
+            default -> throw new IllegalStateException("购物车加入商品不支持该数据库：" + productName);
+        };
     }
     
     /**
@@ -69,59 +119,78 @@ public class CartService {
      * @param quantity 数量
      * @return 是否添加成功
      */
+    @RetryOnConflict
     @Transactional
     public boolean addToCart(User user, Long productId, Integer quantity) {
+        return addItem(user, productId, quantity).isPresent();
+    }
+    
+    /**
+     * 添加商品到购物车，返回本次变更的增量
+     * @param user 用户对象
+     * @param productId 商品ID
+     * @param quantity 数量
+     * @return 变更的商品行、新汇总及版本号；添加失败时为空
+     */
+    @RetryOnConflict
+    @Transactional
+    public Optional<CartDelta> addItem(User user, Long productId, Integer quantity) {
         try {
             // 验证商品是否存在且有效
             Optional<Product> productOpt = productService.getProductById(productId);
             if (productOpt.isEmpty() || !productOpt.get().getActive()) {
                 log.warn("商品不存在或已下架：{}", productId);
-                return false;
+                return Optional.empty();
             }
             
             Product product = productOpt.get();
             
             // 检查库存
-            if (!product.hasStock(quantity)) {
+            if (!productService.hasAvailableStock(product, user.getId(), quantity)) {
                 log.warn("商品库存不足：{}, 请求数量：{}, 可用库存：{}", 
                         productId, quantity, product.getStock());
-                return false;
+                return Optional.empty();
+            }
+            
+            // 写回模式下只修改内存中的购物车
+            if (cartStore.isEnabled()) {
+                return cartStore.add(user, product, quantity);
             }
             
             // 获取或创建购物车
             Cart cart = getOrCreateCart(user);
             
-            // 检查购物车中是否已有该商品
-            Optional<CartItem> existingItemOpt = cartItemRepository.findByCartAndProduct(cart, product);
+            // 单条语句累加已有商品行或插入新行，库存检查在同一语句中完成，
+            // 并发加入同一商品时由唯一索引保证不产生重复行
+            LocalDateTime now = LocalDateTime.now();
+            int rows = mysql
+                    ? cartItemRepository.insertOrIncrementQuantity(cart.getId(), productId, quantity, now)
+                    : cartItemRepository.mergeQuantity(cart.getId(), productId, quantity, now);
+            if (rows == 0) {
+                log.warn("商品库存不足：{}, 新增：{}, 可用库存：{}", productId, quantity, product.getStock());
+                return Optional.empty();
+            }
             
-            if (existingItemOpt.isPresent()) {
-                // 更新现有商品数量
-                CartItem existingItem = existingItemOpt.get();
-                int newQuantity = existingItem.getQuantity() + quantity;
-                
-                // 再次检查库存
-                if (!product.hasStock(newQuantity)) {
-                    log.warn("商品库存不足：{}, 购物车现有：{}, 新增：{}, 可用库存：{}", 
-                            productId, existingItem.getQuantity(), quantity, product.getStock());
-                    return false;
-                }
-                
-                existingItem.setQuantity(newQuantity);
-                cartItemRepository.save(existingItem);
-                log.info("更新购物车商品数量：用户 {}, 商品 {}, 新数量 {}", 
-                        user.getId(), productId, newQuantity);
-            } else {
-                // 添加新商品到购物车
-                CartItem cartItem = new CartItem(cart, product, quantity);
-                cartItemRepository.save(cartItem);
+            CartItem cartItem = cartItemRepository.findWithProduct(cart.getId(), productId).orElseThrow();
+            // 已有商品行的数量至少为 1，累加后必然大于本次数量
+            boolean inserted = cartItem.getQuantity().equals(quantity);
+            cartItem.setCartVersion(adjustTotals(cart, cartItem, quantity, inserted ? 1 : 0));
+            cartItemRepository.save(cartItem);
+            if (inserted) {
                 log.info("添加商品到购物车：用户 {}, 商品 {}, 数量 {}", 
                         user.getId(), productId, quantity);
+            } else {
+                log.info("更新购物车商品数量：用户 {}, 商品 {}, 新数量 {}", 
+                        user.getId(), productId, cartItem.getQuantity());
             }
             
-            return true;
+            return Optional.of(CartDelta.ofChanges(getCartTotals(user), List.of(CartLine.from(cartItem)), List.of()));
+        } catch (ConcurrencyFailureException e) {
+            // 版本号冲突、锁等待超时和死锁交给重试切面，在新事务中重新执行
+            throw e;
         } catch (Exception e) {
             log.error("添加商品到购物车失败：{}", e.getMessage());
-            return false;
+            return Optional.empty();
         }
     }
     
@@ -132,13 +201,31 @@ public class CartService {
      * @param quantity 新数量
      * @return 是否更新成功
      */
+    @RetryOnConflict
     @Transactional
     public boolean updateCartItemQuantity(User user, Long cartItemId, Integer quantity) {
+        return updateItem(user, cartItemId, quantity).isPresent();
+    }
+    
+    /**
+     * 更新购物车商品数量，返回本次变更的增量
+     * @param user 用户对象
+     * @param cartItemId 购物车项ID
+     * @param quantity 新数量（不大于0时删除该项）
+     * @return 变更的商品行、新汇总及版本号；更新失败时为空
+     */
+    @RetryOnConflict
+    @Transactional
+    public Optional<CartDelta> updateItem(User user, Long cartItemId, Integer quantity) {
         try {
+            if (cartStore.isEnabled()) {
+                return quantity <= 0 ? cartStore.remove(user, cartItemId) : cartStore.update(user, cartItemId, quantity);
+            }
+            
             Optional<CartItem> cartItemOpt = cartItemRepository.findById(cartItemId);
             if (cartItemOpt.isEmpty()) {
                 log.warn("购物车项不存在：{}", cartItemId);
-                return false;
+                return Optional.empty();
             }
             
             CartItem cartItem = cartItemOpt.get();
@@ -146,30 +233,35 @@ public class CartService {
             // 验证购物车项属于当前用户
             if (!cartItem.getCart().getUser().getId().equals(user.getId())) {
                 log.warn("购物车项不属于当前用户：用户 {}, 购物车项 {}", user.getId(), cartItemId);
-                return false;
+                return Optional.empty();
             }
             
             // 如果数量为0，删除该项
             if (quantity <= 0) {
-                return removeFromCart(user, cartItemId);
+                return removeItem(user, cartItemId);
             }
             
             // 检查库存
-            if (!cartItem.getProduct().hasStock(quantity)) {
+            if (!productService.hasAvailableStock(cartItem.getProduct(), user.getId(), quantity)) {
                 log.warn("商品库存不足：{}, 请求数量：{}, 可用库存：{}", 
                         cartItem.getProduct().getId(), quantity, cartItem.getProduct().getStock());
-                return false;
+                return Optional.empty();
             }
             
+            long version = adjustTotals(cartItem.getCart(), cartItem, quantity - cartItem.getQuantity(), 0);
             cartItem.setQuantity(quantity);
+            cartItem.setCartVersion(version);
             cartItemRepository.save(cartItem);
             log.info("更新购物车商品数量：用户 {}, 购物车项 {}, 新数量 {}", 
                     user.getId(), cartItemId, quantity);
             
-            return true;
+            return Optional.of(CartDelta.ofChanges(getCartTotals(user), List.of(CartLine.from(cartItem)), List.of()));
+        } catch (ConcurrencyFailureException e) {
+            // 版本号冲突、锁等待超时和死锁交给重试切面，在新事务中重新执行
+            throw e;
         } catch (Exception e) {
             log.error("更新购物车商品数量失败：{}", e.getMessage());
-            return false;
+            return Optional.empty();
         }
     }
     
@@ -179,13 +271,30 @@ public class CartService {
      * @param cartItemId 购物车项ID
      * @return 是否移除成功
      */
+    @RetryOnConflict
     @Transactional
     public boolean removeFromCart(User user, Long cartItemId) {
+        return removeItem(user, cartItemId).isPresent();
+    }
+    
+    /**
+     * 从购物车移除商品，返回本次变更的增量
+     * @param user 用户对象
+     * @param cartItemId 购物车项ID
+     * @return 被删除的购物车项ID、新汇总及版本号；移除失败时为空
+     */
+    @RetryOnConflict
+    @Transactional
+    public Optional<CartDelta> removeItem(User user, Long cartItemId) {
         try {
+            if (cartStore.isEnabled()) {
+                return cartStore.remove(user, cartItemId);
+            }
+            
             Optional<CartItem> cartItemOpt = cartItemRepository.findById(cartItemId);
             if (cartItemOpt.isEmpty()) {
                 log.warn("购物车项不存在：{}", cartItemId);
-                return false;
+                return Optional.empty();
             }
             
             CartItem cartItem = cartItemOpt.get();
@@ -193,17 +302,190 @@ public class CartService {
             // 验证购物车项属于当前用户
             if (!cartItem.getCart().getUser().getId().equals(user.getId())) {
                 log.warn("购物车项不属于当前用户：用户 {}, 购物车项 {}", user.getId(), cartItemId);
-                return false;
+                return Optional.empty();
             }
             
             cartItemRepository.delete(cartItem);
+            adjustTotals(cartItem.getCart(), cartItem, -cartItem.getQuantity(), -1);
             log.info("从购物车移除商品：用户 {}, 购物车项 {}", user.getId(), cartItemId);
             
-            return true;
+            return Optional.of(CartDelta.ofChanges(getCartTotals(user), List.of(), List.of(cartItemId)));
+        } catch (ConcurrencyFailureException e) {
+            // 版本号冲突、锁等待超时和死锁交给重试切面，在新事务中重新执行
+            throw e;
         } catch (Exception e) {
             log.error("从购物车移除商品失败：{}", e.getMessage());
-            return false;
+            return Optional.empty();
+        }
+    }
+    
+    /**
+     * 批量修改购物车
+     * 在一个事务内按顺序推演所有操作得到每个商品的目标数量，对变化的商品一次性查询并校验库存，
+     * 全部通过后才写入，并只更新一次汇总列；任一操作无效或库存不足时不做任何修改
+     * @param user 用户对象
+     * @param operations 批量操作
+     * @return 批量操作结果
+     */
+    @RetryOnConflict
+    @Transactional
+    public CartBatchResult applyBatch(User user, List<CartOperation> operations) {
+        if (operations == null || operations.isEmpty() || operations.size() > maxBatchOperations) {
+            throw BusinessException.invalidCartBatch(maxBatchOperations);
+        }
+        cartStore.flushAndEvict(user.getId());
+        
+        Cart cart = cartRepository.findActiveWithItemsByUserId(user.getId()).orElse(null);
+        Map<Long, CartItem> itemsById = new HashMap<>();
+        Map<Long, CartItem> itemsByProduct = new HashMap<>();
+        if (cart != null) {
+            for (CartItem item : cart.getCartItems()) {
+                itemsById.put(item.getId(), item);
+                itemsByProduct.put(item.getProduct().getId(), item);
+            }
+        }
+        
+        // 按操作顺序推演每个商品的目标数量
+        Map<Long, Integer> targets = new LinkedHashMap<>();
+        itemsByProduct.forEach((productId, item) -> targets.put(productId, item.getQuantity()));
+        List<String> errors = new ArrayList<>();
+        for (int i = 0; i < operations.size(); i++) {
+            String error = applyOperation(operations.get(i), itemsById, targets);
+            if (error != null) {
+                errors.add("第 " + (i + 1) + " 项：" + error);
+            }
+        }
+        
+        // 只校验数量发生变化的商品，新加入的商品一次性查询
+        Map<Long, Integer> changes = new LinkedHashMap<>();
+        targets.forEach((productId, quantity) -> {
+            CartItem item = itemsByProduct.get(productId);
+            if (quantity != (item == null ? 0 : item.getQuantity())) {
+                changes.put(productId, quantity);
+            }
+        });
+        Map<Long, Product> newProducts = errors.isEmpty()
+                ? productService.getProductsByIds(changes.keySet().stream()
+                        .filter(productId -> !itemsByProduct.containsKey(productId))
+                        .toList())
+                : Map.of();
+        if (errors.isEmpty()) {
+            changes.forEach((productId, quantity) -> {
+                CartItem item = itemsByProduct.get(productId);
+                Product product = item != null ? item.getProduct() : newProducts.get(productId);
+                int current = item == null ? 0 : item.getQuantity();
+                if (product == null || (quantity > current && !Boolean.TRUE.equals(product.getActive()))) {
+                    errors.add("商品不存在或已下架：" + productId);
+                } else if (quantity > 0 && !product.hasStock(quantity)) {
+                    errors.add("商品库存不足：" + product.getName() + "，需要 " + quantity
+                            + "，可用 " + product.getStock());
+                }
+            });
+        }
+        if (!errors.isEmpty()) {
+            log.warn("批量修改购物车被拒绝：用户 {}, 错误 {}", user.getId(), errors);
+            return CartBatchResult.rejected(operations.size(), errors, getCartTotals(user));
+        }
+        
+        if (cart == null) {
+            cart = cartRepository.save(new Cart(user));
+        }
+        if (changes.isEmpty()) {
+            log.info("批量修改购物车：用户 {}, 操作 {} 项, 无商品变更", user.getId(), operations.size());
+            return CartBatchResult.applied(operations.size(),
+                    CartDelta.ofChanges(getCartTotals(user), List.of(), List.of()));
+        }
+        
+        // 先一次性更新汇总列并取得新版本号，变更的商品项带上该版本号写入
+        int quantityDelta = 0;
+        long amountCentsDelta = 0;
+        int itemCountDelta = 0;
+        for (Map.Entry<Long, Integer> change : changes.entrySet()) {
+            CartItem item = itemsByProduct.get(change.getKey());
+            Product product = item != null ? item.getProduct() : newProducts.get(change.getKey());
+            int current = item == null ? 0 : item.getQuantity();
+            int quantity = change.getValue();
+            
+            // 汇总列只统计上架商品
+            if (Boolean.TRUE.equals(product.getActive())) {
+                BigDecimal unitPrice = item != null ? item.getUnitPrice() : product.getPrice();
+                quantityDelta += quantity - current;
+                amountCentsDelta += CartTotals.toCents(unitPrice) * (quantity - current);
+                itemCountDelta += Integer.signum(quantity) - Integer.signum(current);
+            }
         }
+        cartRepository.adjustTotals(cart.getId(), quantityDelta, amountCentsDelta, itemCountDelta, LocalDateTime.now());
+        long version = cartRepository.findVersionById(cart.getId());
+        
+        List<CartItem> changedItems = new ArrayList<>();
+        List<Long> removedItemIds = new ArrayList<>();
+        for (Map.Entry<Long, Integer> change : changes.entrySet()) {
+            CartItem item = itemsByProduct.get(change.getKey());
+            int quantity = change.getValue();
+            if (item == null) {
+                item = new CartItem(cart, newProducts.get(change.getKey()), quantity);
+                item.setCartVersion(version);
+                cart.getCartItems().add(item);
+                cartItemRepository.save(item);
+                changedItems.add(item);
+            } else if (quantity == 0) {
+                // 购物车项集合已加载，从集合中移除由 orphanRemoval 删除
+                cart.getCartItems().remove(item);
+                removedItemIds.add(item.getId());
+            } else {
+                item.setQuantity(quantity);
+                item.setCartVersion(version);
+                changedItems.add(item);
+            }
+        }
+        
+        log.info("批量修改购物车：用户 {}, 操作 {} 项, 变更商品 {} 个", user.getId(), operations.size(), changes.size());
+        return CartBatchResult.applied(operations.size(), CartDelta.ofChanges(getCartTotals(user),
+                changedItems.stream().map(CartLine::from).toList(), removedItemIds));
+    }
+    
+    /**
+     * 合并游客购物车
+     * 跳过已删除或已下架的商品，数量按库存扣除购物车已有数量后截断，再作为一次批量添加写入
+     * @param user 用户对象
+     * @param lines 游客购物车的商品ID到数量
+     * @return 合并的商品种类数
+     */
+    @RetryOnConflict
+    @Transactional
+    public int mergeGuestCart(User user, Map<Long, Integer> lines) {
+        cartStore.flushAndEvict(user.getId());
+        Map<Long, Integer> existing = new HashMap<>();
+        cartRepository.findActiveWithItemsByUserId(user.getId()).ifPresent(cart -> cart.getCartItems()
+                .forEach(item -> existing.put(item.getProduct().getId(), item.getQuantity())));
+        Map<Long, Product> products = productService.getProductsByIds(lines.keySet());
+        
+        List<CartOperation> operations = new ArrayList<>();
+        lines.forEach((productId, quantity) -> {
+            Product product = products.get(productId);
+            if (product == null || !Boolean.TRUE.equals(product.getActive())) {
+                return;
+            }
+            int quantityToAdd = Math.min(quantity, product.getStock() - existing.getOrDefault(productId, 0));
+            if (quantityToAdd > 0) {
+                operations.add(new CartOperation(CartOperation.Type.ADD.name(), productId, null, quantityToAdd));
+            }
+        });
+        if (operations.isEmpty()) {
+            return 0;
+        }
+        if (operations.size() > maxBatchOperations) {
+            log.warn("游客购物车商品种类超过批量上限，只合并前 {} 种：用户 {}", maxBatchOperations, user.getId());
+            operations.subList(maxBatchOperations, operations.size()).clear();
+        }
+        
+        CartBatchResult result = applyBatch(user, operations);
+        if (!result.isApplied()) {
+            log.warn("合并游客购物车失败：用户 {}, 错误 {}", user.getId(), result.getErrors());
+            return 0;
+        }
+        log.info("合并游客购物车：用户 {}, 商品 {} 种", user.getId(), operations.size());
+        return operations.size();
     }
     
     /**
@@ -211,9 +493,11 @@ public class CartService {
      * @param user 用户对象
      * @return 是否清空成功
      */
+    @RetryOnConflict
     @Transactional
     public boolean clearCart(User user) {
         try {
+            cartStore.flushAndEvict(user.getId());
             Optional<Cart> cartOpt = cartRepository.findByUserAndActiveTrue(user);
             if (cartOpt.isEmpty()) {
                 log.info("用户购物车为空：{}", user.getId());
@@ -222,26 +506,80 @@ public class CartService {
             
             Cart cart = cartOpt.get();
             cartItemRepository.deleteByCart(cart);
+            cartRepository.resetTotals(cart.getId(), LocalDateTime.now());
             log.info("清空购物车：用户 {}", user.getId());
             
             return true;
+        } catch (ConcurrencyFailureException e) {
+            // 版本号冲突、锁等待超时和死锁交给重试切面，在新事务中重新执行
+            throw e;
         } catch (Exception e) {
             log.error("清空购物车失败：{}", e.getMessage());
             return false;
         }
     }
     
+    /**
+     * 获取购物车汇总
+     * 一次查询加载购物车、商品项及商品，同时算出金额、数量、是否为空和库存是否充足；
+     * 写回模式下先同步写回该用户的变更（结算读取购物车前也经过这里）
+     * @param user 用户对象
+     * @return 购物车汇总
+     */
+    public CartSummary getCartSummary(User user) {
+        cartStore.flush(user.getId());
+        return cartRepository.findActiveWithItemsByUserId(user.getId())
+                .map(cart -> CartSummary.of(cart.getCartItems()))
+                .orElse(CartSummary.empty());
+    }
+    
+    /**
+     * 获取购物车汇总数值
+     * 只读取购物车行上的汇总列，不加载商品项；写回模式下优先读取内存中的购物车
+     * @param user 用户对象
+     * @return 购物车汇总数值
+     */
+    public CartTotals getCartTotals(User user) {
+        if (cartStore.isEnabled()) {
+            Optional<CartTotals> cached = cartStore.getTotals(user.getId());
+            if (cached.isPresent()) {
+                return cached.get();
+            }
+        }
+        return cartRepository.findTotalsByUserId(user.getId()).orElse(CartTotals.empty());
+    }
+    
+    /**
+     * 获取相对客户端已同步版本的购物车增量
+     * 汇总及版本号应先于本方法读取：之后读到的商品行只会比该版本更新，客户端重复应用也不会出错
+     * @param user 用户对象
+     * @param sinceVersion 客户端已同步的版本号
+     * @param totals 已读取的当前购物车汇总
+     * @return 该版本之后变更过的商品行及当前全部购物车项ID
+     */
+    public CartDelta getCartChangesSince(User user, long sinceVersion, CartTotals totals) {
+        cartStore.flush(user.getId());
+        List<CartLine> lines = cartItemRepository.findChangedSince(user.getId(), sinceVersion).stream()
+                .map(CartLine::from)
+                .toList();
+        return CartDelta.since(totals, lines, cartItemRepository.findIdsByUserId(user.getId()));
+    }
+    
+    /**
+     * 获取购物车写回统计信息
+     * @return 缓存购物车数、待写回购物车数、变更与写回计数
+     */
+    public Map<String, Object> getWriteBehindStats() {
+        return cartStore.getStats();
+    }
+    
     /**
      * 获取购物车商品列表
      * @param user 用户对象
      * @return 购物车商品列表
      */
     public List<CartItem> getCartItems(User user) {
-        Optional<Cart> cartOpt = cartRepository.findByUserAndActiveTrue(user);
-        if (cartOpt.isPresent()) {
-            return cartItemRepository.findByCart(cartOpt.get());
-        }
-        return List.of();
+        return getCartSummary(user).getItems();
     }
     
     /**
@@ -250,11 +588,7 @@ public class CartService {
      * @return 总金额
      */
     public BigDecimal getCartTotalAmount(User user) {
-        Optional<Cart> cartOpt = cartRepository.findByUserAndActiveTrue(user);
-        if (cartOpt.isPresent()) {
-            return cartOpt.get().getTotalAmount();
-        }
-        return BigDecimal.ZERO;
+        return getCartTotals(user).getTotalAmount();
     }
     
     /**
@@ -263,11 +597,7 @@ public class CartService {
      * @return 总数量
      */
     public Integer getCartTotalQuantity(User user) {
-        Optional<Cart> cartOpt = cartRepository.findByUserAndActiveTrue(user);
-        if (cartOpt.isPresent()) {
-            return cartOpt.get().getTotalQuantity();
-        }
-        return 0;
+        return getCartTotals(user).getTotalQuantity();
     }
     
     /**
@@ -276,8 +606,7 @@ public class CartService {
      * @return 是否为空
      */
     public boolean isCartEmpty(User user) {
-        Optional<Cart> cartOpt = cartRepository.findByUserAndActiveTrue(user);
-        return cartOpt.isEmpty() || cartOpt.get().isEmpty();
+        return getCartTotals(user).isEmpty();
     }
     
     /**
@@ -286,14 +615,73 @@ public class CartService {
      * @return 是否所有商品库存充足
      */
     public boolean validateCartStock(User user) {
-        List<CartItem> cartItems = getCartItems(user);
-        for (CartItem item : cartItems) {
-            if (!item.hasEnoughStock()) {
+        return validateCartStock(getCartSummary(user));
+    }
+    
+    /**
+     * 验证购物车汇总中的商品库存，库存不足时记录日志
+     * @param summary 购物车汇总
+     * @return 是否所有商品库存充足
+     */
+    public boolean validateCartStock(CartSummary summary) {
+        summary.findInsufficientStockItem().ifPresent(item ->
                 log.warn("购物车商品库存不足：商品 {}, 需要 {}, 可用 {}", 
-                        item.getProduct().getId(), item.getQuantity(), item.getProduct().getStock());
-                return false;
+                        item.getProduct().getId(), item.getQuantity(), item.getProduct().getStock()));
+        return summary.isStockValid();
+    }
+    
+    /**
+     * 按购物车项的变化原子增减购物车汇总列（汇总列只统计上架商品）并递增购物车版本号
+     * @return 变更后的购物车版本号
+     */
+    private long adjustTotals(Cart cart, CartItem item, int quantityDelta, int itemCountDelta) {
+        if (!Boolean.TRUE.equals(item.getProduct().getActive())) {
+            quantityDelta = 0;
+            itemCountDelta = 0;
+        }
+        long amountCentsDelta = CartTotals.toCents(item.getUnitPrice()) * quantityDelta;
+        cartRepository.adjustTotals(cart.getId(), quantityDelta, amountCentsDelta, itemCountDelta, LocalDateTime.now());
+        return cartRepository.findVersionById(cart.getId());
+    }
+    
+    /**
+     * 将单个批量操作应用到目标数量上
+     * @return 错误信息，操作有效时返回 null
+     */
+    private static String applyOperation(CartOperation operation, Map<Long, CartItem> itemsById,
+                                         Map<Long, Integer> targets) {
+        Optional<CartOperation.Type> type = operation.resolveType();
+        if (type.isEmpty()) {
+            return "不支持的操作类型：" + operation.getOp();
+        }
+        Integer quantity = operation.getQuantity();
+        if (type.get() == CartOperation.Type.ADD) {
+            if (operation.getProductId() == null) {
+                return "缺少商品ID";
+            }
+            if (quantity == null || quantity <= 0) {
+                return "商品数量必须大于0";
             }
+            targets.merge(operation.getProductId(), quantity, Integer::sum);
+            return null;
+        }
+        
+        // update / remove：优先按购物车项ID定位，其次按商品ID
+        Long productId = operation.getProductId();
+        if (operation.getCartItemId() != null) {
+            CartItem item = itemsById.get(operation.getCartItemId());
+            productId = item == null ? null : item.getProduct().getId();
+        }
+        if (productId == null || targets.getOrDefault(productId, 0) == 0) {
+            return "购物车中没有该商品";
+        }
+        if (type.get() == CartOperation.Type.REMOVE) {
+            targets.put(productId, 0);
+        } else if (quantity == null || quantity < 0) {
+            return "商品数量不能小于0";
+        } else {
+            targets.put(productId, quantity);
         }
-        return true;
+        return null;
     }
 }
\ No newline at end of file
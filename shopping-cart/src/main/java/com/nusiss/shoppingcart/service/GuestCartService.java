@@ -0,0 +1,202 @@
+package com.nusiss.shoppingcart.service;
+
+import com.nusiss.shoppingcart.cart.GuestCart;
+import com.nusiss.shoppingcart.cart.GuestCartStore;
+import com.nusiss.shoppingcart.dto.CartDelta;
+import com.nusiss.shoppingcart.dto.CartLine;
+import com.nusiss.shoppingcart.dto.CartSummary;
+import com.nusiss.shoppingcart.dto.CartTotals;
+import com.nusiss.shoppingcart.entity.CartItem;
+import com.nusiss.shoppingcart.entity.Product;
+import com.nusiss.shoppingcart.entity.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 游客购物车业务逻辑层
+ * 未登录用户的购物车只保存在内存中（按会话ID），商品信息从商品缓存读取，不访问购物车表；
+ * 登录成功后一次性合并到用户的持久化购物车
+ * @author SpringCA Team
+ */
+@Service
+public class GuestCartService {
+
+    private static final Logger log = LoggerFactory.getLogger(GuestCartService.class);
+
+    private final GuestCartStore guestCartStore;
+    private final ProductService productService;
+    private final CartService cartService;
+    private final int maxLines;
+
+    public GuestCartService(GuestCartStore guestCartStore,
+                            ProductService productService,
+                            CartService cartService,
+                            @Value("${app.cart.guest.max-lines:50}") int maxLines) {
+        this.guestCartStore = guestCartStore;
+        this.productService = productService;
+        this.cartService = cartService;
+        this.maxLines = maxLines;
+    }
+
+    /**
+     * 添加商品到游客购物车
+     * @param sessionId 会话ID
+     * @param productId 商品ID
+     * @param quantity 数量
+     * @return 变更的商品行、新汇总及版本号；添加失败时为空
+     */
+    public Optional<CartDelta> addItem(String sessionId, Long productId, Integer quantity) {
+        Optional<Product> productOpt = productService.getProductById(productId);
+        if (productOpt.isEmpty() || !productOpt.get().getActive()) {
+            log.warn("商品不存在或已下架：{}", productId);
+            return Optional.empty();
+        }
+        Product product = productOpt.get();
+
+        GuestCart cart = guestCartStore.getOrCreate(sessionId);
+        int newQuantity = cart.quantityOf(productId) + quantity;
+        if (!productService.hasAvailableStock(product, null, newQuantity)) {
+            log.warn("商品库存不足：{}, 请求数量：{}, 可用库存：{}", productId, newQuantity, product.getStock());
+            return Optional.empty();
+        }
+        if (!cart.add(productId, quantity, maxLines)) {
+            log.warn("游客购物车商品种类已达上限：{}", maxLines);
+            return Optional.empty();
+        }
+        return Optional.of(changed(cart, product, cart.quantityOf(productId)));
+    }
+
+    /**
+     * 更新游客购物车商品数量
+     * @param sessionId 会话ID
+     * @param productId 商品ID（游客购物车的购物车项ID）
+     * @param quantity 新数量（不大于0时删除该项）
+     * @return 变更的商品行、新汇总及版本号；更新失败时为空
+     */
+    public Optional<CartDelta> updateItem(String sessionId, Long productId, Integer quantity) {
+        if (quantity <= 0) {
+            return removeItem(sessionId, productId);
+        }
+        Optional<GuestCart> cartOpt = guestCartStore.get(sessionId);
+        if (cartOpt.isEmpty() || cartOpt.get().quantityOf(productId) == 0) {
+            log.warn("游客购物车中没有该商品：{}", productId);
+            return Optional.empty();
+        }
+        Optional<Product> productOpt = productService.getProductById(productId);
+        if (productOpt.isEmpty() || !productService.hasAvailableStock(productOpt.get(), null, quantity)) {
+            log.warn("商品不存在或库存不足：{}, 请求数量：{}", productId, quantity);
+            return Optional.empty();
+        }
+        GuestCart cart = cartOpt.get();
+        if (!cart.update(productId, quantity)) {
+            return Optional.empty();
+        }
+        return Optional.of(changed(cart, productOpt.get(), quantity));
+    }
+
+    /**
+     * 从游客购物车移除商品
+     * @param sessionId 会话ID
+     * @param productId 商品ID（游客购物车的购物车项ID）
+     * @return 被删除的购物车项ID、新汇总及版本号；移除失败时为空
+     */
+    public Optional<CartDelta> removeItem(String sessionId, Long productId) {
+        return guestCartStore.get(sessionId)
+                .filter(cart -> cart.remove(productId))
+                .map(cart -> CartDelta.ofChanges(getCartTotals(cart), List.of(), List.of(productId)));
+    }
+
+    /**
+     * 清空游客购物车
+     * @param sessionId 会话ID
+     */
+    public void clearCart(String sessionId) {
+        guestCartStore.get(sessionId).ifPresent(GuestCart::clear);
+    }
+
+    /**
+     * 获取游客购物车汇总
+     * 商品行为不入库的购物车项，ID为商品ID，单价为商品当前价格
+     * @param sessionId 会话ID
+     * @return 购物车汇总
+     */
+    public CartSummary getCartSummary(String sessionId) {
+        return guestCartStore.get(sessionId)
+                .map(cart -> CartSummary.of(toItems(cart.snapshot())))
+                .orElse(CartSummary.empty());
+    }
+
+    /**
+     * 获取游客购物车汇总数值
+     * @param sessionId 会话ID
+     * @return 购物车汇总数值
+     */
+    public CartTotals getCartTotals(String sessionId) {
+        return guestCartStore.get(sessionId)
+                .map(this::getCartTotals)
+                .orElse(CartTotals.empty());
+    }
+
+    /**
+     * 登录成功后将游客购物车合并到用户购物车，合并后移除游客购物车
+     * @param user 登录的用户
+     * @param sessionId 会话ID
+     * @return 合并的商品种类数
+     */
+    public int mergeInto(User user, String sessionId) {
+        Optional<GuestCart> cartOpt = guestCartStore.remove(sessionId);
+        if (cartOpt.isEmpty() || cartOpt.get().isEmpty()) {
+            return 0;
+        }
+        return cartService.mergeGuestCart(user, cartOpt.get().snapshot());
+    }
+
+    /**
+     * 单个商品行变更后的增量
+     */
+    private CartDelta changed(GuestCart cart, Product product, int quantity) {
+        CartItem item = toItem(product, quantity);
+        return CartDelta.ofChanges(getCartTotals(cart), List.of(CartLine.from(item)), List.of());
+    }
+
+    /**
+     * 按商品当前价格计算游客购物车汇总（只统计上架商品）
+     */
+    private CartTotals getCartTotals(GuestCart cart) {
+        long version = cart.getVersion();
+        int totalQuantity = 0;
+        long totalAmountCents = 0;
+        int itemCount = 0;
+        for (CartItem item : toItems(cart.snapshot())) {
+            if (Boolean.TRUE.equals(item.getProduct().getActive())) {
+                totalQuantity += item.getQuantity();
+                totalAmountCents += CartTotals.toCents(item.getUnitPrice()) * item.getQuantity();
+                itemCount++;
+            }
+        }
+        return new CartTotals(totalQuantity, totalAmountCents, itemCount, version);
+    }
+
+    /**
+     * 将商品ID和数量补全为不入库的购物车项，已删除的商品跳过
+     */
+    private List<CartItem> toItems(Map<Long, Integer> lines) {
+        List<CartItem> items = new ArrayList<>(lines.size());
+        lines.forEach((productId, quantity) -> productService.getProductById(productId)
+                .ifPresent(product -> items.add(toItem(product, quantity))));
+        return items;
+    }
+
+    private static CartItem toItem(Product product, int quantity) {
+        CartItem item = new CartItem(product, quantity);
+        item.setId(product.getId());
+        return item;
+    }
+}
@@ -0,0 +1,519 @@
+package com.nusiss.shoppingcart.service;
+
+import com.nusiss.shoppingcart.cache.ProductCache;
+import com.nusiss.shoppingcart.entity.InventoryReservation;
+import com.nusiss.shoppingcart.entity.InventoryReservation.ReservationStatus;
+import com.nusiss.shoppingcart.entity.Order;
+import com.nusiss.shoppingcart.entity.Product;
+import com.nusiss.shoppingcart.entity.User;
+import com.nusiss.shoppingcart.event.InventoryHoldsChangedEvent;
+import com.nusiss.shoppingcart.event.ProductChangedEvent;
+import com.nusiss.shoppingcart.exception.BusinessException;
+import com.nusiss.shoppingcart.inventory.FlashSaleStock;
+import com.nusiss.shoppingcart.repository.InventoryReservationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 库存业务逻辑层
+ * 扣减库存（支付时由订单的占用转为扣减）：按商品ID顺序组成一批条件更新（库存不足或已下架的行不更新），一次提交到数据库，
+ * 任一商品扣减失败时抛出异常，由调用方回滚整个事务；扣减成功后读取最新库存并发布商品变更事件，
+ * 让商品缓存和各类内存索引与直接更新的库存保持一致
+ * 库存占用：结账时按商品占用库存（带过期时间），下单后占用挂到订单上，支付时转为实际扣减；
+ * 扣减和占用都只使用库存减去其他有效占用后的可售数量
+ * 秒杀商品：不锁定商品行，也不占用，直接从内存计数器扣减（订单创建时即扣减），净扣减由对账任务写回商品库存
+ * @author SpringCA Team
+ */
+@Service
+@Transactional(readOnly = true)
+public class InventoryService {
+
+    private static final Logger log = LoggerFactory.getLogger(InventoryService.class);
+
+    // 未关联订单时的订单ID参数（订单ID从 1 开始）
+    private static final long NO_ORDER = 0L;
+    // 商品行的更新时间只增不减：并发的库存更新按提交顺序得到不早于之前的更新时间，商品缓存据此丢弃乱序到达的旧状态
+    private static final String TOUCH_UPDATED_AT = "updated_at = CASE WHEN updated_at > :now THEN updated_at ELSE :now END";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final InventoryReservationRepository reservationRepository;
+    private final ProductService productService;
+    private final FlashSaleStock flashSaleStock;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long checkoutHoldMinutes;
+    private final long orderHoldMinutes;
+
+    public InventoryService(NamedParameterJdbcTemplate jdbcTemplate,
+                            InventoryReservationRepository reservationRepository,
+                            ProductService productService,
+                            FlashSaleStock flashSaleStock,
+                            ApplicationEventPublisher eventPublisher,
+                            @Value("${app.inventory.hold.checkout-ttl-minutes:15}") long checkoutHoldMinutes,
+                            @Value("${app.inventory.hold.order-ttl-minutes:30}") long orderHoldMinutes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.reservationRepository = reservationRepository;
+        this.productService = productService;
+        this.flashSaleStock = flashSaleStock;
+        this.eventPublisher = eventPublisher;
+        this.checkoutHoldMinutes = checkoutHoldMinutes;
+        this.orderHoldMinutes = orderHoldMinutes;
+    }
+
+    /**
+     * 结账占用库存，替换该用户之前的结账占用（秒杀商品不占用）
+     * 已有未过期且数量相同的结账占用时直接沿用，不加锁也不写入
+     * @param user 用户对象
+     * @param quantities 商品ID到占用数量
+     * @return 占用过期时间
+     * @throws BusinessException 商品不存在、已下架或可售库存不足时抛出，调用方须回滚事务
+     */
+    @Transactional
+    public LocalDateTime holdForCheckout(User user, Map<Long, Integer> quantities) {
+        Map<Long, Integer> others = new TreeMap<>(quantities);
+        others.keySet().removeIf(flashSaleStock::isActive);
+        Optional<LocalDateTime> existing = findCheckoutHold(user.getId(), others);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+        return placeHolds(user.getId(), null, others, checkoutHoldMinutes);
+    }
+
+    /**
+     * 查找用户与购物车数量一致的未过期结账占用（只读，秒杀商品不占用）
+     * @param user 用户对象
+     * @param quantities 商品ID到数量
+     * @return 占用过期时间（各商品中最早的）；没有占用或数量已变化时为空
+     */
+    public Optional<LocalDateTime> findCheckoutHold(User user, Map<Long, Integer> quantities) {
+        Map<Long, Integer> others = new TreeMap<>(quantities);
+        others.keySet().removeIf(flashSaleStock::isActive);
+        return findCheckoutHold(user.getId(), others);
+    }
+
+    /**
+     * 下单占用库存：释放该用户的结账占用，按订单数量重新占用并挂到订单上
+     * 结账占用未过期时释放的数量可直接再次占用，下单不会因为其他用户在此期间加购而失败；
+     * 秒杀商品直接从计数器扣减，不占用，订单标记为秒杀订单（超时未支付时自动取消）
+     * @param user 用户对象
+     * @param order 已保存的订单
+     * @param quantities 商品ID到占用数量
+     * @return 占用过期时间（过期前须完成支付）
+     * @throws BusinessException 商品不存在、已下架或可售库存不足时抛出，调用方须回滚事务
+     */
+    @Transactional
+    public LocalDateTime holdForOrder(User user, Order order, Map<Long, Integer> quantities) {
+        Map<Long, Integer> others = acquireFlashSale(quantities);
+        if (others.size() < quantities.size()) {
+            order.setFlashSale(true);
+        }
+        return placeHolds(user.getId(), order.getId(), others, orderHoldMinutes);
+    }
+
+    /**
+     * 支付时把订单的占用转为实际扣减库存
+     * 占用已过期（或已被清理）时按当前可售库存扣减，可售库存不足时支付失败；
+     * 没有占用的订单（秒杀商品、之前下单时已扣减库存的订单）不再扣减
+     * @param order 订单
+     * @throws BusinessException 可售库存不足时抛出，调用方须回滚事务
+     */
+    @Transactional
+    public void convertHolds(Order order) {
+        LocalDateTime now = LocalDateTime.now();
+        List<InventoryHoldsChangedEvent.Change> changes = new ArrayList<>();
+        Map<Long, Integer> quantities = closeHolds(order, ReservationStatus.CONVERTED, now, changes);
+        if (quantities.isEmpty()) {
+            return;
+        }
+        decrementStock(quantities, order.getId(), now);
+        publishHoldChanges(changes);
+        log.info("订单占用转为扣减库存：订单 {}, 商品 {} 种", order.getOrderNumber(), quantities.size());
+    }
+
+    /**
+     * 释放订单的占用（取消未支付的订单）
+     * @param order 订单
+     * @return 有占用记录的商品ID（这些商品未扣减库存，取消时无需恢复）
+     */
+    @Transactional
+    public Set<Long> releaseHolds(Order order) {
+        List<InventoryHoldsChangedEvent.Change> changes = new ArrayList<>();
+        Map<Long, Integer> quantities = closeHolds(order, ReservationStatus.RELEASED, LocalDateTime.now(), changes);
+        publishHoldChanges(changes);
+        log.info("释放订单库存占用：订单 {}, 商品 {} 种", order.getOrderNumber(), quantities.size());
+        return quantities.keySet();
+    }
+
+    /**
+     * 恢复已扣减的库存（取消订单），秒杀商品在事务提交后归还到计数器
+     * 其余商品在调用方的事务中按商品ID顺序做相对更新，不读改写整个商品行，与并发的扣减互不覆盖
+     * @param quantities 商品ID到数量
+     * @throws BusinessException 商品不存在时抛出，调用方的事务随之回滚
+     */
+    @Transactional
+    public void restoreStock(Map<Long, Integer> quantities) {
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp nowTimestamp = Timestamp.valueOf(now);
+        List<Long> productIds = new ArrayList<>(quantities.size());
+        List<MapSqlParameterSource> batch = new ArrayList<>(quantities.size());
+        new TreeMap<>(quantities).forEach((productId, quantity) -> {
+            if (!flashSaleStock.release(productId, quantity)) {
+                productIds.add(productId);
+                batch.add(new MapSqlParameterSource()
+                        .addValue("productId", productId)
+                        .addValue("quantity", quantity)
+                        .addValue("now", nowTimestamp));
+            }
+        });
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        int[] counts = jdbcTemplate.batchUpdate("UPDATE products SET stock = stock + :quantity, " + TOUCH_UPDATED_AT +
+                " WHERE id = :productId", batch.toArray(new MapSqlParameterSource[0]));
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                throw BusinessException.productNotFound(productIds.get(i));
+            }
+        }
+        publishStockChanges(productIds);
+    }
+
+    /**
+     * 开启秒杀：锁定商品行，把库存减去有效占用后的可售数量装入内存计数器
+     * @param productId 商品ID
+     * @return 是否开启（已经处于秒杀中或上一次秒杀尚未对账完成时为 false）
+     * @throws BusinessException 商品不存在或已下架时抛出
+     */
+    @Transactional
+    public boolean startFlashSale(Long productId) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<Long, Integer> stocks = lockStocks(List.of(productId));
+        if (!stocks.containsKey(productId)) {
+            throw BusinessException.productNotFound(productId);
+        }
+        int held = heldQuantities(List.of(productId), NO_ORDER, now, true).getOrDefault(productId, 0);
+        return flashSaleStock.activate(productId, stocks.get(productId) - held);
+    }
+
+    /**
+     * 把秒杀计数器的净扣减写回商品库存
+     * @param deltas 商品ID到净扣减数量（为负数时增加库存）
+     */
+    @Transactional
+    public void applyStockDeltas(Map<Long, Long> deltas) {
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp nowTimestamp = Timestamp.valueOf(now);
+        List<Long> productIds = new ArrayList<>(deltas.size());
+        List<MapSqlParameterSource> batch = new ArrayList<>(deltas.size());
+        new TreeMap<>(deltas).forEach((productId, delta) -> {
+            productIds.add(productId);
+            batch.add(new MapSqlParameterSource()
+                    .addValue("productId", productId)
+                    .addValue("delta", delta)
+                    .addValue("now", nowTimestamp));
+        });
+        jdbcTemplate.batchUpdate("UPDATE products SET stock = stock - :delta, " + TOUCH_UPDATED_AT +
+                " WHERE id = :productId", batch.toArray(new MapSqlParameterSource[0]));
+        publishStockChanges(productIds);
+    }
+
+    /**
+     * 将一批已过期的占用标记为已过期
+     * 在一个短事务中锁定仍然处于占用状态的记录后再修改，与并发的支付、取消互斥
+     * @param ids 占用记录ID
+     * @param now 当前时间
+     * @return 标记为已过期的记录数
+     */
+    @Transactional
+    public int expireHolds(List<Long> ids, LocalDateTime now) {
+        List<InventoryReservation> locked = reservationRepository.lockExpired(ids, ReservationStatus.ACTIVE, now);
+        if (locked.isEmpty()) {
+            return 0;
+        }
+        List<Long> lockedIds = new ArrayList<>(locked.size());
+        List<InventoryHoldsChangedEvent.Change> changes = new ArrayList<>(locked.size());
+        for (InventoryReservation reservation : locked) {
+            lockedIds.add(reservation.getId());
+            Long checkoutUserId = reservation.getOrder() == null ? reservation.getUser().getId() : null;
+            changes.add(new InventoryHoldsChangedEvent.Change(
+                    reservation.getProduct().getId(), checkoutUserId, -reservation.getQuantity()));
+        }
+        int expired = reservationRepository.updateStatus(lockedIds, ReservationStatus.EXPIRED, now);
+        publishHoldChanges(changes);
+        return expired;
+    }
+
+    private Optional<LocalDateTime> findCheckoutHold(Long userId, Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return Optional.empty();
+        }
+        Map<Long, Integer> held = new TreeMap<>();
+        LocalDateTime[] earliest = new LocalDateTime[1];
+        jdbcTemplate.query("SELECT product_id, quantity, expires_at FROM inventory_reservations " +
+                        "WHERE user_id = :userId AND order_id IS NULL AND status = 'ACTIVE' AND expires_at > :now",
+                new MapSqlParameterSource()
+                        .addValue("userId", userId)
+                        .addValue("now", Timestamp.valueOf(LocalDateTime.now())),
+                rs -> {
+                    held.merge(rs.getLong("product_id"), rs.getInt("quantity"), Integer::sum);
+                    LocalDateTime expiresAt = rs.getTimestamp("expires_at").toLocalDateTime();
+                    if (earliest[0] == null || expiresAt.isBefore(earliest[0])) {
+                        earliest[0] = expiresAt;
+                    }
+                });
+        return held.equals(quantities) ? Optional.of(earliest[0]) : Optional.empty();
+    }
+
+    /**
+     * 占用库存
+     * 按商品ID顺序锁定商品行，再读取这些商品的有效占用，同一商品的占用、扣减依次进行
+     */
+    private LocalDateTime placeHolds(Long userId, Long orderId, Map<Long, Integer> quantities, long ttlMinutes) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plusMinutes(ttlMinutes);
+        Map<Long, Integer> sorted = new TreeMap<>(quantities);
+        List<Long> productIds = new ArrayList<>(sorted.keySet());
+
+        Map<Long, Integer> stocks = productIds.isEmpty() ? Map.of() : lockStocks(productIds);
+
+        // 用户之前的结账占用由本次占用替换
+        List<InventoryHoldsChangedEvent.Change> changes = new ArrayList<>();
+        closeHolds("user_id = :userId AND order_id IS NULL", new MapSqlParameterSource("userId", userId),
+                List.of(ReservationStatus.ACTIVE), ReservationStatus.RELEASED, now, changes);
+        if (sorted.isEmpty()) {
+            publishHoldChanges(changes);
+            return expiresAt;
+        }
+
+        Map<Long, Integer> held = heldQuantities(productIds, NO_ORDER, now, true);
+        for (Map.Entry<Long, Integer> entry : sorted.entrySet()) {
+            Long productId = entry.getKey();
+            Integer stock = stocks.get(productId);
+            int available = stock == null ? 0 : stock - held.getOrDefault(productId, 0);
+            if (available < entry.getValue()) {
+                throw insufficientStock(productId, entry.getValue(), available);
+            }
+        }
+
+        Timestamp nowTimestamp = Timestamp.valueOf(now);
+        List<MapSqlParameterSource> batch = new ArrayList<>(sorted.size());
+        sorted.forEach((productId, quantity) -> {
+            batch.add(new MapSqlParameterSource()
+                    .addValue("productId", productId)
+                    .addValue("userId", userId)
+                    .addValue("orderId", orderId)
+                    .addValue("quantity", quantity)
+                    .addValue("expiresAt", Timestamp.valueOf(expiresAt))
+                    .addValue("now", nowTimestamp));
+            changes.add(new InventoryHoldsChangedEvent.Change(productId, orderId == null ? userId : null, quantity));
+        });
+        jdbcTemplate.batchUpdate("INSERT INTO inventory_reservations (product_id, user_id, order_id, quantity, " +
+                        "status, expires_at, created_at, updated_at) " +
+                        "VALUES (:productId, :userId, :orderId, :quantity, 'ACTIVE', :expiresAt, :now, :now)",
+                batch.toArray(new MapSqlParameterSource[0]));
+        publishHoldChanges(changes);
+
+        log.info("占用库存：用户 {}, 订单 {}, 商品 {} 种, 过期时间 {}", userId, orderId, sorted.size(), expiresAt);
+        return expiresAt;
+    }
+
+    /**
+     * 一批条件更新扣减库存：只有扣减后仍不少于其他有效占用时才更新
+     * 指定订单的占用不计入其他占用（支付时由订单自己的占用转为扣减）
+     */
+    private void decrementStock(Map<Long, Integer> sorted, long orderId, LocalDateTime now) {
+        Timestamp nowTimestamp = Timestamp.valueOf(now);
+        List<Long> productIds = new ArrayList<>(sorted.size());
+        List<MapSqlParameterSource> batch = new ArrayList<>(sorted.size());
+        sorted.forEach((productId, quantity) -> {
+            productIds.add(productId);
+            batch.add(new MapSqlParameterSource()
+                    .addValue("productId", productId)
+                    .addValue("quantity", quantity)
+                    .addValue("orderId", orderId)
+                    .addValue("now", nowTimestamp));
+        });
+
+        int[] counts = jdbcTemplate.batchUpdate("UPDATE products SET stock = stock - :quantity, " + TOUCH_UPDATED_AT +
+                " WHERE id = :productId AND active = TRUE AND stock - (SELECT COALESCE(SUM(r.quantity), 0) " +
+                "FROM inventory_reservations r WHERE r.product_id = :productId AND r.status = 'ACTIVE' " +
+                "AND r.expires_at > :now AND (r.order_id IS NULL OR r.order_id <> :orderId)) >= :quantity",
+                batch.toArray(new MapSqlParameterSource[0]));
+
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                Long productId = productIds.get(i);
+                int stock = loadStocks(List.of(productId)).getOrDefault(productId, 0);
+                int held = heldQuantities(List.of(productId), orderId, now, false).getOrDefault(productId, 0);
+                throw insufficientStock(productId, sorted.get(productId), stock - held);
+            }
+        }
+
+        publishStockChanges(productIds);
+    }
+
+    /**
+     * 读取更新后的库存和更新时间，发布商品变更事件，商品缓存和各类内存索引随之更新
+     * 更新时间取自数据库（只增不减），商品缓存按它判断事件是否比已缓存的状态新
+     */
+    private void publishStockChanges(List<Long> productIds) {
+        Map<Long, Integer> stocks = new HashMap<>();
+        Map<Long, LocalDateTime> updatedAts = new HashMap<>();
+        jdbcTemplate.query("SELECT id, stock, updated_at FROM products WHERE id IN (:productIds)",
+                new MapSqlParameterSource("productIds", productIds),
+                rs -> {
+                    stocks.put(rs.getLong("id"), rs.getInt("stock"));
+                    Timestamp updatedAt = rs.getTimestamp("updated_at");
+                    updatedAts.put(rs.getLong("id"), updatedAt == null ? null : updatedAt.toLocalDateTime());
+                });
+        for (Long productId : productIds) {
+            productService.getProductById(productId).ifPresent(product -> {
+                Product changed = ProductCache.snapshot(product);
+                changed.setStock(stocks.get(productId));
+                changed.setUpdatedAt(updatedAts.get(productId));
+                eventPublisher.publishEvent(new ProductChangedEvent(changed, ProductChangedEvent.ChangeType.UPDATED));
+            });
+        }
+    }
+
+    /**
+     * 从秒杀计数器扣减其中的秒杀商品
+     * @return 其余商品ID到数量（按商品ID排序）
+     * @throws BusinessException 秒杀商品可售库存不足时抛出
+     */
+    private Map<Long, Integer> acquireFlashSale(Map<Long, Integer> quantities) {
+        Map<Long, Integer> others = new TreeMap<>();
+        Map<Long, Integer> flashSale = new TreeMap<>();
+        quantities.forEach((productId, quantity) ->
+                (flashSaleStock.isActive(productId) ? flashSale : others).put(productId, quantity));
+        if (!flashSale.isEmpty()) {
+            Long rejectedId = flashSaleStock.acquireAll(flashSale);
+            if (rejectedId != null) {
+                OptionalInt available = flashSaleStock.available(rejectedId);
+                throw insufficientStock(rejectedId, flashSale.get(rejectedId), available.orElse(0));
+            }
+        }
+        return others;
+    }
+
+    /**
+     * 按商品ID顺序锁定上架商品的商品行并读取库存
+     */
+    private Map<Long, Integer> lockStocks(List<Long> productIds) {
+        Map<Long, Integer> stocks = new HashMap<>();
+        jdbcTemplate.query("SELECT id, stock FROM products WHERE id IN (:productIds) AND active = TRUE " +
+                        "ORDER BY id FOR UPDATE",
+                new MapSqlParameterSource("productIds", productIds),
+                rs -> {
+                    stocks.put(rs.getLong("id"), rs.getInt("stock"));
+                });
+        return stocks;
+    }
+
+    /**
+     * 将订单未转换、未释放的占用（包括已过期的）改为指定状态
+     * @return 商品ID到占用数量
+     */
+    private Map<Long, Integer> closeHolds(Order order, ReservationStatus status, LocalDateTime now,
+                                          List<InventoryHoldsChangedEvent.Change> changes) {
+        return closeHolds("order_id = :orderId", new MapSqlParameterSource("orderId", order.getId()),
+                List.of(ReservationStatus.ACTIVE, ReservationStatus.EXPIRED), status, now, changes);
+    }
+
+    /**
+     * 将满足条件的占用改为指定状态，并记录有效占用数量的变化
+     * @param statuses 要修改的占用所处的状态
+     * @return 商品ID到占用数量（按商品ID排序）
+     */
+    private Map<Long, Integer> closeHolds(String condition, MapSqlParameterSource params,
+                                          List<ReservationStatus> statuses, ReservationStatus status,
+                                          LocalDateTime now, List<InventoryHoldsChangedEvent.Change> changes) {
+        List<Long> ids = new ArrayList<>();
+        Map<Long, Integer> quantities = new TreeMap<>();
+        params.addValue("statuses", statuses.stream().map(Enum::name).toList());
+        jdbcTemplate.query("SELECT id, product_id, user_id, order_id, quantity, status FROM inventory_reservations " +
+                        "WHERE status IN (:statuses) AND " + condition + " FOR UPDATE", params,
+                rs -> {
+                    ids.add(rs.getLong("id"));
+                    long productId = rs.getLong("product_id");
+                    int quantity = rs.getInt("quantity");
+                    quantities.merge(productId, quantity, Integer::sum);
+                    Long checkoutUserId = rs.getObject("order_id") == null ? rs.getLong("user_id") : null;
+                    if (ReservationStatus.ACTIVE.name().equals(rs.getString("status"))) {
+                        changes.add(new InventoryHoldsChangedEvent.Change(productId, checkoutUserId, -quantity));
+                    }
+                });
+        if (!ids.isEmpty()) {
+            jdbcTemplate.update("UPDATE inventory_reservations SET status = :status, updated_at = :now " +
+                            "WHERE id IN (:ids)",
+                    new MapSqlParameterSource()
+                            .addValue("status", status.name())
+                            .addValue("now", Timestamp.valueOf(now))
+                            .addValue("ids", ids));
+        }
+        return quantities;
+    }
+
+    /**
+     * 读取商品的有效占用数量（不含指定订单的占用）
+     * @param forUpdate 是否加锁读取（占用前须读到最新提交的占用）
+     */
+    private Map<Long, Integer> heldQuantities(List<Long> productIds, long excludeOrderId, LocalDateTime now,
+                                             boolean forUpdate) {
+        Map<Long, Integer> held = new HashMap<>();
+        jdbcTemplate.query("SELECT product_id, quantity FROM inventory_reservations " +
+                        "WHERE product_id IN (:productIds) AND status = 'ACTIVE' AND expires_at > :now " +
+                        "AND (order_id IS NULL OR order_id <> :orderId)" + (forUpdate ? " FOR UPDATE" : ""),
+                new MapSqlParameterSource()
+                        .addValue("productIds", productIds)
+                        .addValue("now", Timestamp.valueOf(now))
+                        .addValue("orderId", excludeOrderId),
+                rs -> {
+                    held.merge(rs.getLong("product_id"), rs.getInt("quantity"), Integer::sum);
+                });
+        return held;
+    }
+
+    /**
+     * 一次查询读取商品当前库存（本事务已扣减的行已加锁，读到的就是提交后的库存）
+     */
+    private Map<Long, Integer> loadStocks(List<Long> productIds) {
+        Map<Long, Integer> stocks = new HashMap<>();
+        jdbcTemplate.query("SELECT id, stock FROM products WHERE id IN (:productIds)",
+                new MapSqlParameterSource("productIds", productIds),
+                rs -> {
+                    stocks.put(rs.getLong("id"), rs.getInt("stock"));
+                });
+        return stocks;
+    }
+
+    private BusinessException insufficientStock(Long productId, int requested, int available) {
+        Product product = productService.getProductById(productId)
+                .orElseThrow(() -> BusinessException.productNotFound(productId));
+        log.warn("可售库存不足：商品 {}, 需要 {}, 可售 {}", productId, requested, Math.max(0, available));
+        return BusinessException.insufficientStock(product.getName(), requested, Math.max(0, available));
+    }
+
+    private void publishHoldChanges(List<InventoryHoldsChangedEvent.Change> changes) {
+        if (!changes.isEmpty()) {
+            eventPublisher.publishEvent(new InventoryHoldsChangedEvent(changes));
+        }
+    }
+}
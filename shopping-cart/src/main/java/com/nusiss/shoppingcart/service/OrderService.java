@@ -1,6 +1,11 @@
 package com.nusiss.shoppingcart.service;
 
+import com.nusiss.shoppingcart.dto.CartSummary;
 import com.nusiss.shoppingcart.entity.*;
+import com.nusiss.shoppingcart.exception.BusinessException;
+import com.nusiss.shoppingcart.pagination.KeysetCursor;
+import com.nusiss.shoppingcart.pagination.KeysetPage;
+import com.nusiss.shoppingcart.repository.OrderEventRepository;
 import com.nusiss.shoppingcart.repository.OrderItemRepository;
 import com.nusiss.shoppingcart.repository.OrderRepository;
 import org.slf4j.Logger;
@@ -9,14 +14,21 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
 
 /**
  * 订单业务逻辑层
@@ -28,19 +40,27 @@ public class OrderService {
     
     private static final Logger log = LoggerFactory.getLogger(OrderService.class);
     
+    private static final Set<String> ORDER_KEYSET_SORT_FIELDS = Set.of("createdAt");
+    
     private final OrderRepository orderRepository;
     private final OrderItemRepository orderItemRepository;
     private final CartService cartService;
     private final ProductService productService;
+    private final InventoryService inventoryService;
+    private final OrderEventRepository orderEventRepository;
     
     public OrderService(OrderRepository orderRepository,
                        OrderItemRepository orderItemRepository,
                        CartService cartService,
-                       ProductService productService) {
+                       ProductService productService,
+                       InventoryService inventoryService,
+                       OrderEventRepository orderEventRepository) {
         this.orderRepository = orderRepository;
         this.orderItemRepository = orderItemRepository;
         this.cartService = cartService;
         this.productService = productService;
+        this.inventoryService = inventoryService;
+        this.orderEventRepository = orderEventRepository;
     }
     
     /**
@@ -58,14 +78,15 @@ public class OrderService {
                                      String recipientPhone, String paymentMethod, String notes) {
         try {
             // 获取购物车商品
-            List<CartItem> cartItems = cartService.getCartItems(user);
+            CartSummary cartSummary = cartService.getCartSummary(user);
+            List<CartItem> cartItems = cartSummary.getItems();
             if (cartItems.isEmpty()) {
                 log.warn("购物车为空，无法创建订单：用户 {}", user.getId());
                 return Optional.empty();
             }
             
             // 验证库存
-            if (!cartService.validateCartStock(user)) {
+            if (!cartService.validateCartStock(cartSummary)) {
                 log.warn("购物车商品库存不足，无法创建订单：用户 {}", user.getId());
                 return Optional.empty();
             }
@@ -84,23 +105,11 @@ public class OrderService {
             // 保存订单
             order = orderRepository.save(order);
             
-            // 创建订单项并扣减库存
+            // 占用库存（替换结账时的占用），支付时转为扣减；任一商品可售库存不足时抛出异常，整个事务回滚
+            inventoryService.holdForOrder(user, order, quantitiesOf(cartItems, CartItem::getProduct, CartItem::getQuantity));
+            
+            // 创建订单项
             for (CartItem cartItem : cartItems) {
-                // 再次检查库存（防止并发问题）
-                if (!productService.checkStock(cartItem.getProduct().getId(), cartItem.getQuantity())) {
-                    log.error("创建订单时库存不足：商品 {}, 需要 {}", 
-                            cartItem.getProduct().getId(), cartItem.getQuantity());
-                    throw new RuntimeException("库存不足：" + cartItem.getProduct().getName());
-                }
-                
-                // 扣减库存
-                if (!productService.reduceStock(cartItem.getProduct().getId(), cartItem.getQuantity())) {
-                    log.error("扣减库存失败：商品 {}, 数量 {}", 
-                            cartItem.getProduct().getId(), cartItem.getQuantity());
-                    throw new RuntimeException("扣减库存失败：" + cartItem.getProduct().getName());
-                }
-                
-                // 创建订单项
                 OrderItem orderItem = OrderItem.fromCartItem(cartItem);
                 orderItem.setOrder(order);
                 order.addOrderItem(orderItem);  // 使用addOrderItem方法，会自动计算总金额
@@ -113,6 +122,9 @@ public class OrderService {
             // 清空购物车
             cartService.clearCart(user);
             
+            // 写入订单事件（与订单同一事务，提交后由投递任务通知销量统计等监听器）
+            recordEvent(order, OrderEvent.EventType.CREATED, order.getOrderItems());
+            
             log.info("订单创建成功：订单号 {}, 用户 {}, 金额 {}", 
                     orderNumber, user.getId(), order.getTotalAmount());
             
@@ -120,6 +132,8 @@ public class OrderService {
             
         } catch (Exception e) {
             log.error("创建订单失败：{}", e.getMessage());
+            // 已占用的库存和已保存的订单随事务一起回滚
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
             return Optional.empty();
         }
     }
@@ -167,6 +181,40 @@ public class OrderService {
         return orderRepository.findByUserAndStatusWithOrderItems(user, status, pageable);
     }
     
+    /**
+     * 获取用户的订单列表（游标分页，按创建时间倒序）
+     * 订单历史较长时避免 OFFSET 深翻页的线性扫描
+     * @param user 用户对象
+     * @param status 订单状态，为 null 表示全部状态
+     * @param cursor 上一页返回的游标，为空表示第一页
+     * @param size 每页大小
+     * @return 订单游标分页结果
+     */
+    public KeysetPage<Order> getUserOrders(User user, Order.OrderStatus status, String cursor, int size) {
+        KeysetCursor after = KeysetCursor.decode(cursor, ORDER_KEYSET_SORT_FIELDS);
+        Specification<Order> spec = (root, query, cb) -> cb.equal(root.get("user"), user);
+        if (status != null) {
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("status"), status));
+        }
+        if (after != null) {
+            if (after.getDirection() != Sort.Direction.DESC) {
+                throw BusinessException.invalidCursor();
+            }
+            spec = spec.and(after.toSpecification());
+        }
+        
+        Sort sort = KeysetCursor.sort("createdAt", Sort.Direction.DESC);
+        List<Order> rows = orderRepository.findBy(spec, query -> query.sortBy(sort).limit(size + 1).all());
+        KeysetPage<Order> result = KeysetPage.of(rows, size,
+                last -> KeysetCursor.after(last, "createdAt", Sort.Direction.DESC));
+        
+        // 单独一次查询加载本页订单的订单项，避免集合抓取与分页混用
+        if (result.hasContent()) {
+            orderRepository.findByIdInWithOrderItems(result.getContent().stream().map(Order::getId).toList());
+        }
+        return result;
+    }
+    
     /**
      * 获取订单的商品项列表
      * @param order 订单对象
@@ -185,7 +233,7 @@ public class OrderService {
     @Transactional
     public boolean payOrder(String orderNumber, User user) {
         try {
-            Optional<Order> orderOpt = orderRepository.findByOrderNumberWithOrderItems(orderNumber);
+            Optional<Order> orderOpt = orderRepository.findByOrderNumberForUpdate(orderNumber);
             if (orderOpt.isEmpty()) {
                 log.warn("订单不存在：{}", orderNumber);
                 return false;
@@ -205,15 +253,21 @@ public class OrderService {
                 return false;
             }
             
+            // 下单时占用的库存转为扣减（秒杀商品和之前的订单在下单时已扣减库存）
+            inventoryService.convertHolds(order);
+            
             // 标记为已支付
             order.markAsPaid();
             orderRepository.save(order);
+            recordEvent(order, OrderEvent.EventType.PAID, order.getOrderItems());
             
             log.info("订单支付成功：订单号 {}, 用户 {}", orderNumber, user.getId());
             return true;
             
         } catch (Exception e) {
             log.error("订单支付失败：{}", e.getMessage());
+            // 已扣减的库存随事务一起回滚
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
             return false;
         }
     }
@@ -227,7 +281,7 @@ public class OrderService {
     @Transactional
     public boolean cancelOrder(String orderNumber, User user) {
         try {
-            Optional<Order> orderOpt = orderRepository.findByOrderNumberWithOrderItems(orderNumber);
+            Optional<Order> orderOpt = orderRepository.findByOrderNumberForUpdate(orderNumber);
             if (orderOpt.isEmpty()) {
                 log.warn("订单不存在：{}", orderNumber);
                 return false;
@@ -247,21 +301,39 @@ public class OrderService {
                 return false;
             }
             
-            // 恢复库存
-            List<OrderItem> orderItems = orderItemRepository.findByOrder(order);
-            for (OrderItem orderItem : orderItems) {
-                productService.addStock(orderItem.getProduct().getId(), orderItem.getQuantity());
-            }
-            
-            // 标记为已取消
-            order.markAsCancelled();
-            orderRepository.save(order);
+            cancel(order);
             
             log.info("订单取消成功：订单号 {}, 用户 {}", orderNumber, user.getId());
             return true;
             
         } catch (Exception e) {
             log.error("订单取消失败：{}", e.getMessage());
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            return false;
+        }
+    }
+    
+    /**
+     * 取消超时未支付的订单，归还下单时已扣减的库存（秒杀商品归还到计数器）
+     * @param orderNumber 订单号
+     * @return 是否取消（订单已在此期间支付或取消时为 false）
+     */
+    @Transactional
+    public boolean cancelUnpaidOrder(String orderNumber) {
+        try {
+            Optional<Order> orderOpt = orderRepository.findByOrderNumberForUpdate(orderNumber);
+            if (orderOpt.isEmpty() || orderOpt.get().getStatus() != Order.OrderStatus.PENDING) {
+                return false;
+            }
+            
+            cancel(orderOpt.get());
+            
+            log.info("订单超时未支付，已自动取消：订单号 {}", orderNumber);
+            return true;
+            
+        } catch (Exception e) {
+            log.error("自动取消订单失败：订单号 {}, {}", orderNumber, e.getMessage());
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
             return false;
         }
     }
@@ -298,16 +370,56 @@ public class OrderService {
             // 标记为已完成
             order.markAsDelivered();
             orderRepository.save(order);
+            recordEvent(order, OrderEvent.EventType.DELIVERED, order.getOrderItems());
             
             log.info("确认收货成功：订单号 {}, 用户 {}", orderNumber, user.getId());
             return true;
             
         } catch (Exception e) {
             log.error("确认收货失败：{}", e.getMessage());
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
             return false;
         }
     }
     
+    /**
+     * 取消已锁定的订单：未支付订单占用的商品只释放占用，其余已扣减的库存恢复（秒杀商品归还到计数器）
+     */
+    private void cancel(Order order) {
+        List<OrderItem> orderItems = orderItemRepository.findByOrder(order);
+        Map<Long, Integer> quantities = quantitiesOf(orderItems, OrderItem::getProduct, OrderItem::getQuantity);
+        if (order.getStatus() == Order.OrderStatus.PENDING) {
+            quantities.keySet().removeAll(inventoryService.releaseHolds(order));
+        }
+        inventoryService.restoreStock(quantities);
+        
+        // 标记为已取消
+        order.markAsCancelled();
+        orderRepository.save(order);
+        
+        recordEvent(order, OrderEvent.EventType.CANCELLED, orderItems);
+    }
+    
+    /**
+     * 写入订单事件（事务发件箱），必须在修改订单状态的同一事务中调用
+     */
+    private void recordEvent(Order order, OrderEvent.EventType eventType, Collection<OrderItem> orderItems) {
+        orderEventRepository.save(new OrderEvent(order, eventType, orderItems));
+    }
+    
+    /**
+     * 按商品合并数量
+     * @return 商品ID到数量
+     */
+    private static <T> Map<Long, Integer> quantitiesOf(List<T> items, Function<T, Product> product,
+                                                       Function<T, Integer> quantity) {
+        Map<Long, Integer> quantities = new HashMap<>();
+        for (T item : items) {
+            quantities.merge(product.apply(item).getId(), quantity.apply(item), Integer::sum);
+        }
+        return quantities;
+    }
+    
     /**
      * 生成订单号
      * @return 订单号
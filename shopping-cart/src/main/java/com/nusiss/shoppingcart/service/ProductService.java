@@ -1,19 +1,49 @@
 package com.nusiss.shoppingcart.service;
 
+import com.nusiss.shoppingcart.cache.ProductCache;
+import com.nusiss.shoppingcart.catalog.CatalogSnapshot;
+import com.nusiss.shoppingcart.catalog.CatalogVersion;
+import com.nusiss.shoppingcart.catalog.FacetCount;
+import com.nusiss.shoppingcart.catalog.FacetIndex;
+import com.nusiss.shoppingcart.catalog.PopularityRanking;
+import com.nusiss.shoppingcart.catalog.ProductFilter;
+import com.nusiss.shoppingcart.catalog.RelatedProductsIndex;
+import com.nusiss.shoppingcart.dto.ProductCard;
 import com.nusiss.shoppingcart.entity.Product;
+import com.nusiss.shoppingcart.exception.BusinessException;
+import com.nusiss.shoppingcart.inventory.StockAvailability;
+import com.nusiss.shoppingcart.pagination.KeysetCursor;
+import com.nusiss.shoppingcart.pagination.KeysetPage;
 import com.nusiss.shoppingcart.repository.ProductRepository;
+import com.nusiss.shoppingcart.sales.BestSeller;
+import com.nusiss.shoppingcart.sales.BestSellerTracker;
+import com.nusiss.shoppingcart.sales.SalesWindow;
+import com.nusiss.shoppingcart.search.ProductSearchIndex;
+import com.nusiss.shoppingcart.search.ProductSuggestion;
+import com.nusiss.shoppingcart.search.ProductSuggestionIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * 商品业务逻辑层
@@ -25,10 +55,43 @@ public class ProductService {
     
     private static final Logger log = LoggerFactory.getLogger(ProductService.class);
     
+    // 游标分页允许的排序字段（均为非空字段）
+    private static final Set<String> KEYSET_SORT_FIELDS = Set.of("name", "price", "stock", "createdAt", "id");
+    
     private final ProductRepository productRepository;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductSuggestionIndex productSuggestionIndex;
+    private final ProductCache productCache;
+    private final FacetIndex facetIndex;
+    private final RelatedProductsIndex relatedProductsIndex;
+    private final CatalogSnapshot catalogSnapshot;
+    private final PopularityRanking popularityRanking;
+    private final BestSellerTracker bestSellerTracker;
+    private final CatalogVersion catalogVersion;
+    private final StockAvailability stockAvailability;
     
-    public ProductService(ProductRepository productRepository) {
+    public ProductService(ProductRepository productRepository,
+                          ProductSearchIndex productSearchIndex,
+                          ProductSuggestionIndex productSuggestionIndex,
+                          ProductCache productCache,
+                          FacetIndex facetIndex,
+                          RelatedProductsIndex relatedProductsIndex,
+                          CatalogSnapshot catalogSnapshot,
+                          PopularityRanking popularityRanking,
+                          BestSellerTracker bestSellerTracker,
+                          CatalogVersion catalogVersion,
+                          StockAvailability stockAvailability) {
         this.productRepository = productRepository;
+        this.productSearchIndex = productSearchIndex;
+        this.productSuggestionIndex = productSuggestionIndex;
+        this.productCache = productCache;
+        this.facetIndex = facetIndex;
+        this.relatedProductsIndex = relatedProductsIndex;
+        this.catalogSnapshot = catalogSnapshot;
+        this.popularityRanking = popularityRanking;
+        this.bestSellerTracker = bestSellerTracker;
+        this.catalogVersion = catalogVersion;
+        this.stockAvailability = stockAvailability;
     }
     
     /**
@@ -39,36 +102,114 @@ public class ProductService {
      * @param sortDir 排序方向
      * @return 商品分页结果
      */
-    public Page<Product> getAllProducts(int page, int size, String sortBy, String sortDir) {
+    public Page<ProductCard> getAllProducts(int page, int size, String sortBy, String sortDir) {
         Sort sort = sortDir.equalsIgnoreCase("desc") ? 
                    Sort.by(sortBy).descending() : 
                    Sort.by(sortBy).ascending();
         Pageable pageable = PageRequest.of(page, size, sort);
-        return productRepository.findByActiveTrue(pageable);
+        return productRepository.findCards(activeProducts(), pageable);
     }
     
     /**
-     * 根据ID获取商品详情
+     * 获取所有商品（游标分页）
+     * @param cursor 上一页返回的游标，为空表示第一页
+     * @param size 每页大小
+     * @param sortBy 排序字段（仅第一页生效，后续页沿用游标中的排序）
+     * @param sortDir 排序方向
+     * @return 商品游标分页结果
+     */
+    public KeysetPage<ProductCard> getAllProducts(String cursor, int size, String sortBy, String sortDir) {
+        return scrollActiveProducts(activeProducts(), cursor, size, sortBy, sortDir);
+    }
+    
+    /**
+     * 根据ID获取商品详情（优先读取商品缓存）
+     * 返回的是缓存中的商品快照，不应直接修改后保存
      * @param id 商品ID
      * @return 商品对象
      */
     public Optional<Product> getProductById(Long id) {
-        return productRepository.findById(id);
+        return productCache.get(id, productRepository::findById);
+    }
+    
+    /**
+     * 按ID批量读取商品（直接查询数据库，用于需要最新库存的校验）
+     * @param ids 商品ID
+     * @return 商品ID到商品的映射，不存在的ID不包含在内
+     */
+    public Map<Long, Product> getProductsByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        return productRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+    }
+    
+    /**
+     * 获取商品目录的实体标签
+     * 由目录版本和列式快照代数组成，任一商品变更或快照重建后改变；只读内存，不访问数据库
+     * @return 带引号的强实体标签
+     */
+    public String getCatalogETag() {
+        return "\"c-" + catalogVersion.getInstanceId() + "-" + catalogVersion.current()
+                + "-" + catalogSnapshot.getGeneration() + "\"";
+    }
+    
+    /**
+     * 获取商品详情的实体标签
+     * 由商品自身版本、推荐商品ID及推荐商品的最大版本组成；推荐图不可用时推荐结果来自数据库，退化为目录版本
+     * @param id 商品ID
+     * @param relatedLimit 推荐商品数量
+     * @return 带引号的强实体标签
+     */
+    public String getProductETag(Long id, int relatedLimit) {
+        long[] relatedIds = relatedProductsIndex.isAvailable()
+                ? relatedProductsIndex.getRelatedIds(id, relatedLimit)
+                : null;
+        StringBuilder tag = new StringBuilder("\"p-").append(catalogVersion.getInstanceId())
+                .append('-').append(id).append('.').append(catalogVersion.of(id));
+        if (relatedIds == null) {
+            tag.append("-c").append(catalogVersion.current());
+        } else {
+            // 推荐商品中任一变更都会使其版本成为最新的目录版本，取最大值即可反映
+            long relatedVersion = 0;
+            tag.append("-r");
+            for (long relatedId : relatedIds) {
+                tag.append(relatedId).append('_');
+                relatedVersion = Math.max(relatedVersion, catalogVersion.of(relatedId));
+            }
+            tag.append(relatedVersion);
+        }
+        return tag.append('"').toString();
+    }
+    
+    /**
+     * 获取商品缓存统计信息
+     * @return 命中、未命中、淘汰等计数
+     */
+    public Map<String, Object> getProductCacheStats() {
+        return productCache.getStats();
     }
     
     /**
      * 搜索商品
+     * 索引可用时按相关度排序走内存倒排索引，否则回退到数据库模糊查询
      * @param keyword 搜索关键词
      * @param page 页码
      * @param size 每页大小
      * @return 搜索结果分页
      */
-    public Page<Product> searchProducts(String keyword, int page, int size) {
+    public Page<ProductCard> searchProducts(String keyword, int page, int size) {
         Pageable pageable = PageRequest.of(page, size, Sort.by("name").ascending());
         if (keyword == null || keyword.trim().isEmpty()) {
-            return productRepository.findByActiveTrue(pageable);
+            return productRepository.findCards(activeProducts(), pageable);
         }
-        return productRepository.searchProducts(keyword.trim(), pageable);
+        if (productSearchIndex.isAvailable()) {
+            Page<Long> idPage = productSearchIndex.search(keyword.trim(), PageRequest.of(page, size));
+            return new PageImpl<>(findActiveCardsInOrder(idPage.getContent()),
+                    idPage.getPageable(), idPage.getTotalElements());
+        }
+        return productRepository.findCards(containing(keyword.trim()), pageable);
     }
     
     /**
@@ -78,9 +219,20 @@ public class ProductService {
      * @param size 每页大小
      * @return 商品分页结果
      */
-    public Page<Product> getProductsByCategory(String category, int page, int size) {
+    public Page<ProductCard> getProductsByCategory(String category, int page, int size) {
         Pageable pageable = PageRequest.of(page, size, Sort.by("name").ascending());
-        return productRepository.findByCategoryAndActiveTrue(category, pageable);
+        return productRepository.findCards(activeProducts().and(inCategory(category)), pageable);
+    }
+    
+    /**
+     * 根据分类获取商品（游标分页）
+     * @param category 分类
+     * @param cursor 上一页返回的游标，为空表示第一页
+     * @param size 每页大小
+     * @return 商品游标分页结果
+     */
+    public KeysetPage<ProductCard> getProductsByCategory(String category, String cursor, int size) {
+        return scrollActiveProducts(activeProducts().and(inCategory(category)), cursor, size, "name", "asc");
     }
     
     /**
@@ -90,9 +242,20 @@ public class ProductService {
      * @param size 每页大小
      * @return 商品分页结果
      */
-    public Page<Product> getProductsByBrand(String brand, int page, int size) {
+    public Page<ProductCard> getProductsByBrand(String brand, int page, int size) {
         Pageable pageable = PageRequest.of(page, size, Sort.by("name").ascending());
-        return productRepository.findByBrandAndActiveTrue(brand, pageable);
+        return productRepository.findCards(activeProducts().and(ofBrand(brand)), pageable);
+    }
+    
+    /**
+     * 根据品牌获取商品（游标分页）
+     * @param brand 品牌
+     * @param cursor 上一页返回的游标，为空表示第一页
+     * @param size 每页大小
+     * @return 商品游标分页结果
+     */
+    public KeysetPage<ProductCard> getProductsByBrand(String brand, String cursor, int size) {
+        return scrollActiveProducts(activeProducts().and(ofBrand(brand)), cursor, size, "name", "asc");
     }
     
     /**
@@ -103,20 +266,48 @@ public class ProductService {
      * @param size 每页大小
      * @return 商品分页结果
      */
-    public Page<Product> getProductsByPriceRange(BigDecimal minPrice, BigDecimal maxPrice, int page, int size) {
+    public Page<ProductCard> getProductsByPriceRange(BigDecimal minPrice, BigDecimal maxPrice, int page, int size) {
         Pageable pageable = PageRequest.of(page, size, Sort.by("price").ascending());
-        return productRepository.findByPriceRange(minPrice, maxPrice, pageable);
+        return productRepository.findCards(matching(new ProductFilter(null, null, minPrice, maxPrice, false)), pageable);
+    }
+    
+    /**
+     * 按分类、品牌、价格区间、是否有货组合筛选商品
+     * 列式快照可用且支持该排序字段时完全在内存中筛选排序，否则回退到数据库组合查询
+     * @param filter 筛选条件
+     * @param page 页码
+     * @param size 每页大小
+     * @param sortBy 排序字段
+     * @param sortDir 排序方向
+     * @return 商品分页结果
+     */
+    public Page<ProductCard> filterProducts(ProductFilter filter, int page, int size, String sortBy, String sortDir) {
+        boolean ascending = !sortDir.equalsIgnoreCase("desc");
+        if (catalogSnapshot.isAvailable() && catalogSnapshot.supportsSort(sortBy)) {
+            Page<Long> idPage = catalogSnapshot.query(filter, sortBy, ascending, PageRequest.of(page, size));
+            return new PageImpl<>(findActiveCardsInOrder(idPage.getContent()),
+                    idPage.getPageable(), idPage.getTotalElements());
+        }
+        
+        Sort sort = ascending ? Sort.by(sortBy).ascending() : Sort.by(sortBy).descending();
+        return productRepository.findCards(matching(filter), PageRequest.of(page, size, sort));
     }
     
     /**
      * 获取热门商品
+     * 排行榜可用时从内存跳表按名次读取，商品详情走商品缓存
      * @param page 页码
      * @param size 每页大小
      * @return 热门商品分页结果
      */
-    public Page<Product> getPopularProducts(int page, int size) {
+    public Page<ProductCard> getPopularProducts(int page, int size) {
         Pageable pageable = PageRequest.of(page, size);
-        return productRepository.findPopularProducts(pageable);
+        if (popularityRanking.isAvailable()) {
+            Page<Long> idPage = popularityRanking.getPage(pageable);
+            return new PageImpl<>(getCachedActiveCards(idPage.getContent()), pageable, idPage.getTotalElements());
+        }
+        Sort sort = Sort.by(Sort.Order.desc("rating"), Sort.Order.desc("reviewCount"));
+        return productRepository.findCards(activeProducts(), PageRequest.of(page, size, sort));
     }
     
     /**
@@ -124,6 +315,9 @@ public class ProductService {
      * @return 分类列表
      */
     public List<String> getAllCategories() {
+        if (facetIndex.isAvailable()) {
+            return facetIndex.getCategoryFacets().stream().map(FacetCount::getValue).toList();
+        }
         return productRepository.findAllCategories();
     }
     
@@ -132,24 +326,81 @@ public class ProductService {
      * @return 品牌列表
      */
     public List<String> getAllBrands() {
+        if (facetIndex.isAvailable()) {
+            return facetIndex.getBrandFacets().stream().map(FacetCount::getValue).toList();
+        }
         return productRepository.findAllBrands();
     }
     
     /**
-     * 检查商品库存
+     * 获取分类筛选项（含商品数量和价格区间）
+     * @return 分类筛选项列表
+     */
+    public List<FacetCount> getCategoryFacets() {
+        if (facetIndex.isAvailable()) {
+            return facetIndex.getCategoryFacets();
+        }
+        return toFacetCounts(productRepository.countByCategory());
+    }
+    
+    /**
+     * 获取品牌筛选项（含商品数量和价格区间）
+     * @return 品牌筛选项列表
+     */
+    public List<FacetCount> getBrandFacets() {
+        if (facetIndex.isAvailable()) {
+            return facetIndex.getBrandFacets();
+        }
+        return toFacetCounts(productRepository.countByBrand());
+    }
+    
+    /**
+     * 检查商品可售库存（库存减去有效的库存占用）
      * @param productId 商品ID
      * @param quantity 需要的数量
      * @return 是否有足够库存
      */
     public boolean checkStock(Long productId, int quantity) {
-        Optional<Product> productOpt = productRepository.findById(productId);
+        Optional<Product> productOpt = getProductById(productId);
         if (productOpt.isPresent()) {
-            Product product = productOpt.get();
-            return product.hasStock(quantity);
+            return hasAvailableStock(productOpt.get(), null, quantity);
         }
         return false;
     }
     
+    /**
+     * 检查商品可售库存，占用数量读取内存，不访问数据库
+     * @param product 商品
+     * @param userId 当前用户ID，该用户自己的结账占用计入可售库存；游客为空
+     * @param quantity 需要的数量
+     * @return 是否有足够库存
+     */
+    public boolean hasAvailableStock(Product product, Long userId, int quantity) {
+        return stockAvailability.available(product, userId) >= quantity;
+    }
+    
+    /**
+     * 获取商品的库存占用情况
+     * @param product 商品
+     * @return 库存、占用数量、可售库存
+     */
+    public Map<String, Object> getStockAvailability(Product product) {
+        Map<String, Object> availability = new LinkedHashMap<>();
+        availability.put("productId", product.getId());
+        availability.put("stock", product.getStock());
+        availability.put("held", stockAvailability.getHeld(product.getId()));
+        availability.put("available", stockAvailability.available(product, null));
+        return availability;
+    }
+    
+    /**
+     * 获取库存占用统计信息
+     * @return 有占用的商品数、占用总数量、有结账占用的用户数
+     */
+    public Map<String, Object> getStockAvailabilityStats() {
+        return stockAvailability.getStats();
+    }
+    
     /**
      * 减少商品库存
      * @param productId 商品ID
@@ -205,41 +456,56 @@ public class ProductService {
         return productRepository.findByStockLessThanAndActiveTrue(threshold);
     }
     
+    /**
+     * 获取时间窗口内的热销商品
+     * @param window 时间窗口（最近1小时/24小时/7天）
+     * @param limit 数量上限
+     * @return 按销量降序排列的热销商品统计
+     */
+    public List<BestSeller> getBestSellers(SalesWindow window, int limit) {
+        return bestSellerTracker.getTopSellers(window, limit);
+    }
+    
     /**
      * 获取相关商品推荐
+     * 推荐图可用时直接读取预先计算的相关商品ID，并通过商品缓存取详情；
+     * 否则依次按同分类、同品牌、热门商品查询补足
      * @param product 当前商品
      * @param limit 推荐数量限制
      * @return 相关商品列表
      */
-    public List<Product> getRelatedProducts(Product product, int limit) {
+    public List<ProductCard> getRelatedProducts(Product product, int limit) {
         try {
+            long[] relatedIds = relatedProductsIndex.isAvailable()
+                    ? relatedProductsIndex.getRelatedIds(product.getId(), limit)
+                    : null;
+            if (relatedIds != null) {
+                return getCachedActiveCards(Arrays.stream(relatedIds).boxed().toList());
+            }
+            
             // 优先推荐同分类的商品
-            List<Product> relatedProducts = productRepository.findByCategoryAndActiveTrueAndIdNot(
-                product.getCategory(), product.getId(), PageRequest.of(0, limit)
-            ).getContent();
+            List<ProductCard> relatedProducts = new ArrayList<>(productRepository.findCards(
+                activeProducts().and(inCategory(product.getCategory())).and(excluding(List.of(product.getId()))),
+                Sort.unsorted(), limit
+            ));
             
             // 如果同分类商品不足，补充同品牌的商品
             if (relatedProducts.size() < limit) {
-                int remaining = limit - relatedProducts.size();
-                List<Product> brandProducts = productRepository.findByBrandAndActiveTrueAndIdNotIn(
-                    product.getBrand(), 
-                    relatedProducts.stream().map(Product::getId).toList(),
-                    PageRequest.of(0, remaining)
-                ).getContent();
-                relatedProducts.addAll(brandProducts);
+                relatedProducts.addAll(productRepository.findCards(
+                    activeProducts().and(ofBrand(product.getBrand())).and(excluding(idsOf(product, relatedProducts))),
+                    Sort.unsorted(), limit - relatedProducts.size()
+                ));
             }
             
             // 如果还不足，补充其他热门商品
             if (relatedProducts.size() < limit) {
-                int remaining = limit - relatedProducts.size();
-                List<Product> popularProducts = productRepository.findByActiveTrueAndIdNotIn(
-                    relatedProducts.stream().map(Product::getId).toList(),
-                    PageRequest.of(0, remaining, Sort.by("reviewCount").descending())
-                ).getContent();
-                relatedProducts.addAll(popularProducts);
+                relatedProducts.addAll(productRepository.findCards(
+                    activeProducts().and(excluding(idsOf(product, relatedProducts))),
+                    Sort.by("reviewCount").descending(), limit - relatedProducts.size()
+                ));
             }
             
-            return relatedProducts.subList(0, Math.min(relatedProducts.size(), limit));
+            return relatedProducts;
             
         } catch (Exception e) {
             log.error("获取相关商品推荐失败，商品ID: {}", product.getId(), e);
@@ -249,25 +515,164 @@ public class ProductService {
     
     /**
      * 获取搜索建议
+     * 启用建议索引时完全走内存前缀树，否则回退到数据库模糊查询
      * @param query 搜索查询词
      * @param limit 建议数量限制
      * @return 搜索建议列表
      */
-    public List<Product> getSearchSuggestions(String query, int limit) {
+    public List<ProductSuggestion> getSearchSuggestions(String query, int limit) {
         try {
             if (query == null || query.trim().length() < 2) {
                 return List.of();
             }
             
             String keyword = query.trim();
+            if (productSuggestionIndex.isEnabled()) {
+                return productSuggestionIndex.suggest(keyword, limit);
+            }
+            
             Pageable pageable = PageRequest.of(0, limit, Sort.by("reviewCount").descending());
             
             // 搜索商品名称包含关键词的商品
-            return productRepository.searchProducts(keyword, pageable).getContent();
+            return productRepository.searchProducts(keyword, pageable).getContent().stream()
+                    .map(ProductSuggestion::from)
+                    .toList();
             
         } catch (Exception e) {
             log.error("获取搜索建议失败，查询词: {}", query, e);
             return List.of();
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * 按给定ID顺序批量加载上架商品卡片
+     * @param ids 商品ID列表（已排序）
+     * @return 商品卡片列表，顺序与ID列表一致
+     */
+    private List<ProductCard> findActiveCardsInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Specification<Product> spec = activeProducts().and((root, query, cb) -> root.get("id").in(ids));
+        Map<Long, ProductCard> cardMap = productRepository.findCards(spec, Sort.unsorted(), ids.size()).stream()
+                .collect(Collectors.toMap(ProductCard::getId, Function.identity()));
+        return ids.stream()
+                .map(cardMap::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+    
+    /**
+     * 按给定ID顺序通过商品缓存读取上架商品卡片
+     */
+    private List<ProductCard> getCachedActiveCards(List<Long> ids) {
+        List<ProductCard> cards = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            getProductById(id)
+                    .filter(product -> Boolean.TRUE.equals(product.getActive()))
+                    .map(ProductCard::from)
+                    .ifPresent(cards::add);
+        }
+        return cards;
+    }
+    
+    /**
+     * 当前商品及已选推荐商品的ID
+     */
+    private static List<Long> idsOf(Product product, List<ProductCard> selected) {
+        List<Long> ids = new ArrayList<>(selected.size() + 1);
+        ids.add(product.getId());
+        selected.forEach(card -> ids.add(card.getId()));
+        return ids;
+    }
+    
+    /**
+     * 将分组统计查询结果转换为筛选项列表
+     */
+    private List<FacetCount> toFacetCounts(List<Object[]> rows) {
+        return rows.stream()
+                .map(row -> new FacetCount((String) row[0], ((Number) row[1]).intValue(),
+                        (BigDecimal) row[2], (BigDecimal) row[3]))
+                .toList();
+    }
+    
+    /**
+     * 按 (排序字段, id) 键集查询下一页商品，多取一条用于判断是否还有下一页
+     */
+    private KeysetPage<ProductCard> scrollActiveProducts(Specification<Product> filter, String cursor, int size,
+                                                     String sortBy, String sortDir) {
+        KeysetCursor after = KeysetCursor.decode(cursor, KEYSET_SORT_FIELDS);
+        String sortField;
+        Sort.Direction direction;
+        Specification<Product> spec = filter;
+        if (after != null) {
+            sortField = after.getSortField();
+            direction = after.getDirection();
+            spec = spec.and(after.toSpecification());
+        } else {
+            if (!KEYSET_SORT_FIELDS.contains(sortBy)) {
+                throw BusinessException.unsupportedSortField(sortBy);
+            }
+            sortField = sortBy;
+            direction = sortDir.equalsIgnoreCase("desc") ? Sort.Direction.DESC : Sort.Direction.ASC;
+        }
+        Sort sort = KeysetCursor.sort(sortField, direction);
+        List<ProductCard> rows = productRepository.findCards(spec, sort, size + 1);
+        return KeysetPage.of(rows, size, last -> KeysetCursor.after(last, sortField, direction));
+    }
+    
+    private static Specification<Product> activeProducts() {
+        return (root, query, cb) -> cb.isTrue(root.get("active"));
+    }
+    
+    private static Specification<Product> inCategory(String category) {
+        return (root, query, cb) -> category == null
+                ? cb.isNull(root.get("category"))
+                : cb.equal(root.get("category"), category);
+    }
+    
+    private static Specification<Product> ofBrand(String brand) {
+        return (root, query, cb) -> brand == null
+                ? cb.isNull(root.get("brand"))
+                : cb.equal(root.get("brand"), brand);
+    }
+    
+    private static Specification<Product> excluding(List<Long> ids) {
+        return (root, query, cb) -> cb.not(root.get("id").in(ids));
+    }
+    
+    /**
+     * 关键词模糊匹配商品名称、描述、分类（索引不可用时的回退查询）
+     */
+    private static Specification<Product> containing(String keyword) {
+        return activeProducts().and((root, query, cb) -> {
+            String pattern = "%" + keyword + "%";
+            return cb.or(cb.like(root.get("name"), pattern),
+                    cb.like(root.get("description"), pattern),
+                    cb.like(root.get("category"), pattern));
+        });
+    }
+    
+    /**
+     * 将组合筛选条件转换为查询条件
+     */
+    private static Specification<Product> matching(ProductFilter filter) {
+        Specification<Product> spec = activeProducts();
+        if (filter.getCategory() != null) {
+            spec = spec.and(inCategory(filter.getCategory()));
+        }
+        if (filter.getBrand() != null) {
+            spec = spec.and(ofBrand(filter.getBrand()));
+        }
+        if (filter.getMinPrice() != null) {
+            spec = spec.and((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("price"), filter.getMinPrice()));
+        }
+        if (filter.getMaxPrice() != null) {
+            spec = spec.and((root, query, cb) -> cb.lessThanOrEqualTo(root.get("price"), filter.getMaxPrice()));
+        }
+        if (filter.isInStockOnly()) {
+            spec = spec.and((root, query, cb) -> cb.greaterThan(root.get("stock"), 0));
+        }
+        return spec;
+    }
+}